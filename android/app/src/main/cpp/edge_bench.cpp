@@ -0,0 +1,214 @@
+// Host timing for the edge engine, no JVM or device needed:
+//   edge-bench [width height [threads [iterations [mask|rgba|overlay|features|yuv [graph]]]]]
+// graph is a comma-separated filter chain, e.g. blur:5,canny:40:120,dilate:1,overlay
+// (default canny:50:150); per-stage times are printed after the total.
+// features times the mask plus FeatureExtractor (pixels, contours and segments)
+// instead of an image. yuv times the YUV_420_888 to RGBA conversion alone, for
+// semi-planar and planar chroma.
+// The frame is padded to a camera-like row stride to exercise the strided read.
+// EDGE_SIMD=scalar|sse4.1|avx2|neon picks the row kernels to time.
+
+#include <algorithm>
+#include <chrono>
+#include <cstdio>
+#include <cstdlib>
+#include <cstring>
+#include <random>
+#include <string>
+#include <vector>
+
+#include "feature_extract.h"
+#include "filter_graph.h"
+#include "yuv_convert.h"
+
+// Parses "op[:p0[:p1]],..." into stages; returns the count, -1 on a bad name
+static int parseGraph(const char* text, edge::StageSpec* stages, const char** names) {
+    static const struct { const char* name; edge::StageOp op; int p0; int p1; } kOps[] = {
+            {"blur", edge::StageOp::Blur, 3, 0},
+            {"sobel", edge::StageOp::Sobel, 0, 0},
+            {"canny", edge::StageOp::Canny, 50, 150},
+            {"dilate", edge::StageOp::Dilate, 1, 0},
+            {"erode", edge::StageOp::Erode, 1, 0},
+            {"threshold", edge::StageOp::Threshold, 128, 0},
+            {"overlay", edge::StageOp::Overlay, 0, 0},
+    };
+    int count = 0;
+    std::string spec(text);
+    size_t pos = 0;
+    while (pos <= spec.size() && count < edge::FilterGraph::MAX_STAGES) {
+        size_t end = spec.find(',', pos);
+        std::string item = spec.substr(pos, end == std::string::npos ? std::string::npos : end - pos);
+        std::string name = item.substr(0, item.find(':'));
+        bool found = false;
+        for (const auto& op : kOps) {
+            if (name == op.name) {
+                int p[2] = {op.p0, op.p1};
+                size_t colon = item.find(':');
+                for (int i = 0; i < 2 && colon != std::string::npos; i++) {
+                    p[i] = atoi(item.c_str() + colon + 1);
+                    colon = item.find(':', colon + 1);
+                }
+                stages[count] = {op.op, p[0], p[1]};
+                names[count++] = op.name;
+                found = true;
+            }
+        }
+        if (!found) {
+            return -1;
+        }
+        if (end == std::string::npos) {
+            break;
+        }
+        pos = end + 1;
+    }
+    return count;
+}
+
+// Random bytes with runs of 0 and 255, so the largest gradients show up too
+static void fillRandom(std::mt19937& random, uint8_t* p, size_t n) {
+    for (size_t i = 0; i < n; i++) {
+        switch (random() % 8) {
+            case 0:
+                p[i] = 0;
+                break;
+            case 1:
+                p[i] = 255;
+                break;
+            default:
+                p[i] = static_cast<uint8_t>(random());
+                break;
+        }
+    }
+}
+
+// Camera-like layouts: Y rows padded to 64 bytes, chroma either interleaved
+// (one buffer, v one byte after u) or in two planes of half-width rows
+static int timeYuv(int width, int height, int iterations) {
+    int rowStride = (width + 63) & ~63;
+    std::vector<uint8_t> luma(static_cast<size_t>(rowStride) * height);
+    std::vector<uint8_t> interleaved(static_cast<size_t>(rowStride) * ((height + 1) / 2));
+    std::vector<uint8_t> planes(interleaved.size());
+    std::mt19937 random(42);
+    fillRandom(random, luma.data(), luma.size());
+    fillRandom(random, interleaved.data(), interleaved.size());
+    fillRandom(random, planes.data(), planes.size());
+    std::vector<uint8_t> rgba(static_cast<size_t>(width) * height * 4);
+    const size_t half = planes.size() / 2;
+    const edge::RowKernels& kernels = edge::bestKernels();
+
+    for (int pixelStride = 2; pixelStride >= 1; pixelStride--) {
+        const uint8_t* u = pixelStride == 2 ? interleaved.data() : planes.data();
+        const uint8_t* v = pixelStride == 2 ? u + 1 : u + half;
+        int uvRowStride = pixelStride == 2 ? rowStride : rowStride / 2;
+        auto start = std::chrono::steady_clock::now();
+        for (int i = 0; i < iterations; i++) {
+            edge::yuvToRgba(luma.data(), rowStride, u, v, uvRowStride, pixelStride, true,
+                            width, height, rgba.data(), kernels);
+        }
+        double ms = std::chrono::duration<double, std::milli>(std::chrono::steady_clock::now() - start)
+                .count() / iterations;
+        printf("%dx%d yuv %s (%s): %.3f ms/frame\n", width, height,
+               pixelStride == 2 ? "semi-planar" : "planar", kernels.name, ms);
+    }
+    return 0;
+}
+
+int main(int argc, char** argv) {
+    int width = argc > 2 ? atoi(argv[1]) : 640;
+    int height = argc > 2 ? atoi(argv[2]) : 480;
+    int threads = argc > 3 ? atoi(argv[3]) : 1;
+    int iterations = argc > 4 ? atoi(argv[4]) : 200;
+    const char* modeName = argc > 5 ? argv[5] : "rgba";
+    const char* graphText = argc > 6 ? argv[6] : "canny:50:150";
+    if (strcmp(modeName, "yuv") == 0) {
+        return timeYuv(width, height, iterations);
+    }
+
+    edge::OutputMode mode = edge::OutputMode::Rgba;
+    int channels = 4;
+    const bool features = strcmp(modeName, "features") == 0;
+    if (features || strcmp(modeName, "mask") == 0) {
+        mode = edge::OutputMode::Mask;
+        channels = 1;
+    } else if (strcmp(modeName, "overlay") == 0) {
+        mode = edge::OutputMode::Overlay;
+    }
+
+    // Blocky shapes plus sensor-like noise, like the JVM benchmarks' frames
+    int rowStride = (width + 63) & ~63;
+    std::vector<uint8_t> plane(static_cast<size_t>(rowStride) * height);
+    std::mt19937 random(42);
+    for (int y = 0; y < height; y++) {
+        for (int x = 0; x < width; x++) {
+            int shape = ((x / 53 + y / 41) % 3) * 70;
+            plane[static_cast<size_t>(y) * rowStride + x] = static_cast<uint8_t>(20 + shape + random() % 24);
+        }
+    }
+    std::vector<uint8_t> out(static_cast<size_t>(width) * height * channels);
+
+    edge::StageSpec stages[edge::FilterGraph::MAX_STAGES];
+    const char* names[edge::FilterGraph::MAX_STAGES];
+    int stageCount = parseGraph(graphText, stages, names);
+
+    edge::FilterGraph engine;
+    if (stageCount < 0 || !engine.setStages(stages, stageCount)) {
+        fprintf(stderr, "invalid graph: %s\n", graphText);
+        return 1;
+    }
+    engine.setThreads(threads);
+    engine.configure(width, height);
+
+    edge::FeatureExtractor extractor;
+    edge::FeatureExtractor::Params params;
+    extractor.configure(width, height);
+    std::vector<int32_t> result(edge::FeatureExtractor::HEADER_INTS + static_cast<size_t>(width) * height / 10);
+    double extractMs = 0;
+    auto run = [&]() {
+        engine.process(plane.data(), rowStride, out.data(), mode);
+        if (features) {
+            auto extractStart = std::chrono::steady_clock::now();
+            extractor.extract(out.data(), params, result.data(), static_cast<int>(result.size()));
+            extractMs += std::chrono::duration<double, std::milli>(std::chrono::steady_clock::now() - extractStart)
+                    .count();
+        }
+    };
+
+    for (int i = 0; i < iterations / 10 + 1; i++) {
+        run();
+    }
+    extractMs = 0;
+
+    float stageMs[edge::FilterGraph::MAX_STAGES] = {};
+    float timings[edge::FilterGraph::MAX_STAGES];
+    auto start = std::chrono::steady_clock::now();
+    for (int i = 0; i < iterations; i++) {
+        run();
+        int n = engine.stageTimings(timings, edge::FilterGraph::MAX_STAGES);
+        for (int s = 0; s < n; s++) {
+            stageMs[s] += timings[s];
+        }
+    }
+    auto end = std::chrono::steady_clock::now();
+    double ms = std::chrono::duration<double, std::milli>(end - start).count() / iterations;
+
+    long edges = 0;
+    for (size_t i = 0; i < out.size(); i += channels) {
+        // Overlay edges are pure green; everything else is gray
+        bool edge = mode == edge::OutputMode::Overlay ? out[i] != out[i + 1] : out[i] != 0;
+        if (edge) {
+            edges++;
+        }
+    }
+    printf("%dx%d stride=%d threads=%d mode=%s kernels=%s: %.3f ms/frame, %ld edge pixels\n",
+           width, height, rowStride, threads, modeName, edge::bestKernels().name, ms, edges);
+    for (int s = 0; s < stageCount; s++) {
+        printf("  %-9s %.3f ms\n", names[s], stageMs[s] / iterations);
+    }
+    if (features) {
+        printf("  %-9s %.3f ms: %d pixels, %d contours, %d segments in %d ints%s\n", "features",
+               extractMs / iterations, result[edge::FeatureExtractor::PIXEL_COUNT],
+               result[edge::FeatureExtractor::CONTOUR_COUNT], result[edge::FeatureExtractor::SEGMENT_COUNT],
+               result[edge::FeatureExtractor::USED], result[edge::FeatureExtractor::TRUNCATED] ? " (truncated)" : "");
+    }
+    return 0;
+}
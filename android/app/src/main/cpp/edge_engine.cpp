@@ -0,0 +1,399 @@
+#include "edge_engine.h"
+
+#include <algorithm>
+#include <cmath>
+#include <cstring>
+
+namespace edge {
+
+namespace {
+
+using simd::DIR_0;
+using simd::NONE;
+using simd::STRONG;
+using simd::WEAK;
+using simd::sobelPixel;
+
+// Rows per band; small enough to spread over a few cores, large enough that
+// the two halo rows each band recomputes stay cheap
+constexpr int MIN_BAND_ROWS = 32;
+
+// Interleaved magnitude histograms per band, see gradientBand
+constexpr int HISTOGRAM_COPIES = 4;
+
+// cv::Canny runs its Sobel with BORDER_REPLICATE
+inline int replicate(int i, int n) {
+    return i < 0 ? 0 : (i >= n ? n - 1 : i);
+}
+
+}  // namespace
+
+WorkerPool::~WorkerPool() {
+    resize(1);
+}
+
+void WorkerPool::resize(int threads) {
+    int extra = std::max(0, threads - 1);
+    if (extra == static_cast<int>(threads_.size())) {
+        return;
+    }
+    {
+        std::lock_guard<std::mutex> lock(mutex_);
+        stop_ = true;
+    }
+    wake_.notify_all();
+    for (std::thread& t : threads_) {
+        t.join();
+    }
+    threads_.clear();
+    stop_ = false;
+    for (int i = 0; i < extra; i++) {
+        threads_.emplace_back(&WorkerPool::loop, this);
+    }
+}
+
+void WorkerPool::run(int count, Task task, void* ctx) {
+    if (threads_.empty() || count <= 1) {
+        for (int i = 0; i < count; i++) {
+            task(ctx, i);
+        }
+        return;
+    }
+    {
+        // A worker that woke late for the previous run may still be in work();
+        // let it leave before the index counter is reset under it
+        std::unique_lock<std::mutex> lock(mutex_);
+        done_.wait(lock, [this] { return busy_ == 0; });
+        task_ = task;
+        ctx_ = ctx;
+        count_ = count;
+        pending_ = count;
+        next_.store(0);
+        ++generation_;
+        ++busy_;
+    }
+    wake_.notify_all();
+    work(task, ctx, count);
+
+    std::unique_lock<std::mutex> lock(mutex_);
+    done_.wait(lock, [this] { return pending_ == 0; });
+}
+
+void WorkerPool::loop() {
+    uint64_t seen = 0;
+    for (;;) {
+        Task task;
+        void* ctx;
+        int count;
+        {
+            std::unique_lock<std::mutex> lock(mutex_);
+            wake_.wait(lock, [&] { return stop_ || generation_ != seen; });
+            if (stop_) {
+                return;
+            }
+            seen = generation_;
+            task = task_;
+            ctx = ctx_;
+            count = count_;
+            ++busy_;
+        }
+        work(task, ctx, count);
+    }
+}
+
+void WorkerPool::work(Task task, void* ctx, int count) {
+    int i;
+    while ((i = next_.fetch_add(1)) < count) {
+        task(ctx, i);
+        std::lock_guard<std::mutex> lock(mutex_);
+        if (--pending_ == 0) {
+            done_.notify_all();
+        }
+    }
+    std::lock_guard<std::mutex> lock(mutex_);
+    --busy_;
+    done_.notify_all();
+}
+
+void Engine::configure(int width, int height) {
+    width_ = width;
+    height_ = height;
+    size_t pixels = static_cast<size_t>(width) * height;
+    map_.assign(pixels, NONE);
+    stack_.assign(pixels, 0);
+    histogram_.assign(MAX_MAGNITUDE + 1, 0);
+
+    int threads = pool_.size();
+    int bandCount = std::max(1, std::min(threads, height / MIN_BAND_ROWS));
+    bands_.resize(bandCount);
+    for (int i = 0; i < bandCount; i++) {
+        Band& band = bands_[i];
+        band.y0 = static_cast<int>(static_cast<long long>(height) * i / bandCount);
+        band.y1 = static_cast<int>(static_cast<long long>(height) * (i + 1) / bandCount);
+        for (int r = 0; r < 3; r++) {
+            band.mag[r].assign(width + 2, 0);
+            band.dir[r].assign(width, DIR_0);
+        }
+        band.histogram.assign(HISTOGRAM_COPIES * (MAX_MAGNITUDE + 1), 0);
+    }
+}
+
+void Engine::setThresholds(int low, int high) {
+    low_ = std::min(low, high);
+    high_ = std::max(low, high);
+}
+
+void Engine::setAutoThresholds(AutoThreshold mode, float param, float smoothing) {
+    if (mode != auto_) {
+        autoPrimed_ = false;
+    }
+    auto_ = mode;
+    autoParam_ = std::min(1.f, std::max(0.f, param));
+    smoothing_ = smoothing > 0.f ? std::min(1.f, smoothing) : 1.f;
+}
+
+void Engine::setThreads(int threads) {
+    pool_.resize(std::max(1, threads));
+    if (width_ > 0 && height_ > 0) {
+        configure(width_, height_);
+    }
+}
+
+void Engine::process(const uint8_t* src, int srcStride, uint8_t* dst, OutputMode mode) {
+    src_ = src;
+    srcStride_ = srcStride;
+    dst_ = dst;
+    mode_ = mode;
+    frameLow_ = low_;
+    frameHigh_ = high_;
+    if (auto_ != AutoThreshold::Off && autoPrimed_) {
+        frameHigh_ = static_cast<int>(std::lround(autoHigh_));
+        frameLow_ = static_cast<int>(std::lround(autoHigh_ * LOW_RATIO));
+    }
+
+    pool_.run(static_cast<int>(bands_.size()), &Engine::gradientTask, this);
+    int edges = hysteresis();
+    edgeDensity_ = static_cast<float>(edges) / (static_cast<float>(width_) * height_);
+    if (auto_ != AutoThreshold::Off) {
+        updateAutoThresholds();
+    }
+    pool_.run(static_cast<int>(bands_.size()), &Engine::outputTask, this);
+
+    src_ = nullptr;
+    dst_ = nullptr;
+}
+
+void Engine::gradientTask(void* ctx, int index) {
+    Engine* engine = static_cast<Engine*>(ctx);
+    engine->gradientBand(engine->bands_[index]);
+}
+
+void Engine::outputTask(void* ctx, int index) {
+    Engine* engine = static_cast<Engine*>(ctx);
+    engine->outputBand(engine->bands_[index]);
+}
+
+// Magnitude (at mag[1..width]) and direction for one source row
+void Engine::gradientRow(int y, int32_t* mag, uint8_t* dir) const {
+    const int w = width_;
+    const uint8_t* up = src_ + static_cast<size_t>(replicate(y - 1, height_)) * srcStride_;
+    const uint8_t* row = src_ + static_cast<size_t>(y) * srcStride_;
+    const uint8_t* down = src_ + static_cast<size_t>(replicate(y + 1, height_)) * srcStride_;
+
+    if (w == 1) {
+        sobelPixel(up, row, down, 0, 0, 0, &mag[1], &dir[0]);
+        return;
+    }
+    sobelPixel(up, row, down, 0, 0, 1, &mag[1], &dir[0]);
+    kernels_->gradient(up, row, down, 1, w - 1, mag + 1, dir);
+    sobelPixel(up, row, down, w - 2, w - 1, w - 1, &mag[w], &dir[w - 1]);
+}
+
+// Sobel and non-max suppression in one sweep over the band. slot[] rotates the
+// three row buffers so that prev/cur/next always hold rows y-1, y and y+1;
+// rows outside the frame stay all zero, like the Java kernel's neighbours.
+void Engine::gradientBand(Band& band) {
+    const int w = width_;
+    const int low = frameLow_;
+    const int high = frameHigh_;
+    uint32_t* histogram = auto_ != AutoThreshold::Off ? band.histogram.data() : nullptr;
+    int slot[3] = {0, 1, 2};
+
+    std::fill(band.mag[slot[0]].begin(), band.mag[slot[0]].end(), 0);
+    if (band.y0 > 0) {
+        gradientRow(band.y0 - 1, band.mag[slot[0]].data(), band.dir[slot[0]].data());
+    }
+    gradientRow(band.y0, band.mag[slot[1]].data(), band.dir[slot[1]].data());
+
+    for (int y = band.y0; y < band.y1; y++) {
+        int32_t* next = band.mag[slot[2]].data();
+        if (y + 1 < height_) {
+            gradientRow(y + 1, next, band.dir[slot[2]].data());
+        } else {
+            std::fill(next, next + w + 2, 0);
+        }
+
+        const int32_t* prev = band.mag[slot[0]].data() + 1;
+        const int32_t* cur = band.mag[slot[1]].data() + 1;
+        const int32_t* below = next + 1;
+        const uint8_t* dir = band.dir[slot[1]].data();
+        uint8_t* map = map_.data() + static_cast<size_t>(y) * w;
+
+        kernels_->suppress(prev, cur, below, dir, 0, w, low, high, map);
+        if (histogram != nullptr) {
+            // The row is still in cache from the sweep. Neighbouring pixels
+            // mostly share a bin, so they count into HISTOGRAM_COPIES separate
+            // histograms instead of queueing on one counter
+            constexpr int bins = MAX_MAGNITUDE + 1;
+            int x = 0;
+            for (; x + HISTOGRAM_COPIES <= w; x += HISTOGRAM_COPIES) {
+                histogram[cur[x]]++;
+                histogram[bins + cur[x + 1]]++;
+                histogram[2 * bins + cur[x + 2]]++;
+                histogram[3 * bins + cur[x + 3]]++;
+            }
+            for (; x < w; x++) {
+                histogram[cur[x]]++;
+            }
+        }
+
+        int recycled = slot[0];
+        slot[0] = slot[1];
+        slot[1] = slot[2];
+        slot[2] = recycled;
+    }
+}
+
+// Returns the number of edge pixels
+int Engine::hysteresis() {
+    const int w = width_;
+    const int h = height_;
+    uint8_t* map = map_.data();
+    int32_t* stack = stack_.data();
+    int top = 0;
+    int size = w * h;
+    for (int i = 0; i < size; i++) {
+        if (map[i] == STRONG) {
+            stack[top++] = i;
+        }
+    }
+    int edges = top;
+    while (top > 0) {
+        int i = stack[--top];
+        int x = i % w;
+        int y = i / w;
+        for (int ny = std::max(0, y - 1); ny <= std::min(h - 1, y + 1); ny++) {
+            for (int nx = std::max(0, x - 1); nx <= std::min(w - 1, x + 1); nx++) {
+                int n = ny * w + nx;
+                if (map[n] == WEAK) {
+                    map[n] = STRONG;
+                    stack[top++] = n;
+                    edges++;
+                }
+            }
+        }
+    }
+    return edges;
+}
+
+// Merges and clears the band histograms, then moves the thresholds toward
+// the ones this frame calls for
+void Engine::updateAutoThresholds() {
+    uint32_t* total = histogram_.data();
+    std::fill(histogram_.begin(), histogram_.end(), 0);
+    for (Band& band : bands_) {
+        for (size_t i = 0; i < band.histogram.size(); i++) {
+            total[i % (MAX_MAGNITUDE + 1)] += band.histogram[i];
+        }
+        std::fill(band.histogram.begin(), band.histogram.end(), 0);
+    }
+    const double pixels = static_cast<double>(width_) * height_;
+
+    int target = 0;
+    if (auto_ == AutoThreshold::Percentile) {
+        double wanted = autoParam_ * pixels;
+        double seen = 0;
+        while (target < MAX_MAGNITUDE && (seen += total[target]) < wanted) {
+            target++;
+        }
+    } else {
+        // Otsu: the split that maximises the between-class variance
+        double sum = 0;
+        for (int m = 0; m <= MAX_MAGNITUDE; m++) {
+            sum += static_cast<double>(m) * total[m];
+        }
+        double below = 0;
+        double belowSum = 0;
+        double best = -1;
+        for (int m = 0; m < MAX_MAGNITUDE; m++) {
+            below += total[m];
+            belowSum += static_cast<double>(m) * total[m];
+            double above = pixels - below;
+            if (below == 0 || above == 0) {
+                continue;
+            }
+            double diff = belowSum / below - (sum - belowSum) / above;
+            double variance = below * above * diff * diff;
+            if (variance > best) {
+                best = variance;
+                target = m;
+            }
+        }
+    }
+    target = std::max(1, target);
+
+    if (autoPrimed_) {
+        autoHigh_ += smoothing_ * (static_cast<float>(target) - autoHigh_);
+    } else {
+        autoHigh_ = static_cast<float>(target);
+        autoPrimed_ = true;
+    }
+}
+
+void Engine::outputBand(const Band& band) {
+    const int w = width_;
+    for (int y = band.y0; y < band.y1; y++) {
+        const uint8_t* map = map_.data() + static_cast<size_t>(y) * w;
+        switch (mode_) {
+            case OutputMode::Mask: {
+                uint8_t* out = dst_ + static_cast<size_t>(y) * w;
+                for (int x = 0; x < w; x++) {
+                    out[x] = map[x] == STRONG ? 255 : 0;
+                }
+                break;
+            }
+            case OutputMode::Rgba: {
+                uint8_t* out = dst_ + static_cast<size_t>(y) * w * 4;
+                for (int x = 0; x < w; x++) {
+                    uint8_t v = map[x] == STRONG ? 255 : 0;
+                    out[0] = v;
+                    out[1] = v;
+                    out[2] = v;
+                    out[3] = 255;
+                    out += 4;
+                }
+                break;
+            }
+            case OutputMode::Overlay: {
+                const uint8_t* gray = src_ + static_cast<size_t>(y) * srcStride_;
+                uint8_t* out = dst_ + static_cast<size_t>(y) * w * 4;
+                for (int x = 0; x < w; x++) {
+                    if (map[x] == STRONG) {
+                        out[0] = 0;
+                        out[1] = 255;
+                        out[2] = 0;
+                    } else {
+                        out[0] = gray[x];
+                        out[1] = gray[x];
+                        out[2] = gray[x];
+                    }
+                    out[3] = 255;
+                    out += 4;
+                }
+                break;
+            }
+        }
+    }
+}
+
+}  // namespace edge
@@ -0,0 +1,150 @@
+#pragma once
+
+#include <atomic>
+#include <condition_variable>
+#include <cstdint>
+#include <mutex>
+#include <thread>
+#include <vector>
+
+#include "edge_simd.h"
+
+namespace edge {
+
+enum class OutputMode {
+    Mask,     // 1 byte per pixel, 255 = edge
+    Rgba,     // white edges on black
+    Overlay   // raw gray with edges drawn in green
+};
+
+// Where Engine takes its thresholds from (matches NativeBridge.AUTO_*)
+enum class AutoThreshold : int {
+    Off = 0,         // the ones given to setThresholds
+    Percentile = 1,  // high = magnitude below which param (0..1) of the pixels lie
+    Otsu = 2         // high = Otsu split of the magnitude histogram
+};
+
+// Fixed set of worker threads that run indexed tasks; the calling thread
+// takes part, so threads = 1 means no extra threads.
+class WorkerPool {
+public:
+    using Task = void (*)(void* ctx, int index);
+
+    ~WorkerPool();
+
+    void resize(int threads);
+    int size() const { return static_cast<int>(threads_.size()) + 1; }
+
+    // Runs task(ctx, 0..count-1) across the pool and returns when all are done.
+    void run(int count, Task task, void* ctx);
+
+private:
+    void loop();
+    void work(Task task, void* ctx, int count);
+
+    std::vector<std::thread> threads_;
+    std::mutex mutex_;
+    std::condition_variable wake_;
+    std::condition_variable done_;
+    Task task_ = nullptr;
+    void* ctx_ = nullptr;
+    int count_ = 0;
+    std::atomic<int> next_{0};
+    int pending_ = 0;
+    int busy_ = 0;
+    uint64_t generation_ = 0;
+    bool stop_ = false;
+};
+
+// Canny matching cv::Canny defaults (3x3 Sobel with replicated borders, L1
+// magnitude, OpenCV direction quantisation) and the Java EdgeKernels bit for
+// bit; edge_golden_test holds both to an OpenCV mask. All scratch memory is
+// sized in configure(); process() does not allocate.
+//
+// Sobel and non-max suppression are fused into one pass that reads the
+// strided source directly and keeps a rolling window of three magnitude rows.
+// The frame is split into row bands; each band primes its window with the
+// halo rows above and below it, so the result does not depend on the split.
+// Hysteresis is sequential, and the final pass writes the requested output.
+// The interior of each row goes through the RowKernels picked for this CPU.
+//
+// With automatic thresholds each band also counts the magnitudes of its rows
+// into a histogram as they are swept, so no extra pass is needed. The merged
+// histogram picks the thresholds of the next frame, smoothed over time; low
+// is always LOW_RATIO * high.
+class Engine {
+public:
+    // Largest L1 magnitude of a 3x3 Sobel on 8-bit pixels
+    static constexpr int MAX_MAGNITUDE = 2040;
+    static constexpr float LOW_RATIO = 0.4f;
+
+    void configure(int width, int height);
+    void setThresholds(int low, int high);
+    void setThreads(int threads);
+    // smoothing is the weight of each new frame, (0, 1]; 1 follows every frame
+    // exactly. Until the first histogram the setThresholds values apply.
+    void setAutoThresholds(AutoThreshold mode, float param, float smoothing);
+    // Defaults to bestKernels(); every set gives the same result
+    void setKernels(const RowKernels& kernels) { kernels_ = &kernels; }
+    const RowKernels& kernels() const { return *kernels_; }
+
+    void process(const uint8_t* src, int srcStride, uint8_t* dst, OutputMode mode);
+
+    int width() const { return width_; }
+    int height() const { return height_; }
+
+    // Of the last frame: the thresholds it used and its share of edge pixels
+    int lastLow() const { return frameLow_; }
+    int lastHigh() const { return frameHigh_; }
+    float lastEdgeDensity() const { return edgeDensity_; }
+
+private:
+    struct Band {
+        int y0 = 0;
+        int y1 = 0;
+        // Three magnitude rows padded by one zero on each side, plus directions
+        std::vector<int32_t> mag[3];
+        std::vector<uint8_t> dir[3];
+        std::vector<uint32_t> histogram;
+    };
+
+    static void gradientTask(void* ctx, int index);
+    static void outputTask(void* ctx, int index);
+
+    void gradientBand(Band& band);
+    void gradientRow(int y, int32_t* mag, uint8_t* dir) const;
+    void outputBand(const Band& band);
+    int hysteresis();
+    void updateAutoThresholds();
+
+    int width_ = 0;
+    int height_ = 0;
+    int low_ = 50;
+    int high_ = 150;
+
+    AutoThreshold auto_ = AutoThreshold::Off;
+    float autoParam_ = 0.f;
+    float smoothing_ = 1.f;
+    bool autoPrimed_ = false;
+    float autoHigh_ = 0.f;
+    std::vector<uint32_t> histogram_;
+
+    // Thresholds of the frame in progress, and its result
+    int frameLow_ = 50;
+    int frameHigh_ = 150;
+    float edgeDensity_ = 0.f;
+
+    std::vector<uint8_t> map_;
+    std::vector<int32_t> stack_;
+    std::vector<Band> bands_;
+    WorkerPool pool_;
+    const RowKernels* kernels_ = &bestKernels();
+
+    // Per-call state read by the band tasks
+    const uint8_t* src_ = nullptr;
+    int srcStride_ = 0;
+    uint8_t* dst_ = nullptr;
+    OutputMode mode_ = OutputMode::Mask;
+};
+
+}  // namespace edge
@@ -0,0 +1,97 @@
+#include "edge_simd.h"
+
+#include <cstdlib>
+#include <cstring>
+
+namespace edge {
+
+namespace simd {
+
+namespace {
+
+void gradientScalar(const uint8_t* up, const uint8_t* row, const uint8_t* down,
+                    int x0, int x1, int32_t* mag, uint8_t* dir) {
+    for (int x = x0; x < x1; x++) {
+        sobelPixel(up, row, down, x - 1, x, x + 1, &mag[x], &dir[x]);
+    }
+}
+
+void suppressScalar(const int32_t* prev, const int32_t* cur, const int32_t* next,
+                    const uint8_t* dir, int x0, int x1, int low, int high, uint8_t* map) {
+    for (int x = x0; x < x1; x++) {
+        int m = cur[x];
+        if (m <= low) {
+            map[x] = NONE;
+            continue;
+        }
+        bool peak;
+        switch (dir[x]) {
+            case DIR_0:
+                peak = m > cur[x - 1] && m >= cur[x + 1];
+                break;
+            case DIR_90:
+                peak = m > prev[x] && m >= next[x];
+                break;
+            case DIR_45:
+                peak = m > prev[x + 1] && m > next[x - 1];
+                break;
+            default:
+                peak = m > prev[x - 1] && m > next[x + 1];
+                break;
+        }
+        map[x] = peak ? (m > high ? STRONG : WEAK) : NONE;
+    }
+}
+
+void yuvToRgbaScalar(const uint8_t* y, const uint8_t* u, const uint8_t* v, int uvPixelStride,
+                     int x0, int x1, uint8_t* rgba) {
+    for (int x = x0; x < x1; x++) {
+        int c = (x >> 1) * uvPixelStride;
+        yuvPixel(y[x], u[c], v[c], rgba + 4 * x);
+    }
+}
+
+}  // namespace
+
+const RowKernels kScalar = {"scalar", gradientScalar, suppressScalar, yuvToRgbaScalar};
+
+}  // namespace simd
+
+const RowKernels* findKernels(const char* name) {
+    const RowKernels* all[4];
+    int count = availableKernels(all, 4);
+    for (int i = 0; i < count; i++) {
+        if (strcmp(all[i]->name, name) == 0) {
+            return all[i];
+        }
+    }
+    return nullptr;
+}
+
+int availableKernels(const RowKernels** out, int capacity) {
+    const RowKernels* candidates[] = {
+            &simd::kScalar, simd::sse41Kernels(), simd::avx2Kernels(), simd::neonKernels()};
+    int count = 0;
+    for (const RowKernels* k : candidates) {
+        if (k != nullptr && count < capacity) {
+            out[count++] = k;
+        }
+    }
+    return count;
+}
+
+const RowKernels& bestKernels() {
+    static const RowKernels* best = [] {
+        const char* forced = getenv("EDGE_SIMD");
+        const RowKernels* k = forced != nullptr ? findKernels(forced) : nullptr;
+        if (k == nullptr) {
+            const RowKernels* all[4];
+            // Sets are listed slowest first
+            k = all[availableKernels(all, 4) - 1];
+        }
+        return k;
+    }();
+    return *best;
+}
+
+}  // namespace edge
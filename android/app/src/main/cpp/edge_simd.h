@@ -0,0 +1,109 @@
+#pragma once
+
+#include <cstdint>
+
+namespace edge {
+
+// Row kernels behind Engine's fused Sobel / non-max suppression pass. Every
+// implementation produces exactly the scalar result; only the speed differs.
+struct RowKernels {
+    const char* name;
+
+    // 3x3 Sobel L1 magnitude and direction sector for pixels x0..x1-1 of a
+    // row; up, row and down must be readable at x0-1..x1. mag and dir are
+    // indexed by x.
+    void (*gradient)(const uint8_t* up, const uint8_t* row, const uint8_t* down,
+                     int x0, int x1, int32_t* mag, uint8_t* dir);
+
+    // Non-max suppression of cur for pixels x0..x1-1 into NONE / WEAK / STRONG;
+    // prev, cur and next must be readable at x0-1..x1.
+    void (*suppress)(const int32_t* prev, const int32_t* cur, const int32_t* next,
+                     const uint8_t* dir, int x0, int x1, int low, int high, uint8_t* map);
+
+    // YUV 4:2:0 to RGBA for pixels x0..x1-1 of a row, x0 even: pixel x takes
+    // luma y[x] and chroma u / v at (x / 2) * uvPixelStride. Only the chroma
+    // samples of those pixels are read, whatever the pixel stride.
+    void (*yuvToRgba)(const uint8_t* y, const uint8_t* u, const uint8_t* v, int uvPixelStride,
+                      int x0, int x1, uint8_t* rgba);
+};
+
+// The fastest kernels this CPU supports: AVX2 or SSE4.1 on x86, NEON on ARM,
+// scalar otherwise. EDGE_SIMD=scalar|sse4.1|avx2|neon in the environment
+// overrides the choice when that set is available.
+const RowKernels& bestKernels();
+
+// Kernels by name, or nullptr if not compiled in or not supported by this CPU.
+const RowKernels* findKernels(const char* name);
+
+// Every set usable on this CPU, scalar first; returns the count.
+int availableKernels(const RowKernels** out, int capacity);
+
+namespace simd {
+// Sector values shared by all implementations, as in EdgeKernels.java
+constexpr uint8_t DIR_0 = 0;
+constexpr uint8_t DIR_45 = 1;
+constexpr uint8_t DIR_90 = 2;
+constexpr uint8_t DIR_135 = 3;
+
+constexpr uint8_t NONE = 0;
+constexpr uint8_t WEAK = 1;
+constexpr uint8_t STRONG = 2;
+
+// tan(22.5 deg) in Q15, as used by OpenCV
+constexpr int TG22 = 13573;
+
+// One pixel of the scalar gradient, also used for the border columns, whose
+// left or right neighbour is replicated
+inline void sobelPixel(const uint8_t* up, const uint8_t* row, const uint8_t* down,
+                       int xl, int x, int xr, int32_t* mag, uint8_t* dir) {
+    int dx = (up[xr] + 2 * row[xr] + down[xr]) - (up[xl] + 2 * row[xl] + down[xl]);
+    int dy = (down[xl] + 2 * down[x] + down[xr]) - (up[xl] + 2 * up[x] + up[xr]);
+    int ax = dx < 0 ? -dx : dx;
+    int ay = dy < 0 ? -dy : dy;
+    *mag = ax + ay;
+
+    int tg22x = ax * TG22;
+    int yShifted = ay << 15;
+    if (yShifted < tg22x) {
+        *dir = DIR_0;
+    } else if (yShifted > tg22x + (ax << 16)) {
+        *dir = DIR_90;
+    } else {
+        *dir = (dx ^ dy) < 0 ? DIR_45 : DIR_135;
+    }
+}
+
+// Full-range BT.601 (JFIF), the YUV_420_888 convention of Android cameras.
+// Chroma factors are Q13 and each chroma term is rounded as
+// (4 * d * c + 2^14) >> 15, which is exactly what pmulhrsw and vqrdmulh give
+// for d << 2; JavaYuvConverter uses the same arithmetic.
+constexpr int YUV_RV = 11485;  // 1.402
+constexpr int YUV_GU = 2819;   // 0.344136
+constexpr int YUV_GV = 5850;   // 0.714136
+constexpr int YUV_BU = 14516;  // 1.772
+
+inline int chromaTerm(int d, int c) {
+    return (4 * d * c + 16384) >> 15;
+}
+
+inline uint8_t clampByte(int v) {
+    return static_cast<uint8_t>(v < 0 ? 0 : (v > 255 ? 255 : v));
+}
+
+inline void yuvPixel(int y, int u, int v, uint8_t* rgba) {
+    int du = u - 128;
+    int dv = v - 128;
+    rgba[0] = clampByte(y + chromaTerm(dv, YUV_RV));
+    rgba[1] = clampByte(y - (chromaTerm(du, YUV_GU) + chromaTerm(dv, YUV_GV)));
+    rgba[2] = clampByte(y + chromaTerm(du, YUV_BU));
+    rgba[3] = 255;
+}
+
+extern const RowKernels kScalar;
+// Null where the instruction set is not compiled in
+const RowKernels* sse41Kernels();
+const RowKernels* avx2Kernels();
+const RowKernels* neonKernels();
+}  // namespace simd
+
+}  // namespace edge
@@ -0,0 +1,170 @@
+// NEON row kernels, 8 pixels per step. NEON is part of the arm64-v8a
+// baseline and the NDK enables it for armeabi-v7a, so when the compiler
+// defines __ARM_NEON there is nothing left to check at run time.
+//
+// Same layout as the x86 kernels: 16-bit lanes throughout, widening to
+// 32 bits (vmull / vshll) only for the direction test.
+
+#include "edge_simd.h"
+
+#if defined(__ARM_NEON) || defined(__ARM_NEON__)
+
+#include <arm_neon.h>
+
+namespace edge {
+namespace simd {
+
+namespace {
+
+inline int16_t clampThreshold(int t) {
+    return static_cast<int16_t>(t < -1 ? -1 : (t > 32767 ? 32767 : t));
+}
+
+inline int16x8_t load8u(const uint8_t* p) {
+    return vreinterpretq_s16_u16(vmovl_u8(vld1_u8(p)));
+}
+
+inline int16x8_t load8s(const int32_t* p) {
+    return vcombine_s16(vqmovn_s32(vld1q_s32(p)), vqmovn_s32(vld1q_s32(p + 4)));
+}
+
+// ay << 15 against ax * tg22 for four lanes; sets is0 and is90 like sobelPixel
+inline void directionTest(int16x4_t ax, int16x4_t ay, uint32x4_t& is0, uint32x4_t& is90) {
+    int32x4_t tg22x = vmull_n_s16(ax, TG22);
+    int32x4_t yShifted = vshll_n_s16(ay, 15);
+    is0 = vcltq_s32(yShifted, tg22x);
+    is90 = vcgtq_s32(yShifted, vaddq_s32(tg22x, vshll_n_s16(ax, 16)));
+}
+
+void gradientNeon(const uint8_t* up, const uint8_t* row, const uint8_t* down,
+                  int x0, int x1, int32_t* mag, uint8_t* dir) {
+    const uint16x8_t dir0 = vdupq_n_u16(DIR_0);
+    const uint16x8_t dir45 = vdupq_n_u16(DIR_45);
+    const uint16x8_t dir90 = vdupq_n_u16(DIR_90);
+    const uint16x8_t dir135 = vdupq_n_u16(DIR_135);
+    int x = x0;
+    for (; x + 8 <= x1; x += 8) {
+        int16x8_t ul = load8u(up + x - 1), uc = load8u(up + x), ur = load8u(up + x + 1);
+        int16x8_t rl = load8u(row + x - 1), rr = load8u(row + x + 1);
+        int16x8_t dl = load8u(down + x - 1), dc = load8u(down + x), dr = load8u(down + x + 1);
+
+        int16x8_t dx = vsubq_s16(vaddq_s16(vaddq_s16(ur, dr), vaddq_s16(rr, rr)),
+                                 vaddq_s16(vaddq_s16(ul, dl), vaddq_s16(rl, rl)));
+        int16x8_t dy = vsubq_s16(vaddq_s16(vaddq_s16(dl, dr), vaddq_s16(dc, dc)),
+                                 vaddq_s16(vaddq_s16(ul, ur), vaddq_s16(uc, uc)));
+        int16x8_t ax = vabsq_s16(dx);
+        int16x8_t ay = vabsq_s16(dy);
+        int16x8_t m = vaddq_s16(ax, ay);
+        vst1q_s32(mag + x, vmovl_s16(vget_low_s16(m)));
+        vst1q_s32(mag + x + 4, vmovl_s16(vget_high_s16(m)));
+
+        uint32x4_t is0Lo, is0Hi, is90Lo, is90Hi;
+        directionTest(vget_low_s16(ax), vget_low_s16(ay), is0Lo, is90Lo);
+        directionTest(vget_high_s16(ax), vget_high_s16(ay), is0Hi, is90Hi);
+        uint16x8_t is0 = vcombine_u16(vmovn_u32(is0Lo), vmovn_u32(is0Hi));
+        uint16x8_t is90 = vcombine_u16(vmovn_u32(is90Lo), vmovn_u32(is90Hi));
+
+        uint16x8_t differ = vcltq_s16(veorq_s16(dx, dy), vdupq_n_s16(0));
+        uint16x8_t d = vbslq_u16(differ, dir45, dir135);
+        d = vbslq_u16(is90, dir90, d);
+        d = vbslq_u16(is0, dir0, d);
+        vst1_u8(dir + x, vmovn_u16(d));
+    }
+    for (; x < x1; x++) {
+        sobelPixel(up, row, down, x - 1, x, x + 1, &mag[x], &dir[x]);
+    }
+}
+
+void suppressNeon(const int32_t* prev, const int32_t* cur, const int32_t* next,
+                  const uint8_t* dir, int x0, int x1, int low, int high, uint8_t* map) {
+    const int16x8_t lowV = vdupq_n_s16(clampThreshold(low));
+    const int16x8_t highV = vdupq_n_s16(clampThreshold(high));
+    const uint16x8_t one = vdupq_n_u16(1);
+    int x = x0;
+    for (; x + 8 <= x1; x += 8) {
+        int16x8_t m = load8s(cur + x);
+        int16x8_t cl = load8s(cur + x - 1), cr = load8s(cur + x + 1);
+        int16x8_t pl = load8s(prev + x - 1), pc = load8s(prev + x), pr = load8s(prev + x + 1);
+        int16x8_t nl = load8s(next + x - 1), nc = load8s(next + x), nr = load8s(next + x + 1);
+
+        uint16x8_t p0 = vandq_u16(vcgtq_s16(m, cl), vcgeq_s16(m, cr));
+        uint16x8_t p90 = vandq_u16(vcgtq_s16(m, pc), vcgeq_s16(m, nc));
+        uint16x8_t p45 = vandq_u16(vcgtq_s16(m, pr), vcgtq_s16(m, nl));
+        uint16x8_t peak = vandq_u16(vcgtq_s16(m, pl), vcgtq_s16(m, nr));
+
+        uint16x8_t d = vmovl_u8(vld1_u8(dir + x));
+        peak = vbslq_u16(vceqq_u16(d, vdupq_n_u16(DIR_45)), p45, peak);
+        peak = vbslq_u16(vceqq_u16(d, vdupq_n_u16(DIR_90)), p90, peak);
+        peak = vbslq_u16(vceqq_u16(d, vdupq_n_u16(DIR_0)), p0, peak);
+
+        uint16x8_t keep = vandq_u16(peak, vcgtq_s16(m, lowV));
+        uint16x8_t strong = vandq_u16(keep, vcgtq_s16(m, highV));
+        uint16x8_t v = vaddq_u16(vandq_u16(keep, one), vandq_u16(strong, one));
+        vst1_u8(map + x, vmovn_u16(v));
+    }
+    for (; x < x1; x++) {
+        kScalar.suppress(prev, cur, next, dir, x, x + 1, low, high, map);
+    }
+}
+
+// 8 chroma samples for 16 pixels; vld2 splits interleaved chroma and vst4
+// writes the RGBA quads. As on x86, interleaved loads stop inside the row.
+void yuvToRgbaNeon(const uint8_t* y, const uint8_t* u, const uint8_t* v, int uvPixelStride,
+                   int x0, int x1, uint8_t* rgba) {
+    const int16x8_t bias = vdupq_n_s16(128);
+    int x = x0;
+    const int end = uvPixelStride == 1 ? x1 : (uvPixelStride == 2 ? x1 - 2 : x0);
+    for (; x + 16 <= end; x += 16) {
+        uint8x8_t uu;
+        uint8x8_t vv;
+        if (uvPixelStride == 1) {
+            uu = vld1_u8(u + x / 2);
+            vv = vld1_u8(v + x / 2);
+        } else {
+            uu = vld2_u8(u + x).val[0];
+            vv = vld2_u8(v + x).val[0];
+        }
+        int16x8_t du = vshlq_n_s16(vsubq_s16(vreinterpretq_s16_u16(vmovl_u8(uu)), bias), 2);
+        int16x8_t dv = vshlq_n_s16(vsubq_s16(vreinterpretq_s16_u16(vmovl_u8(vv)), bias), 2);
+        int16x8x2_t r = vzipq_s16(vqrdmulhq_n_s16(dv, YUV_RV), vqrdmulhq_n_s16(dv, YUV_RV));
+        int16x8_t gTerm = vaddq_s16(vqrdmulhq_n_s16(du, YUV_GU), vqrdmulhq_n_s16(dv, YUV_GV));
+        int16x8x2_t g = vzipq_s16(gTerm, gTerm);
+        int16x8x2_t b = vzipq_s16(vqrdmulhq_n_s16(du, YUV_BU), vqrdmulhq_n_s16(du, YUV_BU));
+
+        uint8x16_t yy = vld1q_u8(y + x);
+        int16x8_t yLo = vreinterpretq_s16_u16(vmovl_u8(vget_low_u8(yy)));
+        int16x8_t yHi = vreinterpretq_s16_u16(vmovl_u8(vget_high_u8(yy)));
+        uint8x16x4_t px;
+        px.val[0] = vcombine_u8(vqmovun_s16(vaddq_s16(yLo, r.val[0])), vqmovun_s16(vaddq_s16(yHi, r.val[1])));
+        px.val[1] = vcombine_u8(vqmovun_s16(vsubq_s16(yLo, g.val[0])), vqmovun_s16(vsubq_s16(yHi, g.val[1])));
+        px.val[2] = vcombine_u8(vqmovun_s16(vaddq_s16(yLo, b.val[0])), vqmovun_s16(vaddq_s16(yHi, b.val[1])));
+        px.val[3] = vdupq_n_u8(255);
+        vst4q_u8(rgba + 4 * x, px);
+    }
+    kScalar.yuvToRgba(y, u, v, uvPixelStride, x, x1, rgba);
+}
+
+const RowKernels kNeon = {"neon", gradientNeon, suppressNeon, yuvToRgbaNeon};
+
+}  // namespace
+
+const RowKernels* neonKernels() {
+    return &kNeon;
+}
+
+}  // namespace simd
+}  // namespace edge
+
+#else
+
+namespace edge {
+namespace simd {
+
+const RowKernels* neonKernels() {
+    return nullptr;
+}
+
+}  // namespace simd
+}  // namespace edge
+
+#endif
@@ -0,0 +1,315 @@
+// SSE4.1 and AVX2 row kernels. Each function carries its own target
+// attribute, so the file builds with the default flags and the wider
+// instructions only run after the CPU check in sse41Kernels() / avx2Kernels().
+//
+// Both kernels work on 16-bit lanes: Sobel sums and L1 magnitudes of 8-bit
+// pixels stay within +-2040. Only the direction test, ay * 2^15 against
+// ax * tg22 (+ ax * 2^16), needs 32 bits; the products are rebuilt from
+// mullo/mulhi halves and the compare masks packed back into 16-bit lanes.
+
+#include "edge_simd.h"
+
+#if defined(__x86_64__) || defined(__i386__)
+
+#include <immintrin.h>
+
+namespace edge {
+namespace simd {
+
+namespace {
+
+// Thresholds compared against 16-bit magnitudes; magnitudes are never
+// negative, so every threshold below zero behaves like -1
+inline int16_t clampThreshold(int t) {
+    return static_cast<int16_t>(t < -1 ? -1 : (t > 32767 ? 32767 : t));
+}
+
+// ---- SSE4.1, 8 pixels per step ----
+
+__attribute__((target("sse4.1")))
+inline __m128i load8u(const uint8_t* p) {
+    return _mm_cvtepu8_epi16(_mm_loadl_epi64(reinterpret_cast<const __m128i*>(p)));
+}
+
+__attribute__((target("sse4.1")))
+inline __m128i load8s(const int32_t* p) {
+    return _mm_packs_epi32(_mm_loadu_si128(reinterpret_cast<const __m128i*>(p)),
+                           _mm_loadu_si128(reinterpret_cast<const __m128i*>(p + 4)));
+}
+
+__attribute__((target("sse4.1")))
+void gradientSse41(const uint8_t* up, const uint8_t* row, const uint8_t* down,
+                   int x0, int x1, int32_t* mag, uint8_t* dir) {
+    const __m128i zero = _mm_setzero_si128();
+    const __m128i tg22 = _mm_set1_epi16(TG22);
+    const __m128i dir90 = _mm_set1_epi16(DIR_90);
+    const __m128i dir135 = _mm_set1_epi16(DIR_135);
+    const __m128i diagStep = _mm_set1_epi16(DIR_135 - DIR_45);
+    int x = x0;
+    for (; x + 8 <= x1; x += 8) {
+        __m128i ul = load8u(up + x - 1), uc = load8u(up + x), ur = load8u(up + x + 1);
+        __m128i rl = load8u(row + x - 1), rr = load8u(row + x + 1);
+        __m128i dl = load8u(down + x - 1), dc = load8u(down + x), dr = load8u(down + x + 1);
+
+        __m128i dx = _mm_sub_epi16(_mm_add_epi16(_mm_add_epi16(ur, dr), _mm_add_epi16(rr, rr)),
+                                   _mm_add_epi16(_mm_add_epi16(ul, dl), _mm_add_epi16(rl, rl)));
+        __m128i dy = _mm_sub_epi16(_mm_add_epi16(_mm_add_epi16(dl, dr), _mm_add_epi16(dc, dc)),
+                                   _mm_add_epi16(_mm_add_epi16(ul, ur), _mm_add_epi16(uc, uc)));
+        __m128i ax = _mm_abs_epi16(dx);
+        __m128i ay = _mm_abs_epi16(dy);
+        __m128i m = _mm_add_epi16(ax, ay);
+        _mm_storeu_si128(reinterpret_cast<__m128i*>(mag + x), _mm_cvtepi16_epi32(m));
+        _mm_storeu_si128(reinterpret_cast<__m128i*>(mag + x + 4), _mm_cvtepi16_epi32(_mm_srli_si128(m, 8)));
+
+        __m128i pLo = _mm_mullo_epi16(ax, tg22);
+        __m128i pHi = _mm_mulhi_epi16(ax, tg22);
+        __m128i t0 = _mm_unpacklo_epi16(pLo, pHi);
+        __m128i t1 = _mm_unpackhi_epi16(pLo, pHi);
+        __m128i y0 = _mm_slli_epi32(_mm_unpacklo_epi16(ay, zero), 15);
+        __m128i y1 = _mm_slli_epi32(_mm_unpackhi_epi16(ay, zero), 15);
+        // ax << 16 is ax in the upper half of each 32-bit lane
+        __m128i v0 = _mm_add_epi32(t0, _mm_unpacklo_epi16(zero, ax));
+        __m128i v1 = _mm_add_epi32(t1, _mm_unpackhi_epi16(zero, ax));
+        __m128i is0 = _mm_packs_epi32(_mm_cmpgt_epi32(t0, y0), _mm_cmpgt_epi32(t1, y1));
+        __m128i is90 = _mm_packs_epi32(_mm_cmpgt_epi32(y0, v0), _mm_cmpgt_epi32(y1, v1));
+
+        __m128i differ = _mm_srai_epi16(_mm_xor_si128(dx, dy), 15);
+        __m128i d = _mm_sub_epi16(dir135, _mm_and_si128(differ, diagStep));
+        d = _mm_blendv_epi8(d, dir90, is90);
+        d = _mm_andnot_si128(is0, d);  // DIR_0 is zero
+        _mm_storel_epi64(reinterpret_cast<__m128i*>(dir + x), _mm_packus_epi16(d, d));
+    }
+    for (; x < x1; x++) {
+        sobelPixel(up, row, down, x - 1, x, x + 1, &mag[x], &dir[x]);
+    }
+}
+
+__attribute__((target("sse4.1")))
+void suppressSse41(const int32_t* prev, const int32_t* cur, const int32_t* next,
+                   const uint8_t* dir, int x0, int x1, int low, int high, uint8_t* map) {
+    const __m128i zero = _mm_setzero_si128();
+    const __m128i lowV = _mm_set1_epi16(clampThreshold(low));
+    const __m128i highV = _mm_set1_epi16(clampThreshold(high));
+    const __m128i dir0 = _mm_set1_epi16(DIR_0);
+    const __m128i dir45 = _mm_set1_epi16(DIR_45);
+    const __m128i dir90 = _mm_set1_epi16(DIR_90);
+    int x = x0;
+    for (; x + 8 <= x1; x += 8) {
+        __m128i m = load8s(cur + x);
+        __m128i cl = load8s(cur + x - 1), cr = load8s(cur + x + 1);
+        __m128i pl = load8s(prev + x - 1), pc = load8s(prev + x), pr = load8s(prev + x + 1);
+        __m128i nl = load8s(next + x - 1), nc = load8s(next + x), nr = load8s(next + x + 1);
+
+        __m128i p0 = _mm_andnot_si128(_mm_cmpgt_epi16(cr, m), _mm_cmpgt_epi16(m, cl));
+        __m128i p90 = _mm_andnot_si128(_mm_cmpgt_epi16(nc, m), _mm_cmpgt_epi16(m, pc));
+        __m128i p45 = _mm_and_si128(_mm_cmpgt_epi16(m, pr), _mm_cmpgt_epi16(m, nl));
+        __m128i peak = _mm_and_si128(_mm_cmpgt_epi16(m, pl), _mm_cmpgt_epi16(m, nr));
+
+        __m128i d = load8u(dir + x);
+        peak = _mm_blendv_epi8(peak, p45, _mm_cmpeq_epi16(d, dir45));
+        peak = _mm_blendv_epi8(peak, p90, _mm_cmpeq_epi16(d, dir90));
+        peak = _mm_blendv_epi8(peak, p0, _mm_cmpeq_epi16(d, dir0));
+
+        // keep is -1 for WEAK and STRONG, strong -1 for STRONG; minus their sum is the map value
+        __m128i keep = _mm_and_si128(peak, _mm_cmpgt_epi16(m, lowV));
+        __m128i strong = _mm_and_si128(keep, _mm_cmpgt_epi16(m, highV));
+        __m128i v = _mm_sub_epi16(zero, _mm_add_epi16(keep, strong));
+        _mm_storel_epi64(reinterpret_cast<__m128i*>(map + x), _mm_packus_epi16(v, v));
+    }
+    for (; x < x1; x++) {
+        kScalar.suppress(prev, cur, next, dir, x, x + 1, low, high, map);
+    }
+}
+
+// 8 chroma samples for 16 pixels: 16 luma bytes, one RGBA store of 64 bytes.
+// Interleaved chroma is loaded 16 bytes at a time and the even bytes kept, so
+// the loop stops while the load still ends inside the row's samples.
+__attribute__((target("sse4.1")))
+void yuvToRgbaSse41(const uint8_t* y, const uint8_t* u, const uint8_t* v, int uvPixelStride,
+                    int x0, int x1, uint8_t* rgba) {
+    const __m128i zero = _mm_setzero_si128();
+    const __m128i bias = _mm_set1_epi16(128);
+    const __m128i rv = _mm_set1_epi16(YUV_RV);
+    const __m128i gu = _mm_set1_epi16(YUV_GU);
+    const __m128i gv = _mm_set1_epi16(YUV_GV);
+    const __m128i bu = _mm_set1_epi16(YUV_BU);
+    const __m128i alpha = _mm_set1_epi8(-1);
+    const __m128i evens = _mm_setr_epi8(0, 2, 4, 6, 8, 10, 12, 14, -1, -1, -1, -1, -1, -1, -1, -1);
+    int x = x0;
+    const int end = uvPixelStride == 1 ? x1 : (uvPixelStride == 2 ? x1 - 2 : x0);
+    for (; x + 16 <= end; x += 16) {
+        __m128i uu;
+        __m128i vv;
+        if (uvPixelStride == 1) {
+            uu = _mm_loadl_epi64(reinterpret_cast<const __m128i*>(u + x / 2));
+            vv = _mm_loadl_epi64(reinterpret_cast<const __m128i*>(v + x / 2));
+        } else {
+            uu = _mm_shuffle_epi8(_mm_loadu_si128(reinterpret_cast<const __m128i*>(u + x)), evens);
+            vv = _mm_shuffle_epi8(_mm_loadu_si128(reinterpret_cast<const __m128i*>(v + x)), evens);
+        }
+        __m128i du = _mm_slli_epi16(_mm_sub_epi16(_mm_cvtepu8_epi16(uu), bias), 2);
+        __m128i dv = _mm_slli_epi16(_mm_sub_epi16(_mm_cvtepu8_epi16(vv), bias), 2);
+        // One term per sample, then each duplicated for its two pixels
+        __m128i r = _mm_mulhrs_epi16(dv, rv);
+        __m128i g = _mm_add_epi16(_mm_mulhrs_epi16(du, gu), _mm_mulhrs_epi16(dv, gv));
+        __m128i b = _mm_mulhrs_epi16(du, bu);
+
+        __m128i yy = _mm_loadu_si128(reinterpret_cast<const __m128i*>(y + x));
+        __m128i yLo = _mm_cvtepu8_epi16(yy);
+        __m128i yHi = _mm_unpackhi_epi8(yy, zero);
+        __m128i r8 = _mm_packus_epi16(_mm_add_epi16(yLo, _mm_unpacklo_epi16(r, r)),
+                                      _mm_add_epi16(yHi, _mm_unpackhi_epi16(r, r)));
+        __m128i g8 = _mm_packus_epi16(_mm_sub_epi16(yLo, _mm_unpacklo_epi16(g, g)),
+                                      _mm_sub_epi16(yHi, _mm_unpackhi_epi16(g, g)));
+        __m128i b8 = _mm_packus_epi16(_mm_add_epi16(yLo, _mm_unpacklo_epi16(b, b)),
+                                      _mm_add_epi16(yHi, _mm_unpackhi_epi16(b, b)));
+
+        __m128i rgLo = _mm_unpacklo_epi8(r8, g8);
+        __m128i rgHi = _mm_unpackhi_epi8(r8, g8);
+        __m128i baLo = _mm_unpacklo_epi8(b8, alpha);
+        __m128i baHi = _mm_unpackhi_epi8(b8, alpha);
+        __m128i* out = reinterpret_cast<__m128i*>(rgba + 4 * x);
+        _mm_storeu_si128(out, _mm_unpacklo_epi16(rgLo, baLo));
+        _mm_storeu_si128(out + 1, _mm_unpackhi_epi16(rgLo, baLo));
+        _mm_storeu_si128(out + 2, _mm_unpacklo_epi16(rgHi, baHi));
+        _mm_storeu_si128(out + 3, _mm_unpackhi_epi16(rgHi, baHi));
+    }
+    kScalar.yuvToRgba(y, u, v, uvPixelStride, x, x1, rgba);
+}
+
+// ---- AVX2, 16 pixels per step ----
+//
+// unpack and pack work within each 128-bit half, so widening with
+// unpacklo/hi and narrowing again with packs restores the lane order.
+
+__attribute__((target("avx2")))
+inline __m256i load16u(const uint8_t* p) {
+    return _mm256_cvtepu8_epi16(_mm_loadu_si128(reinterpret_cast<const __m128i*>(p)));
+}
+
+__attribute__((target("avx2")))
+inline __m256i load16s(const int32_t* p) {
+    __m256i packed = _mm256_packs_epi32(_mm256_loadu_si256(reinterpret_cast<const __m256i*>(p)),
+                                        _mm256_loadu_si256(reinterpret_cast<const __m256i*>(p + 8)));
+    return _mm256_permute4x64_epi64(packed, _MM_SHUFFLE(3, 1, 2, 0));
+}
+
+__attribute__((target("avx2")))
+inline void store16u(uint8_t* p, __m256i v) {
+    _mm_storeu_si128(reinterpret_cast<__m128i*>(p),
+                     _mm_packus_epi16(_mm256_castsi256_si128(v), _mm256_extracti128_si256(v, 1)));
+}
+
+__attribute__((target("avx2")))
+void gradientAvx2(const uint8_t* up, const uint8_t* row, const uint8_t* down,
+                  int x0, int x1, int32_t* mag, uint8_t* dir) {
+    const __m256i zero = _mm256_setzero_si256();
+    const __m256i tg22 = _mm256_set1_epi16(TG22);
+    const __m256i dir90 = _mm256_set1_epi16(DIR_90);
+    const __m256i dir135 = _mm256_set1_epi16(DIR_135);
+    const __m256i diagStep = _mm256_set1_epi16(DIR_135 - DIR_45);
+    int x = x0;
+    for (; x + 16 <= x1; x += 16) {
+        __m256i ul = load16u(up + x - 1), uc = load16u(up + x), ur = load16u(up + x + 1);
+        __m256i rl = load16u(row + x - 1), rr = load16u(row + x + 1);
+        __m256i dl = load16u(down + x - 1), dc = load16u(down + x), dr = load16u(down + x + 1);
+
+        __m256i dx = _mm256_sub_epi16(_mm256_add_epi16(_mm256_add_epi16(ur, dr), _mm256_add_epi16(rr, rr)),
+                                      _mm256_add_epi16(_mm256_add_epi16(ul, dl), _mm256_add_epi16(rl, rl)));
+        __m256i dy = _mm256_sub_epi16(_mm256_add_epi16(_mm256_add_epi16(dl, dr), _mm256_add_epi16(dc, dc)),
+                                      _mm256_add_epi16(_mm256_add_epi16(ul, ur), _mm256_add_epi16(uc, uc)));
+        __m256i ax = _mm256_abs_epi16(dx);
+        __m256i ay = _mm256_abs_epi16(dy);
+        __m256i m = _mm256_add_epi16(ax, ay);
+        _mm256_storeu_si256(reinterpret_cast<__m256i*>(mag + x), _mm256_cvtepi16_epi32(_mm256_castsi256_si128(m)));
+        _mm256_storeu_si256(reinterpret_cast<__m256i*>(mag + x + 8),
+                            _mm256_cvtepi16_epi32(_mm256_extracti128_si256(m, 1)));
+
+        __m256i pLo = _mm256_mullo_epi16(ax, tg22);
+        __m256i pHi = _mm256_mulhi_epi16(ax, tg22);
+        __m256i t0 = _mm256_unpacklo_epi16(pLo, pHi);
+        __m256i t1 = _mm256_unpackhi_epi16(pLo, pHi);
+        __m256i y0 = _mm256_slli_epi32(_mm256_unpacklo_epi16(ay, zero), 15);
+        __m256i y1 = _mm256_slli_epi32(_mm256_unpackhi_epi16(ay, zero), 15);
+        __m256i v0 = _mm256_add_epi32(t0, _mm256_unpacklo_epi16(zero, ax));
+        __m256i v1 = _mm256_add_epi32(t1, _mm256_unpackhi_epi16(zero, ax));
+        __m256i is0 = _mm256_packs_epi32(_mm256_cmpgt_epi32(t0, y0), _mm256_cmpgt_epi32(t1, y1));
+        __m256i is90 = _mm256_packs_epi32(_mm256_cmpgt_epi32(y0, v0), _mm256_cmpgt_epi32(y1, v1));
+
+        __m256i differ = _mm256_srai_epi16(_mm256_xor_si256(dx, dy), 15);
+        __m256i d = _mm256_sub_epi16(dir135, _mm256_and_si256(differ, diagStep));
+        d = _mm256_blendv_epi8(d, dir90, is90);
+        d = _mm256_andnot_si256(is0, d);
+        store16u(dir + x, d);
+    }
+    gradientSse41(up, row, down, x, x1, mag, dir);
+}
+
+__attribute__((target("avx2")))
+void suppressAvx2(const int32_t* prev, const int32_t* cur, const int32_t* next,
+                  const uint8_t* dir, int x0, int x1, int low, int high, uint8_t* map) {
+    const __m256i zero = _mm256_setzero_si256();
+    const __m256i lowV = _mm256_set1_epi16(clampThreshold(low));
+    const __m256i highV = _mm256_set1_epi16(clampThreshold(high));
+    const __m256i dir0 = _mm256_set1_epi16(DIR_0);
+    const __m256i dir45 = _mm256_set1_epi16(DIR_45);
+    const __m256i dir90 = _mm256_set1_epi16(DIR_90);
+    int x = x0;
+    for (; x + 16 <= x1; x += 16) {
+        __m256i m = load16s(cur + x);
+        __m256i cl = load16s(cur + x - 1), cr = load16s(cur + x + 1);
+        __m256i pl = load16s(prev + x - 1), pc = load16s(prev + x), pr = load16s(prev + x + 1);
+        __m256i nl = load16s(next + x - 1), nc = load16s(next + x), nr = load16s(next + x + 1);
+
+        __m256i p0 = _mm256_andnot_si256(_mm256_cmpgt_epi16(cr, m), _mm256_cmpgt_epi16(m, cl));
+        __m256i p90 = _mm256_andnot_si256(_mm256_cmpgt_epi16(nc, m), _mm256_cmpgt_epi16(m, pc));
+        __m256i p45 = _mm256_and_si256(_mm256_cmpgt_epi16(m, pr), _mm256_cmpgt_epi16(m, nl));
+        __m256i peak = _mm256_and_si256(_mm256_cmpgt_epi16(m, pl), _mm256_cmpgt_epi16(m, nr));
+
+        __m256i d = load16u(dir + x);
+        peak = _mm256_blendv_epi8(peak, p45, _mm256_cmpeq_epi16(d, dir45));
+        peak = _mm256_blendv_epi8(peak, p90, _mm256_cmpeq_epi16(d, dir90));
+        peak = _mm256_blendv_epi8(peak, p0, _mm256_cmpeq_epi16(d, dir0));
+
+        __m256i keep = _mm256_and_si256(peak, _mm256_cmpgt_epi16(m, lowV));
+        __m256i strong = _mm256_and_si256(keep, _mm256_cmpgt_epi16(m, highV));
+        store16u(map + x, _mm256_sub_epi16(zero, _mm256_add_epi16(keep, strong)));
+    }
+    suppressSse41(prev, cur, next, dir, x, x1, low, high, map);
+}
+
+const RowKernels kSse41 = {"sse4.1", gradientSse41, suppressSse41, yuvToRgbaSse41};
+// The colour conversion is bound by its stores; a 256-bit version gains nothing
+const RowKernels kAvx2 = {"avx2", gradientAvx2, suppressAvx2, yuvToRgbaSse41};
+
+}  // namespace
+
+const RowKernels* sse41Kernels() {
+    return __builtin_cpu_supports("sse4.1") ? &kSse41 : nullptr;
+}
+
+// AVX2 machines all have SSE4.1, which handles the tails
+const RowKernels* avx2Kernels() {
+    return __builtin_cpu_supports("avx2") ? &kAvx2 : nullptr;
+}
+
+}  // namespace simd
+}  // namespace edge
+
+#else
+
+namespace edge {
+namespace simd {
+
+const RowKernels* sse41Kernels() {
+    return nullptr;
+}
+
+const RowKernels* avx2Kernels() {
+    return nullptr;
+}
+
+}  // namespace simd
+}  // namespace edge
+
+#endif
@@ -0,0 +1,370 @@
+#include "feature_extract.h"
+
+#include <algorithm>
+#include <cmath>
+#include <cstring>
+#include <functional>
+
+namespace edge {
+
+namespace {
+
+// Mask values while extracting: unvisited edge, traced into a contour, and
+// covered by a Hough segment already emitted
+constexpr uint8_t EDGE = 255;
+constexpr uint8_t TRACED = 1;
+constexpr uint8_t ON_SEGMENT = 2;
+
+constexpr int MAX_LINES = 256;
+
+// Edge-adjacent neighbours first, so chains step straight where they can
+const int kDx[8] = {1, 0, -1, 0, 1, -1, -1, 1};
+const int kDy[8] = {0, 1, 0, -1, 1, 1, -1, -1};
+
+inline int32_t pack(int x, int y) {
+    return static_cast<int32_t>(y) << 16 | x;
+}
+
+}  // namespace
+
+void FeatureExtractor::configure(int width, int height) {
+    width_ = width;
+    height_ = height;
+    const size_t pixels = static_cast<size_t>(width) * height;
+    pixels_.clear();
+    pixels_.reserve(pixels);
+    chain_.clear();
+    chain_.reserve(pixels);
+    contours_.clear();
+    contours_.reserve(pixels);
+
+    int diagonal = static_cast<int>(std::ceil(std::sqrt(static_cast<double>(width) * width
+                                                        + static_cast<double>(height) * height)));
+    rhoCount_ = 2 * diagonal + 3;
+    votes_.assign(static_cast<size_t>(THETA_STEPS) * rhoCount_, 0);
+    cos_.resize(THETA_STEPS);
+    sin_.resize(THETA_STEPS);
+    for (int t = 0; t < THETA_STEPS; t++) {
+        double theta = M_PI * t / THETA_STEPS;
+        cos_[t] = static_cast<int32_t>(std::lround(std::cos(theta) * 1024));
+        sin_[t] = static_cast<int32_t>(std::lround(std::sin(theta) * 1024));
+    }
+    // Normal angle, in theta steps, of a chain going (dx, dy)
+    const int span = 4 * TANGENT_REACH + 1;
+    normals_.resize(span * span);
+    for (int dy = -2 * TANGENT_REACH; dy <= 2 * TANGENT_REACH; dy++) {
+        for (int dx = -2 * TANGENT_REACH; dx <= 2 * TANGENT_REACH; dx++) {
+            double theta = std::atan2(-dx, dy) * THETA_STEPS / M_PI;
+            int t = static_cast<int>(std::lround(theta)) % THETA_STEPS;
+            normals_[(dy + 2 * TANGENT_REACH) * span + dx + 2 * TANGENT_REACH] = t < 0 ? t + THETA_STEPS : t;
+        }
+    }
+    lines_.clear();
+    lines_.reserve(MAX_LINES);
+}
+
+int FeatureExtractor::extract(uint8_t* mask, const Params& params, int32_t* out, int capacity) {
+    if (capacity < HEADER_INTS) {
+        return 0;
+    }
+    std::memset(out, 0, HEADER_INTS * sizeof(int32_t));
+
+    // Every later pass walks this list rather than the frame. Eight mask bytes
+    // are tested at once, since most of a frame is not edge.
+    pixels_.clear();
+    for (int y = 0; y < height_; y++) {
+        uint8_t* row = mask + static_cast<size_t>(y) * width_;
+        int x = 0;
+        while (x < width_) {
+            if (x + 8 <= width_) {
+                uint64_t word;
+                std::memcpy(&word, row + x, sizeof(word));
+                if (word == 0) {
+                    x += 8;
+                    continue;
+                }
+            }
+            if (row[x] != 0) {
+                row[x] = EDGE;
+                pixels_.push_back(pack(x, y));
+            }
+            x++;
+        }
+    }
+
+    bool truncated = false;
+    int at = HEADER_INTS;
+    if (params.flags & PIXELS) {
+        out[PIXELS_OFFSET] = at;
+        out[PIXEL_COUNT] = writePixels(out, at, capacity, truncated);
+    }
+    if (params.flags & (CONTOURS | SEGMENTS)) {
+        traceContours(mask);
+    }
+    if (params.flags & CONTOURS) {
+        out[CONTOURS_OFFSET] = at;
+        out[CONTOUR_COUNT] = writeContours(params, out, at, capacity, truncated);
+    }
+    if (params.flags & SEGMENTS) {
+        out[SEGMENTS_OFFSET] = at;
+        out[SEGMENT_COUNT] = writeSegments(mask, params, out, at, capacity, truncated);
+    }
+    out[TRUNCATED] = truncated ? 1 : 0;
+    out[USED] = at;
+    return at;
+}
+
+int FeatureExtractor::writePixels(int32_t* out, int& at, int capacity, bool& truncated) const {
+    int count = static_cast<int>(pixels_.size());
+    if (count > capacity - at) {
+        count = capacity - at;
+        truncated = true;
+    }
+    std::memcpy(out + at, pixels_.data(), static_cast<size_t>(count) * sizeof(int32_t));
+    at += count;
+    return count;
+}
+
+// Appends the chain that continues from (x, y) through unvisited edge
+// pixels, (x, y) itself excluded; returns its length
+int FeatureExtractor::follow(uint8_t* mask, int x, int y) {
+    int length = 0;
+    for (;;) {
+        int k = 0;
+        for (; k < 8; k++) {
+            int nx = x + kDx[k];
+            int ny = y + kDy[k];
+            if (nx >= 0 && ny >= 0 && nx < width_ && ny < height_
+                    && mask[static_cast<size_t>(ny) * width_ + nx] == EDGE) {
+                x = nx;
+                y = ny;
+                break;
+            }
+        }
+        if (k == 8) {
+            return length;
+        }
+        mask[static_cast<size_t>(y) * width_ + x] = TRACED;
+        chain_.push_back(pack(x, y));
+        length++;
+    }
+}
+
+void FeatureExtractor::traceContours(uint8_t* mask) {
+    chain_.clear();
+    contours_.clear();
+
+    auto trace = [&](int x, int y) {
+        size_t start = chain_.size();
+        mask[static_cast<size_t>(y) * width_ + x] = TRACED;
+        chain_.push_back(pack(x, y));
+        follow(mask, x, y);
+        // Started inside a chain: turn it around and trace the other side too
+        std::reverse(chain_.begin() + start, chain_.end());
+        follow(mask, x, y);
+        contours_.push_back(static_cast<int32_t>(start));
+        contours_.push_back(static_cast<int32_t>(chain_.size() - start));
+    };
+
+    // Open chains from their ends first, so each comes out whole; what is left
+    // is closed loops and the branches of junctions
+    for (int32_t p : pixels_) {
+        int x = p & 0xffff;
+        int y = p >> 16;
+        if (mask[static_cast<size_t>(y) * width_ + x] != EDGE) {
+            continue;
+        }
+        int neighbours = 0;
+        for (int k = 0; k < 8; k++) {
+            int nx = x + kDx[k];
+            int ny = y + kDy[k];
+            if (nx >= 0 && ny >= 0 && nx < width_ && ny < height_
+                    && mask[static_cast<size_t>(ny) * width_ + nx] != 0) {
+                neighbours++;
+            }
+        }
+        if (neighbours == 1) {
+            trace(x, y);
+        }
+    }
+    for (int32_t p : pixels_) {
+        int x = p & 0xffff;
+        int y = p >> 16;
+        if (mask[static_cast<size_t>(y) * width_ + x] == EDGE) {
+            trace(x, y);
+        }
+    }
+}
+
+int FeatureExtractor::writeContours(const Params& params, int32_t* out, int& at, int capacity,
+                                    bool& truncated) const {
+    // Whole contours only: the table entry and all of its points, or nothing
+    const int total = static_cast<int>(contours_.size() / 2);
+    int count = 0;
+    long points = 0;
+    int last = 0;
+    for (; last < total; last++) {
+        int length = contours_[2 * last + 1];
+        if (length < params.minContourPixels) {
+            continue;
+        }
+        if (at + 2L * (count + 1) + points + length > capacity) {
+            truncated = true;
+            break;
+        }
+        count++;
+        points += length;
+    }
+    int entry = at;
+    int point = at + 2 * count;
+    for (int c = 0; c < last; c++) {
+        int length = contours_[2 * c + 1];
+        if (length < params.minContourPixels) {
+            continue;
+        }
+        out[entry++] = point;
+        out[entry++] = length;
+        std::memcpy(out + point, chain_.data() + contours_[2 * c], static_cast<size_t>(length) * sizeof(int32_t));
+        point += length;
+    }
+    at = point;
+    return count;
+}
+
+int FeatureExtractor::writeSegments(uint8_t* mask, const Params& params, int32_t* out, int& at, int capacity,
+                                    bool& truncated) {
+    // Each contour pixel votes only for the lines within THETA_WINDOW of the
+    // normal of its chain, measured between the points TANGENT_REACH before
+    // and after it. Chains too short for that (mostly noise) do not vote.
+    const int rhoOffset = rhoCount_ / 2;
+    std::fill(votes_.begin(), votes_.end(), 0);
+    for (size_t c = 0; c < contours_.size(); c += 2) {
+        const int32_t* points = chain_.data() + contours_[c];
+        const int length = contours_[c + 1];
+        if (length < 2 * TANGENT_REACH + 1) {
+            continue;
+        }
+        for (int i = 0; i < length; i++) {
+            int a = points[std::max(i - TANGENT_REACH, 0)];
+            int b = points[std::min(i + TANGENT_REACH, length - 1)];
+            int dx = (b & 0xffff) - (a & 0xffff);
+            int dy = (b >> 16) - (a >> 16);
+            int normal = normals_[(dy + 2 * TANGENT_REACH) * (4 * TANGENT_REACH + 1) + dx + 2 * TANGENT_REACH];
+            int x = points[i] & 0xffff;
+            int y = points[i] >> 16;
+            for (int d = -THETA_WINDOW; d <= THETA_WINDOW; d++) {
+                int t = normal + d;
+                t += t < 0 ? THETA_STEPS : (t >= THETA_STEPS ? -THETA_STEPS : 0);
+                votes_[static_cast<size_t>(t) * rhoCount_ + rhoOffset
+                       + ((x * cos_[t] + y * sin_[t] + 512) >> 10)]++;
+            }
+        }
+    }
+
+    // Local maxima over threshold; the strongest maxLines kept in a min-heap
+    const int maxLines = std::min(std::max(params.maxLines, 0), MAX_LINES);
+    const int threshold = std::max(params.houghThreshold, 1);
+    auto weaker = std::greater<std::pair<int, int>>();
+    lines_.clear();
+    for (int t = 0; t < THETA_STEPS && maxLines > 0; t++) {
+        const uint16_t* row = votes_.data() + static_cast<size_t>(t) * rhoCount_;
+        const uint16_t* above = t > 0 ? row - rhoCount_ : nullptr;
+        const uint16_t* below = t + 1 < THETA_STEPS ? row + rhoCount_ : nullptr;
+        for (int r = 1; r + 1 < rhoCount_; r++) {
+            int v = row[r];
+            if (v < threshold || v <= row[r - 1] || v < row[r + 1]
+                    || (above != nullptr && v <= std::max({above[r - 1], above[r], above[r + 1]}))
+                    || (below != nullptr && v < std::max({below[r - 1], below[r], below[r + 1]}))) {
+                continue;
+            }
+            if (static_cast<int>(lines_.size()) < maxLines) {
+                lines_.emplace_back(v, t * rhoCount_ + r);
+                std::push_heap(lines_.begin(), lines_.end(), weaker);
+            } else if (v > lines_.front().first) {
+                std::pop_heap(lines_.begin(), lines_.end(), weaker);
+                lines_.back() = {v, t * rhoCount_ + r};
+                std::push_heap(lines_.begin(), lines_.end(), weaker);
+            }
+        }
+    }
+    std::sort_heap(lines_.begin(), lines_.end(), weaker);
+
+    // Walk each line across the frame one pixel at a time along its major axis,
+    // accepting an edge pixel one step either side of it. Runs of hits with
+    // gaps up to maxSegmentGap become segments; their pixels are then taken
+    // out so that weaker lines through the same edge do not repeat it.
+    const int gap = std::max(params.maxSegmentGap, 0);
+    const int minLength = std::max(params.minSegmentLength, 1);
+    int count = 0;
+    for (const auto& line : lines_) {
+        const int t = line.second / rhoCount_;
+        const float rho = static_cast<float>(line.second % rhoCount_ - rhoOffset);
+        const float c = cos_[t] / 1024.f;
+        const float s = sin_[t] / 1024.f;
+        // Normal closer to x: the line is closer to vertical, so step along y
+        const bool alongY = std::fabs(c) > std::fabs(s);
+        const int steps = alongY ? height_ : width_;
+
+        const float base = alongY ? rho / c : rho / s;
+        const float slope = alongY ? -s / c : -c / s;
+        auto minor = [&](int i) {
+            return static_cast<int>(std::lround(base + i * slope));
+        };
+        // Index of the edge pixel hit at step i, -1 if none
+        auto hitAt = [&](int i) {
+            int b = minor(i);
+            for (int d : {0, -1, 1}) {
+                int x = alongY ? b + d : i;
+                int y = alongY ? i : b + d;
+                if (x >= 0 && y >= 0 && x < width_ && y < height_) {
+                    size_t index = static_cast<size_t>(y) * width_ + x;
+                    if (mask[index] != 0 && mask[index] != ON_SEGMENT) {
+                        return static_cast<long>(index);
+                    }
+                }
+            }
+            return -1L;
+        };
+
+        int first = -1;
+        int last = -1;
+        for (int i = 0; i <= steps; i++) {
+            if (i < steps && hitAt(i) >= 0) {
+                if (first < 0) {
+                    first = i;
+                }
+                last = i;
+                continue;
+            }
+            if (first < 0 || (i < steps && i - last <= gap)) {
+                continue;
+            }
+            int b0 = std::min(std::max(minor(first), 0), (alongY ? width_ : height_) - 1);
+            int b1 = std::min(std::max(minor(last), 0), (alongY ? width_ : height_) - 1);
+            int x0 = alongY ? b0 : first, y0 = alongY ? first : b0;
+            int x1 = alongY ? b1 : last, y1 = alongY ? last : b1;
+            float length = std::hypot(static_cast<float>(x1 - x0), static_cast<float>(y1 - y0)) + 1;
+            if (length >= minLength) {
+                if (at + 3 > capacity) {
+                    truncated = true;
+                    return count;
+                }
+                for (int j = first; j <= last; j++) {
+                    long index = hitAt(j);
+                    if (index >= 0) {
+                        mask[index] = ON_SEGMENT;
+                    }
+                }
+                out[at] = pack(x0, y0);
+                out[at + 1] = pack(x1, y1);
+                out[at + 2] = line.first;
+                at += 3;
+                count++;
+            }
+            first = -1;
+        }
+    }
+    return count;
+}
+
+}  // namespace edge
@@ -0,0 +1,86 @@
+#pragma once
+
+#include <cstdint>
+#include <vector>
+
+namespace edge {
+
+// Geometry pulled out of an edge mask instead of an output image. Results go
+// into a caller-owned int32 buffer laid out as below (EdgeFeatures.java reads
+// the same layout); points are packed as y << 16 | x.
+//
+//   header   HEADER_INTS ints, see Header
+//   pixels   one packed point per edge pixel, raster order
+//   contours contourCount (offset, length) pairs, offset being the int index
+//            of the contour's first point in the buffer, then the points of
+//            every contour in order along the chain
+//   segments (p0, p1, votes) per Hough line segment, strongest line first
+//
+// Sections are filled in that order; one that does not fit is cut short and
+// the header says so. All scratch memory is sized in configure().
+class FeatureExtractor {
+public:
+    // Matches EdgeFeatures.PIXELS / CONTOURS / SEGMENTS
+    enum Flags { PIXELS = 1, CONTOURS = 2, SEGMENTS = 4 };
+
+    enum Header {
+        PIXEL_COUNT = 0,
+        PIXELS_OFFSET = 1,
+        CONTOUR_COUNT = 2,
+        CONTOURS_OFFSET = 3,
+        SEGMENT_COUNT = 4,
+        SEGMENTS_OFFSET = 5,
+        TRUNCATED = 6,   // 1 if any section was cut short
+        USED = 7,        // ints written, header included
+        HEADER_INTS = 8
+    };
+
+    struct Params {
+        int flags = PIXELS | CONTOURS | SEGMENTS;
+        int minContourPixels = 8;   // shorter chains are dropped
+        int houghThreshold = 60;    // votes (edge pixels) a line needs
+        int minSegmentLength = 30;  // pixels
+        int maxSegmentGap = 4;      // missing pixels bridged within a segment
+        int maxLines = 64;          // strongest Hough lines walked for segments
+    };
+
+    // Hough resolution is one degree and one pixel
+    static constexpr int THETA_STEPS = 180;
+    static constexpr int THETA_WINDOW = 10;
+    static constexpr int TANGENT_REACH = 3;
+
+    void configure(int width, int height);
+
+    // mask: width * height bytes, non-zero = edge; it is used as scratch and
+    // left with every edge pixel non-zero. Returns the ints written.
+    int extract(uint8_t* mask, const Params& params, int32_t* out, int capacity);
+
+private:
+    // Each writes its section at out[at], moves at past it and returns the
+    // number of items written
+    int writePixels(int32_t* out, int& at, int capacity, bool& truncated) const;
+    int writeContours(const Params& params, int32_t* out, int& at, int capacity, bool& truncated) const;
+    int writeSegments(uint8_t* mask, const Params& params, int32_t* out, int& at, int capacity, bool& truncated);
+    // Splits the edge pixels into 8-connected chains, all lengths kept
+    void traceContours(uint8_t* mask);
+    int follow(uint8_t* mask, int x, int y);
+
+    int width_ = 0;
+    int height_ = 0;
+    int rhoCount_ = 0;
+
+    // Edge pixels of the current frame, packed
+    std::vector<int32_t> pixels_;
+    // Contour chains: points, and (start, length) per chain
+    std::vector<int32_t> chain_;
+    std::vector<int32_t> contours_;
+    // Hough accumulator [theta][rho] and Q10 cos / sin per theta
+    std::vector<uint16_t> votes_;
+    std::vector<int32_t> cos_;
+    std::vector<int32_t> sin_;
+    std::vector<uint8_t> normals_;
+    // Candidate lines as (votes, cell), a min-heap on votes
+    std::vector<std::pair<int, int>> lines_;
+};
+
+}  // namespace edge
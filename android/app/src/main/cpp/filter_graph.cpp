@@ -0,0 +1,382 @@
+#include "filter_graph.h"
+
+#include <algorithm>
+#include <chrono>
+#include <cstring>
+
+namespace edge {
+
+namespace {
+
+// Border handling of cv::GaussianBlur (BORDER_REFLECT_101)
+inline int reflect101(int i, int n) {
+    if (n == 1) return 0;
+    // More than one reflection only for frames smaller than the kernel
+    while (i < 0 || i >= n) {
+        i = i < 0 ? -i : 2 * n - i - 2;
+    }
+    return i;
+}
+
+// Separable 1-2-1 or 1-4-6-4-1 Gaussian, rounded like OpenCV's fixed-point
+// path. The kernel is a template parameter so the inner loops unroll and
+// vectorise; only the border columns go through reflect101.
+template <int K>
+void blur(const uint8_t* src, int srcStride, uint8_t* dst, int w, int h, uint16_t* wide) {
+    static_assert(K == 3 || K == 5, "3x3 or 5x5");
+    constexpr int R = K / 2;
+    constexpr int SHIFT = K == 5 ? 8 : 4;
+    static const int k3[] = {1, 2, 1};
+    static const int k5[] = {1, 4, 6, 4, 1};
+    const int* k = K == 5 ? k5 : k3;
+
+    for (int y = 0; y < h; y++) {
+        const uint8_t* row = src + static_cast<size_t>(y) * srcStride;
+        uint16_t* out = wide + static_cast<size_t>(y) * w;
+        auto border = [&](int x) {
+            int sum = 0;
+            for (int i = -R; i <= R; i++) sum += k[i + R] * row[reflect101(x + i, w)];
+            out[x] = static_cast<uint16_t>(sum);
+        };
+        for (int x = 0; x < std::min(R, w); x++) border(x);
+        for (int x = R; x < w - R; x++) {
+            out[x] = K == 5
+                    ? static_cast<uint16_t>(row[x - 2] + 4 * row[x - 1] + 6 * row[x] + 4 * row[x + 1] + row[x + 2])
+                    : static_cast<uint16_t>(row[x - 1] + 2 * row[x] + row[x + 1]);
+        }
+        for (int x = std::max(R, w - R); x < w; x++) border(x);
+    }
+    constexpr int ROUND = 1 << (SHIFT - 1);
+    for (int y = 0; y < h; y++) {
+        const uint16_t* r[K];
+        for (int i = -R; i <= R; i++) {
+            r[i + R] = wide + static_cast<size_t>(reflect101(y + i, h)) * w;
+        }
+        uint8_t* out = dst + static_cast<size_t>(y) * w;
+        if (K == 5) {
+            for (int x = 0; x < w; x++) {
+                int sum = r[0][x] + 4 * r[1][x] + 6 * r[2][x] + 4 * r[3][x] + r[4][x];
+                out[x] = static_cast<uint8_t>((sum + ROUND) >> SHIFT);
+            }
+        } else {
+            for (int x = 0; x < w; x++) {
+                int sum = r[0][x] + 2 * r[1][x] + r[2][x];
+                out[x] = static_cast<uint8_t>((sum + ROUND) >> SHIFT);
+            }
+        }
+    }
+}
+
+// L1 magnitude of the 3x3 Sobel (cv::Sobel borders), saturated; with
+// threshold >= 0 written as a 255/0 mask instead
+void sobel(const uint8_t* src, int srcStride, uint8_t* dst, int w, int h, int threshold) {
+    for (int y = 0; y < h; y++) {
+        const uint8_t* up = src + static_cast<size_t>(reflect101(y - 1, h)) * srcStride;
+        const uint8_t* row = src + static_cast<size_t>(y) * srcStride;
+        const uint8_t* down = src + static_cast<size_t>(reflect101(y + 1, h)) * srcStride;
+        uint8_t* out = dst + static_cast<size_t>(y) * w;
+        for (int x = 0; x < w; x++) {
+            int xl = reflect101(x - 1, w);
+            int xr = reflect101(x + 1, w);
+            int dx = (up[xr] + 2 * row[xr] + down[xr]) - (up[xl] + 2 * row[xl] + down[xl]);
+            int dy = (down[xl] + 2 * down[x] + down[xr]) - (up[xl] + 2 * up[x] + up[xr]);
+            int m = (dx < 0 ? -dx : dx) + (dy < 0 ? -dy : dy);
+            if (threshold >= 0) {
+                out[x] = m > threshold ? 255 : 0;
+            } else {
+                out[x] = static_cast<uint8_t>(m > 255 ? 255 : m);
+            }
+        }
+    }
+}
+
+// Square max (dilate) or min (erode) filter as two 1-D passes; pixels
+// outside the frame are ignored
+template <bool DILATE>
+inline uint8_t pick(uint8_t a, uint8_t b) {
+    return DILATE ? (a > b ? a : b) : (a < b ? a : b);
+}
+
+template <bool DILATE>
+void morph(const uint8_t* src, int srcStride, uint8_t* dst, int w, int h, int radius, uint8_t* rows) {
+    for (int y = 0; y < h; y++) {
+        const uint8_t* row = src + static_cast<size_t>(y) * srcStride;
+        uint8_t* out = rows + static_cast<size_t>(y) * w;
+        std::memcpy(out, row, w);
+        for (int d = 1; d <= radius; d++) {
+            for (int x = 0; x + d < w; x++) {
+                out[x] = pick<DILATE>(out[x], row[x + d]);
+            }
+            for (int x = d; x < w; x++) {
+                out[x] = pick<DILATE>(out[x], row[x - d]);
+            }
+        }
+    }
+    for (int y = 0; y < h; y++) {
+        int y0 = std::max(0, y - radius);
+        int y1 = std::min(h - 1, y + radius);
+        uint8_t* out = dst + static_cast<size_t>(y) * w;
+        std::memcpy(out, rows + static_cast<size_t>(y0) * w, w);
+        for (int i = y0 + 1; i <= y1; i++) {
+            const uint8_t* row = rows + static_cast<size_t>(i) * w;
+            for (int x = 0; x < w; x++) {
+                out[x] = pick<DILATE>(out[x], row[x]);
+            }
+        }
+    }
+}
+
+void threshold(const uint8_t* src, int srcStride, uint8_t* dst, int w, int h, int level) {
+    for (int y = 0; y < h; y++) {
+        const uint8_t* row = src + static_cast<size_t>(y) * srcStride;
+        uint8_t* out = dst + static_cast<size_t>(y) * w;
+        for (int x = 0; x < w; x++) {
+            out[x] = row[x] > level ? 255 : 0;
+        }
+    }
+}
+
+void toRgba(const uint8_t* image, uint8_t* dst, int w, int h) {
+    size_t pixels = static_cast<size_t>(w) * h;
+    for (size_t i = 0; i < pixels; i++) {
+        uint8_t v = image[i];
+        dst[0] = v;
+        dst[1] = v;
+        dst[2] = v;
+        dst[3] = 255;
+        dst += 4;
+    }
+}
+
+// Non-zero pixels of mask in green over the source luminance, as Engine's Overlay
+void overlay(const uint8_t* src, int srcStride, const uint8_t* mask, uint8_t* dst, int w, int h) {
+    for (int y = 0; y < h; y++) {
+        const uint8_t* gray = src + static_cast<size_t>(y) * srcStride;
+        const uint8_t* m = mask + static_cast<size_t>(y) * w;
+        for (int x = 0; x < w; x++) {
+            if (m[x] != 0) {
+                dst[0] = 0;
+                dst[1] = 255;
+                dst[2] = 0;
+            } else {
+                dst[0] = gray[x];
+                dst[1] = gray[x];
+                dst[2] = gray[x];
+            }
+            dst[3] = 255;
+            dst += 4;
+        }
+    }
+}
+
+bool validStage(const StageSpec& s) {
+    switch (s.op) {
+        case StageOp::Blur:
+            return s.p0 == 3 || s.p0 == 5;
+        case StageOp::Dilate:
+        case StageOp::Erode:
+            return s.p0 >= 1 && s.p0 <= FilterGraph::MAX_RADIUS;
+        case StageOp::Canny:
+            return s.p0 >= 0 && s.p1 >= 0;
+        case StageOp::Threshold:
+            return s.p0 >= 0 && s.p0 <= 255;
+        case StageOp::Sobel:
+        case StageOp::Overlay:
+            return true;
+    }
+    return false;
+}
+
+}  // namespace
+
+FilterGraph::FilterGraph() {
+    stages_[0] = {StageOp::Canny, 50, 150};
+    count_ = 1;
+    pending_[0] = stages_[0];
+    pendingCount_ = 1;
+    for (auto& t : timings_) {
+        t.store(0.f, std::memory_order_relaxed);
+    }
+}
+
+void FilterGraph::configure(int width, int height) {
+    engine_.configure(width, height);
+    size_t pixels = static_cast<size_t>(width) * height;
+    frames_[0].assign(pixels, 0);
+    frames_[1].assign(pixels, 0);
+    rows_.assign(pixels, 0);
+    wide_.assign(pixels, 0);
+}
+
+bool FilterGraph::setStages(const StageSpec* stages, int count) {
+    if (count < 1 || count > MAX_STAGES) {
+        return false;
+    }
+    for (int i = 0; i < count; i++) {
+        if (!validStage(stages[i]) || (stages[i].op == StageOp::Overlay && i != count - 1)) {
+            return false;
+        }
+    }
+    if (count == 1 && stages[0].op == StageOp::Overlay) {
+        return false;
+    }
+    std::lock_guard<std::mutex> lock(pendingMutex_);
+    std::copy(stages, stages + count, pending_);
+    pendingCount_ = count;
+    dirty_.store(true, std::memory_order_release);
+    return true;
+}
+
+void FilterGraph::setCannyThresholds(int low, int high) {
+    std::lock_guard<std::mutex> lock(pendingMutex_);
+    for (int i = 0; i < pendingCount_; i++) {
+        if (pending_[i].op == StageOp::Canny) {
+            pending_[i].p0 = std::min(low, high);
+            pending_[i].p1 = std::max(low, high);
+        }
+    }
+    dirty_.store(true, std::memory_order_release);
+}
+
+void FilterGraph::setAutoThresholds(AutoThreshold mode, float param, float smoothing) {
+    std::lock_guard<std::mutex> lock(pendingMutex_);
+    pendingAuto_ = mode;
+    pendingAutoParam_ = param;
+    pendingSmoothing_ = smoothing;
+    dirty_.store(true, std::memory_order_release);
+}
+
+void FilterGraph::applyPending() {
+    if (!dirty_.load(std::memory_order_acquire)) {
+        return;
+    }
+    // A setter in the middle of an update: keep the old chain for this frame
+    if (!pendingMutex_.try_lock()) {
+        return;
+    }
+    std::copy(pending_, pending_ + pendingCount_, stages_);
+    count_ = pendingCount_;
+    engine_.setAutoThresholds(pendingAuto_, pendingAutoParam_, pendingSmoothing_);
+    dirty_.store(false, std::memory_order_relaxed);
+    pendingMutex_.unlock();
+}
+
+void FilterGraph::runStage(int index, const uint8_t* in, int inStride, uint8_t* out, bool fuseThreshold) {
+    const StageSpec& s = stages_[index];
+    const int w = width();
+    const int h = height();
+    switch (s.op) {
+        case StageOp::Blur:
+            if (s.p0 == 5) {
+                blur<5>(in, inStride, out, w, h, wide_.data());
+            } else {
+                blur<3>(in, inStride, out, w, h, wide_.data());
+            }
+            break;
+        case StageOp::Sobel:
+            sobel(in, inStride, out, w, h, fuseThreshold ? stages_[index + 1].p0 : -1);
+            break;
+        case StageOp::Canny:
+            engine_.setThresholds(s.p0, s.p1);
+            engine_.process(in, inStride, out, OutputMode::Mask);
+            publishCanny();
+            break;
+        case StageOp::Dilate:
+            morph<true>(in, inStride, out, w, h, s.p0, rows_.data());
+            break;
+        case StageOp::Erode:
+            morph<false>(in, inStride, out, w, h, s.p0, rows_.data());
+            break;
+        case StageOp::Threshold:
+            threshold(in, inStride, out, w, h, s.p0);
+            break;
+        case StageOp::Overlay:
+            break;
+    }
+}
+
+void FilterGraph::process(const uint8_t* src, int srcStride, uint8_t* dst, OutputMode mode) {
+    using Clock = std::chrono::steady_clock;
+    applyPending();
+
+    const int w = width();
+    const int h = height();
+    int imageStages = count_;
+    bool overlayOut = mode == OutputMode::Overlay;
+    if (stages_[count_ - 1].op == StageOp::Overlay) {
+        imageStages--;
+        overlayOut = mode != OutputMode::Mask;
+    }
+    const OutputMode finalMode = mode == OutputMode::Mask
+            ? OutputMode::Mask
+            : (overlayOut ? OutputMode::Overlay : OutputMode::Rgba);
+
+    const uint8_t* cur = src;
+    int curStride = srcStride;
+    int next = 0;
+    bool written = false;
+    for (int i = 0; i < imageStages; i++) {
+        auto start = Clock::now();
+        const StageSpec& s = stages_[i];
+        bool last = i == imageStages - 1;
+        bool fuse = s.op == StageOp::Sobel && i + 1 < imageStages
+                && stages_[i + 1].op == StageOp::Threshold;
+        bool lastWrite = last || (fuse && i + 1 == imageStages - 1);
+
+        if (lastWrite && s.op == StageOp::Canny
+                && (finalMode != OutputMode::Overlay || cur == src)) {
+            // The engine writes the output mode itself, overlaying its own input
+            engine_.setThresholds(s.p0, s.p1);
+            engine_.process(cur, curStride, dst, finalMode);
+            publishCanny();
+            written = true;
+        } else {
+            uint8_t* out = lastWrite && finalMode == OutputMode::Mask ? dst : frames_[next].data();
+            runStage(i, cur, curStride, out, fuse);
+            cur = out;
+            curStride = w;
+            next ^= 1;
+        }
+        timings_[i].store(std::chrono::duration<float, std::milli>(Clock::now() - start).count(),
+                          std::memory_order_relaxed);
+        if (fuse) {
+            timings_[++i].store(0.f, std::memory_order_relaxed);
+        }
+    }
+
+    auto start = Clock::now();
+    if (!written && finalMode != OutputMode::Mask) {
+        if (finalMode == OutputMode::Overlay) {
+            overlay(src, srcStride, cur, dst, w, h);
+        } else {
+            toRgba(cur, dst, w, h);
+        }
+    }
+    if (imageStages < count_) {
+        timings_[count_ - 1].store(std::chrono::duration<float, std::milli>(Clock::now() - start).count(),
+                                   std::memory_order_relaxed);
+    }
+    timedCount_.store(count_, std::memory_order_release);
+}
+
+void FilterGraph::publishCanny() {
+    cannyLow_.store(engine_.lastLow(), std::memory_order_relaxed);
+    cannyHigh_.store(engine_.lastHigh(), std::memory_order_relaxed);
+    edgeDensity_.store(engine_.lastEdgeDensity(), std::memory_order_relaxed);
+}
+
+void FilterGraph::cannyResult(int* low, int* high, float* edgeDensity) const {
+    *low = cannyLow_.load(std::memory_order_relaxed);
+    *high = cannyHigh_.load(std::memory_order_relaxed);
+    *edgeDensity = edgeDensity_.load(std::memory_order_relaxed);
+}
+
+int FilterGraph::stageTimings(float* ms, int capacity) const {
+    int count = timedCount_.load(std::memory_order_acquire);
+    for (int i = 0; i < count && i < capacity; i++) {
+        ms[i] = timings_[i].load(std::memory_order_relaxed);
+    }
+    return count;
+}
+
+}  // namespace edge
@@ -0,0 +1,102 @@
+#pragma once
+
+#include <atomic>
+#include <cstdint>
+#include <mutex>
+#include <vector>
+
+#include "edge_engine.h"
+
+namespace edge {
+
+// Matches NativeBridge.STAGE_*
+enum class StageOp : int {
+    Blur = 1,       // p0 = Gaussian kernel size, 3 or 5
+    Sobel = 2,      // L1 gradient magnitude, saturated to 255
+    Canny = 3,      // p0 = low, p1 = high threshold
+    Dilate = 4,     // p0 = radius
+    Erode = 5,      // p0 = radius
+    Threshold = 6,  // p0 = level; above it 255, else 0
+    Overlay = 7     // last only: edges in green over the camera image (RGBA output)
+};
+
+struct StageSpec {
+    StageOp op;
+    int p0;
+    int p1;
+};
+
+// Chain of 8-bit image stages run by the edge stage's thread, ending in one
+// of the engine's output modes. The default chain is a single Canny 50/150,
+// which runs exactly like Engine::process.
+//
+// Every buffer is sized in configure(). A new chain or new thresholds are
+// copied into a fixed-size pending slot and picked up at the start of the
+// next frame; if the setter holds the slot at that moment the frame simply
+// runs the previous chain, so the frame path never waits or allocates.
+//
+// Stages ping-pong between two frame buffers. The first stage reads the
+// strided source in place, the last one writes straight into the output when
+// it can, a Threshold after Sobel is applied as the magnitudes are written,
+// and a final Canny writes the requested output mode itself.
+class FilterGraph {
+public:
+    static constexpr int MAX_STAGES = 16;
+    static constexpr int MAX_RADIUS = 7;
+
+    FilterGraph();
+
+    void configure(int width, int height);
+    void setThreads(int threads) { engine_.setThreads(threads); }
+
+    // Returns false (and keeps the current chain) if the chain is invalid.
+    // Safe from any thread.
+    bool setStages(const StageSpec* stages, int count);
+    // Sets the thresholds of every Canny stage; safe from any thread.
+    void setCannyThresholds(int low, int high);
+    // Adaptive Canny thresholds (see Engine::setAutoThresholds); safe from any thread.
+    void setAutoThresholds(AutoThreshold mode, float param, float smoothing);
+
+    void process(const uint8_t* src, int srcStride, uint8_t* dst, OutputMode mode);
+
+    // Milliseconds each stage of the last frame took, 0 for stages fused into
+    // the one before; returns the stage count.
+    int stageTimings(float* ms, int capacity) const;
+
+    // Thresholds and edge pixel share of the last Canny stage run; from any
+    // thread, the three may straddle two frames
+    void cannyResult(int* low, int* high, float* edgeDensity) const;
+
+    int width() const { return engine_.width(); }
+    int height() const { return engine_.height(); }
+
+private:
+    void applyPending();
+    void publishCanny();
+    void runStage(int index, const uint8_t* in, int inStride, uint8_t* out, bool fuseThreshold);
+
+    Engine engine_;
+
+    std::mutex pendingMutex_;
+    StageSpec pending_[MAX_STAGES];
+    int pendingCount_ = 0;
+    AutoThreshold pendingAuto_ = AutoThreshold::Off;
+    float pendingAutoParam_ = 0.f;
+    float pendingSmoothing_ = 1.f;
+    std::atomic<bool> dirty_{false};
+
+    // Edge stage only
+    StageSpec stages_[MAX_STAGES];
+    int count_ = 0;
+    std::vector<uint8_t> frames_[2];
+    std::vector<uint8_t> rows_;
+    std::vector<uint16_t> wide_;
+
+    std::atomic<float> timings_[MAX_STAGES];
+    std::atomic<int> timedCount_{0};
+    std::atomic<int> cannyLow_{50};
+    std::atomic<int> cannyHigh_{150};
+    std::atomic<float> edgeDensity_{0.f};
+};
+
+}  // namespace edge
@@ -1,46 +1,366 @@
 #include <jni.h>
-#include <android/log.h>
-#include <opencv2/opencv.hpp>
+
+#include <algorithm>
+#include <atomic>
+#include <chrono>
+#include <vector>
+
+#include "feature_extract.h"
+#include "filter_graph.h"
+#include "yuv_convert.h"
 
 #define LOG_TAG "NativeEdge"
+#ifdef __ANDROID__
+#include <android/log.h>
 #define LOGD(...) __android_log_print(ANDROID_LOG_DEBUG, LOG_TAG, __VA_ARGS__)
+#else
+#include <cstdio>
+#define LOGD(...) do { fprintf(stderr, LOG_TAG ": " __VA_ARGS__); fputc('\n', stderr); } while (0)
+#endif
+
+// Matches NativeBridge.OUTPUT_*
+enum { OUTPUT_MASK = 0, OUTPUT_RGBA = 1, OUTPUT_OVERLAY = 2 };
+
+// Matches NativeBridge.INFO_*
+enum { INFO_MS = 0, INFO_LOW = 1, INFO_HIGH = 2, INFO_EDGE_DENSITY = 3, INFO_COUNT = 4 };
+
+// Matches EdgeFeatures.PARAM_*
+enum {
+    PARAM_FLAGS = 0,
+    PARAM_MIN_CONTOUR_PIXELS = 1,
+    PARAM_HOUGH_THRESHOLD = 2,
+    PARAM_MIN_SEGMENT_LENGTH = 3,
+    PARAM_MAX_SEGMENT_GAP = 4,
+    PARAM_MAX_LINES = 5,
+    PARAM_COUNT = 6
+};
+
+namespace {
+
+// One processing context per stream: created by init, reused by every frame
+// after that, freed by release. Calls on a context are expected from one
+// thread at a time (the stream's edge stage), except the setters for
+// thresholds and the filter graph and the getters for results, which may come
+// from any thread. Separate contexts share nothing.
+struct Context {
+    edge::FilterGraph graph;
+    edge::OutputMode mode = edge::OutputMode::Rgba;
+    int channels = 4;
+    // Read by getFrameInfo from any thread
+    std::atomic<float> lastMs{0.f};
+    // processFrameFeatures: the graph's mask, traced in place
+    std::vector<uint8_t> mask;
+    edge::FeatureExtractor features;
 
-static int gWidth = 640;
-static int gHeight = 480;
+    void configure(int width, int height) {
+        graph.configure(width, height);
+        mask.assign(static_cast<size_t>(width) * height, 0);
+        features.configure(width, height);
+    }
+};
+
+void throwIllegalArgument(JNIEnv *env, const char *message) {
+    env->ThrowNew(env->FindClass("java/lang/IllegalArgumentException"), message);
+}
+
+// Null, with IllegalArgumentException pending, for a zero handle
+Context *context(JNIEnv *env, jlong handle) {
+    if (handle == 0) {
+        throwIllegalArgument(env, "no native context (not initialised or already released)");
+        return nullptr;
+    }
+    return reinterpret_cast<Context *>(handle);
+}
+
+}  // namespace
 
 extern "C"
-JNIEXPORT void JNICALL
+JNIEXPORT jlong JNICALL
 Java_com_example_edgeviewer_NativeBridge_init(JNIEnv *env, jclass clazz, jint width, jint height) {
-    gWidth = width;
-    gHeight = height;
-    LOGD("Init native with %dx%d", gWidth, gHeight);
+    if (width <= 0 || height <= 0) {
+        throwIllegalArgument(env, "init requires a positive size");
+        return 0;
+    }
+    auto *ctx = new Context();
+    ctx->configure(width, height);
+    LOGD("Init native context with %dx%d", width, height);
+    return reinterpret_cast<jlong>(ctx);
+}
+
+extern "C"
+JNIEXPORT void JNICALL
+Java_com_example_edgeviewer_NativeBridge_resize(JNIEnv *env, jclass clazz, jlong handle,
+                                                jint width, jint height) {
+    Context *ctx = context(env, handle);
+    if (ctx == nullptr) return;
+    if (width <= 0 || height <= 0) {
+        throwIllegalArgument(env, "resize requires a positive size");
+        return;
+    }
+    ctx->configure(width, height);
+}
+
+extern "C"
+JNIEXPORT void JNICALL
+Java_com_example_edgeviewer_NativeBridge_release(JNIEnv *env, jclass clazz, jlong handle) {
+    delete reinterpret_cast<Context *>(handle);
+}
+
+extern "C"
+JNIEXPORT void JNICALL
+Java_com_example_edgeviewer_NativeBridge_setOutputMode(JNIEnv *env, jclass clazz, jlong handle, jint mode) {
+    Context *ctx = context(env, handle);
+    if (ctx == nullptr) return;
+    switch (mode) {
+        case OUTPUT_MASK:
+            ctx->mode = edge::OutputMode::Mask;
+            ctx->channels = 1;
+            break;
+        case OUTPUT_OVERLAY:
+            ctx->mode = edge::OutputMode::Overlay;
+            ctx->channels = 4;
+            break;
+        default:
+            ctx->mode = edge::OutputMode::Rgba;
+            ctx->channels = 4;
+            break;
+    }
+}
+
+extern "C"
+JNIEXPORT void JNICALL
+Java_com_example_edgeviewer_NativeBridge_setThresholds(JNIEnv *env, jclass clazz, jlong handle, jint low, jint high) {
+    Context *ctx = context(env, handle);
+    if (ctx == nullptr) return;
+    ctx->graph.setCannyThresholds(low, high);
+}
+
+extern "C"
+JNIEXPORT void JNICALL
+Java_com_example_edgeviewer_NativeBridge_setAutoThresholds(JNIEnv *env, jclass clazz, jlong handle, jint mode,
+                                                           jfloat param, jfloat smoothing) {
+    Context *ctx = context(env, handle);
+    if (ctx == nullptr) return;
+    if (mode < static_cast<int>(edge::AutoThreshold::Off) || mode > static_cast<int>(edge::AutoThreshold::Otsu)) {
+        throwIllegalArgument(env, "unknown auto threshold mode");
+        return;
+    }
+    ctx->graph.setAutoThresholds(static_cast<edge::AutoThreshold>(mode), param, smoothing);
+}
+
+extern "C"
+JNIEXPORT jint JNICALL
+Java_com_example_edgeviewer_NativeBridge_getFrameInfo(JNIEnv *env, jclass clazz, jlong handle, jfloatArray info) {
+    Context *ctx = context(env, handle);
+    if (ctx == nullptr) return 0;
+    int low;
+    int high;
+    float density;
+    ctx->graph.cannyResult(&low, &high, &density);
+    float values[INFO_COUNT];
+    values[INFO_MS] = ctx->lastMs.load(std::memory_order_relaxed);
+    values[INFO_LOW] = static_cast<float>(low);
+    values[INFO_HIGH] = static_cast<float>(high);
+    values[INFO_EDGE_DENSITY] = density;
+    env->SetFloatArrayRegion(info, 0, std::min<jsize>(INFO_COUNT, env->GetArrayLength(info)), values);
+    return INFO_COUNT;
+}
+
+extern "C"
+JNIEXPORT void JNICALL
+Java_com_example_edgeviewer_NativeBridge_setFilterGraph(JNIEnv *env, jclass clazz, jlong handle, jintArray stages) {
+    Context *ctx = context(env, handle);
+    if (ctx == nullptr) return;
+    jsize length = stages != nullptr ? env->GetArrayLength(stages) : 0;
+    if (length == 0 || length % 3 != 0 || length / 3 > edge::FilterGraph::MAX_STAGES) {
+        throwIllegalArgument(env, "setFilterGraph takes 1 to 16 (op, p0, p1) triples");
+        return;
+    }
+    jint values[3 * edge::FilterGraph::MAX_STAGES];
+    env->GetIntArrayRegion(stages, 0, length, values);
+    edge::StageSpec specs[edge::FilterGraph::MAX_STAGES];
+    for (int i = 0; i < length / 3; i++) {
+        specs[i] = {static_cast<edge::StageOp>(values[3 * i]), values[3 * i + 1], values[3 * i + 2]};
+    }
+    if (!ctx->graph.setStages(specs, length / 3)) {
+        throwIllegalArgument(env, "invalid filter graph");
+    }
+}
+
+extern "C"
+JNIEXPORT jint JNICALL
+Java_com_example_edgeviewer_NativeBridge_getStageTimings(JNIEnv *env, jclass clazz, jlong handle, jfloatArray ms) {
+    Context *ctx = context(env, handle);
+    if (ctx == nullptr) return 0;
+    float values[edge::FilterGraph::MAX_STAGES];
+    int count = ctx->graph.stageTimings(values, edge::FilterGraph::MAX_STAGES);
+    jsize copy = std::min<jsize>(count, env->GetArrayLength(ms));
+    env->SetFloatArrayRegion(ms, 0, copy, values);
+    return count;
+}
+
+extern "C"
+JNIEXPORT void JNICALL
+Java_com_example_edgeviewer_NativeBridge_setParallelism(JNIEnv *env, jclass clazz, jlong handle, jint threads) {
+    Context *ctx = context(env, handle);
+    if (ctx == nullptr) return;
+    // Each band recomputes the gradient rows just outside it, so bands run
+    // independently until hysteresis
+    ctx->graph.setThreads(threads < 1 ? 1 : threads);
+    LOGD("Native threads: %d", threads < 1 ? 1 : threads);
 }
 
 extern "C"
 JNIEXPORT jfloat JNICALL
-Java_com_example_edgeviewer_NativeBridge_processFrame(JNIEnv *env, jclass clazz,
+Java_com_example_edgeviewer_NativeBridge_processFrame(JNIEnv *env, jclass clazz, jlong handle,
                                                       jbyteArray grayInput,
                                                       jbyteArray rgbaOutput) {
+    Context *ctx = context(env, handle);
+    if (ctx == nullptr) return -1.f;
+    jlong pixels = (jlong) ctx->graph.width() * ctx->graph.height();
+    if (env->GetArrayLength(grayInput) < pixels || env->GetArrayLength(rgbaOutput) < pixels * 4) {
+        throwIllegalArgument(env, "processFrame arrays too small for configured size");
+        return -1.f;
+    }
 
     jbyte* grayPtr = env->GetByteArrayElements(grayInput, nullptr);
     jbyte* rgbaPtr = env->GetByteArrayElements(rgbaOutput, nullptr);
 
-    cv::Mat gray(gHeight, gWidth, CV_8UC1, (unsigned char*)grayPtr);
-    cv::Mat edges;
+    auto start = std::chrono::steady_clock::now();
+    ctx->graph.process(reinterpret_cast<const uint8_t*>(grayPtr), ctx->graph.width(),
+                       reinterpret_cast<uint8_t*>(rgbaPtr), edge::OutputMode::Rgba);
+    auto end = std::chrono::steady_clock::now();
 
-    auto start = std::chrono::high_resolution_clock::now();
+    env->ReleaseByteArrayElements(grayInput, grayPtr, JNI_ABORT);
+    env->ReleaseByteArrayElements(rgbaOutput, rgbaPtr, 0);
 
-    LOGD("Using OpenCV Canny");
-    cv::Canny(gray, edges, 50, 150);
+    float ms = std::chrono::duration<float, std::milli>(end - start).count();
+    ctx->lastMs.store(ms, std::memory_order_relaxed);
+    return ms;
+}
 
-    cv::Mat rgba(gHeight, gWidth, CV_8UC4, (unsigned char*)rgbaPtr);
-    cv::cvtColor(edges, rgba, cv::COLOR_GRAY2RGBA);
+extern "C"
+JNIEXPORT jfloat JNICALL
+Java_com_example_edgeviewer_NativeBridge_processFrameDirect(JNIEnv *env, jclass clazz, jlong handle,
+                                                            jobject yPlane,
+                                                            jint rowStride,
+                                                            jobject out) {
+    Context *ctx = context(env, handle);
+    if (ctx == nullptr) return -1.f;
+    auto* yPtr = static_cast<const uint8_t*>(env->GetDirectBufferAddress(yPlane));
+    auto* outPtr = static_cast<uint8_t*>(env->GetDirectBufferAddress(out));
+    if (yPtr == nullptr || outPtr == nullptr) {
+        throwIllegalArgument(env, "processFrameDirect requires direct buffers");
+        return -1.f;
+    }
 
-    auto end = std::chrono::high_resolution_clock::now();
+    const int width = ctx->graph.width();
+    const int height = ctx->graph.height();
+    // The last row of a camera plane is usually not padded out to rowStride.
+    jlong yNeeded = (jlong) (height - 1) * rowStride + width;
+    jlong outNeeded = (jlong) width * height * ctx->channels;
+    if (width == 0 || rowStride < width
+            || env->GetDirectBufferCapacity(yPlane) < yNeeded
+            || env->GetDirectBufferCapacity(out) < outNeeded) {
+        throwIllegalArgument(env, "processFrameDirect buffer too small for configured size");
+        return -1.f;
+    }
+
+    // The strided plane is read in place and the output written in the last
+    // pass; nothing is allocated per frame.
+    auto start = std::chrono::steady_clock::now();
+    ctx->graph.process(yPtr, rowStride, outPtr, ctx->mode);
+    auto end = std::chrono::steady_clock::now();
     float ms = std::chrono::duration<float, std::milli>(end - start).count();
+    ctx->lastMs.store(ms, std::memory_order_relaxed);
+    return ms;
+}
 
-    env->ReleaseByteArrayElements(grayInput, grayPtr, JNI_ABORT);
-    env->ReleaseByteArrayElements(rgbaOutput, rgbaPtr, 0);
+extern "C"
+JNIEXPORT jfloat JNICALL
+Java_com_example_edgeviewer_NativeBridge_processFrameFeatures(JNIEnv *env, jclass clazz, jlong handle,
+                                                              jobject yPlane,
+                                                              jint rowStride,
+                                                              jobject result,
+                                                              jintArray params) {
+    Context *ctx = context(env, handle);
+    if (ctx == nullptr) return -1.f;
+    auto* yPtr = static_cast<const uint8_t*>(env->GetDirectBufferAddress(yPlane));
+    auto* outPtr = static_cast<int32_t*>(env->GetDirectBufferAddress(result));
+    if (yPtr == nullptr || outPtr == nullptr) {
+        throwIllegalArgument(env, "processFrameFeatures requires direct buffers");
+        return -1.f;
+    }
+
+    const int width = ctx->graph.width();
+    const int height = ctx->graph.height();
+    jlong yNeeded = (jlong) (height - 1) * rowStride + width;
+    jlong capacity = env->GetDirectBufferCapacity(result) / static_cast<jlong>(sizeof(int32_t));
+    if (width == 0 || rowStride < width
+            || env->GetDirectBufferCapacity(yPlane) < yNeeded
+            || capacity < edge::FeatureExtractor::HEADER_INTS) {
+        throwIllegalArgument(env, "processFrameFeatures buffer too small for configured size");
+        return -1.f;
+    }
+    if (env->GetArrayLength(params) < PARAM_COUNT) {
+        throwIllegalArgument(env, "processFrameFeatures needs 6 parameters");
+        return -1.f;
+    }
+    jint values[PARAM_COUNT];
+    env->GetIntArrayRegion(params, 0, PARAM_COUNT, values);
+    edge::FeatureExtractor::Params p;
+    p.flags = values[PARAM_FLAGS];
+    p.minContourPixels = values[PARAM_MIN_CONTOUR_PIXELS];
+    p.houghThreshold = values[PARAM_HOUGH_THRESHOLD];
+    p.minSegmentLength = values[PARAM_MIN_SEGMENT_LENGTH];
+    p.maxSegmentGap = values[PARAM_MAX_SEGMENT_GAP];
+    p.maxLines = values[PARAM_MAX_LINES];
 
+    // The graph's mask stays in the context; only the features reach the
+    // caller's buffer
+    auto start = std::chrono::steady_clock::now();
+    ctx->graph.process(yPtr, rowStride, ctx->mask.data(), edge::OutputMode::Mask);
+    ctx->features.extract(ctx->mask.data(), p, outPtr,
+                          static_cast<int>(std::min<jlong>(capacity, INT32_MAX)));
+    auto end = std::chrono::steady_clock::now();
+    float ms = std::chrono::duration<float, std::milli>(end - start).count();
+    ctx->lastMs.store(ms, std::memory_order_relaxed);
     return ms;
 }
+
+extern "C"
+JNIEXPORT void JNICALL
+Java_com_example_edgeviewer_NativeBridge_yuvToRgba(JNIEnv *env, jclass clazz, jobject yPlane,
+                                                   jint yRowStride, jobject uPlane, jobject vPlane,
+                                                   jint uvOffset, jint uvRowStride, jint uvPixelStride,
+                                                   jboolean subsampled, jint width, jint height,
+                                                   jobject out) {
+    auto* yPtr = static_cast<const uint8_t*>(env->GetDirectBufferAddress(yPlane));
+    auto* uPtr = static_cast<const uint8_t*>(env->GetDirectBufferAddress(uPlane));
+    auto* vPtr = static_cast<const uint8_t*>(env->GetDirectBufferAddress(vPlane));
+    auto* outPtr = static_cast<uint8_t*>(env->GetDirectBufferAddress(out));
+    if (yPtr == nullptr || uPtr == nullptr || vPtr == nullptr || outPtr == nullptr) {
+        throwIllegalArgument(env, "yuvToRgba requires direct buffers");
+        return;
+    }
+    if (width <= 0 || height <= 0 || yRowStride < width || uvPixelStride < 1 || uvOffset < 0) {
+        throwIllegalArgument(env, "yuvToRgba invalid size or layout");
+        return;
+    }
+
+    // Like the Y plane, the chroma planes end at their last sample
+    const int uvWidth = subsampled ? (width + 1) / 2 : width;
+    const int uvHeight = subsampled ? (height + 1) / 2 : height;
+    jlong yNeeded = (jlong) (height - 1) * yRowStride + width;
+    jlong uvNeeded = uvOffset + (jlong) (uvHeight - 1) * uvRowStride + (jlong) (uvWidth - 1) * uvPixelStride + 1;
+    if (uvRowStride < (jlong) (uvWidth - 1) * uvPixelStride + 1
+            || env->GetDirectBufferCapacity(yPlane) < yNeeded
+            || env->GetDirectBufferCapacity(uPlane) < uvNeeded
+            || env->GetDirectBufferCapacity(vPlane) < uvNeeded
+            || env->GetDirectBufferCapacity(out) < (jlong) width * height * 4) {
+        throwIllegalArgument(env, "yuvToRgba buffer too small for the given size");
+        return;
+    }
+    edge::yuvToRgba(yPtr, yRowStride, uPtr + uvOffset, vPtr + uvOffset, uvRowStride, uvPixelStride,
+                    subsampled, width, height, outPtr);
+}
@@ -0,0 +1,27 @@
+#include "yuv_convert.h"
+
+#include <cstddef>
+
+namespace edge {
+
+void yuvToRgba(const uint8_t* y, int yRowStride, const uint8_t* u, const uint8_t* v,
+               int uvRowStride, int uvPixelStride, bool subsampled, int width, int height,
+               uint8_t* rgba, const RowKernels& kernels) {
+    for (int row = 0; row < height; row++) {
+        const uint8_t* yRow = y + static_cast<size_t>(row) * yRowStride;
+        uint8_t* out = rgba + static_cast<size_t>(row) * width * 4;
+        if (subsampled) {
+            size_t uvRow = static_cast<size_t>(row >> 1) * uvRowStride;
+            kernels.yuvToRgba(yRow, u + uvRow, v + uvRow, uvPixelStride, 0, width, out);
+        } else {
+            const uint8_t* uRow = u + static_cast<size_t>(row) * uvRowStride;
+            const uint8_t* vRow = v + static_cast<size_t>(row) * uvRowStride;
+            for (int x = 0; x < width; x++) {
+                int c = x * uvPixelStride;
+                simd::yuvPixel(yRow[x], uRow[c], vRow[c], out + 4 * x);
+            }
+        }
+    }
+}
+
+}  // namespace edge
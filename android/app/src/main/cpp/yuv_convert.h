@@ -0,0 +1,22 @@
+#pragma once
+
+#include <cstdint>
+
+#include "edge_simd.h"
+
+namespace edge {
+
+// YUV_420_888 to RGBA (full-range BT.601), one pass over the planes as the
+// camera delivers them: y and rgba rows are yRowStride and width * 4 bytes
+// apart, u and v rows uvRowStride. uvPixelStride is 1 for planar (I420 /
+// YV12) chroma and 2 for semi-planar (NV12 / NV21, u and v one byte apart in
+// the same buffer); any other value works through the scalar path.
+//
+// subsampled: chroma has one sample per 2x2 block of luma (4:2:0). Otherwise
+// there is one chroma sample per pixel, as when the luma was already taken at
+// every other pixel of every other row of the sensor frame.
+void yuvToRgba(const uint8_t* y, int yRowStride, const uint8_t* u, const uint8_t* v,
+               int uvRowStride, int uvPixelStride, bool subsampled, int width, int height,
+               uint8_t* rgba, const RowKernels& kernels = bestKernels());
+
+}  // namespace edge
@@ -0,0 +1,322 @@
+package com.example.edgeviewer;
+
+import androidx.annotation.NonNull;
+
+import android.Manifest;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.graphics.ImageFormat;
+import android.hardware.camera2.CameraAccessException;
+import android.hardware.camera2.CameraCaptureSession;
+import android.hardware.camera2.CameraCharacteristics;
+import android.hardware.camera2.CameraDevice;
+import android.hardware.camera2.CameraManager;
+import android.hardware.camera2.CaptureRequest;
+import android.media.Image;
+import android.media.ImageReader;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.Surface;
+
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * The back camera as a {@link FrameSource}: the Y plane of each YUV_420_888
+ * image, with the sensor timestamp. The release handle closes the image, and
+ * the ImageReader is only closed once every delivered image has been released,
+ * so frames still in the pipeline stay valid after {@link #stop()}.
+ */
+public class Camera2FrameSource implements FrameSource {
+
+    private static final String TAG = "EdgeViewer";
+
+    // The pipeline may hold two images (queued + being copied); acquireLatestImage
+    // needs headroom on top of that
+    private static final int MAX_IMAGES = 4;
+
+    private final Context context;
+    private final CameraManager cameraManager;
+    private final int width;
+    private final int height;
+    private final String cameraId;
+    // Sensor timestamps are on the elapsedRealtimeNanos clock, so their age can be measured
+    private final boolean realtimeTimestamps;
+
+    private Session session;
+    private volatile LatencyStats stats;
+
+    public Camera2FrameSource(Context context, int width, int height) {
+        this.context = context;
+        this.cameraManager = (CameraManager) context.getSystemService(Context.CAMERA_SERVICE);
+        this.width = width;
+        this.height = height;
+        this.cameraId = findBackCamera();
+        this.realtimeTimestamps = cameraId != null && hasRealtimeTimestamps(cameraId);
+    }
+
+    private String findBackCamera() {
+        try {
+            String[] ids = cameraManager.getCameraIdList();
+            for (String id : ids) {
+                CameraCharacteristics chars = cameraManager.getCameraCharacteristics(id);
+                Integer facing = chars.get(CameraCharacteristics.LENS_FACING);
+                if (facing != null && facing == CameraCharacteristics.LENS_FACING_BACK) {
+                    return id;
+                }
+            }
+            // fallback: first camera
+            return ids.length > 0 ? ids[0] : null;
+        } catch (CameraAccessException e) {
+            Log.e(TAG, "findBackCamera: ", e);
+            return null;
+        }
+    }
+
+    private boolean hasRealtimeTimestamps(String id) {
+        try {
+            Integer source = cameraManager.getCameraCharacteristics(id)
+                    .get(CameraCharacteristics.SENSOR_INFO_TIMESTAMP_SOURCE);
+            return source != null && source == CameraCharacteristics.SENSOR_INFO_TIMESTAMP_SOURCE_REALTIME;
+        } catch (CameraAccessException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Records the sensor stage into stats; null stops. Cameras whose
+     * timestamps are not on the realtime clock record nothing.
+     */
+    public void setStats(LatencyStats stats) {
+        this.stats = stats;
+    }
+
+    /** False if the device has no camera. */
+    public boolean isAvailable() {
+        return cameraId != null;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    /** Opens the camera; does nothing without a camera or the CAMERA permission. */
+    @Override
+    public synchronized void start(Consumer consumer) {
+        if (session != null) {
+            throw new IllegalStateException("already started");
+        }
+        if (cameraId == null) {
+            Log.e(TAG, "No camera found");
+            return;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M &&
+                context.checkSelfPermission(Manifest.permission.CAMERA) != PackageManager.PERMISSION_GRANTED) {
+            return;
+        }
+        session = new Session(consumer);
+        session.open();
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (session != null) {
+            session.stop();
+            session = null;
+        }
+    }
+
+    /** Everything belonging to one start/stop cycle, so a restart never touches images still in flight. */
+    private final class Session {
+        private final Consumer consumer;
+        // Camera callbacks and image delivery run here, never on the main looper
+        private final HandlerThread thread = new HandlerThread("CameraBackground");
+        private final Handler handler;
+        private final ImageReader reader;
+        // Never more than MAX_IMAGES images are acquired, so a handle is always free
+        private final ArrayBlockingQueue<ImageRelease> freeReleases = new ArrayBlockingQueue<>(MAX_IMAGES);
+
+        private CameraDevice device;
+        private CameraCaptureSession captureSession;
+        private volatile boolean running = true;
+        // Guarded by this
+        private int outstanding;
+        private boolean readerClosed;
+
+        Session(Consumer consumer) {
+            this.consumer = consumer;
+            thread.start();
+            handler = new Handler(thread.getLooper());
+            for (int i = 0; i < MAX_IMAGES; i++) {
+                freeReleases.add(new ImageRelease(this));
+            }
+            reader = ImageReader.newInstance(width, height, ImageFormat.YUV_420_888, MAX_IMAGES);
+            reader.setOnImageAvailableListener(r -> deliver(), handler);
+        }
+
+        void open() {
+            try {
+                cameraManager.openCamera(cameraId, new CameraDevice.StateCallback() {
+                    @Override
+                    public void onOpened(@NonNull CameraDevice camera) {
+                        if (!running) {
+                            camera.close();
+                            return;
+                        }
+                        device = camera;
+                        createCaptureSession();
+                    }
+
+                    @Override
+                    public void onDisconnected(@NonNull CameraDevice camera) {
+                        camera.close();
+                        device = null;
+                    }
+
+                    @Override
+                    public void onError(@NonNull CameraDevice camera, int error) {
+                        camera.close();
+                        device = null;
+                        Log.e(TAG, "Camera error: " + error);
+                    }
+                }, handler);
+            } catch (CameraAccessException | SecurityException e) {
+                Log.e(TAG, "startCamera: ", e);
+            }
+        }
+
+        private void createCaptureSession() {
+            try {
+                Surface surface = reader.getSurface();
+                final CaptureRequest.Builder builder =
+                        device.createCaptureRequest(CameraDevice.TEMPLATE_PREVIEW);
+                builder.addTarget(surface);
+
+                device.createCaptureSession(
+                        Arrays.asList(surface),
+                        new CameraCaptureSession.StateCallback() {
+                            @Override
+                            public void onConfigured(@NonNull CameraCaptureSession s) {
+                                captureSession = s;
+                                try {
+                                    builder.set(CaptureRequest.CONTROL_AF_MODE,
+                                            CaptureRequest.CONTROL_AF_MODE_CONTINUOUS_PICTURE);
+                                    captureSession.setRepeatingRequest(builder.build(), null, handler);
+                                } catch (CameraAccessException | IllegalStateException e) {
+                                    Log.e(TAG, "setRepeatingRequest: ", e);
+                                }
+                            }
+
+                            @Override
+                            public void onConfigureFailed(@NonNull CameraCaptureSession s) {
+                                Log.e(TAG, "Camera capture session configuration failed");
+                            }
+                        },
+                        handler
+                );
+            } catch (CameraAccessException | IllegalStateException e) {
+                Log.e(TAG, "createCaptureSession: ", e);
+            }
+        }
+
+        // Camera thread
+        private void deliver() {
+            Image image = reader.acquireLatestImage();
+            if (image == null) return;
+            LatencyStats s = stats;
+            if (s != null && realtimeTimestamps) {
+                s.record(LatencyStats.SENSOR, SystemClock.elapsedRealtimeNanos() - image.getTimestamp());
+            }
+            ImageRelease release = running ? freeReleases.poll() : null;
+            if (release == null) {
+                image.close();
+                return;
+            }
+            synchronized (this) {
+                outstanding++;
+            }
+            release.image = image;
+            // YUV_420_888: the Y plane is the grayscale frame (pixel stride is always 1)
+            Image.Plane[] planes = image.getPlanes();
+            Image.Plane y = planes[0];
+            if (consumer instanceof ColorConsumer) {
+                Image.Plane u = planes[1];
+                ((ColorConsumer) consumer).onColorFrame(y.getBuffer(), y.getRowStride(), u.getBuffer(),
+                        planes[2].getBuffer(), u.getRowStride(), u.getPixelStride(), image.getTimestamp(), release);
+            } else {
+                consumer.onFrame(y.getBuffer(), y.getRowStride(), image.getTimestamp(), release);
+            }
+        }
+
+        void stop() {
+            running = false;
+            // Runs on the camera thread, after any delivery in progress
+            handler.post(() -> {
+                if (captureSession != null) {
+                    try {
+                        captureSession.stopRepeating();
+                        captureSession.close();
+                    } catch (CameraAccessException | IllegalStateException e) {
+                        Log.e(TAG, "stopCamera: ", e);
+                    }
+                    captureSession = null;
+                }
+                if (device != null) {
+                    device.close();
+                    device = null;
+                }
+            });
+            thread.quitSafely();
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            closeReaderIfIdle();
+        }
+
+        void released(ImageRelease release) {
+            freeReleases.offer(release);
+            synchronized (this) {
+                outstanding--;
+            }
+            closeReaderIfIdle();
+        }
+
+        private synchronized void closeReaderIfIdle() {
+            if (!running && outstanding == 0 && !readerClosed) {
+                readerClosed = true;
+                reader.close();
+            }
+        }
+    }
+
+    private static final class ImageRelease implements AutoCloseable {
+        private final Session session;
+        private Image image;
+
+        ImageRelease(Session session) {
+            this.session = session;
+        }
+
+        @Override
+        public void close() {
+            Image i = image;
+            if (i == null) {
+                return;
+            }
+            image = null;
+            i.close();
+            session.released(this);
+        }
+    }
+}
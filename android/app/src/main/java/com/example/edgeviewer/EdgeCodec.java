@@ -0,0 +1,354 @@
+package com.example.edgeviewer;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Compact encodings for binary edge masks. A mask byte counts as an edge when
+ * it is non-zero; decoded masks are 0 / 255.
+ *
+ * <ul>
+ * <li>ENCODING_RLE: alternating background / edge run lengths as unsigned
+ * LEB128 varints, starting with background (which may be 0). The runs cover
+ * the frame in row order.</li>
+ * <li>ENCODING_BITPACK: one bit per pixel in row order, least significant bit
+ * first, (pixels + 7) / 8 bytes.</li>
+ * <li>ENCODING_DELTA: RLE of the XOR against the previous frame of the same
+ * stream, i.e. alternating unchanged / changed runs. Only decodable in
+ * sequence after a keyframe (RLE or BITPACK).</li>
+ * </ul>
+ */
+public final class EdgeCodec {
+
+    public static final int ENCODING_RLE = 1;
+    public static final int ENCODING_BITPACK = 2;
+    public static final int ENCODING_DELTA = 3;
+    /** Encoder mode: whichever of the above comes out smallest. */
+    public static final int AUTO = -1;
+
+    private EdgeCodec() {
+    }
+
+    public static boolean isKeyframe(int encoding) {
+        return encoding == ENCODING_RLE || encoding == ENCODING_BITPACK;
+    }
+
+    /**
+     * Stateful encoder for one stream of equally sized masks. encode() writes
+     * into a caller-owned array and allocates nothing.
+     */
+    public static final class Encoder {
+
+        private final int pixels;
+        private final int packBytes;
+        private final long tailMask;
+        private final int keyframeInterval;
+
+        private long[] current;
+        private long[] previous;
+        private final long[] zeros;
+        private final byte[] scratch;
+        private boolean hasPrevious;
+        private int sinceKeyframe;
+        private int encoding;
+
+        /**
+         * keyframeInterval is the most frames between keyframes when delta
+         * frames are used; 0 never emits delta frames.
+         */
+        public Encoder(int width, int height, int keyframeInterval) {
+            if (width <= 0 || height <= 0) {
+                throw new IllegalArgumentException("invalid size " + width + "x" + height);
+            }
+            pixels = width * height;
+            packBytes = (pixels + 7) / 8;
+            tailMask = (pixels & 63) == 0 ? -1L : (1L << (pixels & 63)) - 1;
+            this.keyframeInterval = keyframeInterval;
+            int words = (pixels + 63) / 64;
+            current = new long[words];
+            previous = new long[words];
+            zeros = new long[words];
+            scratch = new byte[packBytes];
+        }
+
+        /** Upper bound on what encode() writes in the given mode. */
+        public int maxEncodedBytes(int mode) {
+            // Forced run lengths can take a byte per pixel plus a leading empty run
+            return mode == ENCODING_RLE || mode == ENCODING_DELTA ? pixels + 8 : packBytes;
+        }
+
+        /**
+         * Encodes the first byte of every pixel of mask (channels bytes apart)
+         * into dst at offset and returns the number of bytes written; see
+         * {@link #getEncoding()} for what was chosen. ENCODING_DELTA falls back
+         * to RLE when a keyframe is due.
+         */
+        public int encode(ByteBuffer mask, int channels, int mode, byte[] dst, int offset) {
+            pack(mask, channels);
+            boolean delta = (mode == ENCODING_DELTA || mode == AUTO) && hasPrevious
+                    && keyframeInterval > 0 && sinceKeyframe < keyframeInterval;
+
+            int size;
+            if (mode == ENCODING_BITPACK) {
+                size = writeBits(dst, offset);
+                encoding = ENCODING_BITPACK;
+            } else if (mode == AUTO) {
+                // Run lengths only win below the bit-packed size
+                encoding = ENCODING_RLE;
+                size = writeRuns(current, zeros, dst, offset, offset + packBytes) - offset;
+                if (size < 0) {
+                    size = packBytes;
+                    encoding = ENCODING_BITPACK;
+                }
+                if (delta) {
+                    int d = writeRuns(current, previous, scratch, 0, size);
+                    if (d >= 0) {
+                        System.arraycopy(scratch, 0, dst, offset, d);
+                        size = d;
+                        encoding = ENCODING_DELTA;
+                    }
+                }
+                if (encoding == ENCODING_BITPACK) {
+                    writeBits(dst, offset);
+                }
+            } else if (delta) {
+                size = writeRuns(current, previous, dst, offset, dst.length) - offset;
+                encoding = ENCODING_DELTA;
+            } else {
+                size = writeRuns(current, zeros, dst, offset, dst.length) - offset;
+                encoding = ENCODING_RLE;
+            }
+            if (size < 0) {
+                throw new IllegalArgumentException("dst too small, need " + maxEncodedBytes(mode));
+            }
+
+            sinceKeyframe = encoding == ENCODING_DELTA ? sinceKeyframe + 1 : 0;
+            long[] t = previous;
+            previous = current;
+            current = t;
+            hasPrevious = true;
+            return size;
+        }
+
+        /** Encoding used by the last encode() call. */
+        public int getEncoding() {
+            return encoding;
+        }
+
+        /** Makes the next frame a keyframe, e.g. when a new receiver joins. */
+        public void reset() {
+            hasPrevious = false;
+        }
+
+        private void pack(ByteBuffer mask, int channels) {
+            long[] words = current;
+            int i = 0;
+            if (channels == 1) {
+                // Eight pixels per load
+                boolean little = mask.order() == ByteOrder.LITTLE_ENDIAN;
+                int full = pixels & ~63;
+                for (; i < full; i += 64) {
+                    long word = 0;
+                    for (int b = 0; b < 8; b++) {
+                        word |= nonZeroBits(mask.getLong(i + 8 * b), little) << (8 * b);
+                    }
+                    words[i >>> 6] = word;
+                }
+            }
+            long word = 0;
+            for (; i < pixels; i++) {
+                if (mask.get(i * channels) != 0) {
+                    word |= 1L << (i & 63);
+                }
+                if ((i & 63) == 63) {
+                    words[i >>> 6] = word;
+                    word = 0;
+                }
+            }
+            if ((pixels & 63) != 0) {
+                words[pixels >>> 6] = word;
+            }
+        }
+
+        // One bit per non-zero byte of v, in memory order
+        private static long nonZeroBits(long v, boolean little) {
+            long high = (((v & 0x7F7F7F7F7F7F7F7FL) + 0x7F7F7F7F7F7F7F7FL) | v) & 0x8080808080808080L;
+            int bits = (int) (((high >>> 7) * 0x0102040810204080L) >>> 56);
+            return little ? bits : (Integer.reverse(bits) >>> 24);
+        }
+
+        private int writeBits(byte[] dst, int offset) {
+            long[] words = current;
+            for (int j = 0; j < packBytes; j++) {
+                dst[offset + j] = (byte) (words[j >>> 3] >>> ((j & 7) * 8));
+            }
+            return packBytes;
+        }
+
+        /**
+         * Runs of a ^ b, from the positions where the bit differs from its
+         * predecessor. Returns the end offset, or -1 if it would pass limit.
+         */
+        private int writeRuns(long[] a, long[] b, byte[] dst, int o, int limit) {
+            int last = 0;
+            long carry = 0;
+            int words = a.length;
+            for (int k = 0; k < words; k++) {
+                long d = a[k] ^ b[k];
+                long t = d ^ ((d << 1) | carry);
+                carry = d >>> 63;
+                if (k == words - 1) {
+                    t &= tailMask;
+                }
+                while (t != 0) {
+                    int p = (k << 6) + Long.numberOfTrailingZeros(t);
+                    t &= t - 1;
+                    if (o + 5 > limit) {
+                        return -1;
+                    }
+                    o = putVarint(dst, o, p - last);
+                    last = p;
+                }
+            }
+            if (o + 5 > limit) {
+                return -1;
+            }
+            return putVarint(dst, o, pixels - last);
+        }
+    }
+
+    /** Stateful decoder mirroring {@link Encoder}; feed it every frame of a stream in order. */
+    public static final class Decoder {
+
+        private final int pixels;
+        private final long[] words;
+        private boolean hasFrame;
+
+        public Decoder(int width, int height) {
+            pixels = width * height;
+            words = new long[(pixels + 63) / 64];
+        }
+
+        /**
+         * Decodes length bytes of src into out as one 0 / 255 byte per pixel.
+         * Returns false for malformed data or a delta frame without a keyframe
+         * before it; a delta frame that fails leaves the decoder waiting for
+         * the next keyframe.
+         */
+        public boolean decode(int encoding, byte[] src, int offset, int length, ByteBuffer out) {
+            boolean ok;
+            switch (encoding) {
+                case ENCODING_RLE:
+                    Arrays.fill(words, 0);
+                    ok = readRuns(src, offset, offset + length);
+                    break;
+                case ENCODING_DELTA:
+                    ok = hasFrame && readRuns(src, offset, offset + length);
+                    break;
+                case ENCODING_BITPACK:
+                    ok = readBits(src, offset, length);
+                    break;
+                default:
+                    ok = false;
+            }
+            hasFrame = ok;
+            if (ok) {
+                expand(out);
+            }
+            return ok;
+        }
+
+        // Toggles every odd run, which both builds a keyframe and applies a delta
+        private boolean readRuns(byte[] src, int o, int end) {
+            int pixel = 0;
+            boolean odd = false;
+            while (o < end) {
+                int run = 0;
+                int shift = 0;
+                int b;
+                do {
+                    if (o >= end || shift > 28) {
+                        return false;
+                    }
+                    b = src[o++];
+                    run |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while ((b & 0x80) != 0);
+                // Five bytes can carry bits past an int
+                if (run < 0 || run > pixels - pixel) {
+                    return false;
+                }
+                if (odd) {
+                    xorRange(pixel, pixel + run);
+                }
+                pixel += run;
+                odd = !odd;
+            }
+            return pixel == pixels;
+        }
+
+        private void xorRange(int from, int to) {
+            if (from >= to) {
+                return;
+            }
+            int a = from >>> 6;
+            int b = (to - 1) >>> 6;
+            long first = -1L << (from & 63);
+            long last = -1L >>> (63 - ((to - 1) & 63));
+            if (a == b) {
+                words[a] ^= first & last;
+                return;
+            }
+            words[a] ^= first;
+            for (int k = a + 1; k < b; k++) {
+                words[k] = ~words[k];
+            }
+            words[b] ^= last;
+        }
+
+        private boolean readBits(byte[] src, int offset, int length) {
+            if (length != (pixels + 7) / 8) {
+                return false;
+            }
+            Arrays.fill(words, 0);
+            for (int j = 0; j < length; j++) {
+                words[j >>> 3] |= (src[offset + j] & 0xFFL) << ((j & 7) * 8);
+            }
+            if ((pixels & 63) != 0) {
+                words[words.length - 1] &= (1L << (pixels & 63)) - 1;
+            }
+            return true;
+        }
+
+        private void expand(ByteBuffer out) {
+            // Eight pixels per store
+            boolean little = out.order() == ByteOrder.LITTLE_ENDIAN;
+            int full = pixels & ~7;
+            int i = 0;
+            for (; i < full; i += 8) {
+                long bytes = spreadBits((int) (words[i >>> 6] >>> (i & 63)) & 0xFF);
+                out.putLong(i, little ? bytes : Long.reverseBytes(bytes));
+            }
+            for (; i < pixels; i++) {
+                out.put(i, (words[i >>> 6] & (1L << (i & 63))) != 0 ? (byte) 255 : 0);
+            }
+        }
+
+        // Bit k of bits becomes 0xFF or 0 in byte k
+        private static long spreadBits(int bits) {
+            long x = (bits * 0x0101010101010101L) & 0x8040201008040201L;
+            long high = (((x & 0x7F7F7F7F7F7F7F7FL) + 0x7F7F7F7F7F7F7F7FL) | x) & 0x8080808080808080L;
+            return (high >>> 7) * 0xFF;
+        }
+    }
+
+    private static int putVarint(byte[] b, int o, int value) {
+        while ((value & ~0x7F) != 0) {
+            b[o++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        b[o++] = (byte) value;
+        return o;
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.edgeviewer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Grayscale in, edge image out. Implementations keep all scratch memory from
+ * {@link #init} so {@link #process} does not allocate.
+ */
+public interface EdgeDetector {
+
+    /** outputChannels is 1 for an 8-bit edge mask or 4 for RGBA. */
+    void init(int width, int height, int outputChannels);
+
+    /**
+     * Reads a width x height window of gray (rowStride bytes per row) and writes
+     * width * height * outputChannels bytes to out. Returns processing time in ms.
+     */
+    float process(ByteBuffer gray, int rowStride, ByteBuffer out);
+
+    /**
+     * How far, in pixels, an output pixel depends on the input around it
+     * (e.g. 1 for a 3x3 Sobel). Output within this distance of the frame edge
+     * differs from what a larger frame would give.
+     */
+    int getBorder();
+
+    /** Frees worker threads and native resources; init may be called again afterwards. */
+    void release();
+}
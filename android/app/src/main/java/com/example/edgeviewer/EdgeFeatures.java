@@ -0,0 +1,185 @@
+package com.example.edgeviewer;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+/**
+ * Reusable result of {@link NativeEdgeDetector#extractFeatures}: edge pixel
+ * coordinates, contours (8-connected chains of edge pixels in order) and Hough
+ * line segments of one frame, in a direct int buffer allocated once. The
+ * native side writes it in place and the getters read it in place, so a frame
+ * costs neither an image nor any Java allocation, and the output is a few
+ * kilobytes instead of width * height * 4 bytes.
+ *
+ * Sections that do not fit the capacity are cut short ({@link #isTruncated});
+ * turn off the ones not needed with {@link #setFlags}. Not thread-safe: read a
+ * result on the thread that produced it, or hand the object over as a whole.
+ */
+public class EdgeFeatures {
+
+    // What to extract, for setFlags
+    public static final int PIXELS = 1;
+    public static final int CONTOURS = 2;
+    public static final int SEGMENTS = 4;
+    public static final int ALL = PIXELS | CONTOURS | SEGMENTS;
+
+    // Slots of the params array passed to NativeBridge.processFrameFeatures
+    static final int PARAM_FLAGS = 0;
+    static final int PARAM_MIN_CONTOUR_PIXELS = 1;
+    static final int PARAM_HOUGH_THRESHOLD = 2;
+    static final int PARAM_MIN_SEGMENT_LENGTH = 3;
+    static final int PARAM_MAX_SEGMENT_GAP = 4;
+    static final int PARAM_MAX_LINES = 5;
+    static final int PARAM_COUNT = 6;
+
+    // Result header, see feature_extract.h
+    private static final int PIXEL_COUNT = 0;
+    private static final int PIXELS_OFFSET = 1;
+    private static final int CONTOUR_COUNT = 2;
+    private static final int CONTOURS_OFFSET = 3;
+    private static final int SEGMENT_COUNT = 4;
+    private static final int SEGMENTS_OFFSET = 5;
+    private static final int TRUNCATED = 6;
+    private static final int USED = 7;
+    static final int HEADER_INTS = 8;
+
+    private final ByteBuffer buffer;
+    private final IntBuffer ints;
+    private final int[] params = {ALL, 8, 60, 30, 4, 64};
+
+    /**
+     * capacityInts bounds the whole result. Each edge pixel takes one int per
+     * section it appears in, each contour two more and each segment three; a
+     * tenth of the frame's pixels is plenty for typical scenes.
+     */
+    public EdgeFeatures(int capacityInts) {
+        if (capacityInts < HEADER_INTS) {
+            throw new IllegalArgumentException("capacity must be at least " + HEADER_INTS + " ints");
+        }
+        buffer = ByteBuffer.allocateDirect(capacityInts * 4).order(ByteOrder.nativeOrder());
+        ints = buffer.asIntBuffer();
+    }
+
+    /** Sizes the buffer for frames of width x height, see {@link #EdgeFeatures(int)}. */
+    public static EdgeFeatures forFrame(int width, int height) {
+        return new EdgeFeatures(HEADER_INTS + width * height / 10);
+    }
+
+    /** Any of PIXELS, CONTOURS and SEGMENTS; default ALL. */
+    public EdgeFeatures setFlags(int flags) {
+        params[PARAM_FLAGS] = flags;
+        return this;
+    }
+
+    /** Contours shorter than this are dropped (default 8). */
+    public EdgeFeatures setMinContourPixels(int pixels) {
+        params[PARAM_MIN_CONTOUR_PIXELS] = pixels;
+        return this;
+    }
+
+    /**
+     * Hough transform: a line needs threshold edge pixels on it (default 60),
+     * only the strongest maxLines are considered (default 64, at most 256),
+     * and each yields segments of at least minLength pixels (default 30)
+     * that bridge gaps of up to maxGap pixels (default 4).
+     */
+    public EdgeFeatures setHough(int threshold, int maxLines, int minLength, int maxGap) {
+        params[PARAM_HOUGH_THRESHOLD] = threshold;
+        params[PARAM_MAX_LINES] = maxLines;
+        params[PARAM_MIN_SEGMENT_LENGTH] = minLength;
+        params[PARAM_MAX_SEGMENT_GAP] = maxGap;
+        return this;
+    }
+
+    public int getCapacity() {
+        return ints.capacity();
+    }
+
+    /** Ints the last result occupies. */
+    public int getUsed() {
+        return ints.get(USED);
+    }
+
+    /** True if the last result did not fit and some section was cut short. */
+    public boolean isTruncated() {
+        return ints.get(TRUNCATED) != 0;
+    }
+
+    public int getPixelCount() {
+        return ints.get(PIXEL_COUNT);
+    }
+
+    /** Edge pixels in raster order. */
+    public int getPixelX(int i) {
+        return x(ints.get(ints.get(PIXELS_OFFSET) + i));
+    }
+
+    public int getPixelY(int i) {
+        return y(ints.get(ints.get(PIXELS_OFFSET) + i));
+    }
+
+    public int getContourCount() {
+        return ints.get(CONTOUR_COUNT);
+    }
+
+    public int getContourLength(int contour) {
+        return ints.get(ints.get(CONTOURS_OFFSET) + 2 * contour + 1);
+    }
+
+    /** Point i of contour, in order along the chain. */
+    public int getContourX(int contour, int i) {
+        return x(ints.get(ints.get(ints.get(CONTOURS_OFFSET) + 2 * contour) + i));
+    }
+
+    public int getContourY(int contour, int i) {
+        return y(ints.get(ints.get(ints.get(CONTOURS_OFFSET) + 2 * contour) + i));
+    }
+
+    /** Segments come strongest line first. */
+    public int getSegmentCount() {
+        return ints.get(SEGMENT_COUNT);
+    }
+
+    public int getSegmentX0(int segment) {
+        return x(ints.get(segment(segment)));
+    }
+
+    public int getSegmentY0(int segment) {
+        return y(ints.get(segment(segment)));
+    }
+
+    public int getSegmentX1(int segment) {
+        return x(ints.get(segment(segment) + 1));
+    }
+
+    public int getSegmentY1(int segment) {
+        return y(ints.get(segment(segment) + 1));
+    }
+
+    /** Edge pixels that voted for the segment's line. */
+    public int getSegmentVotes(int segment) {
+        return ints.get(segment(segment) + 2);
+    }
+
+    private int segment(int segment) {
+        return ints.get(SEGMENTS_OFFSET) + 3 * segment;
+    }
+
+    // Points are packed as y << 16 | x
+    private static int x(int point) {
+        return point & 0xffff;
+    }
+
+    private static int y(int point) {
+        return point >>> 16;
+    }
+
+    ByteBuffer buffer() {
+        return buffer;
+    }
+
+    int[] params() {
+        return params;
+    }
+}
@@ -0,0 +1,217 @@
+package com.example.edgeviewer;
+
+/**
+ * Row-range image kernels behind {@link JavaEdgeDetector}. Every kernel writes
+ * rows [y0, y1) only and reads whatever neighbours it needs from full-frame
+ * inputs, so a frame can be split into bands as long as each phase finishes
+ * before the next one starts.
+ *
+ * Gradients follow cv::Canny: 3x3 Sobel, L1 magnitude and the same
+ * tan(22.5)-based direction quantisation, with replicated borders
+ * (cv::Canny runs its Sobel with BORDER_REPLICATE). The blur reflects its
+ * borders (reflect-101) like cv::GaussianBlur.
+ */
+final class EdgeKernels {
+
+    // Direction sectors for non-max suppression
+    static final byte DIR_0 = 0;    // gradient along x: compare left/right
+    static final byte DIR_45 = 1;   // compare top-right/bottom-left
+    static final byte DIR_90 = 2;   // gradient along y: compare up/down
+    static final byte DIR_135 = 3;  // compare top-left/bottom-right
+
+    // Edge map values
+    static final byte NONE = 0;
+    static final byte WEAK = 1;
+    static final byte STRONG = 2;
+
+    // tan(22.5 deg) in Q15, as used by OpenCV
+    private static final int TG22 = 13573;
+
+    private EdgeKernels() {
+    }
+
+    static int reflect(int i, int n) {
+        if (n == 1) return 0;
+        // More than one reflection only for frames smaller than the blur
+        while (i < 0 || i >= n) {
+            i = i < 0 ? -i : 2 * n - i - 2;
+        }
+        return i;
+    }
+
+    static int replicate(int i, int n) {
+        return i < 0 ? 0 : (i >= n ? n - 1 : i);
+    }
+
+    /** Horizontal half of a separable 5x5 [1 4 6 4 1] Gaussian into tmp. */
+    static void blurRowsH(byte[] src, int[] tmp, int width, int height, int y0, int y1) {
+        for (int y = y0; y < y1; y++) {
+            int row = y * width;
+            for (int x = 0; x < width; x++) {
+                int a = src[row + reflect(x - 2, width)] & 0xFF;
+                int b = src[row + reflect(x - 1, width)] & 0xFF;
+                int c = src[row + x] & 0xFF;
+                int d = src[row + reflect(x + 1, width)] & 0xFF;
+                int e = src[row + reflect(x + 2, width)] & 0xFF;
+                tmp[row + x] = a + 4 * b + 6 * c + 4 * d + e;
+            }
+        }
+    }
+
+    /** Vertical half of the Gaussian; reads tmp rows y0-2 .. y1+1. */
+    static void blurRowsV(int[] tmp, byte[] dst, int width, int height, int y0, int y1) {
+        for (int y = y0; y < y1; y++) {
+            int ra = reflect(y - 2, height) * width;
+            int rb = reflect(y - 1, height) * width;
+            int rc = y * width;
+            int rd = reflect(y + 1, height) * width;
+            int re = reflect(y + 2, height) * width;
+            for (int x = 0; x < width; x++) {
+                int sum = tmp[ra + x] + 4 * tmp[rb + x] + 6 * tmp[rc + x] + 4 * tmp[rd + x] + tmp[re + x];
+                dst[rc + x] = (byte) ((sum + 128) >> 8);
+            }
+        }
+    }
+
+    /** 3x3 Sobel: L1 magnitude into mag and a direction sector into dir. */
+    static void sobelRows(byte[] src, int[] mag, byte[] dir, int width, int height, int y0, int y1) {
+        for (int y = y0; y < y1; y++) {
+            int up = replicate(y - 1, height) * width;
+            int row = y * width;
+            int down = replicate(y + 1, height) * width;
+            for (int x = 0; x < width; x++) {
+                int xl = replicate(x - 1, width);
+                int xr = replicate(x + 1, width);
+
+                int tl = src[up + xl] & 0xFF, t = src[up + x] & 0xFF, tr = src[up + xr] & 0xFF;
+                int l = src[row + xl] & 0xFF, r = src[row + xr] & 0xFF;
+                int bl = src[down + xl] & 0xFF, b = src[down + x] & 0xFF, br = src[down + xr] & 0xFF;
+
+                int dx = (tr + 2 * r + br) - (tl + 2 * l + bl);
+                int dy = (bl + 2 * b + br) - (tl + 2 * t + tr);
+                int ax = dx < 0 ? -dx : dx;
+                int ay = dy < 0 ? -dy : dy;
+
+                mag[row + x] = ax + ay;
+
+                int tg22x = ax * TG22;
+                int yShifted = ay << 15;
+                byte d;
+                if (yShifted < tg22x) {
+                    d = DIR_0;
+                } else if (yShifted > tg22x + (ax << 16)) {
+                    d = DIR_90;
+                } else {
+                    d = (dx ^ dy) < 0 ? DIR_45 : DIR_135;
+                }
+                dir[row + x] = d;
+            }
+        }
+    }
+
+    /**
+     * Non-max suppression plus double threshold. Neighbours outside the frame
+     * count as zero; ties resolve like OpenCV (axis directions must beat the
+     * preceding neighbour and not lose to the following one, diagonals must
+     * beat both).
+     */
+    static void suppressRows(int[] mag, byte[] dir, byte[] map, int width, int height,
+                             int low, int high, int y0, int y1) {
+        for (int y = y0; y < y1; y++) {
+            int row = y * width;
+            for (int x = 0; x < width; x++) {
+                int m = mag[row + x];
+                if (m <= low) {
+                    map[row + x] = NONE;
+                    continue;
+                }
+                boolean peak;
+                switch (dir[row + x]) {
+                    case DIR_0:
+                        peak = m > at(mag, width, height, x - 1, y)
+                                && m >= at(mag, width, height, x + 1, y);
+                        break;
+                    case DIR_90:
+                        peak = m > at(mag, width, height, x, y - 1)
+                                && m >= at(mag, width, height, x, y + 1);
+                        break;
+                    case DIR_45:
+                        peak = m > at(mag, width, height, x + 1, y - 1)
+                                && m > at(mag, width, height, x - 1, y + 1);
+                        break;
+                    default:
+                        peak = m > at(mag, width, height, x - 1, y - 1)
+                                && m > at(mag, width, height, x + 1, y + 1);
+                        break;
+                }
+                if (peak) {
+                    map[row + x] = m > high ? STRONG : WEAK;
+                } else {
+                    map[row + x] = NONE;
+                }
+            }
+        }
+    }
+
+    private static int at(int[] mag, int width, int height, int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height) return 0;
+        return mag[y * width + x];
+    }
+
+    /**
+     * Promotes weak pixels 8-connected to strong ones. Sequential: connectivity
+     * is global. stack must hold width * height entries.
+     */
+    static void hysteresis(byte[] map, int[] stack, int width, int height) {
+        int top = 0;
+        int size = width * height;
+        for (int i = 0; i < size; i++) {
+            if (map[i] == STRONG) {
+                stack[top++] = i;
+            }
+        }
+        while (top > 0) {
+            int i = stack[--top];
+            int x = i % width;
+            int y = i / width;
+            for (int ny = y - 1; ny <= y + 1; ny++) {
+                if (ny < 0 || ny >= height) continue;
+                for (int nx = x - 1; nx <= x + 1; nx++) {
+                    if (nx < 0 || nx >= width) continue;
+                    int n = ny * width + nx;
+                    if (map[n] == WEAK) {
+                        map[n] = STRONG;
+                        stack[top++] = n;
+                    }
+                }
+            }
+        }
+    }
+
+    /** Strong map pixels become white (255), everything else black; RGBA is opaque. */
+    static void mapToOutputRows(byte[] map, byte[] out, int channels, int width, int y0, int y1) {
+        for (int i = y0 * width, end = y1 * width; i < end; i++) {
+            writePixel(out, channels, i, map[i] == STRONG ? (byte) 255 : 0);
+        }
+    }
+
+    /** Gradient magnitude clamped to 8 bits. */
+    static void magnitudeToOutputRows(int[] mag, byte[] out, int channels, int width, int y0, int y1) {
+        for (int i = y0 * width, end = y1 * width; i < end; i++) {
+            int m = mag[i];
+            writePixel(out, channels, i, (byte) (m > 255 ? 255 : m));
+        }
+    }
+
+    private static void writePixel(byte[] out, int channels, int i, byte v) {
+        if (channels == 1) {
+            out[i] = v;
+            return;
+        }
+        int o = i * 4;
+        out[o] = v;
+        out[o + 1] = v;
+        out[o + 2] = v;
+        out[o + 3] = (byte) 255;
+    }
+}
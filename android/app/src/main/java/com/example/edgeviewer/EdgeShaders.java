@@ -0,0 +1,93 @@
+package com.example.edgeviewer;
+
+/**
+ * GLSL for the GPU edge mode, kept free of Android classes so the same
+ * sources can be compiled by a desktop GL harness. {@link GpuEdgeReference}
+ * mirrors this math on the CPU.
+ *
+ * Pass 1 renders Sobel gradients of the luminance texture into an RGBA8
+ * target: r = L1 magnitude / 8, gb = gradient direction (L1-normalised,
+ * mapped to 0..1). Pass 2 runs non-max suppression along the quantised
+ * direction and a single threshold on the magnitude. As in Canny, a pixel
+ * must beat the neighbour behind it and match the one ahead, so a step edge
+ * yields a one-pixel line rather than two.
+ */
+public final class EdgeShaders {
+
+    private EdgeShaders() {
+    }
+
+    public static final String VERTEX =
+            "attribute vec4 aPosition;" +
+            "attribute vec2 aTexCoord;" +
+            "varying vec2 vTexCoord;" +
+            "void main() {" +
+            "  gl_Position = aPosition;" +
+            "  vTexCoord = aTexCoord;" +
+            "}";
+
+    // A GL_LUMINANCE texture samples as (L, L, L, 1), so this expands an 8-bit
+    // edge mask or raw frame to gray RGBA and passes RGBA frames through
+    public static final String DISPLAY_FRAGMENT =
+            "precision mediump float;" +
+            "varying vec2 vTexCoord;" +
+            "uniform sampler2D uTexture;" +
+            "void main() {" +
+            "  gl_FragColor = texture2D(uTexture, vTexCoord);" +
+            "}";
+
+    // Texture coordinates and texel offsets need highp: at camera widths
+    // mediump (fp16) cannot resolve one texel, so neighbour taps would land
+    // on the wrong texel or on the centre one
+    private static final String HIGHP =
+            "#ifdef GL_FRAGMENT_PRECISION_HIGH\n" +
+            "precision highp float;\n" +
+            "#else\n" +
+            "precision mediump float;\n" +
+            "#endif\n";
+
+    // The source texture must be sampled GL_NEAREST; see FrameTexture#bind(int)
+    public static final String SOBEL_FRAGMENT =
+            HIGHP +
+            "varying vec2 vTexCoord;" +
+            "uniform sampler2D uTexture;" +
+            "uniform vec2 uTexelSize;" +
+            "float lum(float dx, float dy) {" +
+            "  return texture2D(uTexture, vTexCoord + vec2(dx, dy) * uTexelSize).r;" +
+            "}" +
+            "void main() {" +
+            "  float tl = lum(-1.0, -1.0); float t = lum(0.0, -1.0); float tr = lum(1.0, -1.0);" +
+            "  float l = lum(-1.0, 0.0); float r = lum(1.0, 0.0);" +
+            "  float bl = lum(-1.0, 1.0); float b = lum(0.0, 1.0); float br = lum(1.0, 1.0);" +
+            "  float gx = (tr + 2.0 * r + br) - (tl + 2.0 * l + bl);" +
+            "  float gy = (bl + 2.0 * b + br) - (tl + 2.0 * t + tr);" +
+            "  float mag = abs(gx) + abs(gy);" +
+            "  vec2 dir = mag > 0.0 ? vec2(gx, gy) / mag : vec2(0.0);" +
+            "  gl_FragColor = vec4(mag / 8.0, dir * 0.5 + 0.5, 1.0);" +
+            "}";
+
+    public static final String SUPPRESS_FRAGMENT =
+            HIGHP +
+            "varying vec2 vTexCoord;" +
+            "uniform sampler2D uGradient;" +
+            "uniform vec2 uTexelSize;" +
+            "uniform float uThreshold;" +
+            "void main() {" +
+            "  vec4 g = texture2D(uGradient, vTexCoord);" +
+            "  vec2 dir = g.gb * 2.0 - 1.0;" +
+            "  vec2 a = abs(dir);" +
+            "  vec2 stepDir;" +
+            "  if (a.y < 0.41421356 * a.x) stepDir = vec2(1.0, 0.0);" +
+            "  else if (a.y > 2.41421356 * a.x) stepDir = vec2(0.0, 1.0);" +
+            "  else stepDir = vec2(sign(dir.x), sign(dir.y));" +
+            "  float n1 = texture2D(uGradient, vTexCoord + stepDir * uTexelSize).r;" +
+            "  float n2 = texture2D(uGradient, vTexCoord - stepDir * uTexelSize).r;" +
+            "  float edge = (g.r > uThreshold && g.r >= n1 && g.r > n2) ? 1.0 : 0.0;" +
+            "  gl_FragColor = vec4(edge, edge, edge, 1.0);" +
+            "}";
+
+    /** Converts a threshold in CPU Sobel units (L1 of 8-bit gradients) to uThreshold. */
+    public static float threshold(int sobelL1) {
+        return sobelL1 / (255f * 8f);
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.edgeviewer;
+
+import javax.microedition.khronos.egl.EGL10;
+import javax.microedition.khronos.egl.EGL11;
+import javax.microedition.khronos.egl.EGLConfig;
+import javax.microedition.khronos.egl.EGLContext;
+import javax.microedition.khronos.egl.EGLDisplay;
+import javax.microedition.khronos.egl.EGLSurface;
+
+public class Egl10Api implements EglApi {
+
+    private static final int EGL_CONTEXT_CLIENT_VERSION = 0x3098;
+    private static final int EGL_OPENGL_ES2_BIT = 4;
+
+    private final EGL10 egl = (EGL10) EGLContext.getEGL();
+    private EGLDisplay display = EGL10.EGL_NO_DISPLAY;
+    private EGLConfig config;
+    private EGLContext context = EGL10.EGL_NO_CONTEXT;
+
+    @Override
+    public boolean createContext() {
+        display = egl.eglGetDisplay(EGL10.EGL_DEFAULT_DISPLAY);
+        int[] version = new int[2];
+        if (!egl.eglInitialize(display, version)) {
+            return false;
+        }
+
+        // Window and pbuffer from the same config, so the context can move between them
+        int[] configAttribs = {
+                EGL10.EGL_RENDERABLE_TYPE, EGL_OPENGL_ES2_BIT,
+                EGL10.EGL_SURFACE_TYPE, EGL10.EGL_WINDOW_BIT | EGL10.EGL_PBUFFER_BIT,
+                EGL10.EGL_RED_SIZE, 8,
+                EGL10.EGL_GREEN_SIZE, 8,
+                EGL10.EGL_BLUE_SIZE, 8,
+                EGL10.EGL_ALPHA_SIZE, 8,
+                EGL10.EGL_NONE
+        };
+        EGLConfig[] configs = new EGLConfig[1];
+        int[] numConfig = new int[1];
+        if (!egl.eglChooseConfig(display, configAttribs, configs, 1, numConfig) || numConfig[0] == 0) {
+            return false;
+        }
+        config = configs[0];
+
+        int[] contextAttribs = {
+                EGL_CONTEXT_CLIENT_VERSION, 2,
+                EGL10.EGL_NONE
+        };
+        context = egl.eglCreateContext(display, config, EGL10.EGL_NO_CONTEXT, contextAttribs);
+        return context != null && context != EGL10.EGL_NO_CONTEXT;
+    }
+
+    @Override
+    public Object createWindowSurface(Object window) {
+        EGLSurface surface = egl.eglCreateWindowSurface(display, config, window, null);
+        return surface == EGL10.EGL_NO_SURFACE ? null : surface;
+    }
+
+    @Override
+    public Object createPbufferSurface(int width, int height) {
+        int[] attribs = {
+                EGL10.EGL_WIDTH, width,
+                EGL10.EGL_HEIGHT, height,
+                EGL10.EGL_NONE
+        };
+        EGLSurface surface = egl.eglCreatePbufferSurface(display, config, attribs);
+        return surface == EGL10.EGL_NO_SURFACE ? null : surface;
+    }
+
+    @Override
+    public boolean makeCurrent(Object surface) {
+        EGLSurface s = (EGLSurface) surface;
+        return egl.eglMakeCurrent(display, s, s, context);
+    }
+
+    @Override
+    public int swapBuffers(Object surface) {
+        if (egl.eglSwapBuffers(display, (EGLSurface) surface)) {
+            return SWAP_OK;
+        }
+        return egl.eglGetError() == EGL11.EGL_CONTEXT_LOST ? SWAP_CONTEXT_LOST : SWAP_SURFACE_LOST;
+    }
+
+    @Override
+    public void destroySurface(Object surface) {
+        egl.eglDestroySurface(display, (EGLSurface) surface);
+    }
+
+    @Override
+    public void destroyContext() {
+        egl.eglMakeCurrent(display, EGL10.EGL_NO_SURFACE, EGL10.EGL_NO_SURFACE, EGL10.EGL_NO_CONTEXT);
+        if (context != EGL10.EGL_NO_CONTEXT) {
+            egl.eglDestroyContext(display, context);
+            context = EGL10.EGL_NO_CONTEXT;
+        }
+        egl.eglTerminate(display);
+        display = EGL10.EGL_NO_DISPLAY;
+    }
+}
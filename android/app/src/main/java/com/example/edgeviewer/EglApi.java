@@ -0,0 +1,36 @@
+package com.example.edgeviewer;
+
+/**
+ * The EGL calls {@link RenderThread} needs, so the context and surface
+ * lifecycle can run against a desktop EGL with pbuffers or a stand-in as well
+ * as Android's EGL10 ({@link Egl10Api}). Surfaces are opaque handles. Every
+ * call comes from the render thread.
+ */
+public interface EglApi {
+
+    int SWAP_OK = 0;
+    // The window went away under the thread; the context and its objects are fine
+    int SWAP_SURFACE_LOST = 1;
+    // The context is gone (e.g. after a power event) and must be recreated
+    int SWAP_CONTEXT_LOST = 2;
+
+    /** Display, config and a GLES 2 context; true on success. */
+    boolean createContext();
+
+    /** window is whatever the platform draws to (a SurfaceHolder on Android); null on failure. */
+    Object createWindowSurface(Object window);
+
+    /** An offscreen surface, null on failure. */
+    Object createPbufferSurface(int width, int height);
+
+    /** Makes the context current on surface. */
+    boolean makeCurrent(Object surface);
+
+    /** One of the SWAP_* results. */
+    int swapBuffers(Object surface);
+
+    void destroySurface(Object surface);
+
+    /** Releases the context and the display; surfaces must be destroyed first. */
+    void destroyContext();
+}
@@ -0,0 +1,103 @@
+package com.example.edgeviewer;
+
+/**
+ * Stage chain for the native engine, built once and applied with
+ * {@link NativeEdgeDetector#setFilterGraph}, e.g.
+ * {@code new FilterGraph().blur(5).canny(40, 120).dilate(1).overlay()}.
+ * Each stage reads the previous stage's 8-bit image; the first reads the
+ * camera frame.
+ */
+public class FilterGraph {
+
+    public static final int MAX_STAGES = 16;
+
+    private final int[] stages = new int[3 * MAX_STAGES];
+    private int count;
+
+    /** Gaussian blur with a 3x3 or 5x5 kernel. */
+    public FilterGraph blur(int kernelSize) {
+        return add(NativeBridge.STAGE_BLUR, kernelSize, 0);
+    }
+
+    /** L1 gradient magnitude, saturated to 255. */
+    public FilterGraph sobel() {
+        return add(NativeBridge.STAGE_SOBEL, 0, 0);
+    }
+
+    /** Canny edge mask with hysteresis thresholds on the L1 gradient magnitude. */
+    public FilterGraph canny(int low, int high) {
+        return add(NativeBridge.STAGE_CANNY, low, high);
+    }
+
+    /** Maximum over a (2 * radius + 1) square, radius 1 to 7. */
+    public FilterGraph dilate(int radius) {
+        return add(NativeBridge.STAGE_DILATE, radius, 0);
+    }
+
+    /** Minimum over a (2 * radius + 1) square, radius 1 to 7. */
+    public FilterGraph erode(int radius) {
+        return add(NativeBridge.STAGE_ERODE, radius, 0);
+    }
+
+    /** 255 above level, 0 otherwise; fused into a Sobel right before it. */
+    public FilterGraph threshold(int level) {
+        return add(NativeBridge.STAGE_THRESHOLD, level, 0);
+    }
+
+    /** Last stage only: non-zero pixels in green over the camera image when the output is RGBA. */
+    public FilterGraph overlay() {
+        return add(NativeBridge.STAGE_OVERLAY, 0, 0);
+    }
+
+    private FilterGraph add(int op, int p0, int p1) {
+        if (count == MAX_STAGES) {
+            throw new IllegalStateException("at most " + MAX_STAGES + " stages");
+        }
+        stages[3 * count] = op;
+        stages[3 * count + 1] = p0;
+        stages[3 * count + 2] = p1;
+        count++;
+        return this;
+    }
+
+    /** Pixels of context the whole chain reads around each output pixel, the stages' reaches summed. */
+    public int getBorder() {
+        int border = 0;
+        for (int i = 0; i < count; i++) {
+            int p0 = stages[3 * i + 1];
+            switch (stages[3 * i]) {
+                case NativeBridge.STAGE_BLUR: border += p0 / 2; break;
+                case NativeBridge.STAGE_SOBEL: border += 1; break;
+                // Sobel, then suppression against the neighbours
+                case NativeBridge.STAGE_CANNY: border += 2; break;
+                case NativeBridge.STAGE_DILATE:
+                case NativeBridge.STAGE_ERODE: border += p0; break;
+                default: break;
+            }
+        }
+        return border;
+    }
+
+    public int getStageCount() {
+        return count;
+    }
+
+    public String getStageName(int stage) {
+        switch (stages[3 * stage]) {
+            case NativeBridge.STAGE_BLUR: return "blur";
+            case NativeBridge.STAGE_SOBEL: return "sobel";
+            case NativeBridge.STAGE_CANNY: return "canny";
+            case NativeBridge.STAGE_DILATE: return "dilate";
+            case NativeBridge.STAGE_ERODE: return "erode";
+            case NativeBridge.STAGE_THRESHOLD: return "threshold";
+            default: return "overlay";
+        }
+    }
+
+    /** (op, p0, p1) triples, as taken by {@link NativeBridge#setFilterGraph}. */
+    int[] toArray() {
+        int[] copy = new int[3 * count];
+        System.arraycopy(stages, 0, copy, 0, copy.length);
+        return copy;
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.edgeviewer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * One frame travelling through {@link FrameProcessor}. Jobs are pooled and
+ * reused; every field is reset by {@link #reset()} before the job goes back.
+ */
+public class FrameJob {
+
+    // Source plane, valid until source is closed by the gray stage
+    public ByteBuffer plane;
+    public int rowStride;
+    // Chroma planes of a colour frame, null otherwise; same lifetime as plane
+    public ByteBuffer u;
+    public ByteBuffer v;
+    public int uvRowStride;
+    public int uvPixelStride;
+    public AutoCloseable source;
+    public long timestampNs;
+    // System.nanoTime() at submit, for end-to-end latency
+    public long submitNs;
+    // Crop and scale chosen when the plane was copied
+    public ProcessingProfile profile;
+
+    // LoadShedder level in force when the frame entered the gray stage
+    public int shedLevel;
+    // Gray and edge stage time, what the shedder holds to its deadline
+    public long workNs;
+
+    public FramePool.Frame gray;
+    public FramePool.Frame output;
+    public float processingMs;
+    // Reached the sink; anything recycled without this was dropped
+    public boolean published;
+
+    void closeSource() {
+        if (source != null) {
+            try {
+                source.close();
+            } catch (Exception ignored) {
+                // Camera images only fail to close once already closed
+            }
+            source = null;
+        }
+        plane = null;
+        u = null;
+        v = null;
+    }
+
+    void reset() {
+        closeSource();
+        if (gray != null) {
+            gray.release();
+            gray = null;
+        }
+        if (output != null) {
+            output.release();
+            output = null;
+        }
+        rowStride = 0;
+        uvRowStride = 0;
+        uvPixelStride = 0;
+        timestampNs = 0;
+        submitNs = 0;
+        profile = null;
+        shedLevel = 0;
+        workNs = 0;
+        processingMs = 0f;
+        published = false;
+    }
+}
@@ -0,0 +1,208 @@
+package com.example.edgeviewer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Chain of stages, each running on its own worker thread and fed through a
+ * bounded queue, so that consecutive frames overlap across stages instead of
+ * running back to back on one thread.
+ *
+ * When a stage's queue is full the {@link Backpressure} policy decides which
+ * item is dropped. Dropped and finished items are handed to the
+ * {@link Recycler}, which owns returning their buffers. No Android classes are
+ * used here so the pipeline can be driven from a plain JVM.
+ */
+public class FramePipeline<T> {
+
+    public interface Stage<T> {
+        /** Returns false to drop the item instead of passing it on. */
+        boolean process(T item) throws Exception;
+    }
+
+    public interface Recycler<T> {
+        void recycle(T item);
+    }
+
+    public enum Backpressure {
+        /** Evict the oldest queued item to make room: lowest latency. */
+        DROP_OLDEST,
+        /** Reject the incoming item: keeps queued work, adds latency. */
+        DROP_NEWEST,
+        /** Wait for room: nothing is dropped and the producer is slowed down, e.g. for offline replay. */
+        BLOCK
+    }
+
+    private final Backpressure backpressure;
+    private final Recycler<T> recycler;
+    private final List<Worker> workers = new ArrayList<>();
+    private volatile boolean running = false;
+
+    public FramePipeline(Backpressure backpressure, Recycler<T> recycler) {
+        this.backpressure = backpressure;
+        this.recycler = recycler;
+    }
+
+    public FramePipeline<T> addStage(String name, int queueCapacity, Stage<T> stage) {
+        if (running) {
+            throw new IllegalStateException("pipeline already started");
+        }
+        workers.add(new Worker(name, queueCapacity, stage));
+        return this;
+    }
+
+    public void start() {
+        if (workers.isEmpty()) {
+            throw new IllegalStateException("pipeline has no stages");
+        }
+        running = true;
+        for (int i = 0; i < workers.size(); i++) {
+            Worker worker = workers.get(i);
+            worker.next = i + 1 < workers.size() ? workers.get(i + 1) : null;
+            worker.thread.start();
+        }
+    }
+
+    /** Feeds the first stage. Returns false if the item was rejected. */
+    public boolean submit(T item) {
+        if (!running) {
+            recycler.recycle(item);
+            return false;
+        }
+        return workers.get(0).enqueue(item);
+    }
+
+    public void stop() {
+        running = false;
+        for (Worker worker : workers) {
+            worker.thread.interrupt();
+        }
+        for (Worker worker : workers) {
+            try {
+                worker.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            T item;
+            while ((item = worker.queue.poll()) != null) {
+                recycler.recycle(item);
+            }
+        }
+    }
+
+    public int getStageCount() {
+        return workers.size();
+    }
+
+    public String getStageName(int stage) {
+        return workers.get(stage).name;
+    }
+
+    public long getProcessedCount(int stage) {
+        return workers.get(stage).processed.get();
+    }
+
+    /** Items evicted or rejected at this stage's queue, or dropped by the stage itself. */
+    public long getDroppedCount(int stage) {
+        return workers.get(stage).dropped.get();
+    }
+
+    /** Items whose stage threw; they are recycled and not counted as dropped. */
+    public long getFailedCount(int stage) {
+        return workers.get(stage).failed.get();
+    }
+
+    /** The last exception thrown by this stage since the previous call, or null. */
+    public Exception takeFailure(int stage) {
+        return workers.get(stage).failure.getAndSet(null);
+    }
+
+    private final class Worker implements Runnable {
+        final String name;
+        final Stage<T> stage;
+        final ArrayBlockingQueue<T> queue;
+        final Thread thread;
+        Worker next;
+
+        final AtomicLong processed = new AtomicLong();
+        final AtomicLong dropped = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+        final AtomicReference<Exception> failure = new AtomicReference<>();
+
+        Worker(String name, int queueCapacity, Stage<T> stage) {
+            this.name = name;
+            this.stage = stage;
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+            this.thread = new Thread(this, "FramePipeline-" + name);
+        }
+
+        boolean enqueue(T item) {
+            if (backpressure == Backpressure.BLOCK) {
+                try {
+                    queue.put(item);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    recycler.recycle(item);
+                    return false;
+                }
+            } else if (backpressure == Backpressure.DROP_NEWEST) {
+                if (!queue.offer(item)) {
+                    dropped.incrementAndGet();
+                    recycler.recycle(item);
+                    return false;
+                }
+            } else {
+                while (!queue.offer(item)) {
+                    T oldest = queue.poll();
+                    if (oldest != null) {
+                        dropped.incrementAndGet();
+                        recycler.recycle(oldest);
+                    }
+                }
+            }
+            // A producer that raced stop() draining this queue
+            if (!running && queue.remove(item)) {
+                recycler.recycle(item);
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                T item;
+                try {
+                    item = queue.take();
+                } catch (InterruptedException e) {
+                    break;
+                }
+
+                boolean keep;
+                try {
+                    keep = stage.process(item);
+                } catch (Exception e) {
+                    failed.incrementAndGet();
+                    failure.set(e);
+                    recycler.recycle(item);
+                    continue;
+                }
+
+                if (!keep) {
+                    dropped.incrementAndGet();
+                    recycler.recycle(item);
+                    continue;
+                }
+                processed.incrementAndGet();
+                if (next != null) {
+                    next.enqueue(item);
+                } else {
+                    recycler.recycle(item);
+                }
+            }
+        }
+    }
+}
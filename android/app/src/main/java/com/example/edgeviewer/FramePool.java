@@ -0,0 +1,167 @@
+package com.example.edgeviewer;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Ring of preallocated direct frame buffers handed from the processing side
+ * to a single consumer (GL thread) without locking.
+ *
+ * A producer {@link #acquire()}s a free frame, fills it and {@link #publish}es it.
+ * The consumer {@link #takeLatest()}s the newest published frame and releases it
+ * once uploaded. A published frame that is replaced before the consumer takes it
+ * is counted as dropped and goes straight back to the pool. With three frames the
+ * producer always finds a free one while the consumer holds another.
+ *
+ * Any number of threads may acquire, e.g. several pipeline stages; each frame
+ * goes to exactly one of them. Publish from one thread only, so sequence
+ * numbers reach the consumer in order.
+ */
+public class FramePool {
+
+    public static final class Frame {
+        public final ByteBuffer buffer;
+        public int width;
+        public int height;
+        // 1 = 8-bit luminance/mask, 4 = RGBA
+        public int channels;
+        // Unprocessed camera luminance rather than edge output
+        public boolean raw;
+        // RGBA from the camera's colour, raw or with edges drawn over it
+        public boolean color;
+        public long sequence;
+        public float processingMs;
+        // Source timestamp of the frame this was made from
+        public long timestampNs;
+        // System.nanoTime() when that frame was submitted, for end-to-end latency
+        public long submitNs;
+
+        private final FramePool pool;
+        private final AtomicInteger refCount = new AtomicInteger();
+        // Only touched by the acquirer that took the frame from refCount 0
+        private boolean used;
+
+        private Frame(FramePool pool, int bytes) {
+            this.pool = pool;
+            this.buffer = ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+        }
+
+        public void retain() {
+            if (refCount.getAndIncrement() <= 0) {
+                throw new IllegalStateException("retain on a released frame");
+            }
+        }
+
+        public void release() {
+            int refs = refCount.decrementAndGet();
+            if (refs < 0) {
+                throw new IllegalStateException("frame released too many times");
+            }
+        }
+    }
+
+    private final Frame[] frames;
+    private final AtomicReference<Frame> latest = new AtomicReference<>();
+    private final AtomicLong sequence = new AtomicLong();
+    // Where the next search starts; only a hint, so racing acquirers are fine
+    private final AtomicInteger cursor = new AtomicInteger();
+
+    private final AtomicLong acquired = new AtomicLong();
+    private final AtomicLong reused = new AtomicLong();
+    private final AtomicLong exhausted = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong consumed = new AtomicLong();
+
+    public FramePool(int capacity, int frameBytes) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("capacity must be at least 2");
+        }
+        frames = new Frame[capacity];
+        for (int i = 0; i < capacity; i++) {
+            frames[i] = new Frame(this, frameBytes);
+        }
+    }
+
+    /**
+     * Producer side: returns a frame owned by the caller, or null when every
+     * frame is in flight. Never blocks; safe from several threads.
+     */
+    public Frame acquire() {
+        int n = frames.length;
+        int start = cursor.get();
+        for (int i = 0; i < n; i++) {
+            int index = (start + i) % n;
+            Frame frame = frames[index];
+            if (frame.refCount.compareAndSet(0, 1)) {
+                cursor.set((index + 1) % n);
+                acquired.incrementAndGet();
+                if (frame.used) {
+                    reused.incrementAndGet();
+                }
+                frame.used = true;
+                frame.buffer.clear();
+                return frame;
+            }
+        }
+        exhausted.incrementAndGet();
+        return null;
+    }
+
+    /** Producer side, one thread: hands the caller's reference over to the consumer. */
+    public void publish(Frame frame) {
+        if (frame.pool != this) {
+            throw new IllegalArgumentException("frame belongs to another pool");
+        }
+        frame.sequence = sequence.incrementAndGet();
+        Frame previous = latest.getAndSet(frame);
+        if (previous != null) {
+            dropped.incrementAndGet();
+            previous.release();
+        }
+    }
+
+    /**
+     * Consumer side: the newest published frame, or null if nothing new arrived
+     * since the last call. The caller owns the returned reference.
+     */
+    public Frame takeLatest() {
+        Frame frame = latest.getAndSet(null);
+        if (frame != null) {
+            consumed.incrementAndGet();
+        }
+        return frame;
+    }
+
+    public int getCapacity() {
+        return frames.length;
+    }
+
+    public int getFrameBytes() {
+        return frames[0].buffer.capacity();
+    }
+
+    public long getAcquiredCount() {
+        return acquired.get();
+    }
+
+    public long getReusedCount() {
+        return reused.get();
+    }
+
+    /** Acquire calls that found no free frame. */
+    public long getExhaustedCount() {
+        return exhausted.get();
+    }
+
+    /** Published frames replaced before the consumer took them. */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public long getConsumedCount() {
+        return consumed.get();
+    }
+}
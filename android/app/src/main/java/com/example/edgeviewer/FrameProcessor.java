@@ -0,0 +1,408 @@
+package com.example.edgeviewer;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Runs frames through gray extract -> edge detection -> publish, each stage on
+ * its own worker (see {@link FramePipeline}). The acquire stage is whichever
+ * thread calls {@link #submit}, normally the camera callback thread.
+ *
+ * With {@link #setColor} on, frames that come with chroma are published as
+ * RGBA in camera colour, converted in the gray stage while the camera buffers
+ * are still held, and CPU edges are drawn over them in green.
+ *
+ * A {@link LoadShedder} holds each frame to a deadline by dropping, in order,
+ * the colour overlay, full resolution, every Nth frame and Canny for the
+ * fallback detector.
+ */
+public class FrameProcessor implements FrameSource.ColorConsumer {
+
+    public interface FrameSink {
+        /** Takes ownership of frame and must release it. */
+        void onFrame(FramePool.Frame frame, float processingMs);
+    }
+
+    private static final int QUEUE_CAPACITY = 1;
+    // Enough jobs for every queue slot and every stage to hold one, plus one being submitted
+    private static final int JOB_COUNT = 3 * (QUEUE_CAPACITY + 1) + 1;
+
+    private final int width;
+    private final int height;
+    private final int outputChannels;
+    private final FramePool grayPool;
+    private final FramePool outputPool;
+    private final EdgeDetector detector;
+    private final FrameSink sink;
+    private final ArrayBlockingQueue<FrameJob> freeJobs = new ArrayBlockingQueue<>(JOB_COUNT);
+    private final FramePipeline<FrameJob> pipeline;
+
+    // When false the gray frame is published as-is, for raw display or GPU edges
+    private volatile boolean cpuEdges = true;
+    private volatile boolean color;
+    private volatile YuvConverter converter = new NativeYuvConverter();
+    // Edge image for colour frames, drawn over the RGBA output; edge stage only
+    private ByteBuffer edgeScratch;
+
+    // Read by the gray stage for each new frame
+    private volatile ProcessingProfile profile;
+    private volatile ResolutionGovernor governor;
+    private volatile LoadShedder shedder;
+    private volatile EdgeDetector fallbackDetector;
+    private volatile FrameRecorder recorder;
+    private volatile LatencyStats stats;
+    // Size the detector was last initialised for; edge stage only
+    private ProcessingProfile detectorProfile;
+    private ProcessingProfile fallbackProfile;
+    // Half-resolution version of strideBase while the stride is shed; gray stage only
+    private ProcessingProfile strideBase;
+    private ProcessingProfile strideProfile;
+
+    /**
+     * width x height is the camera frame size. Buffers are sized for the full
+     * frame, so switching to a smaller {@link ProcessingProfile} never
+     * reallocates them; outputPool frames must hold width * height * outputChannels
+     * bytes.
+     */
+    public FrameProcessor(int width, int height, int outputChannels, FramePool outputPool,
+                          EdgeDetector detector, FrameSink sink,
+                          FramePipeline.Backpressure backpressure) {
+        this.width = width;
+        this.height = height;
+        this.outputChannels = outputChannels;
+        this.outputPool = outputPool;
+        this.detector = detector;
+        this.sink = sink;
+        this.profile = ProcessingProfile.full(width, height);
+        this.detectorProfile = profile;
+        detector.init(width, height, outputChannels);
+        this.grayPool = new FramePool(2 * (QUEUE_CAPACITY + 1), width * height);
+
+        for (int i = 0; i < JOB_COUNT; i++) {
+            freeJobs.add(new FrameJob());
+        }
+
+        pipeline = new FramePipeline<>(backpressure, this::recycle)
+                .addStage("gray", QUEUE_CAPACITY, this::extractGray)
+                .addStage("edge", QUEUE_CAPACITY, this::detectEdges)
+                .addStage("publish", QUEUE_CAPACITY, this::publish);
+    }
+
+    /**
+     * Output frames the pipeline can hold at once, for sizing outputPool: the
+     * edge and publish stages and the queue between them, plus the gray stage
+     * and the edge queue when colour frames are taken there.
+     */
+    public static int getOutputFramesHeld(boolean color) {
+        int held = 2 + QUEUE_CAPACITY;
+        return color ? held + 1 + QUEUE_CAPACITY : held;
+    }
+
+    public void start() {
+        pipeline.start();
+    }
+
+    public void stop() {
+        pipeline.stop();
+        detector.release();
+        EdgeDetector fallback = fallbackDetector;
+        if (fallback != null) {
+            fallback.release();
+        }
+    }
+
+    public void setCpuEdges(boolean cpuEdges) {
+        this.cpuEdges = cpuEdges;
+    }
+
+    /**
+     * Publishes colour frames as RGBA; needs output frames of width * height * 4
+     * bytes. Frames without chroma stay gray.
+     */
+    public void setColor(boolean color) {
+        if (color && outputPool.getFrameBytes() < width * height * 4) {
+            throw new IllegalStateException("colour needs output frames of " + width + "x" + height + " RGBA");
+        }
+        this.color = color;
+    }
+
+    /** Converter for colour frames; the default is {@link NativeYuvConverter}. */
+    public void setConverter(YuvConverter converter) {
+        this.converter = converter;
+    }
+
+    /** Takes effect from the next submitted frame; frames in flight finish with the old one. */
+    public void setProfile(ProcessingProfile profile) {
+        if (!profile.fits(width, height)) {
+            throw new IllegalArgumentException(profile + " does not fit " + width + "x" + height);
+        }
+        this.profile = profile;
+    }
+
+    public ProcessingProfile getProfile() {
+        return profile;
+    }
+
+    /** Lets governor switch profiles based on each published frame; null turns it off. */
+    public void setGovernor(ResolutionGovernor governor) {
+        this.governor = governor;
+        if (governor != null) {
+            setProfile(governor.getProfile());
+        }
+    }
+
+    /**
+     * Sheds work to keep frames within shedder's deadline; null turns it off.
+     * Frames at a shed stride are not ones the governor knows, so use one or
+     * the other.
+     */
+    public void setLoadShedder(LoadShedder shedder) {
+        this.shedder = shedder;
+    }
+
+    /**
+     * Cheaper detector used while the shedder has SHED_ENGINE in force, e.g. a
+     * Sobel filter graph; initialised on first use and released with this
+     * processor. Set it before {@link #start}.
+     */
+    public void setFallbackDetector(EdgeDetector detector) {
+        this.fallbackDetector = detector;
+    }
+
+    /**
+     * Appends every full camera frame that reaches the gray stage to recorder,
+     * off the camera thread; null stops. The recorder must match the frame size.
+     */
+    public void setRecorder(FrameRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    /** Records the gray, edges and publish stages and dropped frames into stats; null stops. */
+    public void setStats(LatencyStats stats) {
+        this.stats = stats;
+    }
+
+    public FramePipeline<FrameJob> getPipeline() {
+        return pipeline;
+    }
+
+    /**
+     * Queues a strided Y plane. source (e.g. the camera Image) is closed once the
+     * plane has been copied out, or immediately if the frame is dropped.
+     */
+    public boolean submit(ByteBuffer plane, int rowStride, long timestampNs, AutoCloseable source) {
+        return submit(plane, rowStride, null, null, 0, 0, timestampNs, source);
+    }
+
+    /** As {@link #submit(ByteBuffer, int, long, AutoCloseable)} with the chroma planes kept for colour. */
+    public boolean submit(ByteBuffer y, int yRowStride, ByteBuffer u, ByteBuffer v, int uvRowStride,
+                          int uvPixelStride, long timestampNs, AutoCloseable source) {
+        LoadShedder l = shedder;
+        if (l != null && !l.onArrival(timestampNs)) {
+            // Shed on purpose and counted there; not a pipeline drop
+            try {
+                source.close();
+            } catch (Exception ignored) {
+                // As below
+            }
+            return false;
+        }
+        FrameJob job = freeJobs.poll();
+        if (job == null) {
+            LatencyStats s = stats;
+            if (s != null) {
+                s.recordDropped();
+            }
+            try {
+                source.close();
+            } catch (Exception ignored) {
+                // Nothing else can be done with a frame we are dropping anyway
+            }
+            return false;
+        }
+        job.plane = y;
+        job.rowStride = yRowStride;
+        job.u = u;
+        job.v = v;
+        job.uvRowStride = uvRowStride;
+        job.uvPixelStride = uvPixelStride;
+        job.timestampNs = timestampNs;
+        job.submitNs = System.nanoTime();
+        job.source = source;
+        return pipeline.submit(job);
+    }
+
+    @Override
+    public boolean onFrame(ByteBuffer plane, int rowStride, long timestampNs, AutoCloseable release) {
+        return submit(plane, rowStride, timestampNs, release);
+    }
+
+    @Override
+    public boolean onColorFrame(ByteBuffer y, int yRowStride, ByteBuffer u, ByteBuffer v,
+                                int uvRowStride, int uvPixelStride, long timestampNs, AutoCloseable release) {
+        return submit(y, yRowStride, u, v, uvRowStride, uvPixelStride, timestampNs, release);
+    }
+
+    private boolean extractGray(FrameJob job) {
+        FrameRecorder r = recorder;
+        if (r != null) {
+            r.append(job.plane, job.rowStride, job.timestampNs);
+        }
+        job.gray = grayPool.acquire();
+        if (job.gray != null) {
+            long start = System.nanoTime();
+            LoadShedder l = shedder;
+            job.shedLevel = l != null ? l.getLevel() : LoadShedder.SHED_NONE;
+            job.profile = job.shedLevel >= LoadShedder.SHED_STRIDE ? halfStride(profile) : profile;
+            FrameUtils.copyRegion(job.plane, job.rowStride, job.profile, job.gray.buffer);
+            boolean overlayShed = cpuEdges && job.shedLevel >= LoadShedder.SHED_OVERLAY;
+            if (color && job.u != null && !overlayShed && !convertColor(job)) {
+                job.gray.release();
+                job.gray = null;
+            }
+            long elapsed = System.nanoTime() - start;
+            job.workNs += elapsed;
+            LatencyStats s = stats;
+            if (s != null) {
+                s.record(LatencyStats.GRAY, elapsed);
+            }
+        }
+        // Hand the camera buffer back as early as possible
+        job.closeSource();
+        return job.gray != null;
+    }
+
+    // The same crop at step 2, kept so each profile maps to one instance
+    private ProcessingProfile halfStride(ProcessingProfile base) {
+        if (base.step == 2) {
+            return base;
+        }
+        if (base != strideBase) {
+            strideBase = base;
+            strideProfile = new ProcessingProfile(base.name + "-stride", base.cropX, base.cropY,
+                    base.cropWidth & ~1, base.cropHeight & ~1, 2);
+        }
+        return strideProfile;
+    }
+
+    // Chroma has to be read before the camera buffers go back, so colour frames
+    // get their output here. Luma comes from the gray copy, which already has
+    // the profile's crop and scale; at half resolution every output pixel has
+    // a chroma sample of its own.
+    private boolean convertColor(FrameJob job) {
+        job.output = outputPool.acquire();
+        if (job.output == null) {
+            return false;
+        }
+        ProcessingProfile p = job.profile;
+        int uvOffset = (p.cropY / 2) * job.uvRowStride + (p.cropX / 2) * job.uvPixelStride;
+        converter.toRgba(job.gray.buffer, p.getWidth(), job.u, job.v, uvOffset, job.uvRowStride,
+                job.uvPixelStride, p.step == 1, p.getWidth(), p.getHeight(), job.output.buffer);
+        job.output.color = true;
+        return true;
+    }
+
+    private boolean detectEdges(FrameJob job) {
+        if (job.output == null) {
+            job.output = outputPool.acquire();
+            if (job.output == null) {
+                return false;
+            }
+            job.output.color = false;
+        }
+        boolean colorFrame = job.output.color;
+        ProcessingProfile frameProfile = job.profile;
+        int frameWidth = frameProfile.getWidth();
+        int frameHeight = frameProfile.getHeight();
+        if (cpuEdges) {
+            EdgeDetector fallback = fallbackDetector;
+            EdgeDetector engine = detector;
+            // Only this stage touches the detectors, so resizing here needs no locking
+            if (fallback != null && job.shedLevel >= LoadShedder.SHED_ENGINE) {
+                engine = fallback;
+                if (frameProfile != fallbackProfile) {
+                    fallback.init(frameWidth, frameHeight, outputChannels);
+                    fallbackProfile = frameProfile;
+                }
+            } else if (frameProfile != detectorProfile) {
+                detector.init(frameWidth, frameHeight, outputChannels);
+                detectorProfile = frameProfile;
+            }
+            long start = System.nanoTime();
+            if (colorFrame) {
+                if (edgeScratch == null) {
+                    edgeScratch = ByteBuffer.allocateDirect(width * height * outputChannels)
+                            .order(ByteOrder.nativeOrder());
+                }
+                job.processingMs = engine.process(job.gray.buffer, frameWidth, edgeScratch);
+                FrameUtils.drawEdges(edgeScratch, outputChannels, job.output.buffer, frameWidth * frameHeight);
+            } else {
+                job.processingMs = engine.process(job.gray.buffer, frameWidth, job.output.buffer);
+            }
+            long elapsed = System.nanoTime() - start;
+            job.workNs += elapsed;
+            LatencyStats s = stats;
+            if (s != null) {
+                s.record(LatencyStats.EDGES, elapsed);
+            }
+        } else if (colorFrame) {
+            job.processingMs = 0f;
+        } else {
+            copyRaw(job.gray.buffer, job.output.buffer, frameWidth * frameHeight);
+            job.processingMs = 0f;
+        }
+        job.output.width = frameWidth;
+        job.output.height = frameHeight;
+        job.output.channels = colorFrame ? 4 : outputChannels;
+        job.output.raw = !cpuEdges;
+        job.output.timestampNs = job.timestampNs;
+        job.output.submitNs = job.submitNs;
+        job.gray.release();
+        job.gray = null;
+        return true;
+    }
+
+    private void copyRaw(ByteBuffer gray, ByteBuffer out, int pixels) {
+        if (outputChannels == 1) {
+            gray.limit(pixels);
+            gray.position(0);
+            out.clear();
+            out.put(gray);
+            gray.clear();
+            out.position(0);
+        } else {
+            FrameUtils.grayToRgba(gray, out, pixels);
+        }
+    }
+
+    private boolean publish(FrameJob job) {
+        FramePool.Frame output = job.output;
+        job.output = null;
+        long latencyNs = System.nanoTime() - job.submitNs;
+        LatencyStats s = stats;
+        if (s != null) {
+            s.record(LatencyStats.PUBLISH, latencyNs);
+        }
+        LoadShedder l = shedder;
+        if (l != null) {
+            l.onFrame(job.shedLevel, job.workNs / 1_000_000f);
+        }
+        ResolutionGovernor g = governor;
+        if (g != null && g.onFrame(job.profile, job.processingMs, latencyNs)) {
+            profile = g.getProfile();
+        }
+        job.published = true;
+        sink.onFrame(output, job.processingMs);
+        return true;
+    }
+
+    private void recycle(FrameJob job) {
+        LatencyStats s = stats;
+        if (s != null && !job.published) {
+            s.recordDropped();
+        }
+        job.reset();
+        freeJobs.offer(job);
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.edgeviewer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Locale;
+
+/**
+ * Appends raw luminance frames and their timestamps to memory-mapped segment
+ * files named name-NNNNN.evr, to be replayed later with {@link FrameRecording}
+ * and {@link ReplayFrameSource}.
+ *
+ * Segment layout, little-endian:
+ * <pre>
+ *  0  u32 MAGIC     12  u32 height        24  u32 frame count
+ *  4  u32 version   16  u32 frame bytes   28  u32 segment number
+ *  8  u32 width     20  u32 capacity
+ * HEADER_BYTES: capacity index entries of (i64 timestamp ns, i64 frame offset),
+ * then the frames, width * height bytes each.
+ * </pre>
+ * A segment is mapped once at its full size, so appending a frame is a memory
+ * copy with no system call. The frame count is written after the frame and its
+ * index entry, so a reader never sees a half-written frame. The unused tail of
+ * the last segment stays sparse where the filesystem supports it.
+ */
+public class FrameRecorder {
+
+    public static final String EXTENSION = ".evr";
+    // 10 s at 30 fps
+    public static final int DEFAULT_FRAMES_PER_SEGMENT = 300;
+
+    static final int MAGIC = 0x31525645; // "EVR1"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 64;
+    static final int INDEX_ENTRY_BYTES = 16;
+    static final int COUNT_OFFSET = 24;
+
+    private final File dir;
+    private final String name;
+    private final int width;
+    private final int height;
+    private final int frameBytes;
+    private final int framesPerSegment;
+    private final int maxSegments;
+
+    private RandomAccessFile file;
+    private MappedByteBuffer segment;
+    private int segmentNumber = -1;
+    private int count;
+    private long framesWritten;
+    private IOException error;
+    private boolean closed;
+
+    /**
+     * Replaces any earlier recording with the same name in dir. maxSegments
+     * &gt; 0 keeps only that many of the newest segments, i.e. a rolling window
+     * of the last maxSegments * framesPerSegment frames.
+     */
+    public FrameRecorder(File dir, String name, int width, int height,
+                         int framesPerSegment, int maxSegments) {
+        if (width <= 0 || height <= 0 || framesPerSegment <= 0) {
+            throw new IllegalArgumentException("invalid size or segment length");
+        }
+        if (HEADER_BYTES + (long) framesPerSegment * (INDEX_ENTRY_BYTES + width * height) > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("segment too large to map; use fewer frames per segment");
+        }
+        this.dir = dir;
+        this.name = name;
+        this.width = width;
+        this.height = height;
+        this.frameBytes = width * height;
+        this.framesPerSegment = framesPerSegment;
+        this.maxSegments = maxSegments;
+
+        File[] old = FrameRecording.listSegments(dir, name);
+        for (File f : old) {
+            f.delete();
+        }
+    }
+
+    /**
+     * Copies the width x height frame out of a strided plane. Returns false
+     * once the recorder is closed or has failed; see {@link #getError()}.
+     */
+    public synchronized boolean append(ByteBuffer plane, int rowStride, long timestampNs) {
+        if (closed || error != null) {
+            return false;
+        }
+        if (segment == null || count == framesPerSegment) {
+            try {
+                openSegment();
+            } catch (IOException e) {
+                error = e;
+                finishSegment();
+                return false;
+            }
+        }
+
+        int offset = HEADER_BYTES + framesPerSegment * INDEX_ENTRY_BYTES + count * frameBytes;
+        int srcLimit = plane.limit();
+        for (int row = 0; row < height; row++) {
+            int s = row * rowStride;
+            plane.limit(s + width);
+            plane.position(s);
+            segment.position(offset + row * width);
+            segment.put(plane);
+        }
+        plane.limit(srcLimit);
+        plane.position(0);
+
+        int entry = HEADER_BYTES + count * INDEX_ENTRY_BYTES;
+        segment.putLong(entry, timestampNs);
+        segment.putLong(entry + 8, offset);
+        count++;
+        segment.putInt(COUNT_OFFSET, count);
+        framesWritten++;
+        return true;
+    }
+
+    /** Flushes the current segment to disk; later appends are ignored. */
+    public synchronized void close() {
+        closed = true;
+        finishSegment();
+    }
+
+    private void openSegment() throws IOException {
+        finishSegment();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("cannot create " + dir);
+        }
+        segmentNumber++;
+        long size = HEADER_BYTES + (long) framesPerSegment * (INDEX_ENTRY_BYTES + frameBytes);
+        file = new RandomAccessFile(segmentFile(dir, name, segmentNumber), "rw");
+        file.setLength(0);
+        segment = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        segment.order(ByteOrder.LITTLE_ENDIAN);
+        segment.putInt(0, MAGIC);
+        segment.putInt(4, VERSION);
+        segment.putInt(8, width);
+        segment.putInt(12, height);
+        segment.putInt(16, frameBytes);
+        segment.putInt(20, framesPerSegment);
+        segment.putInt(COUNT_OFFSET, 0);
+        segment.putInt(28, segmentNumber);
+        count = 0;
+
+        if (maxSegments > 0 && segmentNumber >= maxSegments) {
+            segmentFile(dir, name, segmentNumber - maxSegments).delete();
+        }
+    }
+
+    private void finishSegment() {
+        if (segment != null) {
+            segment.force();
+            segment = null;
+        }
+        if (file != null) {
+            try {
+                // The mapping stays valid after the file is closed
+                file.close();
+            } catch (IOException ignored) {
+                // Already flushed through the mapping
+            }
+            file = null;
+        }
+    }
+
+    static File segmentFile(File dir, String name, int number) {
+        return new File(dir, String.format(Locale.US, "%s-%05d%s", name, number, EXTENSION));
+    }
+
+    public synchronized long getFramesWritten() {
+        return framesWritten;
+    }
+
+    /** The failure that stopped recording, or null. */
+    public synchronized IOException getError() {
+        return error;
+    }
+}
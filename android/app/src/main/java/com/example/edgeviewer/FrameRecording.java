@@ -0,0 +1,149 @@
+package com.example.edgeviewer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Read-only view of a recording written by {@link FrameRecorder}. Segments
+ * are mapped, not read, so opening a long recording is cheap and frames are
+ * paged in as they are used.
+ */
+public class FrameRecording {
+
+    private final int width;
+    private final int height;
+    private final ByteBuffer[] frames;
+    private final long[] timestamps;
+
+    FrameRecording(int width, int height, ByteBuffer[] frames, long[] timestamps) {
+        this.width = width;
+        this.height = height;
+        this.frames = frames;
+        this.timestamps = timestamps;
+    }
+
+    /**
+     * Maps every segment of the recording called name in dir, oldest first.
+     * Frames appended while the file is open are not picked up.
+     */
+    public static FrameRecording open(File dir, String name) throws IOException {
+        File[] segments = listSegments(dir, name);
+        if (segments.length == 0) {
+            throw new IOException("no recording " + name + " in " + dir);
+        }
+        int width = 0;
+        int height = 0;
+        List<ByteBuffer> frames = new ArrayList<>();
+        List<Long> timestamps = new ArrayList<>();
+        for (File f : segments) {
+            MappedByteBuffer map;
+            try (RandomAccessFile file = new RandomAccessFile(f, "r")) {
+                map = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+            }
+            map.order(ByteOrder.LITTLE_ENDIAN);
+            if (map.capacity() < FrameRecorder.HEADER_BYTES
+                    || map.getInt(0) != FrameRecorder.MAGIC
+                    || map.getInt(4) != FrameRecorder.VERSION) {
+                throw new IOException(f + " is not a frame recording");
+            }
+            int w = map.getInt(8);
+            int h = map.getInt(12);
+            int frameBytes = map.getInt(16);
+            int capacity = map.getInt(20);
+            if (w <= 0 || h <= 0 || frameBytes != (long) w * h || capacity < 0
+                    || FrameRecorder.HEADER_BYTES + (long) capacity * FrameRecorder.INDEX_ENTRY_BYTES > map.capacity()) {
+                throw new IOException(f + ": corrupt header");
+            }
+            int count = Math.min(map.getInt(FrameRecorder.COUNT_OFFSET), capacity);
+            if (frames.isEmpty()) {
+                width = w;
+                height = h;
+            } else if (w != width || h != height) {
+                throw new IOException(f + " is " + w + "x" + h + ", expected " + width + "x" + height);
+            }
+            for (int i = 0; i < count; i++) {
+                int entry = FrameRecorder.HEADER_BYTES + i * FrameRecorder.INDEX_ENTRY_BYTES;
+                long offset = map.getLong(entry + 8);
+                if (offset < 0 || offset + frameBytes > map.capacity()) {
+                    throw new IOException(f + ": frame " + i + " is out of bounds");
+                }
+                ByteBuffer frame = map.duplicate();
+                frame.position((int) offset);
+                frame.limit((int) offset + frameBytes);
+                frames.add(frame.slice());
+                timestamps.add(map.getLong(entry));
+            }
+        }
+        long[] ts = new long[timestamps.size()];
+        for (int i = 0; i < ts.length; i++) {
+            ts[i] = timestamps.get(i);
+        }
+        return new FrameRecording(width, height, frames.toArray(new ByteBuffer[0]), ts);
+    }
+
+    static File[] listSegments(File dir, final String name) {
+        final String prefix = name + "-";
+        File[] files = dir.listFiles((d, file) -> segmentNumber(file, prefix) >= 0);
+        if (files == null) {
+            return new File[0];
+        }
+        // Past 99999 the numbers outgrow the padding and no longer sort as text
+        Arrays.sort(files, (a, b) -> Integer.compare(
+                segmentNumber(a.getName(), prefix), segmentNumber(b.getName(), prefix)));
+        return files;
+    }
+
+    // The number of prefix + at least five digits + EXTENSION, or -1 for any other file
+    private static int segmentNumber(String file, String prefix) {
+        if (!file.startsWith(prefix) || !file.endsWith(FrameRecorder.EXTENSION)) {
+            return -1;
+        }
+        String digits = file.substring(prefix.length(), file.length() - FrameRecorder.EXTENSION.length());
+        if (digits.length() < 5 || digits.length() > 9) {
+            return -1;
+        }
+        for (int i = 0; i < digits.length(); i++) {
+            if (digits.charAt(i) < '0' || digits.charAt(i) > '9') {
+                return -1;
+            }
+        }
+        return Integer.parseInt(digits);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getFrameCount() {
+        return frames.length;
+    }
+
+    /**
+     * Tightly packed width x height luminance, shared and read-only; only
+     * absolute reads, or one reader at a time, are safe.
+     */
+    public ByteBuffer getFrame(int index) {
+        return frames[index];
+    }
+
+    public long getTimestampNs(int index) {
+        return timestamps[index];
+    }
+
+    /** First to last timestamp. */
+    public long getDurationNs() {
+        return frames.length < 2 ? 0 : timestamps[frames.length - 1] - timestamps[0];
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.edgeviewer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Something that produces 8-bit luminance frames: the camera
+ * ({@link Camera2FrameSource}), a generator ({@link SyntheticFrameSource}), a
+ * recording ({@link ReplayFrameSource}) or a directory of stills
+ * ({@link ImageDirectoryFrameSource}). Frames are pushed to a {@link Consumer}
+ * from the source's own thread; {@link FrameProcessor#submit} is a Consumer.
+ */
+public interface FrameSource {
+
+    interface Consumer {
+        /**
+         * plane holds a width x height frame with rowStride bytes per row and
+         * stays valid until release is closed. The consumer owns release and
+         * must close it exactly once, also when the frame is dropped. Returns
+         * false if the frame was dropped.
+         */
+        boolean onFrame(ByteBuffer plane, int rowStride, long timestampNs, AutoCloseable release);
+    }
+
+    /**
+     * A consumer that can also take colour. Sources with chroma (the camera)
+     * call onColorFrame instead of onFrame when given one of these.
+     */
+    interface ColorConsumer extends Consumer {
+        /**
+         * As {@link Consumer#onFrame}, plus the YUV_420_888 chroma planes: one
+         * u and one v sample per 2x2 block of y, uvRowStride bytes per row and
+         * uvPixelStride bytes apart (1 planar, 2 semi-planar).
+         */
+        boolean onColorFrame(ByteBuffer y, int yRowStride, ByteBuffer u, ByteBuffer v,
+                             int uvRowStride, int uvPixelStride, long timestampNs, AutoCloseable release);
+    }
+
+    int getWidth();
+
+    int getHeight();
+
+    /** Starts delivering frames to consumer; a source is started at most once at a time. */
+    void start(Consumer consumer);
+
+    /**
+     * Stops delivery and waits until no more frames will be handed out. Frames
+     * already handed out stay valid until their release is closed.
+     */
+    void stop();
+}
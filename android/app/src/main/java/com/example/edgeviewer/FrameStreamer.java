@@ -0,0 +1,262 @@
+package com.example.edgeviewer;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Encodes published frames for {@link StreamServer} clients on its own thread,
+ * so the processing side only pays for a retain and a reference swap. A frame
+ * offered while the previous one is still waiting replaces it.
+ *
+ * Packet layout, little-endian:
+ * <pre>
+ *  0  u8  'E'          4  u16 width       8  u32 sequence
+ *  1  u8  version (2)  6  u16 height     12  f32 processing ms
+ *  2  u8  encoding                       16  f32 device fps
+ *  3  u8  flags (bit 0 = raw camera)     20  u32 payload bytes, then payload
+ * </pre>
+ * ENCODING_GRAY is width * height luminance bytes; edge masks use the
+ * {@link EdgeCodec} encodings. Every mask packet is a keyframe, since a client
+ * may have had the packet before it dropped.
+ */
+public class FrameStreamer implements Runnable {
+
+    public static final int MAGIC = 'E';
+    public static final int VERSION = 2;
+    public static final int HEADER_BYTES = 24;
+    public static final int ENCODING_GRAY = 0;
+    // Pool frames held at once: the pending one and the one being encoded
+    public static final int FRAMES_HELD = 2;
+
+    private static final long STATS_INTERVAL_NS = 1_000_000_000L;
+
+    private final StreamServer server;
+    private final long minIntervalNs;
+    private final Object lock = new Object();
+
+    // Guarded by lock
+    private FramePool.Frame pending;
+    private float pendingMs;
+    private float pendingFps;
+    private boolean running;
+
+    private Thread thread;
+    private long lastOfferNs;
+    private long lastStatsNs;
+    private byte[] scratch = new byte[0];
+    private EdgeCodec.Encoder encoder;
+    private int encoderWidth;
+    private int encoderHeight;
+
+    private volatile long framesEncoded;
+    private volatile long framesSkipped;
+    private volatile long encodeNanos;
+
+    /** maxFps caps the stream rate independently of processing; 0 streams every frame. */
+    public FrameStreamer(StreamServer server, float maxFps) {
+        this.server = server;
+        this.minIntervalNs = maxFps > 0 ? (long) (1_000_000_000L / maxFps) : 0;
+    }
+
+    public void start() {
+        synchronized (lock) {
+            if (running) {
+                return;
+            }
+            running = true;
+        }
+        thread = new Thread(this, "FrameStreamer");
+        thread.start();
+    }
+
+    public void stop() {
+        synchronized (lock) {
+            running = false;
+            lock.notifyAll();
+        }
+        if (thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            thread = null;
+        }
+        FramePool.Frame left;
+        synchronized (lock) {
+            left = pending;
+            pending = null;
+        }
+        if (left != null) {
+            left.release();
+        }
+    }
+
+    /**
+     * Called from the processing side with a frame it still owns. The
+     * streamer takes its own reference only if the frame will be sent, and
+     * never blocks.
+     */
+    public void offer(FramePool.Frame frame, float processingMs, float fps) {
+        if (!server.hasClients()) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (minIntervalNs > 0 && now - lastOfferNs < minIntervalNs) {
+            return;
+        }
+        lastOfferNs = now;
+
+        frame.retain();
+        FramePool.Frame replaced;
+        synchronized (lock) {
+            if (!running) {
+                frame.release();
+                return;
+            }
+            replaced = pending;
+            pending = frame;
+            pendingMs = processingMs;
+            pendingFps = fps;
+            lock.notifyAll();
+        }
+        if (replaced != null) {
+            framesSkipped++;
+            replaced.release();
+        }
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            FramePool.Frame frame;
+            float ms;
+            float fps;
+            synchronized (lock) {
+                while (running && pending == null) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (!running) {
+                    return;
+                }
+                frame = pending;
+                ms = pendingMs;
+                fps = pendingFps;
+                pending = null;
+            }
+
+            long start = System.nanoTime();
+            byte[] packet;
+            try {
+                packet = encode(frame, ms, fps);
+            } finally {
+                frame.release();
+            }
+            long end = System.nanoTime();
+            encodeNanos += end - start;
+            framesEncoded++;
+            server.broadcast(packet);
+
+            if (end - lastStatsNs >= STATS_INTERVAL_NS) {
+                lastStatsNs = end;
+                server.broadcastText(statsJson());
+            }
+        }
+    }
+
+    private byte[] encode(FramePool.Frame frame, float processingMs, float fps) {
+        int pixels = frame.width * frame.height;
+        if (scratch.length < HEADER_BYTES + pixels) {
+            scratch = new byte[HEADER_BYTES + pixels];
+        }
+        int encoding;
+        int payload;
+        // Colour frames, edges drawn in or not, go out as their luminance
+        boolean gray = frame.raw || frame.color;
+        if (gray) {
+            encoding = ENCODING_GRAY;
+            payload = frame.color
+                    ? writeLuma(frame.buffer, pixels, scratch, HEADER_BYTES)
+                    : writeGray(frame.buffer, frame.channels, pixels, scratch, HEADER_BYTES);
+        } else {
+            if (encoder == null || encoderWidth != frame.width || encoderHeight != frame.height) {
+                encoder = new EdgeCodec.Encoder(frame.width, frame.height, 0);
+                encoderWidth = frame.width;
+                encoderHeight = frame.height;
+            }
+            payload = encoder.encode(frame.buffer, frame.channels, EdgeCodec.AUTO, scratch, HEADER_BYTES);
+            encoding = encoder.getEncoding();
+        }
+
+        byte[] b = scratch;
+        b[0] = (byte) MAGIC;
+        b[1] = (byte) VERSION;
+        b[2] = (byte) encoding;
+        b[3] = (byte) (gray ? 1 : 0);
+        putShort(b, 4, frame.width);
+        putShort(b, 6, frame.height);
+        putInt(b, 8, (int) frame.sequence);
+        putInt(b, 12, Float.floatToIntBits(processingMs));
+        putInt(b, 16, Float.floatToIntBits(fps));
+        putInt(b, 20, payload);
+        return Arrays.copyOf(scratch, HEADER_BYTES + payload);
+    }
+
+    // First channel of each pixel: luminance for raw frames in either layout
+    private static int writeGray(ByteBuffer src, int channels, int pixels, byte[] dst, int offset) {
+        for (int i = 0; i < pixels; i++) {
+            dst[offset + i] = src.get(i * channels);
+        }
+        return pixels;
+    }
+
+    // BT.601 luma of RGBA pixels
+    private static int writeLuma(ByteBuffer src, int pixels, byte[] dst, int offset) {
+        for (int i = 0; i < pixels; i++) {
+            int r = src.get(i * 4) & 0xFF;
+            int g = src.get(i * 4 + 1) & 0xFF;
+            int b = src.get(i * 4 + 2) & 0xFF;
+            dst[offset + i] = (byte) ((r * 77 + g * 150 + b * 29) >> 8);
+        }
+        return pixels;
+    }
+
+    private static void putShort(byte[] b, int o, int v) {
+        b[o] = (byte) v;
+        b[o + 1] = (byte) (v >>> 8);
+    }
+
+    private static void putInt(byte[] b, int o, int v) {
+        b[o] = (byte) v;
+        b[o + 1] = (byte) (v >>> 8);
+        b[o + 2] = (byte) (v >>> 16);
+        b[o + 3] = (byte) (v >>> 24);
+    }
+
+    private String statsJson() {
+        return String.format(Locale.US,
+                "{\"type\":\"stats\",\"clients\":%d,\"encoded\":%d,\"skipped\":%d,"
+                        + "\"sent\":%d,\"dropped\":%d,\"encodeMs\":%.3f}",
+                server.getClientCount(), framesEncoded, framesSkipped,
+                server.getPacketsSent(), server.getPacketsDropped(), getAverageEncodeMs());
+    }
+
+    public long getFramesEncoded() {
+        return framesEncoded;
+    }
+
+    /** Frames replaced before the encoder got to them. */
+    public long getFramesSkipped() {
+        return framesSkipped;
+    }
+
+    public float getAverageEncodeMs() {
+        long n = framesEncoded;
+        return n == 0 ? 0f : encodeNanos / 1_000_000f / n;
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.edgeviewer;
+
+/**
+ * A texture that keeps its storage across frames. Storage is (re)allocated
+ * only when the frame size or format changes; otherwise a new frame is copied
+ * in with a sub-image upload, and a frame whose sequence number was already
+ * uploaded is skipped.
+ */
+public class FrameTexture {
+
+    private final GlTextureApi gl;
+    private int textureId = -1;
+    private int width;
+    private int height;
+    private int format;
+    private long uploadedSequence = -1;
+    private boolean raw;
+    private int filter;
+
+    private long allocations;
+    private long uploads;
+    private long bytesUploaded;
+
+    public FrameTexture(GlTextureApi gl) {
+        this.gl = gl;
+    }
+
+    /** Must run on the GL thread with a current context. */
+    public void create() {
+        textureId = gl.createTexture();
+        filter = GlTextureApi.FILTER_LINEAR;
+        width = 0;
+        height = 0;
+        uploadedSequence = -1;
+    }
+
+    public void destroy() {
+        if (textureId != -1) {
+            gl.deleteTexture(textureId);
+            textureId = -1;
+        }
+    }
+
+    /** Returns true if the frame's pixels were uploaded. */
+    public boolean upload(FramePool.Frame frame) {
+        if (frame.sequence == uploadedSequence) {
+            return false;
+        }
+        int frameFormat = frame.channels == 1 ? GlTextureApi.FORMAT_LUMINANCE : GlTextureApi.FORMAT_RGBA;
+
+        gl.bindTexture(textureId);
+        if (frame.width != width || frame.height != height || frameFormat != format) {
+            width = frame.width;
+            height = frame.height;
+            format = frameFormat;
+            gl.allocate(format, width, height);
+            allocations++;
+        }
+        frame.buffer.position(0);
+        gl.upload(format, width, height, frame.buffer);
+
+        uploadedSequence = frame.sequence;
+        raw = frame.raw;
+        uploads++;
+        bytesUploaded += (long) width * height * frame.channels;
+        return true;
+    }
+
+    /** Binds for display, filtered linearly when scaled to the view. */
+    public void bind() {
+        bind(GlTextureApi.FILTER_LINEAR);
+    }
+
+    /**
+     * Binds with the given filter. Shaders that read neighbouring texels (the
+     * GPU edge pass) need FILTER_NEAREST to get exact texel values.
+     */
+    public void bind(int filter) {
+        gl.bindTexture(textureId);
+        if (filter != this.filter) {
+            gl.setFilter(filter);
+            this.filter = filter;
+        }
+    }
+
+    /** Whether the current contents are raw camera luminance. */
+    public boolean isRaw() {
+        return raw;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public long getAllocationCount() {
+        return allocations;
+    }
+
+    public long getUploadCount() {
+        return uploads;
+    }
+
+    public long getBytesUploaded() {
+        return bytesUploaded;
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.edgeviewer;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+public final class FrameUtils {
+
+    private FrameUtils() {
+    }
+
+    /**
+     * Copies a width x height window of a strided 8-bit plane into a tightly
+     * packed buffer. Both buffers are left positioned at 0; with direct buffers
+     * the copy never touches the Java heap.
+     */
+    public static void copyPlane(ByteBuffer src, int rowStride, ByteBuffer dst, int width, int height) {
+        int srcLimit = src.limit();
+        dst.clear();
+        if (rowStride == width) {
+            src.limit(width * height);
+            src.position(0);
+            dst.put(src);
+        } else {
+            for (int row = 0; row < height; row++) {
+                int offset = row * rowStride;
+                src.limit(offset + width);
+                src.position(offset);
+                dst.put(src);
+            }
+        }
+        src.limit(srcLimit);
+        src.position(0);
+        dst.position(0);
+    }
+
+    /**
+     * Copies the profile's crop of a strided 8-bit plane into a tightly packed
+     * buffer of profile.getWidth() x profile.getHeight() bytes. With step 2 each
+     * output pixel is the rounded mean of a 2x2 block.
+     */
+    public static void copyRegion(ByteBuffer src, int rowStride, ProcessingProfile profile, ByteBuffer dst) {
+        int width = profile.getWidth();
+        int height = profile.getHeight();
+        if (profile.step == 1) {
+            int origin = profile.cropY * rowStride + profile.cropX;
+            if (origin == 0) {
+                copyPlane(src, rowStride, dst, width, height);
+                return;
+            }
+            int srcLimit = src.limit();
+            dst.clear();
+            for (int row = 0; row < height; row++) {
+                int offset = origin + row * rowStride;
+                src.limit(offset + width);
+                src.position(offset);
+                dst.put(src);
+            }
+            src.limit(srcLimit);
+            src.position(0);
+            dst.position(0);
+            return;
+        }
+        dst.clear();
+        for (int y = 0; y < height; y++) {
+            int top = (profile.cropY + 2 * y) * rowStride + profile.cropX;
+            int bottom = top + rowStride;
+            int o = y * width;
+            for (int x = 0; x < width; x++) {
+                int sum = (src.get(top + 2 * x) & 0xFF) + (src.get(top + 2 * x + 1) & 0xFF)
+                        + (src.get(bottom + 2 * x) & 0xFF) + (src.get(bottom + 2 * x + 1) & 0xFF);
+                dst.put(o + x, (byte) ((sum + 2) >> 2));
+            }
+        }
+    }
+
+    /**
+     * Expands count gray pixels to opaque RGBA, one int store per pixel. dst
+     * must be in native byte order.
+     */
+    public static void grayToRgba(ByteBuffer gray, ByteBuffer dst, int count) {
+        boolean little = dst.order() == ByteOrder.LITTLE_ENDIAN;
+        for (int i = 0; i < count; i++) {
+            int v = gray.get(i) & 0xFF;
+            int rgb = v | (v << 8) | (v << 16);
+            // R,G,B,A in memory regardless of byte order
+            dst.putInt(i * 4, little ? rgb | 0xFF000000 : (rgb << 8) | 0xFF);
+        }
+    }
+
+    /**
+     * Paints pixels whose edge value (the first of edgeChannels bytes) is
+     * non-zero green in an RGBA image, leaving the others as they are. rgba
+     * must be in native byte order.
+     */
+    public static void drawEdges(ByteBuffer edges, int edgeChannels, ByteBuffer rgba, int count) {
+        int green = rgba.order() == ByteOrder.LITTLE_ENDIAN ? 0xFF00FF00 : 0x00FF00FF;
+        for (int i = 0; i < count; i++) {
+            if (edges.get(i * edgeChannels) != 0) {
+                rgba.putInt(i * 4, green);
+            }
+        }
+    }
+}
@@ -1,132 +1,142 @@
 package com.example.edgeviewer;
 
 import android.opengl.GLES20;
-import android.opengl.GLUtils;
-import android.graphics.Bitmap;
-import android.graphics.Bitmap.Config;
+import android.util.Log;
 import android.view.SurfaceHolder;
 import android.view.SurfaceView;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
+import java.util.Locale;
 
-import javax.microedition.khronos.egl.EGL10;
-import javax.microedition.khronos.egl.EGLConfig;
-import javax.microedition.khronos.egl.EGLContext;
-import javax.microedition.khronos.egl.EGLDisplay;
-import javax.microedition.khronos.egl.EGLSurface;
+/**
+ * Draws published frames into a SurfaceView on a {@link RenderThread} that
+ * lives as long as the renderer: programs and textures are created once, and
+ * losing the surface (rotation, pause) only detaches the window until the
+ * next one is attached. Call {@link #release} when done with it.
+ */
+public class GLRenderer implements SurfaceHolder.Callback, RenderThread.Renderer {
 
-public class GLRenderer implements SurfaceHolder.Callback, Runnable {
+    private static final String TAG = "GLRenderer";
+
+    // Pool frames held at once: the published one waiting and the one being uploaded
+    public static final int FRAMES_HELD = 2;
 
     private final SurfaceHolder surfaceHolder;
-    private int surfaceWidth = 0;
-    private int surfaceHeight = 0;
+    private volatile int surfaceWidth = 0;
+    private volatile int surfaceHeight = 0;
     private FloatBuffer vertexBufferScaled;
 
-    private int textureId = -1;
-    private Bitmap frameBitmap;
-    private final Object frameLock = new Object();
+    private final FrameTexture frameTexture = new FrameTexture(new Gles20TextureApi());
+    private final GpuEdgePass gpuEdgePass = new GpuEdgePass();
+    private final FramePool framePool;
+    private final RenderScheduler scheduler = new RenderScheduler();
+    private final RenderThread renderThread;
 
-    private int width = 640;
-    private int height = 480;
-    private boolean running = false;
+    // Size of the frame the vertices were fitted to; follows the published
+    // frames, so a processing profile switch keeps the right aspect
+    private int width = 0;
+    private int height = 0;
 
     public volatile float lastProcessingMs = 0f;
+    // Raw frames are run through the GPU edge shaders while this is set;
+    // frames already processed on the CPU are shown as they are
     public volatile boolean showEdges = true;
 
-    public GLRenderer(SurfaceView surfaceView) {
+    private volatile LatencyStats stats;
+    // Submit time of the frame uploaded by the current draw, 0 if it shows no new frame
+    private long drawnSubmitNs;
+
+    public GLRenderer(SurfaceView surfaceView, FramePool framePool) {
         this.surfaceHolder = surfaceView.getHolder();
+        this.framePool = framePool;
+        // The context and shaders are ready before the surface first appears
+        renderThread = new RenderThread(new Egl10Api(), scheduler, this);
+        renderThread.start();
         surfaceHolder.addCallback(this);
-        frameBitmap = Bitmap.createBitmap(width, height, Config.ARGB_8888);
     }
 
-    public void updateFrame(byte[] rgbaBytes, float processingMs) {
-        synchronized (frameLock) {
-            frameBitmap.copyPixelsFromBuffer(ByteBuffer.wrap(rgbaBytes));
-            lastProcessingMs = processingMs;
-        }
+    // Called from the producer with a frame acquired from framePool; ownership
+    // passes to the renderer, which releases it after upload.
+    public void updateFrame(FramePool.Frame frame, float processingMs) {
+        frame.processingMs = processingMs;
+        framePool.publish(frame);
+        scheduler.signalFrame();
+    }
+
+    /** Records the upload, swap, end-to-end and resume stages into stats; null stops. */
+    public void setStats(LatencyStats stats) {
+        this.stats = stats;
+        renderThread.setStats(stats);
+    }
+
+    public RenderScheduler getScheduler() {
+        return scheduler;
+    }
+
+    public RenderThread getRenderThread() {
+        return renderThread;
+    }
+
+    /** Ends the render thread and frees the GL context; the renderer is unusable afterwards. */
+    public void release() {
+        surfaceHolder.removeCallback(this);
+        renderThread.release();
     }
 
     @Override
     public void surfaceCreated(SurfaceHolder holder) {
-        running = true;
-        new Thread(this).start();
+        renderThread.attachWindow(holder);
     }
 
     @Override
     public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) {
-        // No-op
+        // Vertices are refitted on the render thread when it picks this up
         surfaceWidth = width;
         surfaceHeight = height;
-        updateVerticesForAspectRatio();
-
+        scheduler.signalSurfaceChanged();
     }
 
     @Override
     public void surfaceDestroyed(SurfaceHolder holder) {
-        running = false;
+        // The surface must not be touched once this returns
+        renderThread.detachWindow();
     }
 
     @Override
-    public void run() {
-        EGL10 egl = (EGL10) EGLContext.getEGL();
-        EGLDisplay display = egl.eglGetDisplay(EGL10.EGL_DEFAULT_DISPLAY);
-        int[] version = new int[2];
-        egl.eglInitialize(display, version);
-
-        int[] configAttribs = {
-                EGL10.EGL_RENDERABLE_TYPE, 4,
-                EGL10.EGL_RED_SIZE, 8,
-                EGL10.EGL_GREEN_SIZE, 8,
-                EGL10.EGL_BLUE_SIZE, 8,
-                EGL10.EGL_ALPHA_SIZE, 8,
-                EGL10.EGL_NONE
-        };
-
-        EGLConfig[] configs = new EGLConfig[1];
-        int[] numConfig = new int[1];
-        egl.eglChooseConfig(display, configAttribs, configs, 1, numConfig);
-        EGLConfig config = configs[0];
-
-        int[] attribList = {
-                0x3098, 2,
-                EGL10.EGL_NONE
-        };
-        EGLContext context = egl.eglCreateContext(display, config,
-                EGL10.EGL_NO_CONTEXT, attribList);
-
-        EGLSurface surface = egl.eglCreateWindowSurface(display, config, surfaceHolder, null);
-        egl.eglMakeCurrent(display, surface, surface, context);
-
+    public void onContextCreated() {
         initGL();
+    }
 
-        while (running) {
-            drawFrame();
-            egl.eglSwapBuffers(display, surface);
+    @Override
+    public boolean onDraw(int work) {
+        return drawFrame(work);
+    }
+
+    @Override
+    public void onFrameShown(long nowNs, long resumeNs) {
+        LatencyStats s = stats;
+        if (s != null && drawnSubmitNs != 0) {
+            s.record(LatencyStats.END_TO_END, nowNs - drawnSubmitNs);
+        }
+        if (resumeNs != 0) {
+            Log.i(TAG, String.format(Locale.US, "Surface attach to first frame: %.1f ms (GL contexts: %d)",
+                    resumeNs / 1e6, renderThread.getContextsCreated()));
         }
+    }
 
-        egl.eglMakeCurrent(display, EGL10.EGL_NO_SURFACE,
-                EGL10.EGL_NO_SURFACE, EGL10.EGL_NO_CONTEXT);
-        egl.eglDestroySurface(display, surface);
-        egl.eglDestroyContext(display, context);
-        egl.eglTerminate(display);
+    @Override
+    public void onContextDestroyed() {
+        frameTexture.destroy();
+        gpuEdgePass.destroy();
+        GLES20.glDeleteProgram(program);
     }
 
     private int program;
-    private int positionHandle;
-    private int texCoordHandle;
 
-    private FloatBuffer vertexBuffer;
     private FloatBuffer texBuffer;
 
-    private final float[] vertices = {
-            -1f, -1f,
-             1f, -1f,
-            -1f,  1f,
-             1f,  1f
-    };
-
     private final float[] texCoords = {
             0f, 1f,
             1f, 1f,
@@ -135,62 +145,22 @@ public class GLRenderer implements SurfaceHolder.Callback, Runnable {
     };
 
     private void initGL() {
-        String vertexShaderCode =
-                "attribute vec4 aPosition;" +
-                "attribute vec2 aTexCoord;" +
-                "varying vec2 vTexCoord;" +
-                "void main() {" +
-                "  gl_Position = aPosition;" +
-                "  vTexCoord = aTexCoord;" +
-                "}";
-
-        String fragmentShaderCode =
-                "precision mediump float;" +
-                "varying vec2 vTexCoord;" +
-                "uniform sampler2D uTexture;" +
-                "void main() {" +
-                "  gl_FragColor = texture2D(uTexture, vTexCoord);" +
-                "}";
-
-        int vertexShader = loadShader(GLES20.GL_VERTEX_SHADER, vertexShaderCode);
-        int fragmentShader = loadShader(GLES20.GL_FRAGMENT_SHADER, fragmentShaderCode);
-
-        program = GLES20.glCreateProgram();
-        GLES20.glAttachShader(program, vertexShader);
-        GLES20.glAttachShader(program, fragmentShader);
-        GLES20.glLinkProgram(program);
-
-        positionHandle = GLES20.glGetAttribLocation(program, "aPosition");
-        texCoordHandle = GLES20.glGetAttribLocation(program, "aTexCoord");
-
-        vertexBuffer = ByteBuffer.allocateDirect(vertices.length * 4)
-                .order(ByteOrder.nativeOrder())
-                .asFloatBuffer();
-        vertexBuffer.put(vertices);
-        vertexBuffer.position(0);
-
-        texBuffer = ByteBuffer.allocateDirect(texCoords.length * 4)
-                .order(ByteOrder.nativeOrder())
-                .asFloatBuffer();
-        texBuffer.put(texCoords);
-        texBuffer.position(0);
-
-        int[] textures = new int[1];
-        GLES20.glGenTextures(1, textures, 0);
-        textureId = textures[0];
-
-        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, textureId);
-        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
-        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+        program = GlUtil.createProgram(EdgeShaders.VERTEX, EdgeShaders.DISPLAY_FRAGMENT);
+        texBuffer = GlUtil.floatBuffer(texCoords);
+
+        // Storage is allocated on the first frame and reused after that
+        frameTexture.create();
+        gpuEdgePass.create();
+        // A new context has an empty texture; nothing is drawn until a frame arrives
+        width = 0;
+        height = 0;
+        vertexBufferScaled = null;
     }
 
-    private int loadShader(int type, String code) {
-        int shader = GLES20.glCreateShader(type);
-        GLES20.glShaderSource(shader, code);
-        GLES20.glCompileShader(shader);
-        return shader;
-    }
     private void updateVerticesForAspectRatio() {
+        if (surfaceWidth == 0 || surfaceHeight == 0 || width == 0 || height == 0) {
+            return;
+        }
         float screenRatio = (float) surfaceWidth / surfaceHeight;
         float imageRatio = (float) width / height;
 
@@ -217,27 +187,51 @@ public class GLRenderer implements SurfaceHolder.Callback, Runnable {
     }
 
 
-    private void drawFrame() {
-        GLES20.glViewport(0, 0, surfaceWidth, surfaceHeight);
-        GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
-
-        GLES20.glUseProgram(program);
-
-        synchronized (frameLock) {
-            GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, textureId);
-            GLUtils.texImage2D(GLES20.GL_TEXTURE_2D, 0, frameBitmap, 0);
+    // Returns false if there was nothing new to show
+    private boolean drawFrame(int work) {
+        FramePool.Frame frame = framePool.takeLatest();
+        if (frame == null && (work & RenderScheduler.WORK_SURFACE) == 0) {
+            return false;
         }
 
-        GLES20.glEnableVertexAttribArray(positionHandle);
-        GLES20.glVertexAttribPointer(positionHandle, 2, GLES20.GL_FLOAT, false, 0, vertexBufferScaled);
-
+        drawnSubmitNs = 0;
+        if (frame != null) {
+            long start = System.nanoTime();
+            frameTexture.upload(frame);
+            LatencyStats s = stats;
+            if (s != null) {
+                s.record(LatencyStats.UPLOAD, System.nanoTime() - start);
+            }
+            lastProcessingMs = frame.processingMs;
+            drawnSubmitNs = frame.submitNs;
+            frame.release();
+        }
+        if ((work & RenderScheduler.WORK_SURFACE) != 0
+                || frameTexture.getWidth() != width || frameTexture.getHeight() != height) {
+            width = frameTexture.getWidth();
+            height = frameTexture.getHeight();
+            updateVerticesForAspectRatio();
+        }
+        if (vertexBufferScaled == null) {
+            // Nothing uploaded yet
+            return false;
+        }
 
-        GLES20.glEnableVertexAttribArray(texCoordHandle);
-        GLES20.glVertexAttribPointer(texCoordHandle, 2, GLES20.GL_FLOAT, false, 0, texBuffer);
+        boolean gpuEdges = showEdges && frameTexture.isRaw();
+        if (gpuEdges) {
+            gpuEdgePass.computeGradients(frameTexture);
+        }
 
-        GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
+        GLES20.glViewport(0, 0, surfaceWidth, surfaceHeight);
+        GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
 
-        GLES20.glDisableVertexAttribArray(positionHandle);
-        GLES20.glDisableVertexAttribArray(texCoordHandle);
+        if (gpuEdges) {
+            gpuEdgePass.useSuppressProgram();
+        } else {
+            GLES20.glUseProgram(program);
+            frameTexture.bind();
+        }
+        GlUtil.drawQuad(vertexBufferScaled, texBuffer);
+        return true;
     }
 }
@@ -0,0 +1,31 @@
+package com.example.edgeviewer;
+
+import java.nio.Buffer;
+
+/**
+ * The GL calls {@link FrameTexture} needs, so the upload logic can run against
+ * a software stand-in as well as GLES20 ({@link Gles20TextureApi}).
+ */
+public interface GlTextureApi {
+
+    int FORMAT_LUMINANCE = 1;
+    int FORMAT_RGBA = 4;
+
+    int FILTER_LINEAR = 0;
+    int FILTER_NEAREST = 1;
+
+    /** Creates and binds a clamp-to-edge texture with FILTER_LINEAR. */
+    int createTexture();
+
+    void deleteTexture(int textureId);
+
+    void bindTexture(int textureId);
+
+    /** Sets the min and mag filter of the bound texture. */
+    void setFilter(int filter);
+
+    /** Allocates storage for width x height texels of format, contents undefined. */
+    void allocate(int format, int width, int height);
+
+    void upload(int format, int width, int height, Buffer pixels);
+}
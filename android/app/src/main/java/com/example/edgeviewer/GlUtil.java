@@ -0,0 +1,77 @@
+package com.example.edgeviewer;
+
+import android.opengl.GLES20;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+final class GlUtil {
+
+    // Every program binds its attributes to the same slots, so one set of
+    // vertex arrays serves all of them
+    static final int ATTRIB_POSITION = 0;
+    static final int ATTRIB_TEX_COORD = 1;
+
+    private GlUtil() {
+    }
+
+    static int createProgram(String vertexCode, String fragmentCode) {
+        int vertexShader = loadShader(GLES20.GL_VERTEX_SHADER, vertexCode);
+        int fragmentShader = loadShader(GLES20.GL_FRAGMENT_SHADER, fragmentCode);
+
+        int program = GLES20.glCreateProgram();
+        GLES20.glAttachShader(program, vertexShader);
+        GLES20.glAttachShader(program, fragmentShader);
+        GLES20.glBindAttribLocation(program, ATTRIB_POSITION, "aPosition");
+        GLES20.glBindAttribLocation(program, ATTRIB_TEX_COORD, "aTexCoord");
+        GLES20.glLinkProgram(program);
+        GLES20.glDeleteShader(vertexShader);
+        GLES20.glDeleteShader(fragmentShader);
+
+        int[] status = new int[1];
+        GLES20.glGetProgramiv(program, GLES20.GL_LINK_STATUS, status, 0);
+        if (status[0] == 0) {
+            String log = GLES20.glGetProgramInfoLog(program);
+            GLES20.glDeleteProgram(program);
+            throw new RuntimeException("Program link failed: " + log);
+        }
+        return program;
+    }
+
+    private static int loadShader(int type, String code) {
+        int shader = GLES20.glCreateShader(type);
+        GLES20.glShaderSource(shader, code);
+        GLES20.glCompileShader(shader);
+
+        int[] status = new int[1];
+        GLES20.glGetShaderiv(shader, GLES20.GL_COMPILE_STATUS, status, 0);
+        if (status[0] == 0) {
+            String log = GLES20.glGetShaderInfoLog(shader);
+            GLES20.glDeleteShader(shader);
+            throw new RuntimeException("Shader compile failed: " + log);
+        }
+        return shader;
+    }
+
+    static FloatBuffer floatBuffer(float[] values) {
+        FloatBuffer buffer = ByteBuffer.allocateDirect(values.length * 4)
+                .order(ByteOrder.nativeOrder())
+                .asFloatBuffer();
+        buffer.put(values);
+        buffer.position(0);
+        return buffer;
+    }
+
+    static void drawQuad(FloatBuffer vertices, FloatBuffer texCoords) {
+        GLES20.glEnableVertexAttribArray(ATTRIB_POSITION);
+        GLES20.glVertexAttribPointer(ATTRIB_POSITION, 2, GLES20.GL_FLOAT, false, 0, vertices);
+        GLES20.glEnableVertexAttribArray(ATTRIB_TEX_COORD);
+        GLES20.glVertexAttribPointer(ATTRIB_TEX_COORD, 2, GLES20.GL_FLOAT, false, 0, texCoords);
+
+        GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
+
+        GLES20.glDisableVertexAttribArray(ATTRIB_POSITION);
+        GLES20.glDisableVertexAttribArray(ATTRIB_TEX_COORD);
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.edgeviewer;
+
+import android.opengl.GLES20;
+
+import java.nio.Buffer;
+
+public class Gles20TextureApi implements GlTextureApi {
+
+    @Override
+    public int createTexture() {
+        int[] textures = new int[1];
+        GLES20.glGenTextures(1, textures, 0);
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, textures[0]);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+        return textures[0];
+    }
+
+    @Override
+    public void deleteTexture(int textureId) {
+        GLES20.glDeleteTextures(1, new int[]{textureId}, 0);
+    }
+
+    @Override
+    public void bindTexture(int textureId) {
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, textureId);
+    }
+
+    @Override
+    public void setFilter(int filter) {
+        int glFilter = filter == FILTER_NEAREST ? GLES20.GL_NEAREST : GLES20.GL_LINEAR;
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, glFilter);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, glFilter);
+    }
+
+    @Override
+    public void allocate(int format, int width, int height) {
+        int glFormat = glFormat(format);
+        GLES20.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, glFormat, width, height, 0,
+                glFormat, GLES20.GL_UNSIGNED_BYTE, null);
+    }
+
+    @Override
+    public void upload(int format, int width, int height, Buffer pixels) {
+        // Luminance rows are not 4-byte aligned for every width
+        GLES20.glPixelStorei(GLES20.GL_UNPACK_ALIGNMENT, format == FORMAT_RGBA ? 4 : 1);
+        GLES20.glTexSubImage2D(GLES20.GL_TEXTURE_2D, 0, 0, 0, width, height,
+                glFormat(format), GLES20.GL_UNSIGNED_BYTE, pixels);
+    }
+
+    private static int glFormat(int format) {
+        return format == FORMAT_RGBA ? GLES20.GL_RGBA : GLES20.GL_LUMINANCE;
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.edgeviewer;
+
+import android.opengl.GLES20;
+
+import java.nio.FloatBuffer;
+
+/**
+ * Two-pass edge detection on the GPU (see {@link EdgeShaders}). Pass 1 renders
+ * gradients of the raw luminance frame into an offscreen RGBA8 texture sized
+ * to the frame; pass 2 suppresses and thresholds them while drawing to the
+ * screen. All GL objects are created on the GL thread.
+ */
+class GpuEdgePass {
+
+    // Pass 1 maps the frame 1:1 onto the offscreen target, no flip
+    private static final float[] FULL_QUAD = {
+            -1f, -1f,
+             1f, -1f,
+            -1f,  1f,
+             1f,  1f
+    };
+    private static final float[] IDENTITY_TEX_COORDS = {
+            0f, 0f,
+            1f, 0f,
+            0f, 1f,
+            1f, 1f
+    };
+
+    private int sobelProgram;
+    private int sobelTexelSize;
+    private int suppressProgram;
+    private int suppressTexelSize;
+    private int suppressThreshold;
+
+    private FloatBuffer quad;
+    private FloatBuffer identityTexCoords;
+
+    private int framebuffer;
+    private int gradientTexture = -1;
+    private int targetWidth;
+    private int targetHeight;
+
+    private volatile float threshold = EdgeShaders.threshold(100);
+
+    void create() {
+        sobelProgram = GlUtil.createProgram(EdgeShaders.VERTEX, EdgeShaders.SOBEL_FRAGMENT);
+        sobelTexelSize = GLES20.glGetUniformLocation(sobelProgram, "uTexelSize");
+        GLES20.glUseProgram(sobelProgram);
+        GLES20.glUniform1i(GLES20.glGetUniformLocation(sobelProgram, "uTexture"), 0);
+
+        suppressProgram = GlUtil.createProgram(EdgeShaders.VERTEX, EdgeShaders.SUPPRESS_FRAGMENT);
+        suppressTexelSize = GLES20.glGetUniformLocation(suppressProgram, "uTexelSize");
+        suppressThreshold = GLES20.glGetUniformLocation(suppressProgram, "uThreshold");
+        GLES20.glUseProgram(suppressProgram);
+        GLES20.glUniform1i(GLES20.glGetUniformLocation(suppressProgram, "uGradient"), 0);
+
+        quad = GlUtil.floatBuffer(FULL_QUAD);
+        identityTexCoords = GlUtil.floatBuffer(IDENTITY_TEX_COORDS);
+
+        int[] ids = new int[1];
+        GLES20.glGenFramebuffers(1, ids, 0);
+        framebuffer = ids[0];
+        targetWidth = 0;
+        targetHeight = 0;
+    }
+
+    void destroy() {
+        GLES20.glDeleteProgram(sobelProgram);
+        GLES20.glDeleteProgram(suppressProgram);
+        GLES20.glDeleteFramebuffers(1, new int[]{framebuffer}, 0);
+        if (gradientTexture != -1) {
+            GLES20.glDeleteTextures(1, new int[]{gradientTexture}, 0);
+            gradientTexture = -1;
+        }
+    }
+
+    /** Threshold in CPU Sobel units, comparable to the Canny thresholds. */
+    void setThreshold(int sobelL1) {
+        threshold = EdgeShaders.threshold(sobelL1);
+    }
+
+    /** Pass 1: gradients of source into the offscreen target. Leaves framebuffer 0 bound. */
+    void computeGradients(FrameTexture source) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        ensureTarget(width, height);
+
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, framebuffer);
+        GLES20.glViewport(0, 0, width, height);
+        GLES20.glUseProgram(sobelProgram);
+        GLES20.glUniform2f(sobelTexelSize, 1f / width, 1f / height);
+        source.bind(GlTextureApi.FILTER_NEAREST);
+        GlUtil.drawQuad(quad, identityTexCoords);
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+    }
+
+    /** Pass 2 setup: binds the suppression program and gradient texture for drawing. */
+    void useSuppressProgram() {
+        GLES20.glUseProgram(suppressProgram);
+        GLES20.glUniform2f(suppressTexelSize, 1f / targetWidth, 1f / targetHeight);
+        GLES20.glUniform1f(suppressThreshold, threshold);
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, gradientTexture);
+    }
+
+    private void ensureTarget(int width, int height) {
+        if (width == targetWidth && height == targetHeight) {
+            return;
+        }
+        if (gradientTexture == -1) {
+            int[] ids = new int[1];
+            GLES20.glGenTextures(1, ids, 0);
+            gradientTexture = ids[0];
+        }
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, gradientTexture);
+        // Neighbour lookups must hit exact texels
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_NEAREST);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_NEAREST);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+        GLES20.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, GLES20.GL_RGBA, width, height, 0,
+                GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, null);
+
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, framebuffer);
+        GLES20.glFramebufferTexture2D(GLES20.GL_FRAMEBUFFER, GLES20.GL_COLOR_ATTACHMENT0,
+                GLES20.GL_TEXTURE_2D, gradientTexture, 0);
+        int status = GLES20.glCheckFramebufferStatus(GLES20.GL_FRAMEBUFFER);
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+        if (status != GLES20.GL_FRAMEBUFFER_COMPLETE) {
+            throw new RuntimeException("Gradient framebuffer incomplete: " + status);
+        }
+        targetWidth = width;
+        targetHeight = height;
+    }
+}
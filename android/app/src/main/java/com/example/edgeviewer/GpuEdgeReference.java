@@ -0,0 +1,89 @@
+package com.example.edgeviewer;
+
+/**
+ * CPU model of the {@link EdgeShaders} passes, for checking GPU output on CI:
+ * nearest clamp-to-edge sampling, float (highp) math, and the 8-bit
+ * quantisation of the intermediate RGBA8 gradient target. Expect agreement up to rounding on
+ * pixels whose magnitude sits exactly at a neighbour's or the threshold.
+ */
+public class GpuEdgeReference {
+
+    private final int width;
+    private final int height;
+    // Quantised pass-1 target: magnitude and direction, each 0..255
+    private final int[] magnitude;
+    private final int[] dirX;
+    private final int[] dirY;
+
+    public GpuEdgeReference(int width, int height) {
+        this.width = width;
+        this.height = height;
+        int size = width * height;
+        magnitude = new int[size];
+        dirX = new int[size];
+        dirY = new int[size];
+    }
+
+    /** Writes 255 for edge pixels and 0 elsewhere into mask. */
+    public void process(byte[] gray, float threshold, byte[] mask) {
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                float tl = lum(gray, x - 1, y - 1), t = lum(gray, x, y - 1), tr = lum(gray, x + 1, y - 1);
+                float l = lum(gray, x - 1, y), r = lum(gray, x + 1, y);
+                float bl = lum(gray, x - 1, y + 1), b = lum(gray, x, y + 1), br = lum(gray, x + 1, y + 1);
+                float gx = (tr + 2f * r + br) - (tl + 2f * l + bl);
+                float gy = (bl + 2f * b + br) - (tl + 2f * t + tr);
+                float mag = Math.abs(gx) + Math.abs(gy);
+                float dx = mag > 0f ? gx / mag : 0f;
+                float dy = mag > 0f ? gy / mag : 0f;
+                int i = y * width + x;
+                magnitude[i] = quantize(mag / 8f);
+                dirX[i] = quantize(dx * 0.5f + 0.5f);
+                dirY[i] = quantize(dy * 0.5f + 0.5f);
+            }
+        }
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int i = y * width + x;
+                float dx = dirX[i] / 255f * 2f - 1f;
+                float dy = dirY[i] / 255f * 2f - 1f;
+                float ax = Math.abs(dx);
+                float ay = Math.abs(dy);
+                int sx;
+                int sy;
+                if (ay < 0.41421356f * ax) {
+                    sx = 1;
+                    sy = 0;
+                } else if (ay > 2.41421356f * ax) {
+                    sx = 0;
+                    sy = 1;
+                } else {
+                    sx = (int) Math.signum(dx);
+                    sy = (int) Math.signum(dy);
+                }
+                float m = magnitude[i] / 255f;
+                float n1 = gradientAt(x + sx, y + sy) / 255f;
+                float n2 = gradientAt(x - sx, y - sy) / 255f;
+                boolean edge = m > threshold && m >= n1 && m > n2;
+                mask[i] = edge ? (byte) 255 : 0;
+            }
+        }
+    }
+
+    private float lum(byte[] gray, int x, int y) {
+        x = Math.max(0, Math.min(width - 1, x));
+        y = Math.max(0, Math.min(height - 1, y));
+        return (gray[y * width + x] & 0xFF) / 255f;
+    }
+
+    private int gradientAt(int x, int y) {
+        x = Math.max(0, Math.min(width - 1, x));
+        y = Math.max(0, Math.min(height - 1, y));
+        return magnitude[y * width + x];
+    }
+
+    private static int quantize(float v) {
+        return Math.round(Math.max(0f, Math.min(1f, v)) * 255f);
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.edgeviewer;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Plays the binary PGM (P5) images in a directory, in file name order, as a
+ * {@link ReplayFrameSource}. PGM needs no image decoder, so the same stills
+ * run on a device and on a desktop JVM; convert other formats first, e.g.
+ * {@code convert frame.png frame.pgm}. Every image is loaded up front so disk
+ * reads never show up in the measured throughput.
+ */
+public class ImageDirectoryFrameSource extends ReplayFrameSource {
+
+    public static final String EXTENSION = ".pgm";
+
+    private ImageDirectoryFrameSource(FrameRecording frames, boolean realtime, int loops) {
+        super(frames, realtime, loops);
+    }
+
+    /**
+     * fps &gt; 0 paces the images at that rate, 0 plays them as fast as they
+     * are accepted; loops is how often to play the directory, 0 for ever.
+     */
+    public static ImageDirectoryFrameSource open(File dir, float fps, int loops) throws IOException {
+        File[] files = dir.listFiles((d, name) -> name.toLowerCase().endsWith(EXTENSION));
+        if (files == null || files.length == 0) {
+            throw new IOException("no " + EXTENSION + " images in " + dir);
+        }
+        Arrays.sort(files);
+        long intervalNs = (long) (1_000_000_000L / (fps > 0 ? fps : 30f));
+        ByteBuffer[] frames = new ByteBuffer[files.length];
+        long[] timestamps = new long[files.length];
+        int[] size = new int[2];
+        int width = 0;
+        int height = 0;
+        for (int i = 0; i < files.length; i++) {
+            frames[i] = readPgm(files[i], size);
+            if (i == 0) {
+                width = size[0];
+                height = size[1];
+            } else if (size[0] != width || size[1] != height) {
+                throw new IOException(files[i] + " is " + size[0] + "x" + size[1]
+                        + ", expected " + width + "x" + height);
+            }
+            timestamps[i] = i * intervalNs;
+        }
+        return new ImageDirectoryFrameSource(new FrameRecording(width, height, frames, timestamps), fps > 0, loops);
+    }
+
+    /** Reads an 8-bit P5 image into a direct buffer; size receives width and height. */
+    static ByteBuffer readPgm(File file, int[] size) throws IOException {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            if (in.read() != 'P' || in.read() != '5') {
+                throw new IOException(file + " is not a binary PGM");
+            }
+            int width = readHeaderInt(in, file);
+            int height = readHeaderInt(in, file);
+            int maxValue = readHeaderInt(in, file);
+            // readHeaderInt consumed the single whitespace byte that ends the header
+            if (width <= 0 || height <= 0 || maxValue <= 0 || maxValue > 255) {
+                throw new IOException(file + ": unsupported PGM " + width + "x" + height + " max " + maxValue);
+            }
+            byte[] pixels = new byte[width * height];
+            int read = 0;
+            while (read < pixels.length) {
+                int n = in.read(pixels, read, pixels.length - read);
+                if (n < 0) {
+                    throw new IOException(file + " is truncated");
+                }
+                read += n;
+            }
+            size[0] = width;
+            size[1] = height;
+            ByteBuffer frame = ByteBuffer.allocateDirect(pixels.length).order(ByteOrder.nativeOrder());
+            frame.put(pixels);
+            frame.clear();
+            return frame;
+        }
+    }
+
+    private static int readHeaderInt(InputStream in, File file) throws IOException {
+        int c = in.read();
+        while (c == '#' || Character.isWhitespace(c)) {
+            if (c == '#') {
+                while (c != '\n' && c != -1) {
+                    c = in.read();
+                }
+            }
+            c = in.read();
+        }
+        int value = 0;
+        while (c >= '0' && c <= '9') {
+            value = value * 10 + (c - '0');
+            c = in.read();
+        }
+        if (!Character.isWhitespace(c)) {
+            throw new IOException(file + ": bad PGM header");
+        }
+        return value;
+    }
+}
@@ -0,0 +1,285 @@
+package com.example.edgeviewer;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Wraps another {@link EdgeDetector} for mostly static scenes: the frame is cut
+ * into tiles, and only tiles whose luminance changed since they were last
+ * processed are run through the inner detector again. Everything else is
+ * served from the cached output.
+ *
+ * A tile counts as changed when its mean absolute difference from the
+ * luminance it was last processed from exceeds a threshold. Each dirty tile is
+ * processed in a fixed-size window that includes a halo of neighbouring
+ * pixels, so gradients and non-max suppression inside the tile match a full
+ * frame run. Hysteresis only sees the window, so an edge chain running
+ * through unchanged tiles can come out differently; every refreshInterval
+ * frames all tiles are reprocessed to bound that drift.
+ *
+ * The halo must be at least twice the inner detector's reach
+ * ({@link EdgeDetector#getBorder}, e.g. 4 for Canny after a 5x5 blur): pixels
+ * that close outside a dirty tile see its change and are rewritten from the
+ * window, so they need that much valid input around them again. A native
+ * graph changed later to reach further makes {@link #process} throw.
+ *
+ * Adaptive thresholds ({@link NativeEdgeDetector#setAutoThresholds}) are
+ * rejected the same way: each tile window would feed its own histogram into
+ * the smoothed thresholds, so neighbouring tiles would be cut at different
+ * levels and show seams.
+ */
+public class IncrementalEdgeDetector implements EdgeDetector {
+
+    public static final int DEFAULT_TILE_SIZE = 64;
+    public static final int DEFAULT_HALO = 6;
+    public static final int DEFAULT_REFRESH_INTERVAL = 30;
+    // Mean absolute difference per pixel; above typical sensor noise
+    public static final int DEFAULT_THRESHOLD = 4;
+
+    private final EdgeDetector inner;
+    private final int tileSize;
+    private final int halo;
+    private final int refreshInterval;
+    private final int threshold;
+
+    private int width;
+    private int height;
+    private int channels;
+    private int tilesX;
+    private int tilesY;
+    private int windowWidth;
+    private int windowHeight;
+
+    private ByteBuffer reference;
+    private ByteBuffer window;
+    private ByteBuffer windowOut;
+    private ByteBuffer cached;
+    private boolean[] dirty;
+    private int framesSinceRefresh;
+
+    private long frames;
+    private long fullRefreshes;
+    private long dirtyTiles;
+    private long totalTiles;
+    private long processedPixels;
+    private float lastDirtyRatio;
+
+    public IncrementalEdgeDetector(EdgeDetector inner) {
+        this(inner, DEFAULT_TILE_SIZE, Math.max(DEFAULT_HALO, 2 * inner.getBorder()),
+                DEFAULT_REFRESH_INTERVAL, DEFAULT_THRESHOLD);
+    }
+
+    /** refreshInterval 0 disables periodic refreshes; the first frame is always full. */
+    public IncrementalEdgeDetector(EdgeDetector inner, int tileSize, int halo,
+                                   int refreshInterval, int threshold) {
+        if (tileSize < 8) {
+            throw new IllegalArgumentException("tileSize must be at least 8");
+        }
+        if (halo < 2 * inner.getBorder()) {
+            throw new IllegalArgumentException("halo " + halo + " is less than twice the inner detector's border "
+                    + inner.getBorder());
+        }
+        if (hasAutoThresholds(inner)) {
+            throw new IllegalArgumentException("inner detector has adaptive thresholds");
+        }
+        this.inner = inner;
+        this.tileSize = tileSize;
+        this.halo = halo;
+        this.refreshInterval = refreshInterval;
+        this.threshold = threshold;
+    }
+
+    @Override
+    public void init(int width, int height, int outputChannels) {
+        this.width = width;
+        this.height = height;
+        this.channels = outputChannels;
+        tilesX = (width + tileSize - 1) / tileSize;
+        tilesY = (height + tileSize - 1) / tileSize;
+        windowWidth = Math.min(width, tileSize + 2 * halo);
+        windowHeight = Math.min(height, tileSize + 2 * halo);
+        inner.init(windowWidth, windowHeight, outputChannels);
+
+        // Kept across re-inits when big enough, as profile switches re-init often;
+        // limits are the current frame's size
+        reference = reuse(reference, width * height);
+        window = reuse(window, windowWidth * windowHeight);
+        windowOut = reuse(windowOut, windowWidth * windowHeight * outputChannels);
+        cached = reuse(cached, width * height * outputChannels);
+        if (dirty == null || dirty.length != tilesX * tilesY) {
+            dirty = new boolean[tilesX * tilesY];
+        }
+        framesSinceRefresh = -1;
+    }
+
+    @Override
+    public float process(ByteBuffer gray, int rowStride, ByteBuffer out) {
+        long start = System.nanoTime();
+
+        // Read per frame: a native graph can be swapped at any time
+        int border = inner.getBorder();
+        if (2 * border > halo) {
+            throw new IllegalStateException("inner detector border " + border + " needs a halo of " + 2 * border);
+        }
+        if (hasAutoThresholds(inner)) {
+            throw new IllegalStateException("inner detector has adaptive thresholds");
+        }
+        boolean full = framesSinceRefresh < 0
+                || (refreshInterval > 0 && framesSinceRefresh >= refreshInterval);
+        int count = 0;
+        for (int ty = 0; ty < tilesY; ty++) {
+            for (int tx = 0; tx < tilesX; tx++) {
+                boolean d = full || tileChanged(gray, rowStride, tx, ty);
+                dirty[ty * tilesX + tx] = d;
+                if (d) {
+                    count++;
+                }
+            }
+        }
+        for (int ty = 0; ty < tilesY; ty++) {
+            for (int tx = 0; tx < tilesX; tx++) {
+                if (dirty[ty * tilesX + tx]) {
+                    processTile(gray, rowStride, tx, ty, border);
+                }
+            }
+        }
+
+        cached.position(0);
+        out.clear();
+        out.put(cached);
+        out.position(0);
+        cached.position(0);
+
+        framesSinceRefresh = full ? 0 : framesSinceRefresh + 1;
+        frames++;
+        if (full) {
+            fullRefreshes++;
+        }
+        dirtyTiles += count;
+        totalTiles += dirty.length;
+        processedPixels += (long) count * windowWidth * windowHeight;
+        lastDirtyRatio = (float) count / dirty.length;
+        return (System.nanoTime() - start) / 1_000_000f;
+    }
+
+    @Override
+    public int getBorder() {
+        return inner.getBorder();
+    }
+
+    @Override
+    public void release() {
+        inner.release();
+    }
+
+    private static boolean hasAutoThresholds(EdgeDetector detector) {
+        return detector instanceof NativeEdgeDetector
+                && ((NativeEdgeDetector) detector).getAutoThresholds() != NativeBridge.AUTO_OFF;
+    }
+
+    // Mean absolute difference against the luminance the tile was last processed from
+    private boolean tileChanged(ByteBuffer gray, int rowStride, int tx, int ty) {
+        int x0 = tx * tileSize;
+        int y0 = ty * tileSize;
+        int x1 = Math.min(width, x0 + tileSize);
+        int y1 = Math.min(height, y0 + tileSize);
+        long limit = (long) threshold * (x1 - x0) * (y1 - y0);
+        long sad = 0;
+        for (int y = y0; y < y1; y++) {
+            int src = y * rowStride;
+            int ref = y * width;
+            for (int x = x0; x < x1; x++) {
+                int diff = (gray.get(src + x) & 0xFF) - (reference.get(ref + x) & 0xFF);
+                sad += diff < 0 ? -diff : diff;
+            }
+            if (sad > limit) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void processTile(ByteBuffer gray, int rowStride, int tx, int ty, int border) {
+        int x0 = tx * tileSize;
+        int y0 = ty * tileSize;
+        int x1 = Math.min(width, x0 + tileSize);
+        int y1 = Math.min(height, y0 + tileSize);
+
+        // Fixed-size window around the tile, shifted inward at the frame edges
+        int wx = clamp(x0 - halo, 0, width - windowWidth);
+        int wy = clamp(y0 - halo, 0, height - windowHeight);
+        copyRect(gray, rowStride, wx, wy, window, windowWidth, 0, 0, windowWidth, windowHeight);
+        inner.process(window, windowWidth, windowOut);
+
+        // Write back the tile plus whatever of the halo is still exact, which
+        // also refreshes neighbour pixels that see this tile's changes
+        int margin = halo - border;
+        int bx0 = Math.max(x0 - margin, wx > 0 ? wx + border : 0);
+        int by0 = Math.max(y0 - margin, wy > 0 ? wy + border : 0);
+        int bx1 = Math.min(x1 + margin, wx + windowWidth < width ? wx + windowWidth - border : width);
+        int by1 = Math.min(y1 + margin, wy + windowHeight < height ? wy + windowHeight - border : height);
+        copyRect(windowOut, windowWidth * channels, (bx0 - wx) * channels, by0 - wy,
+                cached, width * channels, bx0 * channels, by0, (bx1 - bx0) * channels, by1 - by0);
+
+        // Later frames are compared against what this tile was computed from
+        copyRect(gray, rowStride, x0, y0, reference, width, x0, y0, x1 - x0, y1 - y0);
+    }
+
+    // Copies rows x rowBytes from (srcX bytes, srcY rows) in src to dst; both end at position 0
+    private static void copyRect(ByteBuffer src, int srcStride, int srcX, int srcY,
+                                 ByteBuffer dst, int dstStride, int dstX, int dstY, int rowBytes, int rows) {
+        int srcLimit = src.limit();
+        int dstLimit = dst.limit();
+        for (int row = 0; row < rows; row++) {
+            int s = (srcY + row) * srcStride + srcX;
+            int d = (dstY + row) * dstStride + dstX;
+            src.limit(s + rowBytes);
+            src.position(s);
+            dst.limit(d + rowBytes);
+            dst.position(d);
+            dst.put(src);
+        }
+        src.limit(srcLimit);
+        src.position(0);
+        dst.limit(dstLimit);
+        dst.position(0);
+    }
+
+    private static int clamp(int v, int min, int max) {
+        return v < min ? min : (v > max ? max : v);
+    }
+
+    private static ByteBuffer reuse(ByteBuffer buffer, int bytes) {
+        if (buffer == null || buffer.capacity() < bytes) {
+            buffer = ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+        }
+        buffer.clear();
+        buffer.limit(bytes);
+        return buffer;
+    }
+
+    /** Share of tiles recomputed in the last frame. */
+    public float getLastDirtyRatio() {
+        return lastDirtyRatio;
+    }
+
+    public float getAverageDirtyRatio() {
+        return totalTiles == 0 ? 0f : (float) dirtyTiles / totalTiles;
+    }
+
+    /**
+     * Pixels run through the inner detector, halos included, relative to
+     * processing every frame in full; 1 - this is the saving.
+     */
+    public float getProcessedPixelRatio() {
+        return frames == 0 ? 0f : (float) (processedPixels / ((double) frames * width * height));
+    }
+
+    public long getFrameCount() {
+        return frames;
+    }
+
+    public long getFullRefreshCount() {
+        return fullRefreshes;
+    }
+}
@@ -0,0 +1,262 @@
+package com.example.edgeviewer;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Portable edge detector used as a fallback when native-lib is unavailable and
+ * as a reference for checking native output. Canny mode runs Gaussian blur
+ * (optional), Sobel, non-max suppression and hysteresis; Sobel mode outputs the
+ * clamped gradient magnitude. Scratch buffers are allocated in {@link #init}
+ * and only ever grow, so switching back and forth between frame sizes (e.g.
+ * processing profiles) allocates nothing once the largest has been seen.
+ *
+ * With parallelism > 1 each phase is split into horizontal bands run on a
+ * fork-join pool. Bands write only their own rows and read neighbouring (halo)
+ * rows from the previous phase's full-frame output, which is complete before
+ * the next phase starts, so the result is identical to the single-threaded one.
+ * Hysteresis follows edges across the whole frame and stays sequential.
+ */
+public class JavaEdgeDetector implements EdgeDetector {
+
+    public enum Mode { SOBEL, CANNY }
+
+    // Phases, run in order over row ranges
+    static final int PHASE_BLUR_H = 0;
+    static final int PHASE_BLUR_V = 1;
+    static final int PHASE_SOBEL = 2;
+    static final int PHASE_SUPPRESS = 3;
+    static final int PHASE_OUTPUT = 4;
+
+    private final Mode mode;
+    private final int lowThreshold;
+    private final int highThreshold;
+    private final boolean blur;
+    private final int parallelism;
+
+    private int width;
+    private int height;
+    private int outputChannels;
+
+    private byte[] src;
+    private int[] blurTmp;
+    private byte[] blurred;
+    private int[] magnitude;
+    private byte[] direction;
+    private byte[] edgeMap;
+    private int[] stack;
+    private byte[] output;
+
+    private ForkJoinPool pool;
+    private PhaseTask phaseTask;
+    // Height the bands were cut for
+    private int phaseHeight;
+
+    /** Canny with the native thresholds (50/150) and no pre-blur, like cv::Canny. */
+    public JavaEdgeDetector() {
+        this(Mode.CANNY, 50, 150, false);
+    }
+
+    public JavaEdgeDetector(Mode mode, int lowThreshold, int highThreshold, boolean blur) {
+        this(mode, lowThreshold, highThreshold, blur, 1);
+    }
+
+    public JavaEdgeDetector(Mode mode, int lowThreshold, int highThreshold, boolean blur,
+                            int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+        this.mode = mode;
+        this.lowThreshold = lowThreshold;
+        this.highThreshold = highThreshold;
+        this.blur = blur;
+        this.parallelism = parallelism;
+    }
+
+    @Override
+    public void init(int width, int height, int outputChannels) {
+        this.width = width;
+        this.height = height;
+        this.outputChannels = outputChannels;
+        int size = width * height;
+        src = grow(src, size);
+        if (blur) {
+            blurTmp = grow(blurTmp, size);
+            blurred = grow(blurred, size);
+        }
+        magnitude = grow(magnitude, size);
+        direction = grow(direction, size);
+        if (mode == Mode.CANNY) {
+            edgeMap = grow(edgeMap, size);
+            stack = grow(stack, size);
+        }
+        output = grow(output, size * outputChannels);
+
+        // The pool outlives re-inits (profile switches); only the bands follow the height
+        int bands = Math.min(parallelism, height);
+        if (bands > 1) {
+            if (pool == null) {
+                pool = new ForkJoinPool(parallelism);
+            }
+            if (phaseTask == null || phaseHeight != height) {
+                phaseTask = new PhaseTask(bands);
+                phaseHeight = height;
+            }
+        } else {
+            release();
+        }
+    }
+
+    private static byte[] grow(byte[] array, int size) {
+        return array != null && array.length >= size ? array : new byte[size];
+    }
+
+    private static int[] grow(int[] array, int size) {
+        return array != null && array.length >= size ? array : new int[size];
+    }
+
+    // Sobel reads one pixel around, suppression one more, the 5-tap blur two
+    @Override
+    public int getBorder() {
+        return (blur ? 2 : 0) + (mode == Mode.CANNY ? 2 : 1);
+    }
+
+    @Override
+    public void release() {
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+            phaseTask = null;
+        }
+    }
+
+    @Override
+    public float process(ByteBuffer gray, int rowStride, ByteBuffer out) {
+        long start = System.nanoTime();
+
+        readGray(gray, rowStride);
+        runPhases();
+        out.clear();
+        out.put(output, 0, width * height * outputChannels);
+        out.position(0);
+
+        return (System.nanoTime() - start) / 1_000_000f;
+    }
+
+    void runPhases() {
+        if (blur) {
+            runBands(PHASE_BLUR_H);
+            runBands(PHASE_BLUR_V);
+        }
+        runBands(PHASE_SOBEL);
+        if (mode == Mode.CANNY) {
+            runBands(PHASE_SUPPRESS);
+            EdgeKernels.hysteresis(edgeMap, stack, width, height);
+        }
+        runBands(PHASE_OUTPUT);
+    }
+
+    private void runBands(int phase) {
+        if (pool == null) {
+            runPhase(phase, 0, height);
+            return;
+        }
+        phaseTask.reinitialize();
+        phaseTask.phase = phase;
+        pool.invoke(phaseTask);
+    }
+
+    void runPhase(int phase, int y0, int y1) {
+        byte[] sobelInput = blur ? blurred : src;
+        switch (phase) {
+            case PHASE_BLUR_H:
+                EdgeKernels.blurRowsH(src, blurTmp, width, height, y0, y1);
+                break;
+            case PHASE_BLUR_V:
+                EdgeKernels.blurRowsV(blurTmp, blurred, width, height, y0, y1);
+                break;
+            case PHASE_SOBEL:
+                EdgeKernels.sobelRows(sobelInput, magnitude, direction, width, height, y0, y1);
+                break;
+            case PHASE_SUPPRESS:
+                EdgeKernels.suppressRows(magnitude, direction, edgeMap, width, height,
+                        lowThreshold, highThreshold, y0, y1);
+                break;
+            case PHASE_OUTPUT:
+                if (mode == Mode.CANNY) {
+                    EdgeKernels.mapToOutputRows(edgeMap, output, outputChannels, width, y0, y1);
+                } else {
+                    EdgeKernels.magnitudeToOutputRows(magnitude, output, outputChannels, width, y0, y1);
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("unknown phase " + phase);
+        }
+    }
+
+    private void readGray(ByteBuffer gray, int rowStride) {
+        if (rowStride == width) {
+            gray.position(0);
+            gray.get(src, 0, width * height);
+        } else {
+            for (int row = 0; row < height; row++) {
+                gray.position(row * rowStride);
+                gray.get(src, row * width, width);
+            }
+        }
+        gray.position(0);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    // Preallocated and reinitialized every phase so processing stays allocation free
+    @SuppressWarnings("serial")
+    private final class PhaseTask extends RecursiveAction {
+        final BandTask[] bands;
+        int phase;
+
+        PhaseTask(int count) {
+            bands = new BandTask[count];
+            for (int i = 0; i < count; i++) {
+                bands[i] = new BandTask(height * i / count, height * (i + 1) / count);
+            }
+        }
+
+        @Override
+        protected void compute() {
+            for (BandTask band : bands) {
+                band.reinitialize();
+                band.phase = phase;
+            }
+            invokeAll(bands);
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private final class BandTask extends RecursiveAction {
+        final int y0;
+        final int y1;
+        int phase;
+
+        BandTask(int y0, int y1) {
+            this.y0 = y0;
+            this.y1 = y1;
+        }
+
+        @Override
+        protected void compute() {
+            runPhase(phase, y0, y1);
+        }
+    }
+}
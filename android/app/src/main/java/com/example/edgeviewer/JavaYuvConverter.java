@@ -0,0 +1,55 @@
+package com.example.edgeviewer;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Reference {@link YuvConverter}: the integer arithmetic of the native kernels
+ * (edge_simd.h), so both produce identical bytes for every plane layout. Reads
+ * and writes with absolute gets and puts, leaving buffer positions alone.
+ */
+public class JavaYuvConverter implements YuvConverter {
+
+    // Q13 chroma factors, each term rounded as (4 * d * c + 2^14) >> 15
+    static final int RV = 11485;  // 1.402
+    static final int GU = 2819;   // 0.344136
+    static final int GV = 5850;   // 0.714136
+    static final int BU = 14516;  // 1.772
+
+    @Override
+    public void toRgba(ByteBuffer y, int yRowStride, ByteBuffer u, ByteBuffer v, int uvOffset,
+                       int uvRowStride, int uvPixelStride, boolean subsampled, int width, int height,
+                       ByteBuffer out) {
+        if (out.capacity() < width * height * 4) {
+            throw new IllegalArgumentException("out holds fewer than " + width + "x" + height + " RGBA pixels");
+        }
+        boolean little = out.order() == ByteOrder.LITTLE_ENDIAN;
+        int shift = subsampled ? 1 : 0;
+        for (int row = 0; row < height; row++) {
+            int yRow = row * yRowStride;
+            int uvRow = uvOffset + (row >> shift) * uvRowStride;
+            int o = row * width * 4;
+            for (int x = 0; x < width; x++) {
+                int c = uvRow + (x >> shift) * uvPixelStride;
+                int luma = y.get(yRow + x) & 0xFF;
+                int du = (u.get(c) & 0xFF) - 128;
+                int dv = (v.get(c) & 0xFF) - 128;
+                int r = clamp(luma + term(dv, RV));
+                int g = clamp(luma - (term(du, GU) + term(dv, GV)));
+                int b = clamp(luma + term(du, BU));
+                // R,G,B,A in memory regardless of byte order
+                out.putInt(o + x * 4, little
+                        ? 0xFF000000 | (b << 16) | (g << 8) | r
+                        : (r << 24) | (g << 16) | (b << 8) | 0xFF);
+            }
+        }
+    }
+
+    private static int term(int d, int c) {
+        return (4 * d * c + 16384) >> 15;
+    }
+
+    private static int clamp(int value) {
+        return value < 0 ? 0 : (value > 255 ? 255 : value);
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.edgeviewer;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of nanosecond durations in the HdrHistogram layout:
+ * exact below 64, then 32 linear sub-buckets per power of two, so any value
+ * is reported within about 3% across the whole long range. Recording is two
+ * atomic increments and a rarely contended max update, safe from any number
+ * of threads and allocation-free.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    // Values below this are counted exactly
+    private static final int LINEAR = 2 * SUB_COUNT;
+    static final int BUCKETS = LINEAR + (63 - (SUB_BITS + 1)) * SUB_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long valueNs) {
+        if (valueNs < 0) {
+            valueNs = 0;
+        }
+        counts.incrementAndGet(bucket(valueNs));
+        total.addAndGet(valueNs);
+        long m = max.get();
+        while (valueNs > m && !max.compareAndSet(m, valueNs)) {
+            m = max.get();
+        }
+    }
+
+    /**
+     * Copies the counts into into and returns it. With reset the histogram is
+     * cleared as it is read, so consecutive snapshots are disjoint intervals:
+     * every value lands in exactly one of them.
+     */
+    public Snapshot snapshot(Snapshot into, boolean reset) {
+        into.clear();
+        for (int i = 0; i < BUCKETS; i++) {
+            long c = reset ? counts.getAndSet(i, 0) : counts.get(i);
+            into.counts[i] = c;
+            into.count += c;
+        }
+        into.total = reset ? total.getAndSet(0) : total.get();
+        into.max = reset ? max.getAndSet(0) : max.get();
+        return into;
+    }
+
+    static int bucket(long value) {
+        if (value < LINEAR) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BITS;
+        // Top SUB_BITS + 1 bits, the leading one included: SUB_COUNT..2*SUB_COUNT-1
+        int sub = (int) (value >>> shift);
+        return LINEAR + (shift - 1) * SUB_COUNT + (sub - SUB_COUNT);
+    }
+
+    /** Largest value that falls into bucket. */
+    static long highestValue(int bucket) {
+        if (bucket < LINEAR) {
+            return bucket;
+        }
+        int shift = (bucket - LINEAR) / SUB_COUNT + 1;
+        long sub = SUB_COUNT + (bucket - LINEAR) % SUB_COUNT;
+        return ((sub + 1) << shift) - 1;
+    }
+
+    /** Plain copy of a histogram, for reading percentiles and adding intervals up. */
+    public static final class Snapshot {
+        final long[] counts = new long[BUCKETS];
+        long count;
+        long total;
+        long max;
+
+        public void clear() {
+            Arrays.fill(counts, 0);
+            count = 0;
+            total = 0;
+            max = 0;
+        }
+
+        public void add(Snapshot other) {
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] += other.counts[i];
+            }
+            count += other.count;
+            total += other.total;
+            max = Math.max(max, other.max);
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getMaxNs() {
+            return max;
+        }
+
+        public long getMeanNs() {
+            return count == 0 ? 0 : total / count;
+        }
+
+        /** Value that percentile % (0-100) of samples are at or below, to bucket precision; 0 if empty. */
+        public long getPercentileNs(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(highestValue(i), max);
+                }
+            }
+            return max;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.edgeviewer;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-stage {@link LatencyHistogram}s for one frame path, from the sensor to
+ * the swap. Stages are recorded by whoever owns them (camera source,
+ * processor, renderer) on their own threads; all times are System.nanoTime()
+ * durations.
+ */
+public class LatencyStats {
+
+    /** Sensor exposure timestamp to image acquired; only for cameras with a realtime clock. */
+    public static final int SENSOR = 0;
+    /** Y plane copy in the gray stage. */
+    public static final int GRAY = 1;
+    /** Edge detection, native or Java. */
+    public static final int EDGES = 2;
+    /** Image acquired to handed to the sink, queueing included. */
+    public static final int PUBLISH = 3;
+    /** Texture upload on the render thread. */
+    public static final int UPLOAD = 4;
+    /** eglSwapBuffers. */
+    public static final int SWAP = 5;
+    /** Image acquired to swap returned. */
+    public static final int END_TO_END = 6;
+    /** Window surface requested to first frame shown on it, e.g. on resume or rotation. */
+    public static final int RESUME = 7;
+    public static final int STAGE_COUNT = 8;
+
+    public static final String CSV_HEADER = "time_ms,stage,count,p50_us,p90_us,p99_us,p999_us,max_us,mean_us";
+
+    private static final String[] NAMES = {
+            "sensor", "gray", "edges", "publish", "upload", "swap", "end-to-end", "resume"
+    };
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[STAGE_COUNT];
+    private final AtomicLong dropped = new AtomicLong();
+
+    public LatencyStats() {
+        for (int i = 0; i < STAGE_COUNT; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    public static String stageName(int stage) {
+        return NAMES[stage];
+    }
+
+    public void record(int stage, long durationNs) {
+        histograms[stage].record(durationNs);
+    }
+
+    /** A frame that was accepted from the source but never published. */
+    public void recordDropped() {
+        dropped.incrementAndGet();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /** Snapshots every stage into into, which must hold STAGE_COUNT snapshots; see {@link LatencyHistogram#snapshot}. */
+    public LatencyHistogram.Snapshot[] snapshot(LatencyHistogram.Snapshot[] into, boolean reset) {
+        for (int i = 0; i < STAGE_COUNT; i++) {
+            histograms[i].snapshot(into[i], reset);
+        }
+        return into;
+    }
+
+    public static LatencyHistogram.Snapshot[] newSnapshots() {
+        LatencyHistogram.Snapshot[] snapshots = new LatencyHistogram.Snapshot[STAGE_COUNT];
+        for (int i = 0; i < STAGE_COUNT; i++) {
+            snapshots[i] = new LatencyHistogram.Snapshot();
+        }
+        return snapshots;
+    }
+
+    /**
+     * Appends one CSV row per stage that has samples, in microseconds, and a
+     * "dropped" row holding only a count; see {@link #CSV_HEADER}.
+     */
+    public static void appendCsv(Appendable out, long timeMs, LatencyHistogram.Snapshot[] snapshots,
+                                 long dropped) throws IOException {
+        for (int i = 0; i < snapshots.length; i++) {
+            LatencyHistogram.Snapshot s = snapshots[i];
+            if (s.getCount() == 0) {
+                continue;
+            }
+            out.append(String.format(Locale.US, "%d,%s,%d,%.1f,%.1f,%.1f,%.1f,%.1f,%.1f%n",
+                    timeMs, NAMES[i], s.getCount(),
+                    s.getPercentileNs(50) / 1e3, s.getPercentileNs(90) / 1e3,
+                    s.getPercentileNs(99) / 1e3, s.getPercentileNs(99.9) / 1e3,
+                    s.getMaxNs() / 1e3, s.getMeanNs() / 1e3));
+        }
+        out.append(String.format(Locale.US, "%d,dropped,%d,,,,,,%n", timeMs, dropped));
+    }
+}
@@ -0,0 +1,249 @@
+package com.example.edgeviewer;
+
+/**
+ * Holds processing to an explicit per-frame deadline by shedding work in a
+ * fixed order and giving it back when there is headroom again. Levels are
+ * cumulative: level n has every action up to n in force.
+ *
+ *   1 SHED_OVERLAY  edges are published as the mask, without the colour image
+ *   2 SHED_STRIDE   the profile is processed at half resolution (step 2)
+ *   3 SHED_FRAMES   every skipNth camera frame is dropped before processing
+ *   4 SHED_ENGINE   a cheaper detector (Sobel + threshold) replaces Canny
+ *
+ * Like {@link ResolutionGovernor} it has no clock or threads of its own: the
+ * owner reports each arriving frame ({@link #onArrival}) and each processed
+ * one ({@link #onFrame}), so synthetic or recorded timings replay exactly.
+ * Frame time is compared with the deadline, which skipping frames stretches
+ * by skipNth / (skipNth - 1). The shedder steps down after a few frames over
+ * budget, and up only after a longer run in which the current cost, scaled by
+ * what the action saved when it was taken, would fit the deadline at the level
+ * above. Every decision, miss, skipped frame and frame the source lost
+ * (timestamp gaps, e.g. ImageReader replacing images nobody acquired) is
+ * counted; see {@link Counters}.
+ */
+public class LoadShedder {
+
+    public interface Listener {
+        /** shed is false when the action was given back; load is the smoothed fraction of the deadline. */
+        void onDecision(int action, boolean shed, float load);
+    }
+
+    public static final int SHED_NONE = 0;
+    public static final int SHED_OVERLAY = 1;
+    public static final int SHED_STRIDE = 2;
+    public static final int SHED_FRAMES = 3;
+    public static final int SHED_ENGINE = 4;
+    public static final int LEVEL_COUNT = 5;
+
+    private static final String[] NAMES = {"none", "overlay", "stride", "frames", "engine"};
+    // Cost at the level above over cost at this one, until measured: the
+    // overlay is a colour conversion plus a pass over the image, the stride a
+    // quarter of the pixels; skipping leaves the per-frame cost alone
+    private static final float[] DEFAULT_SAVINGS = {1f, 1.3f, 3.5f, 1f, 1.5f};
+
+    private static final float SMOOTHING = 0.2f;
+    private static final float HIGH_WATER = 0.9f;
+    private static final float LOW_WATER = 0.7f;
+    private static final int DOWN_FRAMES = 5;
+    private static final int UP_FRAMES = 45;
+    private static final int SETTLE_FRAMES = 3;
+    // Frames after shedding before the saving is measured
+    private static final int MEASURE_FRAMES = 10;
+    // A source interval this much longer than usual means frames were lost
+    private static final float GAP_FACTOR = 1.5f;
+
+    /** Totals since construction, filled by {@link #getCounters} without allocating. */
+    public static final class Counters {
+        public int level;
+        public float load;
+        public long frames;
+        public long deadlineMisses;
+        // Frames dropped here by SHED_FRAMES
+        public long skippedFrames;
+        // Frames the source never delivered, estimated from timestamp gaps
+        public long sourceLost;
+        public final long[] shed = new long[LEVEL_COUNT];
+        public final long[] restored = new long[LEVEL_COUNT];
+
+        @Override
+        public String toString() {
+            StringBuilder b = new StringBuilder()
+                    .append("level=").append(NAMES[level])
+                    .append(" load=").append(Math.round(load * 100)).append('%')
+                    .append(" frames=").append(frames)
+                    .append(" misses=").append(deadlineMisses)
+                    .append(" skipped=").append(skippedFrames)
+                    .append(" lost=").append(sourceLost);
+            for (int i = 1; i < LEVEL_COUNT; i++) {
+                b.append(' ').append(NAMES[i]).append('=').append(shed[i]).append('/').append(restored[i]);
+            }
+            return b.toString();
+        }
+    }
+
+    private final float deadlineMs;
+    private final int skipNth;
+    private final int maxLevel;
+    private Listener listener;
+
+    private int level;
+    private float smoothedMs = -1f;
+    private int overCount;
+    private int underCount;
+    private int settleCount = SETTLE_FRAMES;
+    // Counts down to measuring the saving of the action last shed, 0 = done
+    private int measureCount;
+    // Cost just before each level was entered, and the measured saving
+    private final float[] costBefore = new float[LEVEL_COUNT];
+    private final float[] savings = DEFAULT_SAVINGS.clone();
+
+    private long arrivals;
+    private long lastTimestampNs = -1;
+    private long intervalNs;
+
+    private long frames;
+    private long deadlineMisses;
+    private long skippedFrames;
+    private long sourceLost;
+    private final long[] shed = new long[LEVEL_COUNT];
+    private final long[] restored = new long[LEVEL_COUNT];
+
+    /**
+     * deadlineMs is the time one frame may take, normally the camera's frame
+     * interval. With SHED_FRAMES one frame in skipNth (at least 2) is dropped.
+     * maxLevel caps the shedding, e.g. at SHED_FRAMES when there is no cheaper
+     * engine.
+     */
+    public LoadShedder(float deadlineMs, int skipNth, int maxLevel) {
+        if (deadlineMs <= 0) {
+            throw new IllegalArgumentException("deadline must be positive");
+        }
+        if (skipNth < 2) {
+            throw new IllegalArgumentException("skipNth must be at least 2");
+        }
+        if (maxLevel < SHED_NONE || maxLevel >= LEVEL_COUNT) {
+            throw new IllegalArgumentException("bad max level " + maxLevel);
+        }
+        this.deadlineMs = deadlineMs;
+        this.skipNth = skipNth;
+        this.maxLevel = maxLevel;
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public static String getName(int level) {
+        return NAMES[level];
+    }
+
+    public synchronized int getLevel() {
+        return level;
+    }
+
+    /**
+     * Called as each frame comes in from the source, before any work is done
+     * on it. Returns false if the frame is to be skipped.
+     */
+    public synchronized boolean onArrival(long timestampNs) {
+        if (lastTimestampNs >= 0 && timestampNs > lastTimestampNs) {
+            long delta = timestampNs - lastTimestampNs;
+            if (intervalNs > 0 && delta > intervalNs * GAP_FACTOR) {
+                sourceLost += Math.round((double) delta / intervalNs) - 1;
+            } else {
+                intervalNs = intervalNs == 0 ? delta : intervalNs + (delta - intervalNs) / 8;
+            }
+        }
+        lastTimestampNs = timestampNs;
+        arrivals++;
+        if (level >= SHED_FRAMES && arrivals % skipNth == 0) {
+            skippedFrames++;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Records one processed frame: frameLevel is the level it was processed
+     * at and frameMs the time it took. Returns true if the level changed.
+     */
+    public boolean onFrame(int frameLevel, float frameMs) {
+        int action;
+        boolean shedding;
+        float load;
+        synchronized (this) {
+            frames++;
+            if (frameMs > deadline(frameLevel)) {
+                deadlineMisses++;
+            }
+            // Frames from before a switch say nothing about the current level
+            if (frameLevel != level) {
+                return false;
+            }
+            if (settleCount > 0) {
+                settleCount--;
+                return false;
+            }
+            smoothedMs = smoothedMs < 0 ? frameMs : smoothedMs + SMOOTHING * (frameMs - smoothedMs);
+            if (measureCount > 0 && --measureCount == 0) {
+                savings[level] = Math.max(1f, costBefore[level] / smoothedMs);
+            }
+            load = smoothedMs / deadline(level);
+
+            int next = level;
+            if (load > HIGH_WATER) {
+                underCount = 0;
+                if (++overCount >= DOWN_FRAMES && level < maxLevel) {
+                    next = level + 1;
+                }
+            } else {
+                overCount = 0;
+                if (level > 0 && smoothedMs * savings[level] / deadline(level - 1) < LOW_WATER) {
+                    if (++underCount >= UP_FRAMES) {
+                        next = level - 1;
+                    }
+                } else {
+                    underCount = 0;
+                }
+            }
+            if (next == level) {
+                return false;
+            }
+            shedding = next > level;
+            if (shedding) {
+                action = next;
+                costBefore[next] = smoothedMs;
+                shed[next]++;
+            } else {
+                action = level;
+                restored[level]++;
+            }
+            level = next;
+            smoothedMs = -1f;
+            overCount = 0;
+            underCount = 0;
+            settleCount = SETTLE_FRAMES;
+            measureCount = shedding ? MEASURE_FRAMES : 0;
+        }
+        Listener l = listener;
+        if (l != null) {
+            l.onDecision(action, shedding, load);
+        }
+        return true;
+    }
+
+    private float deadline(int atLevel) {
+        return atLevel >= SHED_FRAMES ? deadlineMs * skipNth / (skipNth - 1) : deadlineMs;
+    }
+
+    public synchronized void getCounters(Counters into) {
+        into.level = level;
+        into.load = Math.max(0f, smoothedMs) / deadline(level);
+        into.frames = frames;
+        into.deadlineMisses = deadlineMisses;
+        into.skippedFrames = skippedFrames;
+        into.sourceLost = sourceLost;
+        System.arraycopy(shed, 0, into.shed, 0, LEVEL_COUNT);
+        System.arraycopy(restored, 0, into.restored, 0, LEVEL_COUNT);
+    }
+}
@@ -5,54 +5,123 @@ import androidx.appcompat.app.AppCompatActivity;
 
 import android.Manifest;
 import android.content.pm.PackageManager;
-import android.graphics.ImageFormat;
-import android.media.Image;
-import android.media.ImageReader;
 import android.os.Build;
 import android.os.Bundle;
 import android.util.Log;
-import android.util.Size;
-import android.view.Surface;
 import android.view.SurfaceView;
 import android.widget.Button;
 import android.widget.TextView;
-import android.hardware.camera2.CameraAccessException;
-import android.hardware.camera2.CameraCaptureSession;
-import android.hardware.camera2.CameraCharacteristics;
-import android.hardware.camera2.CameraDevice;
-import android.hardware.camera2.CameraManager;
-import android.hardware.camera2.CaptureRequest;
 
-import java.nio.ByteBuffer;
-import java.util.Arrays;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
 
 public class MainActivity extends AppCompatActivity {
 
     private static final String TAG = "EdgeViewer";
     private static final int CAMERA_REQUEST_CODE = 1001;
 
-    // Target processing size
+    // Camera frame size; the processed size can be smaller (see TARGET_FPS)
     private static final int WIDTH = 640;
     private static final int HEIGHT = 480;
 
+    // Drop to a crop or half resolution when processing cannot keep this rate;
+    // 0 always processes the full frame
+    private static final float TARGET_FPS = 30f;
+
+    // Instead of the crop / resolution ladder, hold every frame to 1 / TARGET_FPS
+    // by shedding work (LoadShedder): overlay, then half resolution, then every
+    // SHED_SKIP_NTH frame, then Sobel in place of Canny
+    private static final boolean LOAD_SHEDDING = false;
+    private static final int SHED_SKIP_NTH = 3;
+
+    // Native Canny (native-lib); JavaEdgeDetector is the portable alternative
+    private static final boolean USE_NATIVE_ENGINE = true;
+
+    // Native only: Canny thresholds follow the lighting (NativeBridge.AUTO_*;
+    // AUTO_OFF keeps 50 / 150). The param is the pixel share for
+    // AUTO_PERCENTILE; each new frame moves the thresholds by AUTO_SMOOTHING.
+    // Ignored with INCREMENTAL_TILES, which needs fixed thresholds
+    private static final int AUTO_THRESHOLDS = NativeBridge.AUTO_OTSU;
+    private static final float AUTO_PARAM = 0.9f;
+    private static final float AUTO_SMOOTHING = 0.1f;
+
+    // Upload the 8-bit edge mask as a luminance texture (4x less bandwidth than RGBA)
+    private static final int OUTPUT_CHANNELS = 1;
+
+    // Only recompute tiles that changed since the last frame; for fixed-mount,
+    // mostly static scenes
+    private static final boolean INCREMENTAL_TILES = false;
+
+    // Run edge detection in GLRenderer's shaders on the raw frame instead of on the CPU
+    private static final boolean USE_GPU_EDGES = false;
+
+    // Show Raw in camera colour rather than luminance, and draw CPU edges in
+    // green over the colour image instead of showing the mask alone. Either
+    // makes output frames RGBA (converted natively from the YUV planes)
+    private static final boolean RAW_COLOR = true;
+    private static final boolean EDGE_OVERLAY = false;
+    private static final boolean COLOR_FRAMES = RAW_COLOR || EDGE_OVERLAY;
+
+    // Render at most this many frames per second; 0 = as fast as frames arrive
+    private static final float MAX_RENDER_FPS = 0f;
+
+    // WebSocket stream for web-viewer (ws://127.0.0.1:STREAM_PORT/stream via
+    // adb forward), e.g. 8765; 0 disables. The stream is unauthenticated:
+    // STREAM_ALL_INTERFACES lets any device on the network watch the camera
+    private static final int STREAM_PORT = 0;
+    private static final boolean STREAM_ALL_INTERFACES = false;
+    private static final float STREAM_MAX_FPS = 15f;
+    private static final int STREAM_MAX_CLIENTS = 4;
+
+    // Keep the last minute of camera frames in files/recordings for replay on a
+    // desktop (see ReplayFrameSource); replaced on every camera start, about
+    // 90 MB per 10 s segment at 640x480
+    private static final boolean RECORD_FRAMES = false;
+    private static final int RECORD_MAX_SEGMENTS = 6;
+
+    // Append per-stage latency percentiles to files/latency.csv this often; 0 disables
+    private static final int LATENCY_DUMP_SECONDS = 10;
+
     private SurfaceView glSurfaceView;
     private GLRenderer glRenderer;
 
     private Button btnToggle;
     private TextView tvStats;
 
-    private byte[] grayBuffer = new byte[WIDTH * HEIGHT];
-    private byte[] rgbaBuffer = new byte[WIDTH * HEIGHT * 4];
+    // Direct frames shared with the renderer, enough for everything that can
+    // hold one at the same time so the pipeline never finds the pool empty
+    private final FramePool framePool = new FramePool(FrameProcessor.getOutputFramesHeld(COLOR_FRAMES)
+            + GLRenderer.FRAMES_HELD + FrameStreamer.FRAMES_HELD,
+            WIDTH * HEIGHT * (COLOR_FRAMES ? 4 : OUTPUT_CHANNELS));
+    private FrameProcessor frameProcessor;
+    private IncrementalEdgeDetector incrementalDetector;
+    private NativeEdgeDetector nativeDetector;
+    private LoadShedder loadShedder;
+    private final LoadShedder.Counters shedCounters = new LoadShedder.Counters();
+    // Publish worker only
+    private final float[] frameInfo = new float[NativeBridge.INFO_COUNT];
+    private FrameRecorder frameRecorder;
+
+    private Camera2FrameSource cameraSource;
+    private boolean cameraStarted;
+
+    private long lastFpsNs = 0;
+    private int frameCount = 0;
+    private volatile int lastFps = 0;
 
-    private CameraDevice cameraDevice;
-    private CameraCaptureSession captureSession;
-    private ImageReader imageReader;
-    private CameraManager cameraManager;
-    private String backCameraId;
+    // Recorded from the camera, processor and render threads; read once a
+    // second on the publish worker
+    private final LatencyStats latencyStats = new LatencyStats();
+    private final LatencyHistogram.Snapshot[] latencySecond = LatencyStats.newSnapshots();
+    private final LatencyHistogram.Snapshot[] latencyWindow = LatencyStats.newSnapshots();
+    private long lastDropped;
+    private long lastDumpNs;
 
-    private volatile boolean running = true;
-    private long lastFpsTime = 0;
-    private int frameCount = 0;
+    private StreamServer streamServer;
+    private volatile FrameStreamer frameStreamer;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -63,17 +132,20 @@ public class MainActivity extends AppCompatActivity {
         btnToggle = findViewById(R.id.btnToggle);
         tvStats = findViewById(R.id.tvStats);
 
-        glRenderer = new GLRenderer(glSurfaceView);
-
-        NativeBridge.init(WIDTH, HEIGHT);
+        glRenderer = new GLRenderer(glSurfaceView, framePool);
+        glRenderer.setStats(latencyStats);
+        float refreshRate = getWindowManager().getDefaultDisplay().getRefreshRate();
+        glRenderer.getScheduler().setVsyncPeriodNs((long) (1_000_000_000L / refreshRate));
+        glRenderer.getScheduler().setMaxFps(MAX_RENDER_FPS);
 
         btnToggle.setOnClickListener(v -> {
             glRenderer.showEdges = !glRenderer.showEdges;
+            updateProcessingMode();
             btnToggle.setText(glRenderer.showEdges ? "Show Raw" : "Show Edges");
         });
 
-        cameraManager = (CameraManager) getSystemService(CAMERA_SERVICE);
-        findBackCamera();
+        cameraSource = new Camera2FrameSource(this, WIDTH, HEIGHT);
+        cameraSource.setStats(latencyStats);
 
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
             if (checkSelfPermission(Manifest.permission.CAMERA) != PackageManager.PERMISSION_GRANTED) {
@@ -86,153 +158,176 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
-    private void findBackCamera() {
-        try {
-            for (String id : cameraManager.getCameraIdList()) {
-                CameraCharacteristics chars = cameraManager.getCameraCharacteristics(id);
-                Integer facing = chars.get(CameraCharacteristics.LENS_FACING);
-                if (facing != null && facing == CameraCharacteristics.LENS_FACING_BACK) {
-                    backCameraId = id;
-                    return;
-                }
-            }
-            // fallback: first camera
-            if (cameraManager.getCameraIdList().length > 0) {
-                backCameraId = cameraManager.getCameraIdList()[0];
-            }
-        } catch (CameraAccessException e) {
-            Log.e(TAG, "findBackCamera: ", e);
-        }
-    }
-
     private void startCamera() {
-        if (backCameraId == null) {
+        if (!cameraSource.isAvailable()) {
             Log.e(TAG, "No camera found");
             return;
         }
-
-        try {
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M &&
-                    checkSelfPermission(Manifest.permission.CAMERA) != PackageManager.PERMISSION_GRANTED) {
-                return;
-            }
-            cameraManager.openCamera(backCameraId, new CameraDevice.StateCallback() {
-                @Override
-                public void onOpened(@NonNull CameraDevice camera) {
-                    cameraDevice = camera;
-                    setupImageReader();
-                    createCaptureSession();
-                }
-
-                @Override
-                public void onDisconnected(@NonNull CameraDevice camera) {
-                    camera.close();
-                    cameraDevice = null;
+        if (cameraStarted) {
+            return;
+        }
+        if (frameProcessor == null) {
+            int cores = Runtime.getRuntime().availableProcessors();
+            EdgeDetector detector;
+            if (USE_NATIVE_ENGINE) {
+                nativeDetector = new NativeEdgeDetector(cores);
+                if (!INCREMENTAL_TILES) {
+                    nativeDetector.setAutoThresholds(AUTO_THRESHOLDS, AUTO_PARAM, AUTO_SMOOTHING);
                 }
-
-                @Override
-                public void onError(@NonNull CameraDevice camera, int error) {
-                    camera.close();
-                    cameraDevice = null;
-                    Log.e(TAG, "Camera error: " + error);
+                detector = nativeDetector;
+            } else {
+                detector = new JavaEdgeDetector(JavaEdgeDetector.Mode.CANNY, 50, 150, false, cores);
+            }
+            if (INCREMENTAL_TILES) {
+                incrementalDetector = new IncrementalEdgeDetector(detector);
+                detector = incrementalDetector;
+            }
+            frameProcessor = new FrameProcessor(WIDTH, HEIGHT, OUTPUT_CHANNELS, framePool, detector,
+                    this::onFrameProcessed, FramePipeline.Backpressure.DROP_OLDEST);
+            if (TARGET_FPS > 0 && LOAD_SHEDDING) {
+                loadShedder = new LoadShedder(1000f / TARGET_FPS, SHED_SKIP_NTH, LoadShedder.SHED_ENGINE);
+                loadShedder.setListener((action, shed, load) -> Log.i(TAG, String.format(Locale.US,
+                        "Load shedding: %s %s at %.0f%% of the deadline", shed ? "shed" : "restored",
+                        LoadShedder.getName(action), load * 100)));
+                frameProcessor.setLoadShedder(loadShedder);
+                EdgeDetector sobel;
+                if (USE_NATIVE_ENGINE) {
+                    NativeEdgeDetector nativeSobel = new NativeEdgeDetector(cores);
+                    nativeSobel.setFilterGraph(new FilterGraph().sobel().threshold(100));
+                    sobel = nativeSobel;
+                } else {
+                    sobel = new JavaEdgeDetector(JavaEdgeDetector.Mode.SOBEL, 50, 150, false, cores);
                 }
-            }, null);
-        } catch (CameraAccessException e) {
-            Log.e(TAG, "startCamera: ", e);
+                frameProcessor.setFallbackDetector(sobel);
+            } else if (TARGET_FPS > 0) {
+                ResolutionGovernor governor = new ResolutionGovernor(
+                        ProcessingProfile.ladder(WIDTH, HEIGHT), TARGET_FPS);
+                governor.setListener(profile -> Log.i(TAG, "Processing profile: " + profile));
+                frameProcessor.setGovernor(governor);
+            }
+            if (RECORD_FRAMES) {
+                File base = getExternalFilesDir(null);
+                frameRecorder = new FrameRecorder(new File(base != null ? base : getFilesDir(), "recordings"),
+                        "capture", WIDTH, HEIGHT, FrameRecorder.DEFAULT_FRAMES_PER_SEGMENT, RECORD_MAX_SEGMENTS);
+                frameProcessor.setRecorder(frameRecorder);
+            }
+            frameProcessor.setStats(latencyStats);
+            updateProcessingMode();
+            frameProcessor.start();
+        }
+        if (STREAM_PORT > 0 && streamServer == null) {
+            startStreaming();
         }
-    }
 
-    private void setupImageReader() {
-        Size size = new Size(WIDTH, HEIGHT); // request fixed processing size
-        imageReader = ImageReader.newInstance(size.getWidth(), size.getHeight(),
-                ImageFormat.YUV_420_888, 2);
-        imageReader.setOnImageAvailableListener(reader -> {
-            Image image = null;
-            try {
-                image = reader.acquireLatestImage();
-                if (image == null) return;
-                processImage(image);
-            } finally {
-                if (image != null) {
-                    image.close();
-                }
-            }
-        }, null);
+        // The processor closes each camera image once its planes are copied out
+        cameraSource.start(frameProcessor);
+        cameraStarted = true;
     }
 
-    private void createCaptureSession() {
-        try {
-            Surface surface = imageReader.getSurface();
-            final CaptureRequest.Builder builder =
-                    cameraDevice.createCaptureRequest(CameraDevice.TEMPLATE_PREVIEW);
-            builder.addTarget(surface);
-
-            cameraDevice.createCaptureSession(
-                    Arrays.asList(surface),
-                    new CameraCaptureSession.StateCallback() {
-                        @Override
-                        public void onConfigured(@NonNull CameraCaptureSession session) {
-                            captureSession = session;
-                            try {
-                                builder.set(CaptureRequest.CONTROL_AF_MODE,
-                                        CaptureRequest.CONTROL_AF_MODE_CONTINUOUS_PICTURE);
-                                captureSession.setRepeatingRequest(builder.build(), null, null);
-                            } catch (CameraAccessException e) {
-                                Log.e(TAG, "setRepeatingRequest: ", e);
-                            }
-                        }
-
-                        @Override
-                        public void onConfigureFailed(@NonNull CameraCaptureSession session) {
-                            Log.e(TAG, "Camera capture session configuration failed");
-                        }
-                    },
-                    null
-            );
-        } catch (CameraAccessException e) {
-            Log.e(TAG, "createCaptureSession: ", e);
+    // CPU edges only when edges are shown and the GPU is not doing them; the
+    // GPU pass needs luminance, so no colour under it
+    private void updateProcessingMode() {
+        if (frameProcessor != null) {
+            boolean cpuEdges = glRenderer.showEdges && !USE_GPU_EDGES;
+            frameProcessor.setCpuEdges(cpuEdges);
+            frameProcessor.setColor(glRenderer.showEdges ? EDGE_OVERLAY && cpuEdges : RAW_COLOR);
         }
     }
 
-    private void processImage(Image image) {
-        // YUV_420_888: use Y plane as grayscale
-        Image.Plane[] planes = image.getPlanes();
-        ByteBuffer yBuffer = planes[0].getBuffer();
-        int yRowStride = planes[0].getRowStride();
-
-        // Copy Y plane to our WIDTH*HEIGHT grayBuffer
-        if (grayBuffer.length != WIDTH * HEIGHT) {
-            grayBuffer = new byte[WIDTH * HEIGHT];
-        }
-
-        int pos = 0;
-        byte[] rowData = new byte[yRowStride];
-        for (int row = 0; row < HEIGHT; row++) {
-            int bytesToRead = Math.min(yRowStride, yBuffer.remaining());
-            yBuffer.get(rowData, 0, bytesToRead);
-            System.arraycopy(rowData, 0, grayBuffer, pos, WIDTH);
-            pos += WIDTH;
+    // Runs on the pipeline's publish worker
+    private void onFrameProcessed(FramePool.Frame frame, float ms) {
+        // Read before handing the frame over; the renderer may recycle it at once
+        final int frameWidth = frame.width;
+        final int frameHeight = frame.height;
+        FrameStreamer streamer = frameStreamer;
+        if (streamer != null) {
+            streamer.offer(frame, ms, lastFps);
         }
-
-        long start = System.currentTimeMillis();
-        float ms = NativeBridge.processFrame(grayBuffer, rgbaBuffer);
-        long end = System.currentTimeMillis();
-
-        glRenderer.updateFrame(rgbaBuffer, ms);
+        glRenderer.updateFrame(frame, ms);
 
         frameCount++;
-        long now = System.currentTimeMillis();
-        if (lastFpsTime == 0) lastFpsTime = now;
-        if (now - lastFpsTime >= 1000) {
+        long now = System.nanoTime();
+        if (lastFpsNs == 0) lastFpsNs = now;
+        if (now - lastFpsNs >= 1_000_000_000L) {
             final int fps = frameCount;
+            lastFps = fps;
             frameCount = 0;
-            lastFpsTime = now;
+            lastFpsNs = now;
+            latencyStats.snapshot(latencySecond, true);
+            final float edgesP99 = latencySecond[LatencyStats.EDGES].getPercentileNs(99) / 1e6f;
+            final float e2eP99 = latencySecond[LatencyStats.END_TO_END].getPercentileNs(99) / 1e6f;
+            IncrementalEdgeDetector incremental = incrementalDetector;
+            String extra = incremental != null
+                    ? " | dirty: " + Math.round(incremental.getLastDirtyRatio() * 100) + "%"
+                    : "";
+            LoadShedder shedder = loadShedder;
+            if (shedder != null && shedder.getLevel() > LoadShedder.SHED_NONE) {
+                extra += " | shed: " + LoadShedder.getName(shedder.getLevel());
+            }
+            final String tiles = extra;
+            NativeEdgeDetector nativeEdges = nativeDetector;
+            String canny = "";
+            if (nativeEdges != null) {
+                nativeEdges.getFrameInfo(frameInfo);
+                canny = String.format(Locale.US, " | canny %d/%d, %.1f%% edges",
+                        (int) frameInfo[NativeBridge.INFO_LOW], (int) frameInfo[NativeBridge.INFO_HIGH],
+                        frameInfo[NativeBridge.INFO_EDGE_DENSITY] * 100);
+            }
+            final String thresholds = canny;
             runOnUiThread(() ->
-                    tvStats.setText("FPS: " + fps +
-                            " | " + WIDTH + "x" + HEIGHT +
-                            " | native: " + ms + " ms"
-                    )
+                    tvStats.setText(String.format(Locale.US,
+                            "FPS: %d | %dx%d | p99 edges: %.1f ms, e2e: %.1f ms%s%s",
+                            fps, frameWidth, frameHeight, edgesP99, e2eP99, thresholds, tiles))
             );
+            if (LATENCY_DUMP_SECONDS > 0) {
+                for (int i = 0; i < LatencyStats.STAGE_COUNT; i++) {
+                    latencyWindow[i].add(latencySecond[i]);
+                }
+                if (lastDumpNs == 0) lastDumpNs = now;
+                if (now - lastDumpNs >= LATENCY_DUMP_SECONDS * 1_000_000_000L) {
+                    dumpLatency();
+                    lastDumpNs = now;
+                }
+            }
+        }
+    }
+
+    // Publish worker; a few hundred bytes every LATENCY_DUMP_SECONDS
+    private void dumpLatency() {
+        long dropped = latencyStats.getDroppedCount();
+        File file = new File(getFilesDir(), "latency.csv");
+        boolean header = !file.exists();
+        try (Writer out = new FileWriter(file, true)) {
+            if (header) {
+                out.write(LatencyStats.CSV_HEADER + "\n");
+            }
+            LatencyStats.appendCsv(out, System.currentTimeMillis(), latencyWindow, dropped - lastDropped);
+        } catch (IOException e) {
+            Log.e(TAG, "Latency dump failed", e);
+        }
+        LatencyHistogram.Snapshot e2e = latencyWindow[LatencyStats.END_TO_END];
+        Log.i(TAG, String.format(Locale.US, "Latency e2e p50 %.1f p99 %.1f max %.1f ms, %d dropped",
+                e2e.getPercentileNs(50) / 1e6, e2e.getPercentileNs(99) / 1e6, e2e.getMaxNs() / 1e6,
+                dropped - lastDropped));
+        lastDropped = dropped;
+        LoadShedder shedder = loadShedder;
+        if (shedder != null) {
+            shedder.getCounters(shedCounters);
+            Log.i(TAG, "Load shedding " + shedCounters);
+        }
+        FrameProcessor processor = frameProcessor;
+        if (processor != null) {
+            FramePipeline<FrameJob> pipeline = processor.getPipeline();
+            for (int i = 0; i < pipeline.getStageCount(); i++) {
+                Exception failure = pipeline.takeFailure(i);
+                if (failure != null) {
+                    Log.w(TAG, "Stage " + pipeline.getStageName(i) + " failed "
+                            + pipeline.getFailedCount(i) + " times so far", failure);
+                }
+            }
+        }
+        for (LatencyHistogram.Snapshot snapshot : latencyWindow) {
+            snapshot.clear();
         }
     }
 
@@ -253,31 +348,58 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
+    private void startStreaming() {
+        StreamServer server = new StreamServer(STREAM_PORT, STREAM_MAX_CLIENTS, STREAM_ALL_INTERFACES);
+        try {
+            server.start();
+        } catch (IOException e) {
+            Log.e(TAG, "Stream server failed to start on port " + STREAM_PORT, e);
+            return;
+        }
+        streamServer = server;
+        frameStreamer = new FrameStreamer(server, STREAM_MAX_FPS);
+        frameStreamer.start();
+        Log.i(TAG, "Streaming on ws://" + (STREAM_ALL_INTERFACES ? "<device>" : "127.0.0.1") + ":"
+                + server.getPort() + StreamServer.PATH);
+    }
+
+    private void stopStreaming() {
+        if (frameStreamer != null) {
+            frameStreamer.stop();
+            frameStreamer = null;
+        }
+        if (streamServer != null) {
+            streamServer.stop();
+            streamServer = null;
+        }
+    }
+
     private void stopCamera() {
-        running = false;
-        if (captureSession != null) {
-            try {
-                captureSession.stopRepeating();
-                captureSession.close();
-            } catch (CameraAccessException | IllegalStateException e) {
-                Log.e(TAG, "stopCamera: ", e);
-            }
-            captureSession = null;
+        if (cameraStarted) {
+            cameraSource.stop();
+            cameraStarted = false;
         }
-        if (cameraDevice != null) {
-            cameraDevice.close();
-            cameraDevice = null;
+        // Closes the images still queued in the pipeline; the source closes
+        // its ImageReader after the last one
+        if (frameProcessor != null) {
+            frameProcessor.stop();
+            frameProcessor = null;
+            incrementalDetector = null;
+            loadShedder = null;
         }
-        if (imageReader != null) {
-            imageReader.close();
-            imageReader = null;
+        if (frameRecorder != null) {
+            frameRecorder.close();
+            Log.i(TAG, "Recorded " + frameRecorder.getFramesWritten() + " frames");
+            frameRecorder = null;
         }
+        stopStreaming();
     }
 
     @Override
     protected void onDestroy() {
         super.onDestroy();
         stopCamera();
+        glRenderer.release();
     }
 
     @Override
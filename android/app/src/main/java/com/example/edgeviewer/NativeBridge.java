@@ -1,12 +1,99 @@
 package com.example.edgeviewer;
 
+import java.nio.ByteBuffer;
+
 public class NativeBridge {
 
+    // Output layouts for processFrameDirect
+    public static final int OUTPUT_MASK = 0;     // 8-bit edge mask
+    public static final int OUTPUT_RGBA = 1;     // white edges on black
+    public static final int OUTPUT_OVERLAY = 2;  // camera luminance with edges in green, RGBA
+
+    // Filter graph stages for setFilterGraph, each followed by two parameters (see FilterGraph)
+    public static final int STAGE_BLUR = 1;       // p0 = kernel size, 3 or 5
+    public static final int STAGE_SOBEL = 2;
+    public static final int STAGE_CANNY = 3;      // p0 = low, p1 = high threshold
+    public static final int STAGE_DILATE = 4;     // p0 = radius
+    public static final int STAGE_ERODE = 5;      // p0 = radius
+    public static final int STAGE_THRESHOLD = 6;  // p0 = level
+    public static final int STAGE_OVERLAY = 7;    // last stage only
+
+    // Threshold sources for setAutoThresholds
+    public static final int AUTO_OFF = 0;         // the setThresholds values
+    public static final int AUTO_PERCENTILE = 1;  // high = magnitude below which param (0..1) of the pixels lie
+    public static final int AUTO_OTSU = 2;        // high = Otsu split of the magnitude histogram
+
+    // Slots of getFrameInfo
+    public static final int INFO_MS = 0;            // same as the last processFrame* result
+    public static final int INFO_LOW = 1;           // Canny thresholds the last frame used
+    public static final int INFO_HIGH = 2;
+    public static final int INFO_EDGE_DENSITY = 3;  // edge pixels / all pixels, 0..1
+    public static final int INFO_COUNT = 4;
+
     static {
         System.loadLibrary("native-lib");
     }
 
-    public static native void init(int width, int height);
+    // Every method below takes a context handle from init. Contexts are
+    // independent (one per stream); each is used by one processing thread at a
+    // time, apart from the methods marked safe from any thread.
+
+    // Creates a processing context sized for width x height; its scratch buffers
+    // are reused by every frame. Free it with release.
+    public static native long init(int width, int height);
+
+    // Resizes a context's scratch buffers, keeping its settings
+    public static native void resize(long context, int width, int height);
+
+    // Frees the context; the handle must not be used afterwards
+    public static native void release(long context);
+
+    // Worker threads the context splits a frame across (1 = single-threaded)
+    public static native void setParallelism(long context, int threads);
+
+    // Canny hysteresis thresholds on the L1 gradient magnitude (default 50 / 150);
+    // applies to every Canny stage of the filter graph
+    public static native void setThresholds(long context, int low, int high);
+
+    // Derives the Canny thresholds from a gradient histogram that the edge pass
+    // collects as it goes; each frame's histogram sets the next frame's
+    // thresholds, with low = 0.4 * high. smoothing (0..1] is the weight of the
+    // newest frame, 1 = no smoothing. Safe from any thread.
+    public static native void setAutoThresholds(long context, int mode, float param, float smoothing);
+
+    // Fills info (INFO_* slots) for the last frame; safe from any thread, returns INFO_COUNT
+    public static native int getFrameInfo(long context, float[] info);
+
+    // Replaces the stage chain (default: one Canny 50 / 150) with (op, p0, p1)
+    // triples. Safe from any thread: the next frame picks it up, nothing is
+    // reallocated and the frame in progress is not waited for. Throws
+    // IllegalArgumentException for an invalid chain.
+    public static native void setFilterGraph(long context, int[] stages);
+
+    // Milliseconds each stage took on the last frame (0 for a stage fused into the one
+    // before); returns the stage count, which may exceed ms.length
+    public static native int getStageTimings(long context, float[] ms);
+
+    public static native float processFrame(long context, byte[] grayInput, byte[] rgbaOutput);
+
+    public static native void setOutputMode(long context, int mode);
+
+    // Zero-copy variant. Both buffers must be direct: yPlane is read in place using
+    // rowStride (e.g. Image.Plane#getBuffer()), out receives width * height bytes for
+    // OUTPUT_MASK and width * height * 4 otherwise.
+    public static native float processFrameDirect(long context, ByteBuffer yPlane, int rowStride, ByteBuffer out);
+
+    // Runs the filter graph but, instead of an image, writes edge pixels, contours
+    // and line segments into result, a direct buffer in native byte order laid out
+    // as EdgeFeatures reads it. params holds the EdgeFeatures.PARAM_* slots. The
+    // graph should end in a binary image (Canny, Threshold, ...): every non-zero
+    // pixel counts as edge.
+    public static native float processFrameFeatures(long context, ByteBuffer yPlane, int rowStride,
+                                                    ByteBuffer result, int[] params);
 
-    public static native float processFrame(byte[] grayInput, byte[] rgbaOutput);
+    // YUV_420_888 to RGBA, no context needed (see YuvConverter for the layout).
+    // All buffers must be direct; chroma is read from uvOffset bytes into u and v.
+    public static native void yuvToRgba(ByteBuffer y, int yRowStride, ByteBuffer u, ByteBuffer v,
+                                        int uvOffset, int uvRowStride, int uvPixelStride,
+                                        boolean subsampled, int width, int height, ByteBuffer out);
 }
@@ -0,0 +1,128 @@
+package com.example.edgeviewer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Canny, or any {@link FilterGraph}, in native-lib. Buffers passed to
+ * {@link #process} must be direct. Each instance owns its own native context,
+ * so several can run side by side, e.g. one per stream.
+ */
+public class NativeEdgeDetector implements EdgeDetector {
+
+    private final int parallelism;
+    private final boolean overlay;
+    private volatile FilterGraph graph = new FilterGraph().canny(50, 150);
+    private volatile int autoMode = NativeBridge.AUTO_OFF;
+    private volatile float autoParam;
+    private volatile float autoSmoothing = 1f;
+
+    // Native context handle, 0 before init and after release. Changed only
+    // under the lock, which the setters and getters also hold so they never
+    // touch a context being freed; process runs on the owning thread only.
+    private long context;
+
+    public NativeEdgeDetector() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public NativeEdgeDetector(int parallelism) {
+        this(parallelism, false);
+    }
+
+    /** With overlay set, RGBA output shows the camera image with edges drawn over it. */
+    public NativeEdgeDetector(int parallelism, boolean overlay) {
+        this.parallelism = parallelism;
+        this.overlay = overlay;
+    }
+
+    @Override
+    public synchronized void init(int width, int height, int outputChannels) {
+        if (context == 0) {
+            context = NativeBridge.init(width, height);
+            NativeBridge.setParallelism(context, parallelism);
+            NativeBridge.setFilterGraph(context, graph.toArray());
+            NativeBridge.setAutoThresholds(context, autoMode, autoParam, autoSmoothing);
+        } else {
+            NativeBridge.resize(context, width, height);
+        }
+        if (outputChannels == 1) {
+            NativeBridge.setOutputMode(context, NativeBridge.OUTPUT_MASK);
+        } else {
+            NativeBridge.setOutputMode(context, overlay ? NativeBridge.OUTPUT_OVERLAY : NativeBridge.OUTPUT_RGBA);
+        }
+    }
+
+    /** Takes effect from the next frame; may be called from any thread, also before init. */
+    public synchronized void setFilterGraph(FilterGraph graph) {
+        if (context != 0) {
+            NativeBridge.setFilterGraph(context, graph.toArray());
+        }
+        this.graph = graph;
+    }
+
+    public FilterGraph getFilterGraph() {
+        return graph;
+    }
+
+    /**
+     * Adaptive Canny thresholds, see {@link NativeBridge#setAutoThresholds};
+     * takes effect from the next frame and may be called from any thread, also before init.
+     * Not for use under {@link IncrementalEdgeDetector}, whose tile windows would
+     * each move the thresholds.
+     */
+    public synchronized void setAutoThresholds(int mode, float param, float smoothing) {
+        if (context != 0) {
+            NativeBridge.setAutoThresholds(context, mode, param, smoothing);
+        }
+        autoMode = mode;
+        autoParam = param;
+        autoSmoothing = smoothing;
+    }
+
+    /** The NativeBridge.AUTO_* mode last set. */
+    public int getAutoThresholds() {
+        return autoMode;
+    }
+
+    /**
+     * Timing, Canny thresholds and edge density of the last frame, see
+     * {@link NativeBridge#getFrameInfo}; leaves info untouched before init.
+     */
+    public synchronized void getFrameInfo(float[] info) {
+        if (context != 0) {
+            NativeBridge.getFrameInfo(context, info);
+        }
+    }
+
+    /** Per-stage milliseconds of the last frame, see {@link NativeBridge#getStageTimings}; 0 before init. */
+    public synchronized int getStageTimings(float[] ms) {
+        return context != 0 ? NativeBridge.getStageTimings(context, ms) : 0;
+    }
+
+    /** The current graph's reach; see {@link FilterGraph#getBorder}. */
+    @Override
+    public int getBorder() {
+        return graph.getBorder();
+    }
+
+    @Override
+    public float process(ByteBuffer gray, int rowStride, ByteBuffer out) {
+        return NativeBridge.processFrameDirect(context, gray, rowStride, out);
+    }
+
+    /**
+     * Edge geometry instead of an image: runs the graph on gray and fills
+     * features in place. Same thread rules as {@link #process}.
+     */
+    public float extractFeatures(ByteBuffer gray, int rowStride, EdgeFeatures features) {
+        return NativeBridge.processFrameFeatures(context, gray, rowStride, features.buffer(), features.params());
+    }
+
+    @Override
+    public synchronized void release() {
+        if (context != 0) {
+            NativeBridge.release(context);
+            context = 0;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.edgeviewer;
+
+import java.nio.ByteBuffer;
+
+/** {@link YuvConverter} in native-lib, one SIMD pass per row; all buffers must be direct. */
+public class NativeYuvConverter implements YuvConverter {
+
+    @Override
+    public void toRgba(ByteBuffer y, int yRowStride, ByteBuffer u, ByteBuffer v, int uvOffset,
+                       int uvRowStride, int uvPixelStride, boolean subsampled, int width, int height,
+                       ByteBuffer out) {
+        NativeBridge.yuvToRgba(y, yRowStride, u, v, uvOffset, uvRowStride, uvPixelStride, subsampled,
+                width, height, out);
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.edgeviewer;
+
+/**
+ * Which part of the camera frame is processed and at what scale: a crop
+ * rectangle in camera pixels, optionally downsampled 2x. The camera keeps
+ * running at its configured size; only the processed frame changes.
+ */
+public final class ProcessingProfile {
+
+    public final String name;
+    public final int cropX;
+    public final int cropY;
+    public final int cropWidth;
+    public final int cropHeight;
+    // 1 = every pixel, 2 = 2x2 box average
+    public final int step;
+
+    public ProcessingProfile(String name, int cropX, int cropY, int cropWidth, int cropHeight, int step) {
+        if (step != 1 && step != 2) {
+            throw new IllegalArgumentException("step must be 1 or 2");
+        }
+        if (cropWidth < step || cropHeight < step || cropX < 0 || cropY < 0) {
+            throw new IllegalArgumentException("bad crop " + cropWidth + "x" + cropHeight);
+        }
+        this.name = name;
+        this.cropX = cropX;
+        this.cropY = cropY;
+        this.cropWidth = cropWidth;
+        this.cropHeight = cropHeight;
+        this.step = step;
+    }
+
+    /** The whole frame at full resolution. */
+    public static ProcessingProfile full(int width, int height) {
+        return new ProcessingProfile("full", 0, 0, width, height, 1);
+    }
+
+    /**
+     * Profiles for a width x height camera frame, most expensive first: full
+     * frame, centre 3/4 crop, full frame at half resolution, centre crop at
+     * half resolution. Each costs roughly half the pixels of the one before.
+     */
+    public static ProcessingProfile[] ladder(int width, int height) {
+        int roiWidth = (width * 3 / 4) & ~1;
+        int roiHeight = (height * 3 / 4) & ~1;
+        int roiX = ((width - roiWidth) / 2) & ~1;
+        int roiY = ((height - roiHeight) / 2) & ~1;
+        return new ProcessingProfile[] {
+                full(width, height),
+                new ProcessingProfile("roi", roiX, roiY, roiWidth, roiHeight, 1),
+                new ProcessingProfile("half", 0, 0, width & ~1, height & ~1, 2),
+                new ProcessingProfile("roi-half", roiX, roiY, roiWidth, roiHeight, 2)
+        };
+    }
+
+    public int getWidth() {
+        return cropWidth / step;
+    }
+
+    public int getHeight() {
+        return cropHeight / step;
+    }
+
+    public int getPixelCount() {
+        return getWidth() * getHeight();
+    }
+
+    /** True if this profile only reads inside a width x height frame. */
+    public boolean fits(int width, int height) {
+        return cropX + cropWidth <= width && cropY + cropHeight <= height;
+    }
+
+    @Override
+    public String toString() {
+        return name + " " + getWidth() + "x" + getHeight();
+    }
+}
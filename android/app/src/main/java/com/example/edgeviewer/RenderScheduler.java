@@ -0,0 +1,163 @@
+package com.example.edgeviewer;
+
+/**
+ * Decides when the render thread should draw. The thread sleeps in
+ * {@link #awaitWork()} until a frame is published or the surface changes,
+ * instead of redrawing identical frames as fast as the driver allows.
+ *
+ * An optional max FPS spaces draws at least 1/maxFps apart. With a vsync
+ * period set, the interval is rounded up to a whole number of refreshes and
+ * the thread wakes slightly before that boundary, so the draw is ready when
+ * the swap latches on the refresh. Signals that arrive while a draw is
+ * already pending are coalesced into one draw.
+ */
+public class RenderScheduler {
+
+    public static final int WORK_NONE = 0;
+    public static final int WORK_FRAME = 1;
+    public static final int WORK_SURFACE = 2;
+
+    // How early to wake before a vsync boundary so drawing finishes in time
+    private static final long VSYNC_SLACK_NS = 2_000_000L;
+
+    private final Object lock = new Object();
+    private boolean frameAvailable;
+    private boolean surfaceChanged;
+    private boolean stopped;
+
+    private long minFrameIntervalNs;
+    private long vsyncPeriodNs;
+    private long lastRenderNs;
+
+    private long framesRendered;
+    private long duplicatesSkipped;
+    private long coalescedFrames;
+    private long idleNanos;
+
+    /** 0 or less removes the cap. */
+    public void setMaxFps(float maxFps) {
+        synchronized (lock) {
+            minFrameIntervalNs = maxFps > 0 ? (long) (1_000_000_000L / maxFps) : 0;
+        }
+    }
+
+    /** Display refresh period, e.g. from Display#getRefreshRate; 0 disables pacing. */
+    public void setVsyncPeriodNs(long periodNs) {
+        synchronized (lock) {
+            vsyncPeriodNs = Math.max(0, periodNs);
+        }
+    }
+
+    public void signalFrame() {
+        synchronized (lock) {
+            if (frameAvailable) {
+                coalescedFrames++;
+            }
+            frameAvailable = true;
+            lock.notifyAll();
+        }
+    }
+
+    public void signalSurfaceChanged() {
+        synchronized (lock) {
+            surfaceChanged = true;
+            lock.notifyAll();
+        }
+    }
+
+    public void start() {
+        synchronized (lock) {
+            stopped = false;
+        }
+    }
+
+    public void stop() {
+        synchronized (lock) {
+            stopped = true;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Blocks until there is something to draw and the pacing allows it. Returns
+     * a mask of WORK_FRAME / WORK_SURFACE, or WORK_NONE once stopped.
+     */
+    public int awaitWork() throws InterruptedException {
+        synchronized (lock) {
+            long idleStart = System.nanoTime();
+            while (!stopped && !frameAvailable && !surfaceChanged) {
+                lock.wait();
+            }
+
+            long target = nextDrawTime();
+            long now = System.nanoTime();
+            while (!stopped && now < target) {
+                long waitNs = target - now;
+                lock.wait(waitNs / 1_000_000L, (int) (waitNs % 1_000_000L));
+                now = System.nanoTime();
+            }
+            idleNanos += now - idleStart;
+
+            if (stopped) {
+                return WORK_NONE;
+            }
+            int work = (frameAvailable ? WORK_FRAME : 0) | (surfaceChanged ? WORK_SURFACE : 0);
+            frameAvailable = false;
+            surfaceChanged = false;
+            return work;
+        }
+    }
+
+    /** Called by the render thread after a swap. */
+    public void frameRendered() {
+        synchronized (lock) {
+            lastRenderNs = System.nanoTime();
+            framesRendered++;
+        }
+    }
+
+    /** Called when woken for a frame that turned out to be already on screen. */
+    public void duplicateSkipped() {
+        synchronized (lock) {
+            duplicatesSkipped++;
+        }
+    }
+
+    private long nextDrawTime() {
+        if (lastRenderNs == 0) {
+            return 0;
+        }
+        if (vsyncPeriodNs > 0 && minFrameIntervalNs > 0) {
+            long periods = (minFrameIntervalNs + vsyncPeriodNs - 1) / vsyncPeriodNs;
+            long slack = Math.min(VSYNC_SLACK_NS, vsyncPeriodNs / 4);
+            return lastRenderNs + periods * vsyncPeriodNs - slack;
+        }
+        return lastRenderNs + minFrameIntervalNs;
+    }
+
+    public long getFramesRendered() {
+        synchronized (lock) {
+            return framesRendered;
+        }
+    }
+
+    public long getDuplicatesSkipped() {
+        synchronized (lock) {
+            return duplicatesSkipped;
+        }
+    }
+
+    /** Published frames replaced by a newer one before they could be drawn. */
+    public long getCoalescedFrames() {
+        synchronized (lock) {
+            return coalescedFrames;
+        }
+    }
+
+    /** Time the render thread spent waiting for work or pacing. */
+    public long getIdleNanos() {
+        synchronized (lock) {
+            return idleNanos;
+        }
+    }
+}
@@ -0,0 +1,331 @@
+package com.example.edgeviewer;
+
+/**
+ * A render thread that outlives its window. The EGL context, and with it every
+ * program and texture the {@link Renderer} creates, is made once when the
+ * thread starts and kept until {@link #release}. Windows come and go with
+ * {@link #attachWindow} / {@link #detachWindow}: only the window surface is
+ * created and destroyed, and in between the context stays current on a 1x1
+ * pbuffer. Bringing a view back is then a surface attach, not a GL re-init;
+ * the time from attach to the first frame shown is recorded as
+ * {@link LatencyStats#RESUME}.
+ *
+ * All EGL work goes through an {@link EglApi}, so the same lifecycle runs
+ * headless, e.g. against a desktop EGL where windows are pbuffers too.
+ */
+public class RenderThread implements Runnable {
+
+    public interface Renderer {
+        /** Creates the GL objects; runs once per context, with the pbuffer current. */
+        void onContextCreated();
+
+        /** Draws with the window surface current; false if there was nothing new to show. */
+        boolean onDraw(int work);
+
+        /** After a swap; resumeNs is the attach-to-frame time for the first frame on a window, else 0. */
+        void onFrameShown(long nowNs, long resumeNs);
+
+        /** Deletes the GL objects; the context is still current. */
+        void onContextDestroyed();
+    }
+
+    private final EglApi egl;
+    private final RenderScheduler scheduler;
+    private final Renderer renderer;
+
+    // Window requests from the UI thread, applied by the render thread in order
+    private final Object lock = new Object();
+    private Object requestedWindow;
+    private long requestedNs;
+    private int requests;
+    private int applied;
+    private boolean quit;
+    private boolean exited;
+    private Thread thread;
+
+    // Render thread only
+    private Object windowSurface;
+    private Object pbuffer;
+    // Attach request time until the first frame on that window is shown
+    private long resumeStartNs;
+
+    private volatile LatencyStats stats;
+    private volatile long lastResumeNs;
+    private volatile int contextsCreated;
+    private volatile long windowsAttached;
+    private volatile boolean failed;
+
+    public RenderThread(EglApi egl, RenderScheduler scheduler, Renderer renderer) {
+        this.egl = egl;
+        this.scheduler = scheduler;
+        this.renderer = renderer;
+    }
+
+    /** Records swaps and resume latency into stats; null stops. */
+    public void setStats(LatencyStats stats) {
+        this.stats = stats;
+    }
+
+    /** Starts the thread, which builds the context before any window exists. */
+    public void start() {
+        synchronized (lock) {
+            if (thread != null) {
+                return;
+            }
+            scheduler.start();
+            thread = new Thread(this, "GLRenderThread");
+            thread.start();
+        }
+    }
+
+    /** Draws into window from now on; returns at once. */
+    public void attachWindow(Object window) {
+        if (window == null) {
+            throw new IllegalArgumentException("window is null; use detachWindow");
+        }
+        request(window);
+    }
+
+    /**
+     * Stops drawing into the current window and waits until its surface is
+     * destroyed, as SurfaceHolder.Callback#surfaceDestroyed requires.
+     */
+    public void detachWindow() {
+        int request = request(null);
+        synchronized (lock) {
+            boolean interrupted = false;
+            while (!exited && thread != null && applied < request) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private int request(Object window) {
+        int request;
+        synchronized (lock) {
+            requestedWindow = window;
+            requestedNs = System.nanoTime();
+            request = ++requests;
+            lock.notifyAll();
+        }
+        // Wakes the thread if it is waiting for frames
+        scheduler.signalSurfaceChanged();
+        return request;
+    }
+
+    /** Destroys the surfaces and the context and ends the thread; waits for it. */
+    public void release() {
+        Thread t;
+        synchronized (lock) {
+            quit = true;
+            lock.notifyAll();
+            t = thread;
+        }
+        scheduler.stop();
+        if (t != null) {
+            boolean interrupted = false;
+            while (t.isAlive()) {
+                try {
+                    t.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            if (!createContext()) {
+                failed = true;
+                return;
+            }
+            loop();
+            if (!failed) {
+                destroyContext();
+            }
+        } finally {
+            synchronized (lock) {
+                exited = true;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    private void loop() {
+        while (true) {
+            Object window;
+            long requestNs;
+            int request;
+            synchronized (lock) {
+                // Without a window there is nothing to draw on; frames stay in the pool
+                while (!quit && applied == requests && windowSurface == null) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (quit) {
+                    return;
+                }
+                window = requestedWindow;
+                requestNs = requestedNs;
+                request = requests;
+            }
+            if (request != applied) {
+                setWindow(window, requestNs);
+                synchronized (lock) {
+                    applied = request;
+                    lock.notifyAll();
+                }
+                continue;
+            }
+
+            int work;
+            try {
+                work = scheduler.awaitWork();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (work == RenderScheduler.WORK_NONE) {
+                // Stopped for release
+                continue;
+            }
+            synchronized (lock) {
+                if (requests != applied || windowSurface == null) {
+                    // Window changed meanwhile; the attach redraws from the pool
+                    continue;
+                }
+            }
+            if (!renderer.onDraw(work)) {
+                scheduler.duplicateSkipped();
+                continue;
+            }
+            long swapStart = System.nanoTime();
+            int result = egl.swapBuffers(windowSurface);
+            long now = System.nanoTime();
+            if (result == EglApi.SWAP_CONTEXT_LOST) {
+                recreateContext(window);
+                continue;
+            }
+            if (result == EglApi.SWAP_SURFACE_LOST) {
+                dropWindowSurface();
+                continue;
+            }
+            scheduler.frameRendered();
+            long resumeNs = 0;
+            if (resumeStartNs != 0) {
+                resumeNs = now - resumeStartNs;
+                resumeStartNs = 0;
+                lastResumeNs = resumeNs;
+            }
+            LatencyStats s = stats;
+            if (s != null) {
+                s.record(LatencyStats.SWAP, now - swapStart);
+                if (resumeNs != 0) {
+                    s.record(LatencyStats.RESUME, resumeNs);
+                }
+            }
+            renderer.onFrameShown(now, resumeNs);
+        }
+    }
+
+    private boolean createContext() {
+        if (!egl.createContext()) {
+            return false;
+        }
+        pbuffer = egl.createPbufferSurface(1, 1);
+        if (pbuffer == null || !egl.makeCurrent(pbuffer)) {
+            egl.destroyContext();
+            return false;
+        }
+        renderer.onContextCreated();
+        contextsCreated++;
+        return true;
+    }
+
+    private void destroyContext() {
+        dropWindowSurface();
+        renderer.onContextDestroyed();
+        egl.destroySurface(pbuffer);
+        pbuffer = null;
+        egl.destroyContext();
+    }
+
+    // The old objects went with the context; build everything again and
+    // return to the window
+    private void recreateContext(Object window) {
+        dropWindowSurface();
+        egl.destroySurface(pbuffer);
+        egl.destroyContext();
+        if (!createContext()) {
+            failed = true;
+            synchronized (lock) {
+                quit = true;
+            }
+            return;
+        }
+        setWindow(window, System.nanoTime());
+    }
+
+    private void setWindow(Object window, long requestNs) {
+        dropWindowSurface();
+        if (window == null) {
+            return;
+        }
+        Object surface = egl.createWindowSurface(window);
+        if (surface == null) {
+            return;
+        }
+        if (!egl.makeCurrent(surface)) {
+            egl.destroySurface(surface);
+            egl.makeCurrent(pbuffer);
+            return;
+        }
+        windowSurface = surface;
+        windowsAttached++;
+        resumeStartNs = requestNs;
+        // Draw the newest frame, or the last one again, on the new surface
+        scheduler.signalSurfaceChanged();
+    }
+
+    private void dropWindowSurface() {
+        if (windowSurface != null) {
+            egl.makeCurrent(pbuffer);
+            egl.destroySurface(windowSurface);
+            windowSurface = null;
+            resumeStartNs = 0;
+        }
+    }
+
+    /** Attach-to-first-frame time of the last window, 0 before the first. */
+    public long getLastResumeNs() {
+        return lastResumeNs;
+    }
+
+    /** 1 for the thread's lifetime unless the context was lost. */
+    public int getContextsCreated() {
+        return contextsCreated;
+    }
+
+    public long getWindowsAttached() {
+        return windowsAttached;
+    }
+
+    /** True if no context could be made; nothing is drawn. */
+    public boolean hasFailed() {
+        return failed;
+    }
+}
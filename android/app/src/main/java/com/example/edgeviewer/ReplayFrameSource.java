@@ -0,0 +1,128 @@
+package com.example.edgeviewer;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Plays a {@link FrameRecording} into a consumer, either paced by the recorded
+ * timestamps or as fast as the consumer accepts frames. With a
+ * {@link FramePipeline.Backpressure#BLOCK} processor the latter runs every
+ * frame through at the pipeline's maximum throughput.
+ */
+public class ReplayFrameSource implements FrameSource, Runnable {
+
+    // Recorded frames are mapped read-only and never reused, so there is nothing to hand back
+    private static final AutoCloseable NO_RELEASE = () -> {
+    };
+
+    private final FrameRecording recording;
+    private final boolean realtime;
+    private final int loops;
+
+    private Thread thread;
+    private Consumer consumer;
+    private volatile boolean running;
+    private CountDownLatch finished = new CountDownLatch(1);
+
+    private volatile long framesDelivered;
+    private volatile long framesDropped;
+
+    /** realtime paces frames as recorded; loops is how often to play the recording, 0 for ever. */
+    public ReplayFrameSource(FrameRecording recording, boolean realtime, int loops) {
+        this.recording = recording;
+        this.realtime = realtime;
+        this.loops = loops;
+    }
+
+    @Override
+    public int getWidth() {
+        return recording.getWidth();
+    }
+
+    @Override
+    public int getHeight() {
+        return recording.getHeight();
+    }
+
+    @Override
+    public synchronized void start(Consumer consumer) {
+        if (thread != null) {
+            throw new IllegalStateException("already started");
+        }
+        this.consumer = consumer;
+        finished = new CountDownLatch(1);
+        running = true;
+        thread = new Thread(this, "ReplayFrameSource");
+        thread.start();
+    }
+
+    @Override
+    public synchronized void stop() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            thread = null;
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            play();
+        } finally {
+            finished.countDown();
+        }
+    }
+
+    private void play() {
+        int count = recording.getFrameCount();
+        if (count == 0) {
+            return;
+        }
+        long first = recording.getTimestampNs(0);
+        // One loop lasts the recording plus an average frame interval
+        long period = count > 1
+                ? recording.getDurationNs() + recording.getDurationNs() / (count - 1)
+                : 33_000_000L;
+        long startNs = System.nanoTime();
+        for (int loop = 0; running && (loops == 0 || loop < loops); loop++) {
+            for (int i = 0; i < count && running; i++) {
+                long offset = recording.getTimestampNs(i) - first + loop * period;
+                if (realtime) {
+                    long wait = startNs + offset - System.nanoTime();
+                    if (wait > 0) {
+                        try {
+                            TimeUnit.NANOSECONDS.sleep(wait);
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                }
+                if (consumer.onFrame(recording.getFrame(i), recording.getWidth(), first + offset, NO_RELEASE)) {
+                    framesDelivered++;
+                } else {
+                    framesDropped++;
+                }
+            }
+        }
+    }
+
+    /** Waits for the last loop to finish; false on timeout. */
+    public boolean awaitFinished(long timeoutMs) throws InterruptedException {
+        return finished.await(timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    public long getFramesDelivered() {
+        return framesDelivered;
+    }
+
+    /** Frames the consumer rejected. */
+    public long getFramesDropped() {
+        return framesDropped;
+    }
+}
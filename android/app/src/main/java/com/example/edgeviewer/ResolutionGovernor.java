@@ -0,0 +1,152 @@
+package com.example.edgeviewer;
+
+/**
+ * Picks a {@link ProcessingProfile} from a ladder so that processing keeps up
+ * with a target frame rate. Fed once per finished frame with the edge stage
+ * time and the submit-to-publish latency; it has no clock or threads of its
+ * own, so a recorded or simulated trace replays deterministically.
+ *
+ * Both inputs are smoothed. The governor steps to a cheaper profile after a
+ * few frames over budget, and back up only after a longer run in which the
+ * current cost, scaled by the pixel ratio of the next profile up, would still
+ * fit comfortably. Frames processed with an earlier profile are ignored, as
+ * are the first few after a switch while the engine settles.
+ */
+public class ResolutionGovernor {
+
+    public interface Listener {
+        void onProfileChanged(ProcessingProfile profile);
+    }
+
+    private static final float SMOOTHING = 0.2f;
+    // Step down once smoothed load exceeds this fraction of the budget
+    private static final float HIGH_WATER = 0.9f;
+    // Step up only if the predicted load at the next level stays under this
+    private static final float LOW_WATER = 0.7f;
+    private static final int DOWN_FRAMES = 5;
+    private static final int UP_FRAMES = 45;
+    private static final int SETTLE_FRAMES = 3;
+    // Frames in flight across the pipeline stages before latency counts as lag
+    private static final int LATENCY_FRAMES = 3;
+
+    private final ProcessingProfile[] ladder;
+    private final float budgetMs;
+    private Listener listener;
+
+    private int level;
+    private float smoothedMs = -1f;
+    private float smoothedLatencyMs = -1f;
+    private int overCount;
+    private int underCount;
+    private int settleCount = SETTLE_FRAMES;
+
+    private long stepsDown;
+    private long stepsUp;
+
+    public ResolutionGovernor(ProcessingProfile[] ladder, float targetFps) {
+        if (ladder.length == 0) {
+            throw new IllegalArgumentException("empty ladder");
+        }
+        if (targetFps <= 0) {
+            throw new IllegalArgumentException("targetFps must be positive");
+        }
+        this.ladder = ladder.clone();
+        this.budgetMs = 1000f / targetFps;
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public synchronized ProcessingProfile getProfile() {
+        return ladder[level];
+    }
+
+    public synchronized int getLevel() {
+        return level;
+    }
+
+    /**
+     * Records one finished frame. Returns true if the profile changed; the new
+     * one is also passed to the listener.
+     */
+    public boolean onFrame(ProcessingProfile profile, float processingMs, long latencyNs) {
+        ProcessingProfile changed;
+        synchronized (this) {
+            if (profile != ladder[level]) {
+                return false;
+            }
+            if (settleCount > 0) {
+                settleCount--;
+                return false;
+            }
+            float latencyMs = latencyNs / 1_000_000f;
+            smoothedMs = smooth(smoothedMs, processingMs);
+            smoothedLatencyMs = smooth(smoothedLatencyMs, latencyMs);
+
+            // Fraction of the budget in use; latency is allowed one budget per stage
+            float load = Math.max(smoothedMs / budgetMs,
+                    smoothedLatencyMs / (budgetMs * LATENCY_FRAMES));
+
+            int next = level;
+            if (load > HIGH_WATER) {
+                underCount = 0;
+                if (++overCount >= DOWN_FRAMES && level + 1 < ladder.length) {
+                    next = level + 1;
+                }
+            } else {
+                overCount = 0;
+                if (level > 0) {
+                    float ratio = (float) ladder[level - 1].getPixelCount() / ladder[level].getPixelCount();
+                    if (load * ratio < LOW_WATER) {
+                        if (++underCount >= UP_FRAMES) {
+                            next = level - 1;
+                        }
+                    } else {
+                        underCount = 0;
+                    }
+                }
+            }
+            if (next == level) {
+                return false;
+            }
+            if (next > level) {
+                stepsDown++;
+            } else {
+                stepsUp++;
+            }
+            level = next;
+            smoothedMs = -1f;
+            smoothedLatencyMs = -1f;
+            overCount = 0;
+            underCount = 0;
+            settleCount = SETTLE_FRAMES;
+            changed = ladder[level];
+        }
+        Listener l = listener;
+        if (l != null) {
+            l.onProfileChanged(changed);
+        }
+        return true;
+    }
+
+    private static float smooth(float current, float sample) {
+        return current < 0 ? sample : current + SMOOTHING * (sample - current);
+    }
+
+    public synchronized float getSmoothedMs() {
+        return Math.max(0f, smoothedMs);
+    }
+
+    public synchronized float getSmoothedLatencyMs() {
+        return Math.max(0f, smoothedLatencyMs);
+    }
+
+    public synchronized long getStepsDown() {
+        return stepsDown;
+    }
+
+    public synchronized long getStepsUp() {
+        return stepsUp;
+    }
+}
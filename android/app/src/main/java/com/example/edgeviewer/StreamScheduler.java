@@ -0,0 +1,398 @@
+package com.example.edgeviewer;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs several frame streams (cameras, recordings) through one
+ * {@link EdgeDetector} each on a shared pool of worker threads, so throughput
+ * grows with the number of cores rather than the number of streams.
+ *
+ * Each stream is a {@link FrameSource.Consumer} with a small queue of frames,
+ * read in place until processed. A stream with queued frames waits in a FIFO
+ * ready queue; a worker takes the stream at its head, runs up to quantum of
+ * its frames as one batch and, if more are queued, puts it back at the tail.
+ * Streams are therefore served round-robin regardless of their frame rate, a
+ * stream is never on two workers at once (its detector sees one frame at a
+ * time, in order) and a busy stream cannot starve the others.
+ *
+ * Output frames come from a per-stream {@link FramePool} and go to the
+ * {@link FrameSink}, which must release them. No Android classes are used, so
+ * the scheduler also runs headless on a desktop JVM.
+ */
+public class StreamScheduler {
+
+    public interface FrameSink {
+        /** Takes ownership of frame and must release it. Called on a worker thread. */
+        void onFrame(Stream stream, FramePool.Frame frame, float processingMs);
+    }
+
+    private final int workerCount;
+    private final int quantum;
+    private final FrameSink sink;
+    private final FramePipeline.Backpressure backpressure;
+    private final List<Stream> streams = new ArrayList<>();
+    private final List<Thread> workers = new ArrayList<>();
+    // Each stream is queued at most once, so a capacity of the stream count never blocks
+    private volatile ArrayBlockingQueue<Stream> ready;
+    private volatile boolean running;
+    private boolean started;
+    private boolean stopped;
+
+    /**
+     * quantum is the most frames a worker runs from one stream before moving
+     * on; backpressure decides what happens when a stream's queue is full
+     * (BLOCK holds up the source, e.g. for lossless replay).
+     */
+    public StreamScheduler(int workers, int quantum, FramePipeline.Backpressure backpressure, FrameSink sink) {
+        if (workers < 1 || quantum < 1) {
+            throw new IllegalArgumentException("workers and quantum must be at least 1");
+        }
+        this.workerCount = workers;
+        this.quantum = quantum;
+        this.backpressure = backpressure;
+        this.sink = sink;
+    }
+
+    /**
+     * Adds a stream of width x height frames before {@link #start}. The detector
+     * is initialised here and released by {@link #stop}; it is only ever called
+     * from one worker at a time, so a single-threaded one is the best fit.
+     */
+    public synchronized Stream addStream(String name, int width, int height, int outputChannels,
+                                         EdgeDetector detector, int queueCapacity, int outputFrames) {
+        if (started) {
+            throw new IllegalStateException("streams must be added before start");
+        }
+        Stream stream = new Stream(streams.size(), name, width, height, outputChannels, detector,
+                queueCapacity, outputFrames);
+        streams.add(stream);
+        return stream;
+    }
+
+    public synchronized List<Stream> getStreams() {
+        return new ArrayList<>(streams);
+    }
+
+    public synchronized void start() {
+        if (started || stopped) {
+            throw new IllegalStateException(stopped ? "a stopped scheduler cannot be restarted" : "already started");
+        }
+        started = true;
+        ready = new ArrayBlockingQueue<>(Math.max(1, streams.size()));
+        running = true;
+        for (int i = 0; i < workerCount; i++) {
+            Thread t = new Thread(this::work, "StreamWorker-" + i);
+            workers.add(t);
+            t.start();
+        }
+    }
+
+    /**
+     * Stops the workers for good, drops whatever is still queued and releases
+     * the detectors. Stop the sources feeding the streams first.
+     */
+    public synchronized void stop() {
+        if (!started) {
+            return;
+        }
+        started = false;
+        stopped = true;
+        running = false;
+        for (Thread t : workers) {
+            t.interrupt();
+        }
+        for (Thread t : workers) {
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        workers.clear();
+        for (Stream stream : streams) {
+            stream.drain();
+            stream.detector.release();
+        }
+        ready.clear();
+    }
+
+    private void work() {
+        try {
+            while (running) {
+                Stream stream = ready.take();
+                for (int i = 0; i < quantum && running && stream.processNext(); i++) {
+                    // processNext runs one frame
+                }
+                stream.reschedule();
+            }
+        } catch (InterruptedException e) {
+            // stop()
+        }
+    }
+
+    /**
+     * One input of the scheduler. Hand {@code stream::onFrame} (or the stream
+     * itself) to a {@link FrameSource}. Counters and histograms may be read
+     * from any thread.
+     */
+    public final class Stream implements FrameSource.Consumer {
+        private final int index;
+        private final String name;
+        private final int width;
+        private final int height;
+        private final int outputChannels;
+        private final EdgeDetector detector;
+        private final FramePool output;
+
+        // Ring of queued frames, guarded by this
+        private final ByteBuffer[] planes;
+        private final int[] rowStrides;
+        private final long[] timestamps;
+        private final long[] submitNs;
+        private final AutoCloseable[] releases;
+        private int head;
+        private int size;
+        // In the ready queue or on a worker
+        private boolean scheduled;
+
+        private final AtomicLong submitted = new AtomicLong();
+        private final AtomicLong processed = new AtomicLong();
+        private final AtomicLong dropped = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final LatencyHistogram processing = new LatencyHistogram();
+        private final LatencyHistogram latency = new LatencyHistogram();
+
+        Stream(int index, String name, int width, int height, int outputChannels, EdgeDetector detector,
+               int queueCapacity, int outputFrames) {
+            if (queueCapacity < 1) {
+                throw new IllegalArgumentException("queueCapacity must be at least 1");
+            }
+            this.index = index;
+            this.name = name;
+            this.width = width;
+            this.height = height;
+            this.outputChannels = outputChannels;
+            this.detector = detector;
+            this.output = new FramePool(outputFrames, width * height * outputChannels);
+            planes = new ByteBuffer[queueCapacity];
+            rowStrides = new int[queueCapacity];
+            timestamps = new long[queueCapacity];
+            submitNs = new long[queueCapacity];
+            releases = new AutoCloseable[queueCapacity];
+            detector.init(width, height, outputChannels);
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        public EdgeDetector getDetector() {
+            return detector;
+        }
+
+        @Override
+        public boolean onFrame(ByteBuffer plane, int rowStride, long timestampNs, AutoCloseable release) {
+            submitted.incrementAndGet();
+            AutoCloseable evicted = null;
+            boolean accepted = true;
+            boolean wake = false;
+            synchronized (this) {
+                if (backpressure == FramePipeline.Backpressure.BLOCK) {
+                    try {
+                        while (size == planes.length && running) {
+                            wait();
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                if (!running || (size == planes.length && backpressure != FramePipeline.Backpressure.DROP_OLDEST)) {
+                    accepted = false;
+                } else {
+                    if (size == planes.length) {
+                        evicted = releases[head];
+                        clear(head);
+                        head = (head + 1) % planes.length;
+                        size--;
+                    }
+                    int slot = (head + size) % planes.length;
+                    planes[slot] = plane;
+                    rowStrides[slot] = rowStride;
+                    timestamps[slot] = timestampNs;
+                    submitNs[slot] = System.nanoTime();
+                    releases[slot] = release;
+                    size++;
+                    if (!scheduled) {
+                        scheduled = true;
+                        wake = true;
+                    }
+                }
+            }
+            if (wake) {
+                ready.offer(this);
+            }
+            if (evicted != null) {
+                dropped.incrementAndGet();
+                close(evicted);
+            }
+            if (!accepted) {
+                dropped.incrementAndGet();
+                close(release);
+            }
+            return accepted;
+        }
+
+        // Worker only; false when the queue is empty
+        boolean processNext() {
+            ByteBuffer plane;
+            int rowStride;
+            long timestampNs;
+            long queuedNs;
+            AutoCloseable release;
+            synchronized (this) {
+                if (size == 0) {
+                    return false;
+                }
+                plane = planes[head];
+                rowStride = rowStrides[head];
+                timestampNs = timestamps[head];
+                queuedNs = submitNs[head];
+                release = releases[head];
+                clear(head);
+                head = (head + 1) % planes.length;
+                size--;
+                notifyAll();
+            }
+
+            FramePool.Frame frame = output.acquire();
+            if (frame == null) {
+                // The sink still holds every output frame of this stream
+                dropped.incrementAndGet();
+                close(release);
+                return true;
+            }
+            long start = System.nanoTime();
+            float ms;
+            try {
+                ms = detector.process(plane, rowStride, frame.buffer);
+            } catch (RuntimeException e) {
+                failed.incrementAndGet();
+                frame.release();
+                return true;
+            } finally {
+                close(release);
+            }
+            long end = System.nanoTime();
+            processing.record(end - start);
+            latency.record(end - queuedNs);
+            processed.incrementAndGet();
+
+            frame.width = width;
+            frame.height = height;
+            frame.channels = outputChannels;
+            frame.raw = false;
+            frame.color = false;
+            frame.processingMs = ms;
+            frame.timestampNs = timestampNs;
+            frame.submitNs = queuedNs;
+            sink.onFrame(this, frame, ms);
+            return true;
+        }
+
+        // Worker only: back to the tail of the ready queue if frames arrived meanwhile
+        void reschedule() {
+            boolean requeue;
+            synchronized (this) {
+                requeue = size > 0 && running;
+                scheduled = requeue;
+            }
+            if (requeue) {
+                ready.offer(this);
+            }
+        }
+
+        void drain() {
+            AutoCloseable[] pending;
+            synchronized (this) {
+                pending = new AutoCloseable[size];
+                for (int i = 0; i < size; i++) {
+                    int slot = (head + i) % planes.length;
+                    pending[i] = releases[slot];
+                    clear(slot);
+                }
+                head = 0;
+                size = 0;
+                scheduled = false;
+                notifyAll();
+            }
+            for (AutoCloseable release : pending) {
+                dropped.incrementAndGet();
+                close(release);
+            }
+        }
+
+        private void clear(int slot) {
+            planes[slot] = null;
+            releases[slot] = null;
+        }
+
+        /** Frames handed to onFrame. */
+        public long getSubmittedCount() {
+            return submitted.get();
+        }
+
+        /** Frames that reached the sink. */
+        public long getProcessedCount() {
+            return processed.get();
+        }
+
+        /** Frames evicted or rejected by a full queue, or with no free output frame. */
+        public long getDroppedCount() {
+            return dropped.get();
+        }
+
+        /** Frames the detector threw on; not counted as dropped. */
+        public long getFailedCount() {
+            return failed.get();
+        }
+
+        /** Detector time per frame. */
+        public LatencyHistogram getProcessingHistogram() {
+            return processing;
+        }
+
+        /** Time from onFrame to the end of processing, queueing included. */
+        public LatencyHistogram getLatencyHistogram() {
+            return latency;
+        }
+
+        @Override
+        public String toString() {
+            return name + " " + width + "x" + height;
+        }
+    }
+
+    private static void close(AutoCloseable release) {
+        try {
+            release.close();
+        } catch (Exception ignored) {
+            // Nothing else can be done with a frame we are done with anyway
+        }
+    }
+}
@@ -0,0 +1,483 @@
+package com.example.edgeviewer;
+
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Minimal WebSocket server (RFC 6455) that pushes binary packets to web
+ * viewers connected to {@link #PATH}. Only java.net is used, so it runs on a
+ * desktop JVM as well as on the device.
+ *
+ * Each client has a one-slot mailbox: {@link #broadcast} replaces whatever the
+ * client has not started sending yet. A slow client therefore skips packets
+ * instead of queueing them, and memory stays bounded by one pending and one
+ * in-flight packet per client.
+ *
+ * There is no authentication, so by default only loopback connections are
+ * accepted (adb forward reaches those); listening on every interface lets
+ * anyone on the network watch. maxClients caps open sockets from the moment
+ * they are accepted, handshakes included.
+ */
+public class StreamServer {
+
+    public static final String PATH = "/stream";
+
+    private static final String ACCEPT_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+    private static final int MAX_HEADER_BYTES = 8192;
+    private static final int MAX_CLIENT_PAYLOAD = 4096;
+    private static final int HANDSHAKE_TIMEOUT_MS = 5000;
+
+    private static final int OP_TEXT = 0x1;
+    private static final int OP_BINARY = 0x2;
+    private static final int OP_CLOSE = 0x8;
+    private static final int OP_PING = 0x9;
+    private static final int OP_PONG = 0xA;
+
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    private final int requestedPort;
+    private final int maxClients;
+    private final boolean allInterfaces;
+    // Every accepted socket, handshaking or streaming; added by the accept thread only
+    private final CopyOnWriteArrayList<Client> connected = new CopyOnWriteArrayList<>();
+    // Those past the handshake, which receive broadcasts
+    private final CopyOnWriteArrayList<Client> clients = new CopyOnWriteArrayList<>();
+
+    private ServerSocket serverSocket;
+    private Thread acceptThread;
+    private volatile boolean running;
+
+    private final AtomicLong connections = new AtomicLong();
+    private final AtomicLong packetsSent = new AtomicLong();
+    private final AtomicLong packetsDropped = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    /** Loopback only. port 0 picks a free port; see {@link #getPort()}. */
+    public StreamServer(int port, int maxClients) {
+        this(port, maxClients, false);
+    }
+
+    /** allInterfaces exposes the unauthenticated stream to the whole network. */
+    public StreamServer(int port, int maxClients, boolean allInterfaces) {
+        if (maxClients < 1) {
+            throw new IllegalArgumentException("maxClients must be at least 1");
+        }
+        this.requestedPort = port;
+        this.maxClients = maxClients;
+        this.allInterfaces = allInterfaces;
+    }
+
+    public synchronized void start() throws IOException {
+        if (running) {
+            return;
+        }
+        serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(allInterfaces
+                ? new InetSocketAddress(requestedPort)
+                : new InetSocketAddress(InetAddress.getLoopbackAddress(), requestedPort));
+        running = true;
+        acceptThread = new Thread(this::acceptLoop, "StreamServer-accept");
+        acceptThread.start();
+    }
+
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            serverSocket.close();
+        } catch (IOException ignored) {
+            // Closing is all we wanted
+        }
+        try {
+            acceptThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Client client : connected) {
+            client.close();
+        }
+        connected.clear();
+        clients.clear();
+    }
+
+    public int getPort() {
+        ServerSocket socket = serverSocket;
+        return socket != null ? socket.getLocalPort() : requestedPort;
+    }
+
+    public boolean hasClients() {
+        return !clients.isEmpty();
+    }
+
+    public int getClientCount() {
+        return clients.size();
+    }
+
+    /** Queues packet for every connected client. The array must not be modified afterwards. */
+    public void broadcast(byte[] packet) {
+        for (Client client : clients) {
+            client.offer(packet);
+        }
+    }
+
+    /** Sends a text message to every client, e.g. stats; same mailbox rules as packets. */
+    public void broadcastText(String text) {
+        byte[] utf8 = text.getBytes(Charset.forName("UTF-8"));
+        for (Client client : clients) {
+            client.offerText(utf8);
+        }
+    }
+
+    public long getConnectionCount() {
+        return connections.get();
+    }
+
+    public long getPacketsSent() {
+        return packetsSent.get();
+    }
+
+    /** Packets replaced in a client's mailbox before they could be sent. */
+    public long getPacketsDropped() {
+        return packetsDropped.get();
+    }
+
+    public long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    /** Connections closed on accept because maxClients sockets were open. */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                break;
+            }
+            // Counted from here, so sockets that never finish the handshake
+            // cannot pile up reader threads
+            if (connected.size() >= maxClients) {
+                closeQuietly(socket);
+                rejected.incrementAndGet();
+                continue;
+            }
+            Client client = new Client(socket);
+            connected.add(client);
+            client.reader.start();
+        }
+    }
+
+    private final class Client {
+        final Socket socket;
+        // Not the socket itself: Socket.close() synchronizes on it, and must be
+        // able to interrupt a write stuck on a client that stopped reading
+        final Object writeLock = new Object();
+        final Thread reader;
+        Thread writer;
+        OutputStream out;
+
+        // Guarded by this
+        byte[] pending;
+        byte[] pendingText;
+        boolean closed;
+
+        Client(Socket socket) {
+            this.socket = socket;
+            this.reader = new Thread(this::readLoop, "StreamServer-read");
+        }
+
+        synchronized void offer(byte[] packet) {
+            if (pending != null) {
+                packetsDropped.incrementAndGet();
+            }
+            pending = packet;
+            notifyAll();
+        }
+
+        synchronized void offerText(byte[] text) {
+            pendingText = text;
+            notifyAll();
+        }
+
+        void close() {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                pending = null;
+                pendingText = null;
+                notifyAll();
+            }
+            clients.remove(this);
+            connected.remove(this);
+            closeQuietly(socket);
+        }
+
+        // Handshake, then service control frames until the client goes away
+        private void readLoop() {
+            try {
+                socket.setSoTimeout(HANDSHAKE_TIMEOUT_MS);
+                InputStream in = socket.getInputStream();
+                out = new BufferedOutputStream(socket.getOutputStream(), 64 * 1024);
+                if (!handshake(in)) {
+                    closeQuietly(socket);
+                    return;
+                }
+                socket.setSoTimeout(0);
+                socket.setTcpNoDelay(true);
+                connections.incrementAndGet();
+                clients.add(this);
+                if (!running || isClosed()) {
+                    // Raced with stop() or close(), which may already have run
+                    clients.remove(this);
+                    return;
+                }
+                writer = new Thread(this::writeLoop, "StreamServer-write");
+                writer.start();
+
+                byte[] payload = new byte[MAX_CLIENT_PAYLOAD];
+                byte[] mask = new byte[4];
+                while (!isClosed()) {
+                    int b0 = in.read();
+                    int b1 = in.read();
+                    if (b0 < 0 || b1 < 0) {
+                        break;
+                    }
+                    int opcode = b0 & 0x0F;
+                    long length = b1 & 0x7F;
+                    if (length == 126) {
+                        length = (readByte(in) << 8) | readByte(in);
+                    } else if (length == 127) {
+                        length = 0;
+                        for (int i = 0; i < 8; i++) {
+                            length = (length << 8) | readByte(in);
+                        }
+                    }
+                    if (length > MAX_CLIENT_PAYLOAD) {
+                        break;
+                    }
+                    boolean masked = (b1 & 0x80) != 0;
+                    if (masked) {
+                        readFully(in, mask, 4);
+                    }
+                    int n = (int) length;
+                    readFully(in, payload, n);
+                    if (masked) {
+                        for (int i = 0; i < n; i++) {
+                            payload[i] ^= mask[i & 3];
+                        }
+                    }
+                    if (opcode == OP_CLOSE) {
+                        writeFrame(OP_CLOSE, payload, Math.min(n, 2));
+                        break;
+                    } else if (opcode == OP_PING) {
+                        writeFrame(OP_PONG, payload, n);
+                    }
+                    // Anything else from the viewer is ignored
+                }
+            } catch (IOException ignored) {
+                // Client went away
+            } finally {
+                close();
+            }
+        }
+
+        private void writeLoop() {
+            try {
+                while (true) {
+                    byte[] packet;
+                    byte[] text;
+                    synchronized (this) {
+                        while (!closed && pending == null && pendingText == null) {
+                            wait();
+                        }
+                        if (closed) {
+                            return;
+                        }
+                        packet = pending;
+                        text = pendingText;
+                        pending = null;
+                        pendingText = null;
+                    }
+                    if (text != null) {
+                        writeFrame(OP_TEXT, text, text.length);
+                    }
+                    if (packet != null) {
+                        writeFrame(OP_BINARY, packet, packet.length);
+                        packetsSent.incrementAndGet();
+                    }
+                }
+            } catch (InterruptedException | IOException ignored) {
+                // Closed or disconnected
+            } finally {
+                close();
+            }
+        }
+
+        synchronized boolean isClosed() {
+            return closed;
+        }
+
+        private boolean handshake(InputStream in) throws IOException {
+            String request = readHeader(in);
+            if (request == null) {
+                return false;
+            }
+            String[] lines = request.split("\r\n");
+            String[] requestLine = lines[0].split(" ");
+            Map<String, String> headers = new HashMap<>();
+            for (int i = 1; i < lines.length; i++) {
+                int colon = lines[i].indexOf(':');
+                if (colon > 0) {
+                    headers.put(lines[i].substring(0, colon).trim().toLowerCase(Locale.US),
+                            lines[i].substring(colon + 1).trim());
+                }
+            }
+            String key = headers.get("sec-websocket-key");
+            boolean upgrade = requestLine.length >= 2
+                    && "GET".equals(requestLine[0])
+                    && PATH.equals(path(requestLine[1]))
+                    && key != null
+                    && "websocket".equalsIgnoreCase(headers.get("upgrade"));
+            if (!upgrade) {
+                String body = "EdgeViewer stream: open a WebSocket to " + PATH + "\n";
+                String response = "HTTP/1.1 404 Not Found\r\n"
+                        + "Content-Type: text/plain\r\n"
+                        + "Content-Length: " + body.length() + "\r\n"
+                        + "Connection: close\r\n\r\n" + body;
+                out.write(response.getBytes(ASCII));
+                out.flush();
+                return false;
+            }
+            String response = "HTTP/1.1 101 Switching Protocols\r\n"
+                    + "Upgrade: websocket\r\n"
+                    + "Connection: Upgrade\r\n"
+                    + "Sec-WebSocket-Accept: " + acceptKey(key) + "\r\n\r\n";
+            out.write(response.getBytes(ASCII));
+            out.flush();
+            return true;
+        }
+
+        // Server frames are never masked or fragmented
+        private void writeFrame(int opcode, byte[] payload, int length) throws IOException {
+            synchronized (writeLock) {
+                out.write(0x80 | opcode);
+                if (length < 126) {
+                    out.write(length);
+                } else if (length <= 0xFFFF) {
+                    out.write(126);
+                    out.write(length >>> 8);
+                    out.write(length);
+                } else {
+                    out.write(127);
+                    for (int shift = 56; shift >= 0; shift -= 8) {
+                        out.write((int) ((long) length >>> shift));
+                    }
+                }
+                out.write(payload, 0, length);
+                out.flush();
+                bytesSent.addAndGet(length);
+            }
+        }
+    }
+
+    // Request target without the query string
+    private static String path(String target) {
+        int query = target.indexOf('?');
+        return query >= 0 ? target.substring(0, query) : target;
+    }
+
+    private static String readHeader(InputStream in) throws IOException {
+        byte[] buffer = new byte[MAX_HEADER_BYTES];
+        int n = 0;
+        while (n < buffer.length) {
+            int b = in.read();
+            if (b < 0) {
+                return null;
+            }
+            buffer[n++] = (byte) b;
+            if (n >= 4 && buffer[n - 4] == '\r' && buffer[n - 3] == '\n'
+                    && buffer[n - 2] == '\r' && buffer[n - 1] == '\n') {
+                return new String(buffer, 0, n - 4, ASCII);
+            }
+        }
+        return null;
+    }
+
+    static String acceptKey(String key) {
+        try {
+            MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+            return base64(sha1.digest((key + ACCEPT_GUID).getBytes(ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // java.util.Base64 needs API 26 and android.util.Base64 is not on the JVM
+    private static String base64(byte[] data) {
+        final String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        StringBuilder sb = new StringBuilder((data.length + 2) / 3 * 4);
+        for (int i = 0; i < data.length; i += 3) {
+            int b0 = data[i] & 0xFF;
+            int b1 = i + 1 < data.length ? data[i + 1] & 0xFF : 0;
+            int b2 = i + 2 < data.length ? data[i + 2] & 0xFF : 0;
+            int triple = (b0 << 16) | (b1 << 8) | b2;
+            sb.append(alphabet.charAt((triple >> 18) & 63));
+            sb.append(alphabet.charAt((triple >> 12) & 63));
+            sb.append(i + 1 < data.length ? alphabet.charAt((triple >> 6) & 63) : '=');
+            sb.append(i + 2 < data.length ? alphabet.charAt(triple & 63) : '=');
+        }
+        return sb.toString();
+    }
+
+    private static int readByte(InputStream in) throws IOException {
+        int b = in.read();
+        if (b < 0) {
+            throw new EOFException();
+        }
+        return b;
+    }
+
+    private static void readFully(InputStream in, byte[] buffer, int length) throws IOException {
+        int n = 0;
+        while (n < length) {
+            int r = in.read(buffer, n, length - n);
+            if (r < 0) {
+                throw new EOFException();
+            }
+            n += r;
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+            // Already gone
+        }
+    }
+}
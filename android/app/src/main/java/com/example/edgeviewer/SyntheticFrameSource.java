@@ -0,0 +1,165 @@
+package com.example.edgeviewer;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generates frames without a camera: a fixed block pattern with a bright
+ * square moving across it, so every frame has edges and differs from the last.
+ * Frames are drawn into a few preallocated buffers that come back when the
+ * consumer closes the release handle; with fps 0 the generator runs as fast as
+ * buffers are released, i.e. at the consumer's throughput. Timestamps are
+ * System.nanoTime() at the moment a frame is handed out.
+ */
+public class SyntheticFrameSource implements FrameSource, Runnable {
+
+    // Enough for the processor to queue one frame and copy another while the next is drawn
+    private static final int BUFFERS = 4;
+    private static final int SQUARE = 64;
+
+    private final int width;
+    private final int height;
+    private final float fps;
+    private final long frameLimit;
+    private final ByteBuffer background;
+    private final ArrayBlockingQueue<Slot> free = new ArrayBlockingQueue<>(BUFFERS);
+
+    private Thread thread;
+    private Consumer consumer;
+    private volatile boolean running;
+    private CountDownLatch finished = new CountDownLatch(1);
+
+    private volatile long framesDelivered;
+    private volatile long framesDropped;
+
+    /** fps 0 generates as fast as possible; frameLimit 0 runs until stopped. */
+    public SyntheticFrameSource(int width, int height, float fps, long frameLimit) {
+        this.width = width;
+        this.height = height;
+        this.fps = fps;
+        this.frameLimit = frameLimit;
+        this.background = ByteBuffer.allocateDirect(width * height).order(ByteOrder.nativeOrder());
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                background.put(((x >> 5) + (y >> 5)) % 2 == 0 ? (byte) 60 : (byte) 150);
+            }
+        }
+        background.clear();
+        for (int i = 0; i < BUFFERS; i++) {
+            free.add(new Slot(width * height));
+        }
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public synchronized void start(Consumer consumer) {
+        if (thread != null) {
+            throw new IllegalStateException("already started");
+        }
+        this.consumer = consumer;
+        finished = new CountDownLatch(1);
+        running = true;
+        thread = new Thread(this, "SyntheticFrameSource");
+        thread.start();
+    }
+
+    @Override
+    public synchronized void stop() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            thread = null;
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            generate();
+        } catch (InterruptedException ignored) {
+            // Stopped
+        } finally {
+            finished.countDown();
+        }
+    }
+
+    private void generate() throws InterruptedException {
+        long intervalNs = fps > 0 ? (long) (1_000_000_000L / fps) : 0;
+        long next = System.nanoTime();
+        for (long n = 0; running && (frameLimit == 0 || n < frameLimit); n++) {
+            if (intervalNs > 0) {
+                long wait = next - System.nanoTime();
+                if (wait > 0) {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                }
+                next += intervalNs;
+            }
+            Slot slot = free.take();
+            draw(slot.buffer, n);
+            if (consumer.onFrame(slot.buffer, width, System.nanoTime(), slot)) {
+                framesDelivered++;
+            } else {
+                framesDropped++;
+            }
+        }
+    }
+
+    private void draw(ByteBuffer frame, long n) {
+        frame.clear();
+        frame.put(background);
+        background.clear();
+        frame.clear();
+        int size = Math.min(SQUARE, Math.min(width, height));
+        int x0 = (int) ((n * 4) % (width - size + 1));
+        int y0 = (int) ((n * 2) % (height - size + 1));
+        for (int y = y0; y < y0 + size; y++) {
+            for (int x = x0; x < x0 + size; x++) {
+                frame.put(y * width + x, (byte) 230);
+            }
+        }
+    }
+
+    /** Waits until frameLimit frames have been handed out; false on timeout. */
+    public boolean awaitFinished(long timeoutMs) throws InterruptedException {
+        return finished.await(timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    public long getFramesDelivered() {
+        return framesDelivered;
+    }
+
+    /** Frames the consumer rejected. */
+    public long getFramesDropped() {
+        return framesDropped;
+    }
+
+    private final class Slot implements AutoCloseable {
+        final ByteBuffer buffer;
+
+        Slot(int bytes) {
+            buffer = ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+        }
+
+        @Override
+        public void close() {
+            free.offer(this);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.edgeviewer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * YUV_420_888 to RGBA (full-range BT.601) straight from the image planes,
+ * without intermediate arrays. {@link NativeYuvConverter} is the fast one;
+ * {@link JavaYuvConverter} gives the same bytes anywhere.
+ */
+public interface YuvConverter {
+
+    /**
+     * Writes width * height RGBA pixels to out. y has yRowStride bytes per
+     * row; chroma starts uvOffset bytes into u and v, with uvRowStride bytes
+     * per row and uvPixelStride between samples (1 planar, 2 semi-planar).
+     * subsampled means one chroma sample per 2x2 block of y, otherwise one per
+     * pixel (y already taken at half resolution).
+     */
+    void toRgba(ByteBuffer y, int yRowStride, ByteBuffer u, ByteBuffer v, int uvOffset,
+                int uvRowStride, int uvPixelStride, boolean subsampled, int width, int height,
+                ByteBuffer out);
+}
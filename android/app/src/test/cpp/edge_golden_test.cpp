@@ -0,0 +1,90 @@
+// Engine against a cv::Canny golden mask, with every kernel set and split
+// into one or several bands. JavaEdgeDetectorTest holds the Java kernels to
+// the same image and mask. Exits non-zero on any difference.
+
+#include <cstdio>
+#include <cstring>
+#include <vector>
+
+#include "edge_engine.h"
+
+namespace {
+
+// cv::Canny(src, dst, 50, 150, 3, false) of goldenImage(), from OpenCV 4.9;
+// edges touch every border, where its Sobel replicates the frame
+const char* const kGoldenMask[] = {
+        "....#...........",
+        "....#...........",
+        "....#....#......",
+        "#####...#.#...##",
+        "........#.#..##.",
+        "........#.#.##..",
+        "........#.###...",
+        "........#..#....",
+        ".........##.....",
+        "........#.......",
+        ".....####.......",
+        "....#...#.#.....",
+};
+
+constexpr int kWidth = 16;
+constexpr int kHeight = 12;
+
+// A bright block in the top-left corner, a diagonal step into the
+// bottom-right, a one-pixel vertical line and a bright run on the last row;
+// rows are padded to exercise the strided read
+std::vector<uint8_t> goldenImage(int stride) {
+    std::vector<uint8_t> gray(static_cast<size_t>(stride) * kHeight, 99);
+    for (int y = 0; y < kHeight; y++) {
+        for (int x = 0; x < kWidth; x++) {
+            int v = 40;
+            if (x < 5 && y < 4) v = 220;
+            if (x + y > 17) v = 200;
+            if (x == 9 && y > 2) v = 160;
+            if (y == kHeight - 1 && x > 3 && x < 8) v = 250;
+            gray[static_cast<size_t>(y) * stride + x] = static_cast<uint8_t>(v);
+        }
+    }
+    return gray;
+}
+
+}  // namespace
+
+int main() {
+    const int stride = kWidth + 5;
+    std::vector<uint8_t> gray = goldenImage(stride);
+    const edge::RowKernels* sets[4];
+    int setCount = edge::availableKernels(sets, 4);
+    int failures = 0;
+
+    for (int k = 0; k < setCount; k++) {
+        for (int threads : {1, 3}) {
+            edge::Engine engine;
+            engine.setThresholds(50, 150);
+            engine.setThreads(threads);
+            engine.configure(kWidth, kHeight);
+            engine.setKernels(*sets[k]);
+            std::vector<uint8_t> mask(kWidth * kHeight);
+            engine.process(gray.data(), stride, mask.data(), edge::OutputMode::Mask);
+
+            bool match = true;
+            for (int y = 0; y < kHeight; y++) {
+                char row[kWidth + 1];
+                for (int x = 0; x < kWidth; x++) {
+                    row[x] = mask[y * kWidth + x] != 0 ? '#' : '.';
+                }
+                row[kWidth] = 0;
+                if (strcmp(row, kGoldenMask[y]) != 0) {
+                    if (match) {
+                        printf("FAIL %s, %d threads\n", sets[k]->name, threads);
+                    }
+                    printf("  row %2d: %s, expected %s\n", y, row, kGoldenMask[y]);
+                    match = false;
+                }
+            }
+            failures += match ? 0 : 1;
+        }
+    }
+    printf("%s\n", failures == 0 ? "golden mask matches" : "MISMATCH");
+    return failures == 0 ? 0 : 1;
+}
@@ -0,0 +1,200 @@
+// Every RowKernels set this CPU supports against the scalar one, bit for bit:
+// each row width up to a few vectors, random rows, saturated gradients and
+// whole frames through Engine. Registered with CTest in the host build;
+// exits non-zero on any difference.
+
+#include <algorithm>
+#include <cstdio>
+#include <random>
+#include <vector>
+
+#include "edge_engine.h"
+
+namespace {
+
+// Source rows: noise, noise with runs of 0 and 255, alternating 0 / 255
+// columns, a 0 / 255 step across the rows, and flat
+enum Pattern { RANDOM, RUNS, COLUMNS, STEP, FLAT, PATTERN_COUNT };
+
+const char* const kPatternNames[] = {"random", "runs", "columns", "step", "flat"};
+
+void fill(std::mt19937& random, Pattern pattern, uint8_t* p, int n, int row) {
+    for (int i = 0; i < n; i++) {
+        switch (pattern) {
+            case RANDOM:
+                p[i] = static_cast<uint8_t>(random());
+                break;
+            case RUNS: {
+                int r = static_cast<int>(random() % 8);
+                p[i] = r == 0 ? 0 : (r == 1 ? 255 : static_cast<uint8_t>(random()));
+                break;
+            }
+            case COLUMNS:
+                p[i] = ((i + row) & 1) ? 255 : 0;
+                break;
+            case STEP:
+                p[i] = row == 0 ? 0 : 255;
+                break;
+            default:
+                p[i] = 128;
+                break;
+        }
+    }
+}
+
+int failures = 0;
+
+void fail(const char* kernels, const char* what, const char* pattern, int n, int x0, int x1) {
+    if (++failures <= 20) {
+        printf("FAIL %s %s: %s row of %d, x %d..%d\n", kernels, what, pattern, n, x0, x1);
+    }
+}
+
+// Rows start one byte into their allocation so no set can rely on alignment
+void checkRow(const edge::RowKernels& scalar, const edge::RowKernels& simd, std::mt19937& random,
+              Pattern pattern, int n, int x0, int x1) {
+    const char* name = kPatternNames[pattern];
+    std::vector<uint8_t> rows(3 * n + 1);
+    uint8_t* up = rows.data() + 1;
+    uint8_t* row = up + n;
+    uint8_t* down = row + n;
+    fill(random, pattern, up, n, 0);
+    fill(random, pattern, row, n, 1);
+    fill(random, pattern, down, n, 2);
+
+    // Poisoned, so writes outside x0..x1 show up too
+    std::vector<int32_t> magA(n, -1), magB(n, -1);
+    std::vector<uint8_t> dirA(n, 9), dirB(n, 9);
+    scalar.gradient(up, row, down, x0, x1, magA.data(), dirA.data());
+    simd.gradient(up, row, down, x0, x1, magB.data(), dirB.data());
+    if (magA != magB || dirA != dirB) {
+        fail(simd.name, "gradient", name, n, x0, x1);
+        return;
+    }
+
+    // The real row between random neighbours, then all random magnitudes
+    // including the saturated 2040 and thresholds outside the range
+    std::vector<int32_t> mags(3 * n);
+    for (int pass = 0; pass < 2; pass++) {
+        for (int i = 0; i < 3 * n; i++) {
+            mags[i] = random() % 4 == 0 ? edge::Engine::MAX_MAGNITUDE
+                                        : static_cast<int>(random() % (edge::Engine::MAX_MAGNITUDE + 1));
+        }
+        for (int x = x0; x < x1 && pass == 0; x++) {
+            mags[n + x] = magA[x];
+        }
+        std::vector<uint8_t> dirs(n);
+        for (int x = 0; x < n; x++) {
+            dirs[x] = dirA[x] <= edge::simd::DIR_135 ? dirA[x] : static_cast<uint8_t>(random() % 4);
+        }
+        const int lows[] = {-5, 0, 50, 300, edge::Engine::MAX_MAGNITUDE, 40000};
+        int low = lows[random() % 6];
+        int high = random() % 8 == 0 ? 70000 : low + static_cast<int>(random() % 400) - 20;
+        std::vector<uint8_t> mapA(n, 9), mapB(n, 9);
+        scalar.suppress(mags.data(), mags.data() + n, mags.data() + 2 * n, dirs.data(),
+                        x0, x1, low, high, mapA.data());
+        simd.suppress(mags.data(), mags.data() + n, mags.data() + 2 * n, dirs.data(),
+                      x0, x1, low, high, mapB.data());
+        if (mapA != mapB) {
+            fail(simd.name, "suppress", name, n, x0, x1);
+            return;
+        }
+    }
+}
+
+// Semi-planar and planar chroma; x0 stays even as the kernels require
+void checkYuvRow(const edge::RowKernels& scalar, const edge::RowKernels& simd, std::mt19937& random,
+                 Pattern pattern, int n, int x0, int x1, int pixelStride) {
+    int chroma = ((n - 1) / 2) * pixelStride + 1;
+    std::vector<uint8_t> luma(n + 1), u(chroma + 1), v(chroma + 1);
+    fill(random, pattern, luma.data() + 1, n, 0);
+    fill(random, pattern, u.data() + 1, chroma, 1);
+    fill(random, pattern == STEP ? RUNS : pattern, v.data() + 1, chroma, 2);
+    std::vector<uint8_t> rgbaA(4 * n, 7), rgbaB(4 * n, 7);
+    scalar.yuvToRgba(luma.data() + 1, u.data() + 1, v.data() + 1, pixelStride, x0, x1, rgbaA.data());
+    simd.yuvToRgba(luma.data() + 1, u.data() + 1, v.data() + 1, pixelStride, x0, x1, rgbaB.data());
+    if (rgbaA != rgbaB) {
+        fail(simd.name, pixelStride == 1 ? "yuv planar" : "yuv semi-planar", kPatternNames[pattern], n, x0, x1);
+    }
+}
+
+void checkFrame(const edge::RowKernels& scalar, const edge::RowKernels& simd, std::mt19937& random,
+                Pattern pattern, int w, int h) {
+    int stride = w + static_cast<int>(random() % 40);
+    std::vector<uint8_t> plane(static_cast<size_t>(stride) * h);
+    for (int y = 0; y < h; y++) {
+        fill(random, pattern, plane.data() + static_cast<size_t>(y) * stride, stride, y);
+    }
+    int low = static_cast<int>(random() % 200);
+    int high = low + static_cast<int>(random() % 300);
+
+    std::vector<uint8_t> outA(static_cast<size_t>(w) * h), outB(outA.size());
+    edge::Engine engine;
+    engine.setThresholds(low, high);
+    engine.configure(w, h);
+    engine.setKernels(scalar);
+    engine.process(plane.data(), stride, outA.data(), edge::OutputMode::Mask);
+    engine.setKernels(simd);
+    engine.process(plane.data(), stride, outB.data(), edge::OutputMode::Mask);
+    if (outA != outB) {
+        if (++failures <= 20) {
+            printf("FAIL %s frame: %s %dx%d, thresholds %d / %d\n",
+                   simd.name, kPatternNames[pattern], w, h, low, high);
+        }
+    }
+}
+
+}  // namespace
+
+int main() {
+    const edge::RowKernels* sets[4];
+    int setCount = edge::availableKernels(sets, 4);
+    const edge::RowKernels& scalar = *sets[0];
+    std::mt19937 random(7);
+
+    for (int k = 1; k < setCount; k++) {
+        const edge::RowKernels& simd = *sets[k];
+        int before = failures;
+        for (int p = 0; p < PATTERN_COUNT; p++) {
+            Pattern pattern = static_cast<Pattern>(p);
+            // Every width up to several vectors: odd widths, widths under one
+            // vector, and every tail length after the vector loop
+            for (int n = 3; n <= 72; n++) {
+                for (int trim = 0; trim < 3; trim++) {
+                    int x0 = 1 + trim;
+                    checkRow(scalar, simd, random, pattern, n, x0, std::max(x0, n - 1 - trim));
+                }
+            }
+            for (int n = 1; n <= 72; n++) {
+                for (int pixelStride = 1; pixelStride <= 2; pixelStride++) {
+                    checkYuvRow(scalar, simd, random, pattern, n, 0, n, pixelStride);
+                    checkYuvRow(scalar, simd, random, pattern, n, std::min(2, n & ~1), n - (n > 3), pixelStride);
+                }
+            }
+            for (int trial = 0; trial < 2000; trial++) {
+                int n = 3 + static_cast<int>(random() % 300);
+                int x0 = 1 + static_cast<int>(random() % 4);
+                checkRow(scalar, simd, random, pattern, n,
+                         x0, std::max(x0, n - 1 - static_cast<int>(random() % 4)));
+                int m = 1 + static_cast<int>(random() % 300);
+                int y0 = 2 * static_cast<int>(random() % 4);
+                checkYuvRow(scalar, simd, random, pattern, m, std::min(y0, m & ~1),
+                            std::max(std::min(y0, m & ~1), m - static_cast<int>(random() % 4)),
+                            1 + trial % 2);
+            }
+            // Frames down to one pixel, narrower and shorter than the bands
+            for (int w = 1; w <= 20; w++) {
+                checkFrame(scalar, simd, random, pattern, w, 1 + (w * 7) % 13);
+            }
+            for (int trial = 0; trial < 60; trial++) {
+                checkFrame(scalar, simd, random, pattern,
+                           1 + static_cast<int>(random() % 150), 1 + static_cast<int>(random() % 90));
+            }
+        }
+        printf("%-7s %s\n", simd.name, failures == before ? "matches scalar" : "MISMATCH");
+    }
+    if (setCount == 1) {
+        printf("only scalar kernels on this CPU\n");
+    }
+    return failures == 0 ? 0 : 1;
+}
@@ -0,0 +1,254 @@
+package com.example.edgeviewer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class EdgeCodecTest {
+
+    // 777 pixels: a partial last word, and a tail past the eight-byte loops
+    private static final int WIDTH = 37;
+    private static final int HEIGHT = 21;
+    private static final int[][] SIZES = {{WIDTH, HEIGHT}, {8, 8}, {3, 3}, {64, 5}, {1, 1}, {65, 3}};
+    private static final int[] MODES = {
+            EdgeCodec.ENCODING_RLE, EdgeCodec.ENCODING_BITPACK, EdgeCodec.ENCODING_DELTA, EdgeCodec.AUTO
+    };
+    private static final ByteOrder[] ORDERS = {ByteOrder.LITTLE_ENDIAN, ByteOrder.BIG_ENDIAN};
+
+    @Test
+    public void everyModeRoundTrips() {
+        for (int[] size : SIZES) {
+            for (int mode : MODES) {
+                for (ByteOrder order : ORDERS) {
+                    roundTrip(size[0], size[1], 1, mode, order, 4);
+                }
+            }
+        }
+    }
+
+    // Only the first byte of each pixel counts; the rest is noise
+    @Test
+    public void multiChannelMasksUseTheFirstByte() {
+        for (int mode : MODES) {
+            for (ByteOrder order : ORDERS) {
+                roundTrip(WIDTH, HEIGHT, 4, mode, order, 4);
+            }
+        }
+    }
+
+    @Test
+    public void deltaFramesRollOverToKeyframes() {
+        int interval = 3;
+        EdgeCodec.Encoder encoder = new EdgeCodec.Encoder(WIDTH, HEIGHT, interval);
+        EdgeCodec.Decoder decoder = new EdgeCodec.Decoder(WIDTH, HEIGHT);
+        byte[] packet = new byte[encoder.maxEncodedBytes(EdgeCodec.ENCODING_DELTA)];
+        ByteBuffer out = direct(WIDTH * HEIGHT, ByteOrder.nativeOrder());
+        Random random = new Random(11);
+        for (int frame = 0; frame < 12; frame++) {
+            ByteBuffer mask = mask(WIDTH, HEIGHT, 1, frame, random, ByteOrder.nativeOrder());
+            int size = encoder.encode(mask, 1, EdgeCodec.ENCODING_DELTA, packet, 0);
+            // A keyframe, then interval delta frames
+            int expected = frame % (interval + 1) == 0 ? EdgeCodec.ENCODING_RLE : EdgeCodec.ENCODING_DELTA;
+            assertEquals("frame " + frame, expected, encoder.getEncoding());
+            assertTrue(decoder.decode(encoder.getEncoding(), packet, 0, size, out));
+            checkMask(mask, 1, out, WIDTH * HEIGHT);
+        }
+
+        // Interval 0 never sends a delta frame
+        EdgeCodec.Encoder keyframesOnly = new EdgeCodec.Encoder(WIDTH, HEIGHT, 0);
+        for (int frame = 0; frame < 3; frame++) {
+            keyframesOnly.encode(mask(WIDTH, HEIGHT, 1, frame, random, ByteOrder.nativeOrder()), 1,
+                    EdgeCodec.ENCODING_DELTA, packet, 0);
+            assertEquals(EdgeCodec.ENCODING_RLE, keyframesOnly.getEncoding());
+        }
+    }
+
+    @Test
+    public void resetForcesAKeyframe() {
+        EdgeCodec.Encoder encoder = new EdgeCodec.Encoder(WIDTH, HEIGHT, 10);
+        byte[] packet = new byte[encoder.maxEncodedBytes(EdgeCodec.AUTO)];
+        ByteBuffer mask = mask(WIDTH, HEIGHT, 1, 0, new Random(2), ByteOrder.nativeOrder());
+        encoder.encode(mask, 1, EdgeCodec.AUTO, packet, 0);
+        encoder.encode(mask, 1, EdgeCodec.AUTO, packet, 0);
+        assertEquals(EdgeCodec.ENCODING_DELTA, encoder.getEncoding());
+        encoder.reset();
+        encoder.encode(mask, 1, EdgeCodec.AUTO, packet, 0);
+        assertTrue(EdgeCodec.isKeyframe(encoder.getEncoding()));
+    }
+
+    @Test
+    public void autoPicksTheSmallestEncoding() {
+        EdgeCodec.Encoder encoder = new EdgeCodec.Encoder(WIDTH, HEIGHT, 10);
+        byte[] packet = new byte[encoder.maxEncodedBytes(EdgeCodec.AUTO)];
+        int packed = (WIDTH * HEIGHT + 7) / 8;
+
+        // A few long runs
+        ByteBuffer sparse = direct(WIDTH * HEIGHT, ByteOrder.nativeOrder());
+        for (int i = 100; i < 300; i++) {
+            sparse.put(i, (byte) 255);
+        }
+        assertTrue(encoder.encode(sparse, 1, EdgeCodec.AUTO, packet, 0) < packed);
+        assertEquals(EdgeCodec.ENCODING_RLE, encoder.getEncoding());
+
+        // Noise: run lengths would outgrow one bit per pixel
+        encoder.reset();
+        ByteBuffer noise = mask(WIDTH, HEIGHT, 1, 0, new Random(4), ByteOrder.nativeOrder());
+        Random random = new Random(4);
+        for (int i = 0; i < WIDTH * HEIGHT; i++) {
+            noise.put(i, (byte) (random.nextBoolean() ? 255 : 0));
+        }
+        assertEquals(packed, encoder.encode(noise, 1, EdgeCodec.AUTO, packet, 0));
+        assertEquals(EdgeCodec.ENCODING_BITPACK, encoder.getEncoding());
+
+        // The same noise with one pixel changed
+        noise.put(7, (byte) (noise.get(7) == 0 ? 255 : 0));
+        assertTrue(encoder.encode(noise, 1, EdgeCodec.AUTO, packet, 0) < 8);
+        assertEquals(EdgeCodec.ENCODING_DELTA, encoder.getEncoding());
+    }
+
+    @Test
+    public void deltaWithoutAKeyframeIsRejected() {
+        EdgeCodec.Encoder encoder = new EdgeCodec.Encoder(WIDTH, HEIGHT, 5);
+        byte[] key = new byte[encoder.maxEncodedBytes(EdgeCodec.ENCODING_DELTA)];
+        byte[] delta = new byte[key.length];
+        Random random = new Random(6);
+        int keySize = encoder.encode(mask(WIDTH, HEIGHT, 1, 0, random, ByteOrder.nativeOrder()), 1,
+                EdgeCodec.ENCODING_DELTA, key, 0);
+        int deltaSize = encoder.encode(mask(WIDTH, HEIGHT, 1, 1, random, ByteOrder.nativeOrder()), 1,
+                EdgeCodec.ENCODING_DELTA, delta, 0);
+        assertEquals(EdgeCodec.ENCODING_DELTA, encoder.getEncoding());
+
+        EdgeCodec.Decoder decoder = new EdgeCodec.Decoder(WIDTH, HEIGHT);
+        ByteBuffer out = direct(WIDTH * HEIGHT, ByteOrder.nativeOrder());
+        assertFalse(decoder.decode(EdgeCodec.ENCODING_DELTA, delta, 0, deltaSize, out));
+        assertTrue(decoder.decode(EdgeCodec.ENCODING_RLE, key, 0, keySize, out));
+        assertTrue(decoder.decode(EdgeCodec.ENCODING_DELTA, delta, 0, deltaSize, out));
+
+        // A broken frame leaves it waiting for the next keyframe
+        assertFalse(decoder.decode(EdgeCodec.ENCODING_DELTA, delta, 0, deltaSize - 1, out));
+        assertFalse(decoder.decode(EdgeCodec.ENCODING_DELTA, delta, 0, deltaSize, out));
+        assertFalse(decoder.decode(99, key, 0, keySize, out));
+    }
+
+    @Test
+    public void malformedRunsAreRejected() {
+        int pixels = WIDTH * HEIGHT;
+        EdgeCodec.Decoder decoder = new EdgeCodec.Decoder(WIDTH, HEIGHT);
+        ByteBuffer out = direct(pixels, ByteOrder.nativeOrder());
+        assertTrue(rle(decoder, out, varint(100), varint(pixels - 100)));
+
+        // Short and long of the frame
+        assertFalse(rle(decoder, out, varint(100), varint(pixels - 101)));
+        assertFalse(rle(decoder, out, varint(100), varint(pixels - 99)));
+        assertFalse(rle(decoder, out, varint(pixels), varint(0), varint(1)));
+        // Cut off inside a varint
+        assertFalse(rle(decoder, out, varint(pixels), new byte[]{(byte) 0x80}));
+        // Six bytes, and five bytes whose top bits overflow an int
+        assertFalse(rle(decoder, out, new byte[]{(byte) 0x81, (byte) 0x80, (byte) 0x80, (byte) 0x80,
+                (byte) 0x80, 0}, varint(pixels - 1)));
+        assertFalse(rle(decoder, out, new byte[]{(byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x7F},
+                varint(200), varint(pixels)));
+        // Runs that add up only by wrapping around
+        assertFalse(rle(decoder, out, varint(pixels), varint(Integer.MAX_VALUE), varint(1)));
+
+        byte[] bits = new byte[(pixels + 7) / 8];
+        assertTrue(decoder.decode(EdgeCodec.ENCODING_BITPACK, bits, 0, bits.length, out));
+        assertFalse(decoder.decode(EdgeCodec.ENCODING_BITPACK, bits, 0, bits.length - 1, out));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void smallDestinationThrows() {
+        EdgeCodec.Encoder encoder = new EdgeCodec.Encoder(WIDTH, HEIGHT, 0);
+        ByteBuffer noise = mask(WIDTH, HEIGHT, 1, 0, new Random(8), ByteOrder.nativeOrder());
+        encoder.encode(noise, 1, EdgeCodec.ENCODING_RLE, new byte[16], 0);
+    }
+
+    /** Encodes frames that change a little each time and checks every decoded mask. */
+    private static void roundTrip(int width, int height, int channels, int mode, ByteOrder order, int frames) {
+        String where = width + "x" + height + "x" + channels + " mode " + mode + " " + order;
+        int pixels = width * height;
+        EdgeCodec.Encoder encoder = new EdgeCodec.Encoder(width, height, 8);
+        EdgeCodec.Decoder decoder = new EdgeCodec.Decoder(width, height);
+        // Packets land at an offset, as behind a header
+        int offset = 3;
+        byte[] packet = new byte[offset + encoder.maxEncodedBytes(mode)];
+        ByteBuffer out = direct(pixels, order);
+        Random random = new Random(pixels * 31L + mode);
+        for (int frame = 0; frame < frames; frame++) {
+            ByteBuffer mask = mask(width, height, channels, frame, random, order);
+            int size = encoder.encode(mask, channels, mode, packet, offset);
+            int encoding = encoder.getEncoding();
+            if (mode != EdgeCodec.AUTO) {
+                int expected = mode == EdgeCodec.ENCODING_DELTA && frame == 0 ? EdgeCodec.ENCODING_RLE : mode;
+                assertEquals(where, expected, encoding);
+            }
+            assertTrue(where, size <= encoder.maxEncodedBytes(mode));
+            assertTrue(where + " frame " + frame, decoder.decode(encoding, packet, offset, size, out));
+            checkMask(mask, channels, out, pixels);
+        }
+    }
+
+    // Blocks that shift by frame, a diagonal and a few random pixels
+    private static ByteBuffer mask(int width, int height, int channels, int frame, Random random,
+                                   ByteOrder order) {
+        ByteBuffer mask = direct(width * height * channels, order);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int i = (y * width + x) * channels;
+                boolean edge = ((x + frame) / 5 + y / 4) % 3 == 0 || x == y || random.nextInt(20) == 0;
+                // Any non-zero byte is an edge
+                mask.put(i, edge ? (byte) (1 + random.nextInt(255)) : 0);
+                for (int c = 1; c < channels; c++) {
+                    mask.put(i + c, (byte) random.nextInt(256));
+                }
+            }
+        }
+        return mask;
+    }
+
+    private static void checkMask(ByteBuffer mask, int channels, ByteBuffer out, int pixels) {
+        for (int i = 0; i < pixels; i++) {
+            int expected = mask.get(i * channels) != 0 ? 255 : 0;
+            if ((out.get(i) & 0xFF) != expected) {
+                throw new AssertionError("pixel " + i + ": " + (out.get(i) & 0xFF) + " vs " + expected);
+            }
+        }
+    }
+
+    private static boolean rle(EdgeCodec.Decoder decoder, ByteBuffer out, byte[]... runs) {
+        int length = 0;
+        for (byte[] run : runs) {
+            length += run.length;
+        }
+        byte[] src = new byte[length];
+        int o = 0;
+        for (byte[] run : runs) {
+            System.arraycopy(run, 0, src, o, run.length);
+            o += run.length;
+        }
+        return decoder.decode(EdgeCodec.ENCODING_RLE, src, 0, length, out);
+    }
+
+    private static byte[] varint(int value) {
+        byte[] b = new byte[5];
+        int o = 0;
+        while ((value & ~0x7F) != 0) {
+            b[o++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        b[o++] = (byte) value;
+        byte[] exact = new byte[o];
+        System.arraycopy(b, 0, exact, 0, o);
+        return exact;
+    }
+
+    private static ByteBuffer direct(int bytes, ByteOrder order) {
+        return ByteBuffer.allocateDirect(bytes).order(order);
+    }
+}
@@ -0,0 +1,222 @@
+package com.example.edgeviewer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+public class FramePipelineTest {
+
+    @Test(timeout = 10_000)
+    public void failuresAreKeptAndNotCountedAsDrops() throws Exception {
+        final CountDownLatch recycled = new CountDownLatch(3);
+        FramePipeline<Integer> pipeline = new FramePipeline<>(FramePipeline.Backpressure.BLOCK,
+                item -> recycled.countDown());
+        pipeline.addStage("check", 4, item -> {
+            if (item == 1) {
+                throw new IllegalStateException("bad item");
+            }
+            return item != 2;
+        });
+        pipeline.start();
+        for (int i = 1; i <= 3; i++) {
+            pipeline.submit(i);
+        }
+        assertTrue(recycled.await(5, TimeUnit.SECONDS));
+        pipeline.stop();
+
+        assertEquals(1, pipeline.getFailedCount(0));
+        assertEquals(1, pipeline.getDroppedCount(0));
+        assertEquals(1, pipeline.getProcessedCount(0));
+        Exception failure = pipeline.takeFailure(0);
+        assertTrue(failure instanceof IllegalStateException);
+        assertNull(pipeline.takeFailure(0));
+    }
+
+    /** Items in the order they were recycled, whether finished or dropped. */
+    private static final class Recorder implements FramePipeline.Recycler<Integer> {
+        final List<Integer> recycled = Collections.synchronizedList(new ArrayList<Integer>());
+
+        @Override
+        public void recycle(Integer item) {
+            recycled.add(item);
+        }
+
+        List<Integer> sorted() {
+            synchronized (recycled) {
+                List<Integer> copy = new ArrayList<>(recycled);
+                Collections.sort(copy);
+                return copy;
+            }
+        }
+    }
+
+    /**
+     * One stage that holds item 1 until gate opens, so later items pile up in
+     * its queue of two. Processed items are appended to processed.
+     */
+    private static FramePipeline<Integer> gatedPipeline(FramePipeline.Backpressure backpressure, Recorder recorder,
+                                                        final CountDownLatch holding, final CountDownLatch gate,
+                                                        final List<Integer> processed) {
+        FramePipeline<Integer> pipeline = new FramePipeline<>(backpressure, recorder);
+        pipeline.addStage("gated", 2, item -> {
+            if (item == 1) {
+                holding.countDown();
+                gate.await();
+            }
+            processed.add(item);
+            return true;
+        });
+        return pipeline;
+    }
+
+    @Test(timeout = 10_000)
+    public void dropOldestEvictsInArrivalOrder() throws Exception {
+        Recorder recorder = new Recorder();
+        CountDownLatch holding = new CountDownLatch(1);
+        CountDownLatch gate = new CountDownLatch(1);
+        List<Integer> processed = Collections.synchronizedList(new ArrayList<Integer>());
+        FramePipeline<Integer> pipeline = gatedPipeline(FramePipeline.Backpressure.DROP_OLDEST, recorder,
+                holding, gate, processed);
+        pipeline.start();
+        pipeline.submit(1);
+        assertTrue(holding.await(5, TimeUnit.SECONDS));
+        for (int i = 2; i <= 6; i++) {
+            assertTrue(pipeline.submit(i));
+        }
+        // The queue keeps the newest two
+        assertEquals(Arrays.asList(2, 3, 4), recorder.sorted());
+        assertEquals(Arrays.asList(2, 3, 4), recorder.recycled);
+        assertEquals(3, pipeline.getDroppedCount(0));
+
+        gate.countDown();
+        awaitRecycled(recorder, 6);
+        pipeline.stop();
+        assertEquals(Arrays.asList(1, 5, 6), processed);
+        assertEquals(3, pipeline.getProcessedCount(0));
+        assertEquals(3, pipeline.getDroppedCount(0));
+    }
+
+    @Test(timeout = 10_000)
+    public void dropNewestRejectsWhenFull() throws Exception {
+        Recorder recorder = new Recorder();
+        CountDownLatch holding = new CountDownLatch(1);
+        CountDownLatch gate = new CountDownLatch(1);
+        List<Integer> processed = Collections.synchronizedList(new ArrayList<Integer>());
+        FramePipeline<Integer> pipeline = gatedPipeline(FramePipeline.Backpressure.DROP_NEWEST, recorder,
+                holding, gate, processed);
+        pipeline.start();
+        pipeline.submit(1);
+        assertTrue(holding.await(5, TimeUnit.SECONDS));
+        assertTrue(pipeline.submit(2));
+        assertTrue(pipeline.submit(3));
+        assertFalse(pipeline.submit(4));
+        assertFalse(pipeline.submit(5));
+        assertEquals(Arrays.asList(4, 5), recorder.recycled);
+        assertEquals(2, pipeline.getDroppedCount(0));
+
+        gate.countDown();
+        awaitRecycled(recorder, 5);
+        pipeline.stop();
+        assertEquals(Arrays.asList(1, 2, 3), processed);
+    }
+
+    @Test(timeout = 10_000)
+    public void stopReleasesABlockedProducer() throws Exception {
+        Recorder recorder = new Recorder();
+        CountDownLatch holding = new CountDownLatch(1);
+        // Never opened: stop() has to interrupt the stage
+        CountDownLatch gate = new CountDownLatch(1);
+        List<Integer> processed = Collections.synchronizedList(new ArrayList<Integer>());
+        final FramePipeline<Integer> pipeline = gatedPipeline(FramePipeline.Backpressure.BLOCK, recorder,
+                holding, gate, processed);
+        pipeline.start();
+        pipeline.submit(1);
+        assertTrue(holding.await(5, TimeUnit.SECONDS));
+        assertTrue(pipeline.submit(2));
+        assertTrue(pipeline.submit(3));
+
+        final AtomicBoolean accepted = new AtomicBoolean(true);
+        final CountDownLatch submitting = new CountDownLatch(1);
+        Thread producer = new Thread(() -> {
+            submitting.countDown();
+            accepted.set(pipeline.submit(4));
+        }, "producer");
+        producer.start();
+        submitting.await();
+        // Still waiting for room
+        producer.join(200);
+        assertTrue(producer.isAlive());
+
+        pipeline.stop();
+        producer.join(5000);
+        assertFalse(producer.isAlive());
+        assertFalse(accepted.get());
+        assertEquals(Arrays.asList(1, 2, 3, 4), recorder.sorted());
+        assertEquals(0, pipeline.getDroppedCount(0));
+        assertEquals(0, processed.size());
+    }
+
+    @Test(timeout = 10_000)
+    public void stopRecyclesEverythingInFlight() throws Exception {
+        Recorder recorder = new Recorder();
+        final CountDownLatch firstHolding = new CountDownLatch(1);
+        final CountDownLatch secondHolding = new CountDownLatch(1);
+        final CountDownLatch never = new CountDownLatch(1);
+        FramePipeline<Integer> pipeline = new FramePipeline<>(FramePipeline.Backpressure.DROP_NEWEST, recorder);
+        pipeline.addStage("first", 2, item -> {
+            if (item == 4) {
+                firstHolding.countDown();
+                never.await();
+            }
+            return true;
+        });
+        pipeline.addStage("second", 2, item -> {
+            secondHolding.countDown();
+            never.await();
+            return true;
+        });
+        pipeline.start();
+
+        // 1 held by the second stage, 2 and 3 in its queue
+        pipeline.submit(1);
+        assertTrue(secondHolding.await(5, TimeUnit.SECONDS));
+        pipeline.submit(2);
+        pipeline.submit(3);
+        while (pipeline.getProcessedCount(0) < 3) {
+            Thread.sleep(1);
+        }
+        // 4 held by the first stage, 5 and 6 in its queue
+        assertTrue(pipeline.submit(4));
+        assertTrue(firstHolding.await(5, TimeUnit.SECONDS));
+        assertTrue(pipeline.submit(5));
+        assertTrue(pipeline.submit(6));
+        assertTrue(recorder.recycled.isEmpty());
+
+        pipeline.stop();
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6), recorder.sorted());
+        // Interrupted stages count as failures, not drops
+        assertEquals(0, pipeline.getDroppedCount(0) + pipeline.getDroppedCount(1));
+        assertEquals(1, pipeline.getFailedCount(0));
+        assertEquals(1, pipeline.getFailedCount(1));
+
+        assertFalse(pipeline.submit(7));
+        assertEquals(7, recorder.recycled.size());
+    }
+
+    private static void awaitRecycled(Recorder recorder, int count) throws InterruptedException {
+        while (recorder.recycled.size() < count) {
+            Thread.sleep(1);
+        }
+    }
+}
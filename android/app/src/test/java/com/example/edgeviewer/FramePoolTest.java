@@ -0,0 +1,249 @@
+package com.example.edgeviewer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class FramePoolTest {
+
+    @Test
+    public void publishedFrameIsTakenOnce() {
+        FramePool pool = new FramePool(3, 16);
+        FramePool.Frame frame = pool.acquire();
+        assertNotNull(frame);
+        assertNull(pool.takeLatest());
+
+        pool.publish(frame);
+        assertSame(frame, pool.takeLatest());
+        assertNull(pool.takeLatest());
+        assertEquals(1, frame.sequence);
+        assertEquals(1, pool.getConsumedCount());
+        frame.release();
+    }
+
+    @Test
+    public void countsReusedExhaustedAndDropped() {
+        FramePool pool = new FramePool(2, 16);
+        FramePool.Frame a = pool.acquire();
+        FramePool.Frame b = pool.acquire();
+        assertNotSame(a, b);
+        assertNull(pool.acquire());
+        assertEquals(1, pool.getExhaustedCount());
+
+        // b replaces a before the consumer gets to it
+        pool.publish(a);
+        pool.publish(b);
+        assertEquals(1, pool.getDroppedCount());
+        assertSame(b, pool.takeLatest());
+
+        FramePool.Frame again = pool.acquire();
+        assertSame(a, again);
+        assertEquals(3, pool.getAcquiredCount());
+        assertEquals(1, pool.getReusedCount());
+        again.release();
+        b.release();
+    }
+
+    @Test
+    public void acquireClearsTheBuffer() {
+        FramePool pool = new FramePool(2, 16);
+        FramePool.Frame frame = pool.acquire();
+        frame.buffer.put(new byte[10]).flip();
+        frame.release();
+        pool.acquire();
+        FramePool.Frame reused = pool.acquire();
+        assertSame(frame, reused);
+        assertEquals(0, reused.buffer.position());
+        assertEquals(16, reused.buffer.limit());
+    }
+
+    @Test
+    public void retainedFrameIsNotHandedOut() {
+        FramePool pool = new FramePool(2, 16);
+        FramePool.Frame frame = pool.acquire();
+        frame.retain();
+        frame.release();
+        FramePool.Frame other = pool.acquire();
+        assertNotSame(frame, other);
+        assertNull(pool.acquire());
+        frame.release();
+        assertSame(frame, pool.acquire());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void retainOnReleasedFrameThrows() {
+        FramePool pool = new FramePool(2, 16);
+        FramePool.Frame frame = pool.acquire();
+        frame.release();
+        frame.retain();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void releaseTwiceThrows() {
+        FramePool pool = new FramePool(2, 16);
+        FramePool.Frame frame = pool.acquire();
+        frame.release();
+        frame.release();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void publishFromAnotherPoolThrows() {
+        FramePool pool = new FramePool(2, 16);
+        new FramePool(2, 16).publish(pool.acquire());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void capacityBelowTwoThrows() {
+        new FramePool(1, 16);
+    }
+
+    /**
+     * One producer fills every frame with its sequence number, one consumer
+     * checks the bytes while it holds the frame. A frame handed out while
+     * still held would be overwritten under the consumer; one released twice
+     * throws on the producer or consumer thread.
+     */
+    @Test(timeout = 60_000)
+    public void producerConsumerStress() throws Exception {
+        final int frames = 200_000;
+        final int bytes = 4096;
+        final FramePool pool = new FramePool(3, bytes);
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        final long[] taken = new long[1];
+
+        Thread producer = new Thread(() -> {
+            try {
+                for (int i = 1; i <= frames && error.get() == null; i++) {
+                    FramePool.Frame frame;
+                    while ((frame = pool.acquire()) == null) {
+                        Thread.yield();
+                    }
+                    byte value = (byte) i;
+                    for (int p = 0; p < bytes; p++) {
+                        frame.buffer.put(p, value);
+                    }
+                    frame.width = i;
+                    pool.publish(frame);
+                }
+            } catch (Throwable t) {
+                error.compareAndSet(null, t);
+            }
+        }, "producer");
+
+        Thread consumer = new Thread(() -> {
+            try {
+                long lastSequence = 0;
+                while (error.get() == null) {
+                    FramePool.Frame frame = pool.takeLatest();
+                    if (frame == null) {
+                        if (!producer.isAlive() && pool.takeLatest() == null) {
+                            break;
+                        }
+                        Thread.yield();
+                        continue;
+                    }
+                    if (frame.sequence <= lastSequence) {
+                        throw new AssertionError("sequence went back: " + frame.sequence);
+                    }
+                    lastSequence = frame.sequence;
+                    byte value = (byte) frame.width;
+                    // Twice, so a producer writing into a held frame is caught
+                    for (int pass = 0; pass < 2; pass++) {
+                        for (int p = 0; p < bytes; p++) {
+                            if (frame.buffer.get(p) != value) {
+                                throw new AssertionError("torn frame " + frame.width + " at byte " + p);
+                            }
+                        }
+                    }
+                    taken[0]++;
+                    frame.release();
+                }
+            } catch (Throwable t) {
+                error.compareAndSet(null, t);
+            }
+        }, "consumer");
+
+        producer.start();
+        consumer.start();
+        producer.join();
+        consumer.join();
+        if (error.get() != null) {
+            throw new AssertionError(error.get());
+        }
+
+        assertEquals(frames, pool.getAcquiredCount());
+        assertEquals(taken[0], pool.getConsumedCount());
+        assertEquals(frames, pool.getConsumedCount() + pool.getDroppedCount());
+        assertTrue(taken[0] > 0);
+        // Every reference was given back exactly once
+        for (int i = 0; i < pool.getCapacity(); i++) {
+            assertNotNull(pool.acquire());
+        }
+        assertNull(pool.acquire());
+    }
+
+    /**
+     * Several threads acquire at once, as the gray and edge stages do for
+     * colour and gray frames. Each fills the frame with its own value and
+     * checks it is still there before releasing, so a frame handed to two
+     * threads shows up as a torn frame.
+     */
+    @Test(timeout = 60_000)
+    public void concurrentAcquirersNeverShareAFrame() throws Exception {
+        final int threads = 4;
+        final int rounds = 50_000;
+        final int bytes = 1024;
+        final FramePool pool = new FramePool(3, bytes);
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final byte value = (byte) (t + 1);
+            workers[t] = new Thread(() -> {
+                try {
+                    for (int i = 0; i < rounds && error.get() == null; i++) {
+                        FramePool.Frame frame;
+                        while ((frame = pool.acquire()) == null) {
+                            Thread.yield();
+                        }
+                        for (int p = 0; p < bytes; p++) {
+                            frame.buffer.put(p, value);
+                        }
+                        for (int p = 0; p < bytes; p++) {
+                            if (frame.buffer.get(p) != value) {
+                                throw new AssertionError("frame shared with thread " + frame.buffer.get(p));
+                            }
+                        }
+                        frame.release();
+                    }
+                } catch (Throwable e) {
+                    error.compareAndSet(null, e);
+                }
+            }, "acquirer-" + t);
+        }
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        if (error.get() != null) {
+            throw new AssertionError(error.get());
+        }
+
+        for (int i = 0; i < pool.getCapacity(); i++) {
+            assertNotNull(pool.acquire());
+        }
+        assertNull(pool.acquire());
+        // Each frame is new exactly once, however the acquirers raced
+        assertEquals((long) threads * rounds + pool.getCapacity(), pool.getAcquiredCount());
+        assertEquals(pool.getAcquiredCount() - pool.getCapacity(), pool.getReusedCount());
+    }
+}
@@ -0,0 +1,228 @@
+package com.example.edgeviewer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FrameRecorderTest {
+
+    private static final int WIDTH = 13;
+    private static final int HEIGHT = 5;
+    // Camera-like padding after every row
+    private static final int ROW_STRIDE = 20;
+    private static final long INTERVAL_NS = 33_000_000L;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void roundTripsAcrossSegments() throws IOException {
+        File dir = folder.getRoot();
+        record(dir, "trip", 8, 3, 0);
+        // 3 + 3 + 2
+        assertEquals(3, FrameRecording.listSegments(dir, "trip").length);
+
+        FrameRecording recording = FrameRecording.open(dir, "trip");
+        assertEquals(WIDTH, recording.getWidth());
+        assertEquals(HEIGHT, recording.getHeight());
+        assertEquals(8, recording.getFrameCount());
+        for (int i = 0; i < 8; i++) {
+            assertEquals(timestamp(i), recording.getTimestampNs(i));
+            checkFrame(recording.getFrame(i), i);
+        }
+        assertEquals(7 * INTERVAL_NS, recording.getDurationNs());
+    }
+
+    @Test
+    public void maxSegmentsKeepsTheNewest() throws IOException {
+        File dir = folder.getRoot();
+        // Segments 0..4 of two frames; only 3 and 4 stay
+        record(dir, "roll", 9, 2, 2);
+        File[] segments = FrameRecording.listSegments(dir, "roll");
+        assertEquals(2, segments.length);
+        assertEquals(FrameRecorder.segmentFile(dir, "roll", 3), segments[0]);
+        assertEquals(FrameRecorder.segmentFile(dir, "roll", 4), segments[1]);
+
+        FrameRecording recording = FrameRecording.open(dir, "roll");
+        assertEquals(3, recording.getFrameCount());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(timestamp(6 + i), recording.getTimestampNs(i));
+            checkFrame(recording.getFrame(i), 6 + i);
+        }
+    }
+
+    @Test
+    public void newRecordingReplacesTheOld() throws IOException {
+        File dir = folder.getRoot();
+        record(dir, "again", 7, 2, 0);
+        record(dir, "again", 2, 2, 0);
+        assertEquals(1, FrameRecording.listSegments(dir, "again").length);
+        assertEquals(2, FrameRecording.open(dir, "again").getFrameCount());
+    }
+
+    @Test
+    public void segmentsSortByNumberPastFiveDigits() throws IOException {
+        File dir = folder.getRoot();
+        for (String file : new String[]{"cam-100000.evr", "cam-00002.evr", "cam-99999.evr",
+                "cam-00010.evr", "cam-1.evr", "cam-0000x.evr", "cam-2-00001.evr", "cam-00003.tmp"}) {
+            assertTrue(new File(dir, file).createNewFile());
+        }
+        List<String> names = new ArrayList<>();
+        for (File f : FrameRecording.listSegments(dir, "cam")) {
+            names.add(f.getName());
+        }
+        assertArrayEquals(new String[]{"cam-00002.evr", "cam-00010.evr", "cam-99999.evr", "cam-100000.evr"},
+                names.toArray());
+        assertEquals("cam-100000.evr", FrameRecorder.segmentFile(dir, "cam", 100000).getName());
+    }
+
+    @Test
+    public void corruptHeadersAreRejected() throws IOException {
+        File dir = folder.getRoot();
+        // Offset, value: magic, version, width, frame bytes, capacity, a frame offset
+        long[][] corruptions = {
+                {0, 0x12345678},
+                {4, 2},
+                {8, 0},
+                {16, -WIDTH * HEIGHT},
+                {20, Integer.MAX_VALUE},
+                {FrameRecorder.HEADER_BYTES + 8, 1L << 40},
+        };
+        for (long[] corruption : corruptions) {
+            record(dir, "bad", 2, 2, 0);
+            File segment = FrameRecorder.segmentFile(dir, "bad", 0);
+            try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+                ByteBuffer value = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+                file.seek(corruption[0]);
+                if (corruption[0] == FrameRecorder.HEADER_BYTES + 8) {
+                    file.write(value.putLong(corruption[1]).array());
+                } else {
+                    file.write(value.putInt((int) corruption[1]).array(), 0, 4);
+                }
+            }
+            try {
+                FrameRecording.open(dir, "bad");
+                fail("opened with " + corruption[1] + " at byte " + corruption[0]);
+            } catch (IOException expected) {
+                assertTrue(expected.getMessage(), expected.getMessage().contains(segment.getName()));
+            }
+        }
+
+        // Not a recording at all
+        record(dir, "short", 1, 1, 0);
+        try (RandomAccessFile file = new RandomAccessFile(FrameRecorder.segmentFile(dir, "short", 0), "rw")) {
+            file.setLength(10);
+        }
+        try {
+            FrameRecording.open(dir, "short");
+            fail("opened a truncated segment");
+        } catch (IOException expected) {
+            // Shorter than the header
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void replayAtMaxSpeedDeliversEveryFrameInOrder() throws Exception {
+        File dir = folder.getRoot();
+        record(dir, "replay", 8, 3, 0);
+        FrameRecording recording = FrameRecording.open(dir, "replay");
+        final List<Long> timestamps = new ArrayList<>();
+        final List<Integer> frames = new ArrayList<>();
+        final int[] released = new int[1];
+        ReplayFrameSource source = new ReplayFrameSource(recording, false, 2);
+        assertEquals(WIDTH, source.getWidth());
+        assertEquals(HEIGHT, source.getHeight());
+
+        long startNs = System.nanoTime();
+        source.start((plane, rowStride, timestampNs, release) -> {
+            assertEquals(WIDTH, rowStride);
+            // Only the content says which frame this is
+            frames.add(plane.get(0) & 0xFF);
+            checkFrame(plane, plane.get(0) & 0xFF);
+            timestamps.add(timestampNs);
+            try {
+                release.close();
+            } catch (Exception e) {
+                throw new AssertionError(e);
+            }
+            released[0]++;
+            return true;
+        });
+        assertTrue(source.awaitFinished(5_000));
+        source.stop();
+        // Not paced: two loops of 8 recorded frames take far less than their 0.5 s
+        assertTrue(System.nanoTime() - startNs < 8 * 2 * INTERVAL_NS);
+
+        assertEquals(16, source.getFramesDelivered());
+        assertEquals(0, source.getFramesDropped());
+        assertEquals(16, released[0]);
+        for (int i = 0; i < 16; i++) {
+            assertEquals(i % 8, (int) frames.get(i));
+            // The second loop continues the clock one interval after the last frame
+            assertEquals(timestamp(i), (long) timestamps.get(i));
+        }
+    }
+
+    @Test
+    public void closedRecorderRefusesFrames() throws IOException {
+        FrameRecorder recorder = new FrameRecorder(folder.getRoot(), "closed", WIDTH, HEIGHT, 2, 0);
+        assertTrue(recorder.append(plane(0), ROW_STRIDE, timestamp(0)));
+        recorder.close();
+        assertFalse(recorder.append(plane(1), ROW_STRIDE, timestamp(1)));
+        assertEquals(1, recorder.getFramesWritten());
+        assertEquals(1, FrameRecording.open(folder.getRoot(), "closed").getFrameCount());
+    }
+
+    private static void record(File dir, String name, int frames, int framesPerSegment, int maxSegments) {
+        FrameRecorder recorder = new FrameRecorder(dir, name, WIDTH, HEIGHT, framesPerSegment, maxSegments);
+        for (int i = 0; i < frames; i++) {
+            ByteBuffer plane = plane(i);
+            assertTrue(recorder.append(plane, ROW_STRIDE, timestamp(i)));
+        }
+        recorder.close();
+        assertEquals(null, recorder.getError());
+        assertEquals(frames, recorder.getFramesWritten());
+    }
+
+    private static long timestamp(int frame) {
+        return 1_000_000_000L + frame * INTERVAL_NS;
+    }
+
+    // Pixel (x, y) of frame n is n + x + 16 * y; the padding is 0xEE
+    private static ByteBuffer plane(int frame) {
+        ByteBuffer plane = ByteBuffer.allocateDirect((HEIGHT - 1) * ROW_STRIDE + WIDTH);
+        for (int i = 0; i < plane.capacity(); i++) {
+            plane.put(i, (byte) 0xEE);
+        }
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                plane.put(y * ROW_STRIDE + x, (byte) (frame + x + 16 * y));
+            }
+        }
+        return plane;
+    }
+
+    private static void checkFrame(ByteBuffer frame, int n) {
+        assertEquals(WIDTH * HEIGHT, frame.remaining());
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                assertEquals("frame " + n + " at " + x + "," + y,
+                        (byte) (n + x + 16 * y), frame.get(y * WIDTH + x));
+            }
+        }
+    }
+}
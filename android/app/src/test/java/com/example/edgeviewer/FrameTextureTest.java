@@ -0,0 +1,170 @@
+package com.example.edgeviewer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.Buffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class FrameTextureTest {
+
+    /** Records every call as a line; uploads check the pixels start at 0 and cover the frame. */
+    private static final class RecordingGl implements GlTextureApi {
+        final List<String> calls = new ArrayList<>();
+        private int nextTexture = 1;
+
+        @Override
+        public int createTexture() {
+            int texture = nextTexture++;
+            calls.add("create " + texture);
+            return texture;
+        }
+
+        @Override
+        public void deleteTexture(int textureId) {
+            calls.add("delete " + textureId);
+        }
+
+        @Override
+        public void bindTexture(int textureId) {
+            calls.add("bind " + textureId);
+        }
+
+        @Override
+        public void setFilter(int filter) {
+            calls.add(filter == FILTER_NEAREST ? "filter nearest" : "filter linear");
+        }
+
+        @Override
+        public void allocate(int format, int width, int height) {
+            calls.add("allocate " + name(format) + " " + width + "x" + height);
+        }
+
+        @Override
+        public void upload(int format, int width, int height, Buffer pixels) {
+            assertEquals(0, pixels.position());
+            assertTrue(pixels.remaining() >= width * height * format);
+            calls.add("upload " + name(format) + " " + width + "x" + height);
+        }
+
+        private static String name(int format) {
+            return format == FORMAT_LUMINANCE ? "luminance" : "rgba";
+        }
+
+        List<String> take() {
+            List<String> taken = new ArrayList<>(calls);
+            calls.clear();
+            return taken;
+        }
+    }
+
+    private final RecordingGl gl = new RecordingGl();
+    private final FramePool pool = new FramePool(4, 64 * 48 * 4);
+    private final FrameTexture texture = new FrameTexture(gl);
+
+    @Test
+    public void storageIsAllocatedOncePerSizeOrFormat() {
+        texture.create();
+        gl.take();
+        for (int i = 0; i < 3; i++) {
+            assertTrue(texture.upload(frame(64, 48, 4)));
+        }
+        assertEquals(Arrays.asList(
+                "bind 1", "allocate rgba 64x48", "upload rgba 64x48",
+                "bind 1", "upload rgba 64x48",
+                "bind 1", "upload rgba 64x48"), gl.take());
+
+        texture.upload(frame(32, 24, 4));
+        texture.upload(frame(32, 24, 1));
+        texture.upload(frame(32, 24, 1));
+        texture.upload(frame(64, 48, 4));
+        assertEquals(Arrays.asList(
+                "bind 1", "allocate rgba 32x24", "upload rgba 32x24",
+                "bind 1", "allocate luminance 32x24", "upload luminance 32x24",
+                "bind 1", "upload luminance 32x24",
+                "bind 1", "allocate rgba 64x48", "upload rgba 64x48"), gl.take());
+        assertEquals(4, texture.getAllocationCount());
+        assertEquals(7, texture.getUploadCount());
+        assertEquals(3L * 64 * 48 * 4 + 32 * 24 * 4 + 2L * 32 * 24 + 64 * 48 * 4, texture.getBytesUploaded());
+    }
+
+    @Test
+    public void unchangedSequenceSkipsTheUpload() {
+        texture.create();
+        gl.take();
+        FramePool.Frame frame = frame(64, 48, 1);
+        assertTrue(texture.upload(frame));
+        gl.take();
+        assertFalse(texture.upload(frame));
+        assertEquals(0, gl.take().size());
+        assertEquals(1, texture.getUploadCount());
+
+        // The next frame, even at the same size, goes up
+        assertTrue(texture.upload(frame(64, 48, 1)));
+        assertEquals(Arrays.asList("bind 1", "upload luminance 64x48"), gl.take());
+    }
+
+    @Test
+    public void grayFramesUploadAsLuminance() {
+        texture.create();
+        gl.take();
+        FramePool.Frame frame = frame(30, 7, 1);
+        frame.raw = true;
+        texture.upload(frame);
+        assertEquals(Arrays.asList("bind 1", "allocate luminance 30x7", "upload luminance 30x7"), gl.take());
+        assertTrue(texture.isRaw());
+        assertEquals(30 * 7, texture.getBytesUploaded());
+    }
+
+    @Test
+    public void filterIsSetOnlyWhenItChanges() {
+        texture.create();
+        gl.take();
+        texture.bind();
+        texture.bind(GlTextureApi.FILTER_NEAREST);
+        texture.bind(GlTextureApi.FILTER_NEAREST);
+        texture.bind();
+        assertEquals(Arrays.asList(
+                "bind 1",
+                "bind 1", "filter nearest",
+                "bind 1",
+                "bind 1", "filter linear"), gl.take());
+    }
+
+    // A new context starts from an empty texture: everything goes up again
+    @Test
+    public void recreateUploadsEverythingAgain() {
+        texture.create();
+        FramePool.Frame frame = frame(64, 48, 4);
+        texture.upload(frame);
+        texture.bind(GlTextureApi.FILTER_NEAREST);
+        texture.destroy();
+        texture.create();
+        gl.take();
+
+        assertTrue(texture.upload(frame));
+        texture.bind();
+        texture.bind(GlTextureApi.FILTER_NEAREST);
+        assertEquals(Arrays.asList(
+                "bind 2", "allocate rgba 64x48", "upload rgba 64x48",
+                "bind 2",
+                "bind 2", "filter nearest"), gl.take());
+    }
+
+    private FramePool.Frame frame(int width, int height, int channels) {
+        FramePool.Frame frame = pool.acquire();
+        frame.width = width;
+        frame.height = height;
+        frame.channels = channels;
+        // Left anywhere by whoever filled it
+        frame.buffer.position(width * height * channels / 2);
+        pool.publish(frame);
+        pool.takeLatest().release();
+        return frame;
+    }
+}
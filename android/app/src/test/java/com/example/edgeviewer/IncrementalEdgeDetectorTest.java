@@ -0,0 +1,127 @@
+package com.example.edgeviewer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class IncrementalEdgeDetectorTest {
+
+    private static final int WIDTH = 200;
+    private static final int HEIGHT = 150;
+
+    @Test
+    public void blurredSobelHasNoTileSeams() {
+        // Sobel has no hysteresis, so every pixel must match a full-frame run
+        checkMatchesFullFrame(JavaEdgeDetector.Mode.SOBEL);
+    }
+
+    @Test
+    public void bordersFollowTheInnerDetector() {
+        assertEquals(2, new JavaEdgeDetector().getBorder());
+        assertEquals(4, new JavaEdgeDetector(JavaEdgeDetector.Mode.CANNY, 50, 150, true).getBorder());
+        assertEquals(3, new JavaEdgeDetector(JavaEdgeDetector.Mode.SOBEL, 50, 150, true).getBorder());
+        assertEquals(6, new FilterGraph().blur(5).canny(40, 120).dilate(1).erode(1).overlay().getBorder());
+        assertEquals(1, new FilterGraph().sobel().threshold(100).getBorder());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void haloBelowTwiceTheInnerBorderThrows() {
+        new IncrementalEdgeDetector(new JavaEdgeDetector(JavaEdgeDetector.Mode.CANNY, 50, 150, true),
+                32, 7, 0, IncrementalEdgeDetector.DEFAULT_THRESHOLD);
+    }
+
+    @Test
+    public void reinitAtOtherSizesMatchesAFreshDetector() {
+        ByteBuffer gray = scene();
+        IncrementalEdgeDetector reused = new IncrementalEdgeDetector(
+                new JavaEdgeDetector(JavaEdgeDetector.Mode.CANNY, 50, 150, true), 32, 8, 0, 0);
+        int[][] sizes = {{WIDTH, HEIGHT}, {100, 70}, {WIDTH, HEIGHT}, {64, 40}};
+        for (int[] size : sizes) {
+            for (int channels : new int[]{1, 4}) {
+                reused.init(size[0], size[1], channels);
+                IncrementalEdgeDetector fresh = new IncrementalEdgeDetector(
+                        new JavaEdgeDetector(JavaEdgeDetector.Mode.CANNY, 50, 150, true), 32, 8, 0, 0);
+                fresh.init(size[0], size[1], channels);
+                ByteBuffer expected = direct(size[0] * size[1] * channels);
+                ByteBuffer actual = direct(size[0] * size[1] * channels);
+                fresh.process(gray, WIDTH, expected);
+                reused.process(gray, WIDTH, actual);
+                JavaEdgeDetectorTest.assertSame(size[0] + "x" + size[1] + "x" + channels, expected, actual);
+            }
+        }
+    }
+
+    // Each tile window would move the smoothed thresholds
+    @Test(expected = IllegalArgumentException.class)
+    public void adaptiveThresholdsAreRejected() {
+        NativeEdgeDetector inner = new NativeEdgeDetector(1);
+        inner.setAutoThresholds(NativeBridge.AUTO_OTSU, 0.9f, 0.1f);
+        new IncrementalEdgeDetector(inner);
+    }
+
+    @Test
+    public void adaptiveThresholdsSetLaterThrowOnTheNextFrame() {
+        NativeEdgeDetector inner = new NativeEdgeDetector(1);
+        IncrementalEdgeDetector incremental = new IncrementalEdgeDetector(inner);
+        inner.setAutoThresholds(NativeBridge.AUTO_PERCENTILE, 0.9f, 1f);
+        try {
+            incremental.process(direct(WIDTH * HEIGHT), WIDTH, direct(WIDTH * HEIGHT));
+            throw new AssertionError("processed with adaptive thresholds");
+        } catch (IllegalStateException expected) {
+            // Before the inner detector is touched
+        }
+    }
+
+    private static void checkMatchesFullFrame(JavaEdgeDetector.Mode mode) {
+        JavaEdgeDetector reference = new JavaEdgeDetector(mode, 50, 150, true);
+        reference.init(WIDTH, HEIGHT, 1);
+        // Threshold 0: any changed pixel marks its tile, so only the halo is on trial
+        IncrementalEdgeDetector incremental = new IncrementalEdgeDetector(
+                new JavaEdgeDetector(mode, 50, 150, true), 32, 6, 0, 0);
+        incremental.init(WIDTH, HEIGHT, 1);
+
+        ByteBuffer gray = scene();
+        ByteBuffer expected = direct(WIDTH * HEIGHT);
+        ByteBuffer actual = direct(WIDTH * HEIGHT);
+        incremental.process(gray, WIDTH, actual);
+
+        // Move a bright square across tile boundaries; only its tiles are redone
+        Random random = new Random(3);
+        for (int frame = 0; frame < 10; frame++) {
+            int x0 = 20 + frame * 13;
+            int y0 = 25 + frame * 7;
+            for (int y = y0; y < y0 + 24; y++) {
+                for (int x = x0; x < x0 + 24; x++) {
+                    gray.put(y * WIDTH + x, (byte) (180 + random.nextInt(40)));
+                }
+            }
+            reference.process(gray, WIDTH, expected);
+            incremental.process(gray, WIDTH, actual);
+            for (int i = 0; i < WIDTH * HEIGHT; i++) {
+                if (expected.get(i) != actual.get(i)) {
+                    throw new AssertionError("frame " + frame + " differs at " + (i % WIDTH) + "," + (i / WIDTH));
+                }
+            }
+        }
+        assertTrue(incremental.getProcessedPixelRatio() < 1f);
+    }
+
+    private static ByteBuffer scene() {
+        ByteBuffer gray = direct(WIDTH * HEIGHT);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                gray.put(y * WIDTH + x, (byte) ((x * 3 + y * 2) % 97 + ((x / 17 + y / 11) % 2) * 100));
+            }
+        }
+        return gray;
+    }
+
+    private static ByteBuffer direct(int bytes) {
+        return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.edgeviewer;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class JavaEdgeDetectorTest {
+
+    private static final int WIDTH = 160;
+    private static final int HEIGHT = 120;
+
+    // cv::Canny(src, dst, 50, 150, 3, false) of goldenImage(), from OpenCV 4.9;
+    // edges touch every border, where its Sobel replicates the frame
+    static final String[] GOLDEN_MASK = {
+            "....#...........",
+            "....#...........",
+            "....#....#......",
+            "#####...#.#...##",
+            "........#.#..##.",
+            "........#.#.##..",
+            "........#.###...",
+            "........#..#....",
+            ".........##.....",
+            "........#.......",
+            ".....####.......",
+            "....#...#.#.....",
+    };
+
+    @Test
+    public void cannyMatchesOpenCvGoldenMask() {
+        int width = GOLDEN_MASK[0].length();
+        int height = GOLDEN_MASK.length;
+        for (int parallelism : new int[]{1, 3}) {
+            JavaEdgeDetector detector = new JavaEdgeDetector(JavaEdgeDetector.Mode.CANNY, 50, 150, false,
+                    parallelism);
+            detector.init(width, height, 1);
+            checkGolden(run(detector, goldenImage(), width, width, height, 1));
+            detector.release();
+        }
+    }
+
+    // Profile switches re-init the same detector at other sizes; buffers left
+    // over from a larger frame must not leak into a smaller one
+    @Test
+    public void reinitAtOtherSizesMatchesAFreshDetector() {
+        ByteBuffer gray = scene(WIDTH, HEIGHT, 1);
+        int[][] sizes = {{WIDTH, HEIGHT}, {80, 60}, {120, 90}, {WIDTH, HEIGHT}, {40, 7}};
+        for (JavaEdgeDetector.Mode mode : JavaEdgeDetector.Mode.values()) {
+            for (int channels : new int[]{1, 4}) {
+                JavaEdgeDetector reused = new JavaEdgeDetector(mode, 50, 150, true, 3);
+                for (int[] size : sizes) {
+                    reused.init(size[0], size[1], channels);
+                    JavaEdgeDetector fresh = new JavaEdgeDetector(mode, 50, 150, true, 3);
+                    fresh.init(size[0], size[1], channels);
+                    // The top-left crop, read through the full frame's stride
+                    assertSame(mode + " " + size[0] + "x" + size[1],
+                            run(fresh, gray, WIDTH, size[0], size[1], channels),
+                            run(reused, gray, WIDTH, size[0], size[1], channels));
+                    fresh.release();
+                }
+                reused.release();
+            }
+        }
+    }
+
+    // Bands split the rows, down to fewer rows than bands; the halo rows each
+    // band reads must make the split invisible
+    @Test
+    public void parallelBandsMatchOneThread() {
+        int[] heights = {1, 2, 3, 5, 8, 17, 61};
+        int[] widths = {1, 7, 64};
+        for (JavaEdgeDetector.Mode mode : JavaEdgeDetector.Mode.values()) {
+            for (boolean blur : new boolean[]{false, true}) {
+                for (int parallelism : new int[]{2, 3, 4, 7}) {
+                    JavaEdgeDetector serial = new JavaEdgeDetector(mode, 40, 120, blur, 1);
+                    JavaEdgeDetector parallel = new JavaEdgeDetector(mode, 40, 120, blur, parallelism);
+                    for (int height : heights) {
+                        for (int width : widths) {
+                            ByteBuffer gray = scene(width, height, height * 31L + width);
+                            for (int channels : new int[]{1, 4}) {
+                                serial.init(width, height, channels);
+                                parallel.init(width, height, channels);
+                                assertSame(mode + (blur ? " blur " : " ") + width + "x" + height + "x" + channels
+                                                + " on " + parallelism,
+                                        run(serial, gray, width, width, height, channels),
+                                        run(parallel, gray, width, width, height, channels));
+                            }
+                        }
+                    }
+                    serial.release();
+                    parallel.release();
+                }
+            }
+        }
+    }
+
+    static ByteBuffer run(EdgeDetector detector, ByteBuffer gray, int rowStride, int width, int height,
+                          int channels) {
+        ByteBuffer out = direct(width * height * channels);
+        detector.process(gray, rowStride, out);
+        return out;
+    }
+
+    /**
+     * A bright block in the top-left corner, a diagonal step into the
+     * bottom-right, a one-pixel vertical line and a bright run on the last row.
+     */
+    static ByteBuffer goldenImage() {
+        int width = GOLDEN_MASK[0].length();
+        int height = GOLDEN_MASK.length;
+        ByteBuffer gray = direct(width * height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int v = 40;
+                if (x < 5 && y < 4) v = 220;
+                if (x + y > 17) v = 200;
+                if (x == 9 && y > 2) v = 160;
+                if (y == height - 1 && x > 3 && x < 8) v = 250;
+                gray.put(y * width + x, (byte) v);
+            }
+        }
+        return gray;
+    }
+
+    static void checkGolden(ByteBuffer mask) {
+        int width = GOLDEN_MASK[0].length();
+        StringBuilder actual = new StringBuilder();
+        for (int y = 0; y < GOLDEN_MASK.length; y++) {
+            for (int x = 0; x < width; x++) {
+                actual.append(mask.get(y * width + x) != 0 ? '#' : '.');
+            }
+            actual.append('\n');
+        }
+        assertEquals(String.join("\n", GOLDEN_MASK) + "\n", actual.toString());
+    }
+
+    static void assertSame(String message, ByteBuffer expected, ByteBuffer actual) {
+        assertEquals(message, expected.capacity(), actual.capacity());
+        for (int i = 0; i < expected.capacity(); i++) {
+            if (expected.get(i) != actual.get(i)) {
+                throw new AssertionError(message + ": differs at byte " + i);
+            }
+        }
+    }
+
+    // Blocks, a ramp and noise: edges in every direction, also at the borders
+    static ByteBuffer scene(int width, int height, long seed) {
+        Random random = new Random(seed);
+        ByteBuffer gray = direct(width * height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int v = ((x / 13 + y / 9) % 2) * 120 + (x * 2 + y) % 60 + random.nextInt(30);
+                gray.put(y * width + x, (byte) Math.min(255, v));
+            }
+        }
+        return gray;
+    }
+
+    static ByteBuffer direct(int bytes) {
+        return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+    }
+}
@@ -0,0 +1,200 @@
+package com.example.edgeviewer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class JavaYuvConverterTest {
+
+    // Odd sizes so the last chroma column and row cover a single pixel
+    private static final int WIDTH = 37;
+    private static final int HEIGHT = 21;
+    private static final int ROW_STRIDE = 64;
+
+    // Chroma planes of one layout over the same samples
+    private static final class Planes {
+        ByteBuffer u;
+        ByteBuffer v;
+        int rowStride;
+        int pixelStride;
+    }
+
+    @Test
+    public void neutralChromaGivesGray() {
+        ByteBuffer y = direct(4);
+        ByteBuffer uv = direct(1);
+        uv.put(0, (byte) 128);
+        for (int i = 0; i < 4; i++) {
+            y.put(i, (byte) (i * 80));
+        }
+        ByteBuffer out = direct(16);
+        new JavaYuvConverter().toRgba(y, 2, uv, uv, 0, 1, 1, true, 2, 2, out);
+        for (int i = 0; i < 4; i++) {
+            int luma = i * 80;
+            assertEquals(luma, out.get(i * 4) & 0xFF);
+            assertEquals(luma, out.get(i * 4 + 1) & 0xFF);
+            assertEquals(luma, out.get(i * 4 + 2) & 0xFF);
+            assertEquals(255, out.get(i * 4 + 3) & 0xFF);
+        }
+    }
+
+    @Test
+    public void planarAndSemiPlanarLayoutsAgree() {
+        ByteBuffer y = yPlane();
+        ByteBuffer planar = convert(y, layout("planar"));
+        checkAgainstBt601(y, layout("planar"), planar);
+        for (String name : new String[]{"nv12", "nv21"}) {
+            ByteBuffer out = convert(y, layout(name));
+            for (int i = 0; i < WIDTH * HEIGHT * 4; i++) {
+                if (out.get(i) != planar.get(i)) {
+                    throw new AssertionError(name + " differs from planar at pixel " + i / 4);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void bigEndianOutputKeepsRgbaByteOrder() {
+        ByteBuffer y = yPlane();
+        Planes p = layout("nv21");
+        ByteBuffer little = convert(y, p);
+        ByteBuffer big = ByteBuffer.allocateDirect(WIDTH * HEIGHT * 4).order(ByteOrder.BIG_ENDIAN);
+        new JavaYuvConverter().toRgba(y, ROW_STRIDE, p.u, p.v, 0, p.rowStride, p.pixelStride, true,
+                WIDTH, HEIGHT, big);
+        for (int i = 0; i < WIDTH * HEIGHT * 4; i++) {
+            assertEquals(little.get(i), big.get(i));
+        }
+    }
+
+    // Half-resolution luma with one chroma sample per pixel, starting inside the plane
+    @Test
+    public void fullChromaWithOffset() {
+        Planes p = layout("nv12");
+        int width = 12;
+        int height = 6;
+        int uvOffset = 2 * p.rowStride + 3 * p.pixelStride;
+        ByteBuffer y = yPlane();
+        ByteBuffer out = direct(width * height * 4);
+        new JavaYuvConverter().toRgba(y, ROW_STRIDE, p.u, p.v, uvOffset, p.rowStride, p.pixelStride, false,
+                width, height, out);
+        for (int row = 0; row < height; row++) {
+            for (int x = 0; x < width; x++) {
+                int c = uvOffset + row * p.rowStride + x * p.pixelStride;
+                checkPixel(y.get(row * ROW_STRIDE + x), p.u.get(c), p.v.get(c), out, row * width + x);
+            }
+        }
+    }
+
+    @Test
+    public void leavesPositionsAlone() {
+        ByteBuffer y = yPlane();
+        Planes p = layout("planar");
+        ByteBuffer out = direct(WIDTH * HEIGHT * 4);
+        y.position(5);
+        out.position(9);
+        new JavaYuvConverter().toRgba(y, ROW_STRIDE, p.u, p.v, 0, p.rowStride, p.pixelStride, true,
+                WIDTH, HEIGHT, out);
+        assertEquals(5, y.position());
+        assertEquals(9, out.position());
+        assertEquals(0, p.u.position());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void smallOutputThrows() {
+        Planes p = layout("planar");
+        new JavaYuvConverter().toRgba(yPlane(), ROW_STRIDE, p.u, p.v, 0, p.rowStride, p.pixelStride, true,
+                WIDTH, HEIGHT, direct(WIDTH * HEIGHT * 4 - 1));
+    }
+
+    private static ByteBuffer convert(ByteBuffer y, Planes p) {
+        ByteBuffer out = direct(WIDTH * HEIGHT * 4);
+        new JavaYuvConverter().toRgba(y, ROW_STRIDE, p.u, p.v, 0, p.rowStride, p.pixelStride, true,
+                WIDTH, HEIGHT, out);
+        return out;
+    }
+
+    private static void checkAgainstBt601(ByteBuffer y, Planes p, ByteBuffer out) {
+        for (int row = 0; row < HEIGHT; row++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int c = (row / 2) * p.rowStride + (x / 2) * p.pixelStride;
+                checkPixel(y.get(row * ROW_STRIDE + x), p.u.get(c), p.v.get(c), out, row * WIDTH + x);
+            }
+        }
+    }
+
+    // Full-range BT.601 in floating point; the fixed-point kernels may be one off
+    private static void checkPixel(byte yByte, byte uByte, byte vByte, ByteBuffer out, int pixel) {
+        int luma = yByte & 0xFF;
+        int du = (uByte & 0xFF) - 128;
+        int dv = (vByte & 0xFF) - 128;
+        int[] expected = {
+                clamp(luma + 1.402 * dv),
+                clamp(luma - 0.344136 * du - 0.714136 * dv),
+                clamp(luma + 1.772 * du),
+                255
+        };
+        for (int i = 0; i < 4; i++) {
+            int actual = out.get(pixel * 4 + i) & 0xFF;
+            assertTrue("pixel " + pixel + " channel " + i + ": " + actual + " vs " + expected[i],
+                    Math.abs(actual - expected[i]) <= 1);
+        }
+    }
+
+    private static int clamp(double value) {
+        return (int) Math.max(0, Math.min(255, Math.round(value)));
+    }
+
+    private static ByteBuffer yPlane() {
+        Random random = new Random(5);
+        ByteBuffer y = direct((HEIGHT - 1) * ROW_STRIDE + WIDTH);
+        for (int i = 0; i < y.capacity(); i++) {
+            y.put(i, (byte) random.nextInt(256));
+        }
+        return y;
+    }
+
+    // Random chroma with every layout holding the same samples; like camera
+    // planes, each buffer ends at its last sample
+    private static Planes layout(String name) {
+        int uvWidth = (WIDTH + 1) / 2;
+        int uvHeight = (HEIGHT + 1) / 2;
+        Planes p = new Planes();
+        p.pixelStride = "planar".equals(name) ? 1 : 2;
+        p.rowStride = "planar".equals(name) ? ROW_STRIDE / 2 : ROW_STRIDE;
+        int planeBytes = (uvHeight - 1) * p.rowStride + (uvWidth - 1) * p.pixelStride + 1;
+        ByteBuffer first;
+        ByteBuffer second;
+        if (p.pixelStride == 1) {
+            first = direct(planeBytes);
+            second = direct(planeBytes);
+        } else {
+            ByteBuffer interleaved = direct(planeBytes + 1);
+            interleaved.position(1);
+            second = interleaved.slice();
+            interleaved.position(0);
+            interleaved.limit(planeBytes);
+            first = interleaved.slice();
+        }
+        p.u = "nv21".equals(name) ? second : first;
+        p.v = "nv21".equals(name) ? first : second;
+        Random random = new Random(7);
+        for (int row = 0; row < uvHeight; row++) {
+            for (int x = 0; x < uvWidth; x++) {
+                int i = row * p.rowStride + x * p.pixelStride;
+                // Full range so the clamps are exercised too
+                p.u.put(i, (byte) random.nextInt(256));
+                p.v.put(i, (byte) random.nextInt(256));
+            }
+        }
+        return p;
+    }
+
+    private static ByteBuffer direct(int bytes) {
+        return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.edgeviewer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void valuesBelow64AreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int v = 0; v < 64; v++) {
+            assertEquals(v, LatencyHistogram.bucket(v));
+            assertEquals(v, LatencyHistogram.highestValue(v));
+            histogram.record(v);
+        }
+        LatencyHistogram.Snapshot s = histogram.snapshot(new LatencyHistogram.Snapshot(), false);
+        for (int v = 0; v < 64; v++) {
+            // Rank v + 1 of 64 values is v
+            assertEquals(v, s.getPercentileNs((v + 1) * 100.0 / 64));
+        }
+        assertEquals(63, s.getMaxNs());
+        assertEquals(31, s.getMeanNs());
+    }
+
+    @Test
+    public void bucketsTileTheRangeAtPowersOfTwo() {
+        // Every bucket starts one past the previous one's highest value
+        long low = 0;
+        for (int b = 0; b < LatencyHistogram.BUCKETS; b++) {
+            long high = LatencyHistogram.highestValue(b);
+            assertTrue("bucket " + b, high >= low);
+            assertEquals(b, LatencyHistogram.bucket(low));
+            assertEquals(b, LatencyHistogram.bucket(high));
+            low = high + 1;
+        }
+        // The last bucket ends at Long.MAX_VALUE, so low wrapped around
+        assertEquals(Long.MIN_VALUE, low);
+
+        for (int p = 6; p < 63; p++) {
+            long power = 1L << p;
+            assertEquals(power - 1, LatencyHistogram.highestValue(LatencyHistogram.bucket(power) - 1));
+            // 32 sub-buckets per power of two
+            assertEquals(32, LatencyHistogram.bucket(2 * power - 1) - LatencyHistogram.bucket(power) + 1);
+        }
+    }
+
+    @Test
+    public void extremesStayInRange() {
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucket(Long.MAX_VALUE));
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.highestValue(LatencyHistogram.BUCKETS - 1));
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(Long.MAX_VALUE);
+        // A clock going backwards counts as 0
+        histogram.record(-5);
+        LatencyHistogram.Snapshot s = histogram.snapshot(new LatencyHistogram.Snapshot(), false);
+        assertEquals(2, s.getCount());
+        assertEquals(Long.MAX_VALUE, s.getMaxNs());
+        assertEquals(Long.MAX_VALUE, s.getPercentileNs(100));
+        assertEquals(0, s.getPercentileNs(50));
+        assertEquals(0, new LatencyHistogram.Snapshot().getPercentileNs(99));
+    }
+
+    @Test
+    public void percentilesAreWithinABucketOfTheTruth() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Random random = new Random(17);
+        long[] values = new long[200_000];
+        for (int i = 0; i < values.length; i++) {
+            // Log-uniform over 1 us .. 10 s
+            values[i] = (long) Math.pow(10, 3 + 7 * random.nextDouble());
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+        LatencyHistogram.Snapshot s = histogram.snapshot(new LatencyHistogram.Snapshot(), false);
+        for (double percentile : new double[]{1, 25, 50, 90, 99, 99.9, 99.99, 100}) {
+            long exact = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+            long reported = s.getPercentileNs(percentile);
+            // Reported as the bucket's top, which is at most 1/32 above
+            assertTrue(percentile + "%: " + reported + " below " + exact, reported >= exact);
+            assertTrue(percentile + "%: " + reported + " vs " + exact, reported - exact <= exact / 32);
+        }
+        assertEquals(values[values.length - 1], s.getPercentileNs(100));
+    }
+
+    /**
+     * Four threads record while another takes resetting snapshots: added up,
+     * the snapshots hold every value exactly once.
+     */
+    @Test(timeout = 30_000)
+    public void resettingSnapshotsAreDisjoint() throws Exception {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final LatencyHistogram reference = new LatencyHistogram();
+        final int threads = 4;
+        final int perThread = 200_000;
+        final long[] sums = new long[threads];
+        Thread[] recorders = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int index = t;
+            recorders[t] = new Thread(() -> {
+                Random random = new Random(index);
+                for (int i = 0; i < perThread; i++) {
+                    long v = random.nextInt(1 << (1 + random.nextInt(30)));
+                    histogram.record(v);
+                    reference.record(v);
+                    sums[index] += v;
+                }
+            }, "recorder-" + t);
+        }
+
+        final AtomicBoolean done = new AtomicBoolean();
+        final LatencyHistogram.Snapshot merged = new LatencyHistogram.Snapshot();
+        final int[] snapshots = new int[1];
+        Thread reader = new Thread(() -> {
+            LatencyHistogram.Snapshot interval = new LatencyHistogram.Snapshot();
+            while (!done.get()) {
+                merged.add(histogram.snapshot(interval, true));
+                snapshots[0]++;
+            }
+        }, "reader");
+        reader.start();
+        for (Thread recorder : recorders) {
+            recorder.start();
+        }
+        for (Thread recorder : recorders) {
+            recorder.join();
+        }
+        done.set(true);
+        reader.join();
+        merged.add(histogram.snapshot(new LatencyHistogram.Snapshot(), true));
+
+        long sum = 0;
+        for (long s : sums) {
+            sum += s;
+        }
+        LatencyHistogram.Snapshot expected = reference.snapshot(new LatencyHistogram.Snapshot(), false);
+        assertEquals((long) threads * perThread, merged.getCount());
+        assertEquals(sum, merged.total);
+        assertEquals(expected.getMaxNs(), merged.getMaxNs());
+        assertArrayEquals(expected.counts, merged.counts);
+        assertTrue(snapshots[0] > 1);
+
+        // Nothing left behind
+        LatencyHistogram.Snapshot after = histogram.snapshot(new LatencyHistogram.Snapshot(), false);
+        assertEquals(0, after.getCount());
+        assertEquals(0, after.getMaxNs());
+    }
+
+    @Test
+    public void snapshotWithoutResetKeepsCounting() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1000);
+        LatencyHistogram.Snapshot s = new LatencyHistogram.Snapshot();
+        histogram.snapshot(s, false);
+        histogram.record(3000);
+        histogram.snapshot(s, false);
+        assertEquals(2, s.getCount());
+        assertEquals(2000, s.getMeanNs());
+        assertEquals(3000, s.getMaxNs());
+    }
+}
@@ -0,0 +1,249 @@
+package com.example.edgeviewer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class LoadShedderTest {
+
+    // 30 fps camera
+    private static final float DEADLINE_MS = 1000f / 30;
+    private static final long INTERVAL_NS = 33_333_333L;
+    private static final int SKIP_NTH = 3;
+    // What each action saves on the simulated device, as in the shedder's defaults
+    private static final float[] SAVED = {1f, 1.3f, 3.5f, 1f, 1.5f};
+
+    /**
+     * Simulated device: frames arrive on the camera's clock and cost baseMs
+     * divided by what every action in force saves.
+     */
+    private static final class Device {
+        final LoadShedder shedder;
+        long timestampNs;
+        long processed;
+
+        Device(int maxLevel) {
+            shedder = new LoadShedder(DEADLINE_MS, SKIP_NTH, maxLevel);
+        }
+
+        void run(float baseMs, int count) {
+            for (int i = 0; i < count; i++) {
+                timestampNs += INTERVAL_NS;
+                if (!shedder.onArrival(timestampNs)) {
+                    continue;
+                }
+                int level = shedder.getLevel();
+                shedder.onFrame(level, cost(baseMs, level));
+                processed++;
+            }
+        }
+
+        LoadShedder.Counters counters() {
+            LoadShedder.Counters c = new LoadShedder.Counters();
+            shedder.getCounters(c);
+            return c;
+        }
+    }
+
+    private static float cost(float baseMs, int level) {
+        float ms = baseMs;
+        for (int i = 1; i <= level; i++) {
+            ms /= SAVED[i];
+        }
+        return ms;
+    }
+
+    @Test
+    public void shedsNothingWhenFramesFit() {
+        Device device = new Device(LoadShedder.SHED_ENGINE);
+        device.run(20f, 900);
+        LoadShedder.Counters c = device.counters();
+        assertEquals(LoadShedder.SHED_NONE, c.level);
+        assertEquals(0, c.deadlineMisses);
+        assertEquals(0, c.skippedFrames);
+        assertEquals(900, c.frames);
+        assertArrayEquals(new long[LoadShedder.LEVEL_COUNT], c.shed);
+    }
+
+    @Test
+    public void shedsInOrderUntilTheDeadlineIsMet() {
+        Device device = new Device(LoadShedder.SHED_ENGINE);
+        final List<Integer> actions = new ArrayList<>();
+        device.shedder.setListener((action, shed, load) -> {
+            assertTrue(shed);
+            assertTrue(load > 0.9f);
+            actions.add(action);
+        });
+        // 100 ms, 77 ms without the overlay, 22 ms at half resolution
+        device.run(100f, 600);
+        LoadShedder.Counters c = device.counters();
+        assertEquals(LoadShedder.SHED_STRIDE, c.level);
+        assertEquals(2, actions.size());
+        assertEquals(LoadShedder.SHED_OVERLAY, (int) actions.get(0));
+        assertEquals(LoadShedder.SHED_STRIDE, (int) actions.get(1));
+        assertEquals(1, c.shed[LoadShedder.SHED_OVERLAY]);
+        assertEquals(1, c.shed[LoadShedder.SHED_STRIDE]);
+        assertEquals(0, c.skippedFrames);
+        assertTrue(c.load < 0.9f);
+    }
+
+    @Test
+    public void fallsBackToTheCheaperEngineAndSkipsFrames() {
+        Device device = new Device(LoadShedder.SHED_ENGINE);
+        // 66 ms at half resolution misses even the stretched 50 ms deadline
+        device.run(300f, 600);
+        assertEquals(LoadShedder.SHED_ENGINE, device.shedder.getLevel());
+
+        // Steady state: exactly one arrival in SKIP_NTH is dropped
+        LoadShedder.Counters before = device.counters();
+        device.run(300f, 300);
+        LoadShedder.Counters after = device.counters();
+        assertEquals(100, after.skippedFrames - before.skippedFrames);
+        assertEquals(200, after.frames - before.frames);
+        assertEquals(0, after.deadlineMisses - before.deadlineMisses);
+        assertEquals(LoadShedder.SHED_ENGINE, after.level);
+    }
+
+    @Test
+    public void maxLevelCapsShedding() {
+        Device device = new Device(LoadShedder.SHED_FRAMES);
+        device.run(300f, 600);
+        LoadShedder.Counters c = device.counters();
+        assertEquals(LoadShedder.SHED_FRAMES, c.level);
+        assertEquals(0, c.shed[LoadShedder.SHED_ENGINE]);
+        assertTrue(c.load > 0.9f);
+    }
+
+    @Test
+    public void restoresEverythingWhenTheLoadGoesAway() {
+        Device device = new Device(LoadShedder.SHED_ENGINE);
+        final List<Integer> restored = new ArrayList<>();
+        device.shedder.setListener((action, shed, load) -> {
+            if (!shed) {
+                restored.add(action);
+            }
+        });
+        device.run(100f, 600);
+        assertEquals(LoadShedder.SHED_STRIDE, device.shedder.getLevel());
+        device.run(20f, 900);
+        LoadShedder.Counters c = device.counters();
+        assertEquals(LoadShedder.SHED_NONE, c.level);
+        // Given back in reverse order
+        assertEquals(2, restored.size());
+        assertEquals(LoadShedder.SHED_STRIDE, (int) restored.get(0));
+        assertEquals(LoadShedder.SHED_OVERLAY, (int) restored.get(1));
+        assertArrayEquals(c.shed, c.restored);
+    }
+
+    @Test
+    public void doesNotRestoreAnActionThatWouldMissAgain() {
+        Device device = new Device(LoadShedder.SHED_ENGINE);
+        // 36 ms misses; 28 ms without the overlay fits, but adding it back would not
+        device.run(36f, 3000);
+        LoadShedder.Counters c = device.counters();
+        assertEquals(LoadShedder.SHED_OVERLAY, c.level);
+        assertEquals(1, c.shed[LoadShedder.SHED_OVERLAY]);
+        assertEquals(0, c.restored[LoadShedder.SHED_OVERLAY]);
+    }
+
+    @Test
+    public void restoresOnlyWithClearHeadroom() {
+        Device device = new Device(LoadShedder.SHED_ENGINE);
+        device.run(100f, 600);
+        assertEquals(LoadShedder.SHED_STRIDE, device.shedder.getLevel());
+        // 27 ms at full cost would fit, but at 81% of the deadline it is too close to shedding again
+        device.run(27f, 3000);
+        LoadShedder.Counters c = device.counters();
+        assertEquals(LoadShedder.SHED_OVERLAY, c.level);
+        assertEquals(1, c.restored[LoadShedder.SHED_STRIDE]);
+        assertEquals(0, c.restored[LoadShedder.SHED_OVERLAY]);
+    }
+
+    @Test
+    public void shortSpikesAreCountedButNotShed() {
+        LoadShedder shedder = new LoadShedder(DEADLINE_MS, SKIP_NTH, LoadShedder.SHED_ENGINE);
+        long t = 0;
+        for (int i = 0; i < 600; i++) {
+            t += INTERVAL_NS;
+            assertTrue(shedder.onArrival(t));
+            // One 100 ms frame in every twenty
+            assertFalse(shedder.onFrame(LoadShedder.SHED_NONE, i % 20 == 0 ? 100f : 10f));
+        }
+        LoadShedder.Counters c = new LoadShedder.Counters();
+        shedder.getCounters(c);
+        assertEquals(LoadShedder.SHED_NONE, c.level);
+        assertEquals(30, c.deadlineMisses);
+    }
+
+    @Test
+    public void framesFromAnEarlierLevelOnlyCountMisses() {
+        Device device = new Device(LoadShedder.SHED_ENGINE);
+        device.run(100f, 600);
+        int level = device.shedder.getLevel();
+        LoadShedder.Counters before = device.counters();
+        // Stale full-cost frames still in the pipeline
+        for (int i = 0; i < 100; i++) {
+            assertFalse(device.shedder.onFrame(LoadShedder.SHED_NONE, 100f));
+        }
+        LoadShedder.Counters after = device.counters();
+        assertEquals(level, after.level);
+        assertEquals(100, after.deadlineMisses - before.deadlineMisses);
+        assertEquals(before.load, after.load, 0f);
+    }
+
+    @Test
+    public void timestampGapsCountAsSourceLost() {
+        LoadShedder shedder = new LoadShedder(DEADLINE_MS, SKIP_NTH, LoadShedder.SHED_ENGINE);
+        long t = 0;
+        for (int i = 0; i < 10; i++) {
+            shedder.onArrival(t += INTERVAL_NS);
+        }
+        // Two frames never delivered
+        shedder.onArrival(t += 3 * INTERVAL_NS);
+        // Jitter is not a loss
+        shedder.onArrival(t += INTERVAL_NS * 14 / 10);
+        shedder.onArrival(t += INTERVAL_NS * 6 / 10);
+        // Nor is a source restarting its clock
+        t = 5 * INTERVAL_NS;
+        shedder.onArrival(t);
+        shedder.onArrival(t += INTERVAL_NS);
+        LoadShedder.Counters c = new LoadShedder.Counters();
+        shedder.getCounters(c);
+        assertEquals(2, c.sourceLost);
+        assertEquals(0, c.skippedFrames);
+    }
+
+    @Test
+    public void replaysDeterministically() {
+        Device a = new Device(LoadShedder.SHED_ENGINE);
+        Device b = new Device(LoadShedder.SHED_ENGINE);
+        float[] trace = {20f, 60f, 150f, 400f, 90f, 30f, 10f};
+        for (float baseMs : trace) {
+            a.run(baseMs, 200);
+            b.run(baseMs, 200);
+            assertEquals(a.shedder.getLevel(), b.shedder.getLevel());
+        }
+        LoadShedder.Counters ca = a.counters();
+        LoadShedder.Counters cb = b.counters();
+        assertEquals(ca.toString(), cb.toString());
+        assertEquals(ca.load, cb.load, 0f);
+        assertEquals(a.processed, b.processed);
+        assertTrue(ca.shed[LoadShedder.SHED_ENGINE] > 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void skipNthBelowTwoThrows() {
+        new LoadShedder(DEADLINE_MS, 1, LoadShedder.SHED_ENGINE);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void maxLevelOutOfRangeThrows() {
+        new LoadShedder(DEADLINE_MS, SKIP_NTH, LoadShedder.LEVEL_COUNT);
+    }
+}
@@ -0,0 +1,348 @@
+package com.example.edgeviewer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class RenderThreadTest {
+
+    /**
+     * Stand-in EGL that tracks the context and every surface, and records
+     * calls EGL would reject: anything without a context, destroying the
+     * context with surfaces alive, using a destroyed surface.
+     */
+    private static final class FakeEgl implements EglApi {
+        final Set<Object> surfaces = new HashSet<>();
+        final Set<Object> windowSurfaces = new HashSet<>();
+        final List<String> errors = new ArrayList<>();
+        final AtomicInteger nextSwap = new AtomicInteger(SWAP_OK);
+        volatile boolean failContext;
+        // Held closed to keep a window surface from being destroyed
+        volatile CountDownLatch destroyGate;
+        boolean context;
+        int contexts;
+        int created;
+        Object current;
+
+        @Override
+        public synchronized boolean createContext() {
+            if (failContext) {
+                return false;
+            }
+            if (context) {
+                errors.add("context created twice");
+            }
+            context = true;
+            contexts++;
+            return true;
+        }
+
+        @Override
+        public synchronized Object createWindowSurface(Object window) {
+            check("createWindowSurface");
+            Object surface = "window-" + window + "-" + (++created);
+            surfaces.add(surface);
+            windowSurfaces.add(surface);
+            return surface;
+        }
+
+        @Override
+        public synchronized Object createPbufferSurface(int width, int height) {
+            check("createPbufferSurface");
+            Object surface = "pbuffer-" + (++created);
+            surfaces.add(surface);
+            return surface;
+        }
+
+        @Override
+        public synchronized boolean makeCurrent(Object surface) {
+            check("makeCurrent");
+            if (!surfaces.contains(surface)) {
+                errors.add("makeCurrent on " + surface);
+            }
+            current = surface;
+            return context;
+        }
+
+        @Override
+        public int swapBuffers(Object surface) {
+            synchronized (this) {
+                check("swapBuffers");
+                if (surface != current) {
+                    errors.add("swap on " + surface + " with " + current + " current");
+                }
+            }
+            return nextSwap.getAndSet(SWAP_OK);
+        }
+
+        @Override
+        public void destroySurface(Object surface) {
+            CountDownLatch gate = destroyGate;
+            if (gate != null && windowSurfaces.contains(surface)) {
+                try {
+                    gate.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            synchronized (this) {
+                if (!surfaces.remove(surface)) {
+                    errors.add("destroySurface on " + surface);
+                }
+                windowSurfaces.remove(surface);
+            }
+        }
+
+        @Override
+        public synchronized void destroyContext() {
+            check("destroyContext");
+            if (!surfaces.isEmpty()) {
+                errors.add("context destroyed with " + surfaces + " alive");
+            }
+            context = false;
+            current = null;
+        }
+
+        private void check(String call) {
+            if (!context) {
+                errors.add(call + " without a context");
+            }
+        }
+
+        synchronized int windowSurfaceCount() {
+            return windowSurfaces.size();
+        }
+
+        synchronized boolean pbufferCurrent() {
+            return surfaces.contains(current) && !windowSurfaces.contains(current);
+        }
+    }
+
+    private static final class FakeRenderer implements RenderThread.Renderer {
+        final AtomicInteger created = new AtomicInteger();
+        final AtomicInteger destroyed = new AtomicInteger();
+        // Resume time of every frame shown, in order
+        final List<Long> resumes = new ArrayList<>();
+
+        @Override
+        public void onContextCreated() {
+            created.incrementAndGet();
+        }
+
+        @Override
+        public boolean onDraw(int work) {
+            return true;
+        }
+
+        @Override
+        public void onFrameShown(long nowNs, long resumeNs) {
+            synchronized (resumes) {
+                resumes.add(resumeNs);
+            }
+        }
+
+        @Override
+        public void onContextDestroyed() {
+            destroyed.incrementAndGet();
+        }
+
+        int shownCount() {
+            synchronized (resumes) {
+                return resumes.size();
+            }
+        }
+
+        long resume(int frame) {
+            synchronized (resumes) {
+                return resumes.get(frame);
+            }
+        }
+    }
+
+    private final FakeEgl egl = new FakeEgl();
+    private final RenderScheduler scheduler = new RenderScheduler();
+    private final FakeRenderer renderer = new FakeRenderer();
+    private final RenderThread thread = new RenderThread(egl, scheduler, renderer);
+
+    @After
+    public void releaseThread() {
+        CountDownLatch gate = egl.destroyGate;
+        if (gate != null) {
+            gate.countDown();
+        }
+        thread.release();
+        synchronized (egl) {
+            assertEquals(egl.errors.toString(), 0, egl.errors.size());
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void contextSurvivesAttachDetachCycles() throws Exception {
+        thread.start();
+        awaitTrue(() -> thread.getContextsCreated() == 1);
+        for (int i = 0; i < 5; i++) {
+            // The attach draws the newest frame on its own
+            int first = renderer.shownCount();
+            thread.attachWindow("view" + i);
+            assertTrue(awaitShown(first) > 0);
+            int next = renderer.shownCount();
+            scheduler.signalFrame();
+            assertEquals(0, awaitShown(next));
+
+            thread.detachWindow();
+            assertEquals(0, egl.windowSurfaceCount());
+            assertTrue(egl.pbufferCurrent());
+        }
+        assertEquals(1, thread.getContextsCreated());
+        assertEquals(1, renderer.created.get());
+        assertEquals(0, renderer.destroyed.get());
+        assertEquals(5, thread.getWindowsAttached());
+        synchronized (egl) {
+            assertEquals(1, egl.contexts);
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void detachWaitsForTheSurfaceToGo() throws Exception {
+        thread.start();
+        thread.attachWindow("view");
+        awaitShown(0);
+
+        egl.destroyGate = new CountDownLatch(1);
+        final CountDownLatch detached = new CountDownLatch(1);
+        final int[] leftAtReturn = {-1};
+        Thread ui = new Thread(() -> {
+            thread.detachWindow();
+            leftAtReturn[0] = egl.windowSurfaceCount();
+            detached.countDown();
+        }, "ui");
+        ui.start();
+        assertFalse("detach returned with the surface alive", detached.await(200, TimeUnit.MILLISECONDS));
+        egl.destroyGate.countDown();
+        ui.join();
+        assertEquals(0, leftAtReturn[0]);
+    }
+
+    @Test(timeout = 10_000)
+    public void resumeLatencyIsRecorded() throws Exception {
+        LatencyStats stats = new LatencyStats();
+        thread.setStats(stats);
+        thread.start();
+        thread.attachWindow("view");
+        long resume = awaitShown(0);
+        assertTrue(resume > 0);
+        assertEquals(resume, thread.getLastResumeNs());
+
+        scheduler.signalFrame();
+        awaitTrue(() -> renderer.shownCount() >= 2);
+        LatencyHistogram.Snapshot[] snapshots = stats.snapshot(LatencyStats.newSnapshots(), false);
+        assertEquals(1, snapshots[LatencyStats.RESUME].count);
+        assertTrue(snapshots[LatencyStats.SWAP].count >= 2);
+    }
+
+    @Test(timeout = 10_000)
+    public void lostContextIsRebuiltOnTheSameWindow() throws Exception {
+        thread.start();
+        thread.attachWindow("view");
+        awaitShown(0);
+        awaitIdle();
+
+        int lost = renderer.shownCount();
+        egl.nextSwap.set(EglApi.SWAP_CONTEXT_LOST);
+        scheduler.signalFrame();
+        // Back on the window with new GL objects, without a new attach
+        assertTrue(awaitShown(lost) > 0);
+        assertEquals(2, thread.getContextsCreated());
+        assertEquals(2, renderer.created.get());
+        assertEquals(2, thread.getWindowsAttached());
+        assertEquals(1, egl.windowSurfaceCount());
+        assertFalse(thread.hasFailed());
+    }
+
+    @Test(timeout = 10_000)
+    public void lostSurfaceKeepsTheContext() throws Exception {
+        thread.start();
+        thread.attachWindow("view");
+        awaitShown(0);
+        awaitIdle();
+
+        egl.nextSwap.set(EglApi.SWAP_SURFACE_LOST);
+        scheduler.signalFrame();
+        awaitTrue(() -> egl.windowSurfaceCount() == 0);
+        assertTrue(egl.pbufferCurrent());
+        // Nothing to draw on until the view comes back
+        int shown = renderer.shownCount();
+        scheduler.signalFrame();
+        Thread.sleep(100);
+        assertEquals(shown, renderer.shownCount());
+
+        thread.detachWindow();
+        thread.attachWindow("view");
+        assertTrue(awaitShown(shown) > 0);
+        assertEquals(1, thread.getContextsCreated());
+        assertEquals(1, renderer.created.get());
+    }
+
+    @Test(timeout = 10_000)
+    public void releaseTearsEverythingDown() throws Exception {
+        thread.start();
+        thread.attachWindow("view");
+        awaitShown(0);
+        thread.release();
+        assertEquals(1, renderer.destroyed.get());
+        synchronized (egl) {
+            assertTrue(egl.surfaces.isEmpty());
+            assertFalse(egl.context);
+            assertNull(egl.current);
+        }
+        // Nothing left to wait for
+        thread.detachWindow();
+    }
+
+    @Test(timeout = 10_000)
+    public void contextFailureEndsTheThread() throws Exception {
+        egl.failContext = true;
+        thread.start();
+        awaitTrue(thread::hasFailed);
+        thread.attachWindow("view");
+        thread.detachWindow();
+        assertEquals(0, renderer.created.get());
+        assertNull(egl.current);
+    }
+
+    /** Waits for frame number index to be shown and returns its resume time. */
+    private long awaitShown(final int index) throws InterruptedException {
+        awaitTrue(() -> renderer.shownCount() > index);
+        return renderer.resume(index);
+    }
+
+    // An attach may be followed by one redraw for the surface change; let it pass
+    private void awaitIdle() throws InterruptedException {
+        int shown;
+        do {
+            shown = renderer.shownCount();
+            Thread.sleep(50);
+        } while (renderer.shownCount() != shown);
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline);
+            Thread.sleep(1);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.edgeviewer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ResolutionGovernorTest {
+
+    private static final ProcessingProfile[] LADDER = ProcessingProfile.ladder(640, 480);
+    // 33.3 ms per frame
+    private static final float TARGET_FPS = 30f;
+
+    /**
+     * Simulated device: processing costs msPerMegapixel for the current
+     * profile's pixels, and latency is one and a half frame times.
+     */
+    private static void run(ResolutionGovernor governor, float msPerMegapixel, int frames) {
+        for (int i = 0; i < frames; i++) {
+            ProcessingProfile profile = governor.getProfile();
+            float ms = profile.getPixelCount() / 1e6f * msPerMegapixel;
+            governor.onFrame(profile, ms, (long) (ms * 1.5f * 1_000_000L));
+        }
+    }
+
+    @Test
+    public void staysAtFullResolutionWhenItFits() {
+        ResolutionGovernor governor = new ResolutionGovernor(LADDER, TARGET_FPS);
+        // About 9 ms at 640x480
+        run(governor, 30f, 600);
+        assertEquals(0, governor.getLevel());
+        assertEquals(0, governor.getStepsDown());
+    }
+
+    @Test
+    public void stepsDownUnderLoadAndSettles() {
+        ResolutionGovernor governor = new ResolutionGovernor(LADDER, TARGET_FPS);
+        // 46 ms at full, 26 ms for the 3/4 crop: the crop is the first that fits
+        run(governor, 150f, 600);
+        assertEquals(1, governor.getLevel());
+        assertEquals(1, governor.getStepsDown());
+        assertEquals(0, governor.getStepsUp());
+    }
+
+    @Test
+    public void fallsToTheCheapestProfileAndStopsThere() {
+        ResolutionGovernor governor = new ResolutionGovernor(LADDER, TARGET_FPS);
+        run(governor, 2000f, 600);
+        assertEquals(LADDER.length - 1, governor.getLevel());
+        assertEquals(LADDER.length - 1, governor.getStepsDown());
+    }
+
+    @Test
+    public void climbsBackWhenTheLoadGoesAway() {
+        ResolutionGovernor governor = new ResolutionGovernor(LADDER, TARGET_FPS);
+        // Thermal throttling for a while, then back to normal
+        run(governor, 600f, 300);
+        int throttled = governor.getLevel();
+        assertTrue(throttled >= 2);
+        run(governor, 30f, 600);
+        assertEquals(0, governor.getLevel());
+        assertEquals(throttled, governor.getStepsUp());
+    }
+
+    @Test
+    public void doesNotStepUpWhenTheNextProfileWouldNotFit() {
+        ResolutionGovernor governor = new ResolutionGovernor(LADDER, TARGET_FPS);
+        run(governor, 150f, 200);
+        // Going back to full would need 46 ms; holding at the crop is right
+        run(governor, 150f, 2000);
+        assertEquals(1, governor.getLevel());
+        assertEquals(0, governor.getStepsUp());
+    }
+
+    @Test
+    public void shortSpikesAreAbsorbed() {
+        ResolutionGovernor governor = new ResolutionGovernor(LADDER, TARGET_FPS);
+        ProcessingProfile full = governor.getProfile();
+        for (int i = 0; i < 600; i++) {
+            // One 60 ms frame in every twenty
+            float ms = i % 20 == 0 ? 60f : 8f;
+            governor.onFrame(full, ms, (long) (ms * 1_000_000L));
+        }
+        assertEquals(0, governor.getLevel());
+    }
+
+    @Test
+    public void latencyAloneStepsDown() {
+        ResolutionGovernor governor = new ResolutionGovernor(LADDER, TARGET_FPS);
+        ProcessingProfile full = governor.getProfile();
+        for (int i = 0; i < 20; i++) {
+            // Cheap frames that sit in queues for 150 ms
+            governor.onFrame(full, 5f, 150_000_000L);
+        }
+        assertEquals(1, governor.getLevel());
+    }
+
+    @Test
+    public void framesFromAnEarlierProfileAreIgnored() {
+        ResolutionGovernor governor = new ResolutionGovernor(LADDER, TARGET_FPS);
+        run(governor, 150f, 100);
+        assertEquals(1, governor.getLevel());
+        // Stale full-resolution frames still in the pipeline
+        for (int i = 0; i < 100; i++) {
+            assertFalse(governor.onFrame(LADDER[0], 500f, 500_000_000L));
+        }
+        assertEquals(1, governor.getLevel());
+    }
+
+    @Test
+    public void listenerSeesEveryChange() {
+        ResolutionGovernor governor = new ResolutionGovernor(LADDER, TARGET_FPS);
+        final List<ProcessingProfile> changes = new ArrayList<>();
+        governor.setListener(changes::add);
+        run(governor, 600f, 300);
+        run(governor, 30f, 600);
+        assertEquals(governor.getStepsDown() + governor.getStepsUp(), changes.size());
+        assertSame(LADDER[1], changes.get(0));
+        assertSame(LADDER[0], changes.get(changes.size() - 1));
+    }
+
+    @Test
+    public void replaysDeterministically() {
+        ResolutionGovernor a = new ResolutionGovernor(LADDER, TARGET_FPS);
+        ResolutionGovernor b = new ResolutionGovernor(LADDER, TARGET_FPS);
+        float[] trace = {40f, 120f, 300f, 800f, 250f, 90f, 30f};
+        for (float msPerMegapixel : trace) {
+            run(a, msPerMegapixel, 150);
+            run(b, msPerMegapixel, 150);
+            assertEquals(a.getLevel(), b.getLevel());
+        }
+        assertEquals(a.getStepsDown(), b.getStepsDown());
+        assertEquals(a.getStepsUp(), b.getStepsUp());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void emptyLadderThrows() {
+        new ResolutionGovernor(new ProcessingProfile[0], TARGET_FPS);
+    }
+}
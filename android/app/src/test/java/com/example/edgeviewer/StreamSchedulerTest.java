@@ -0,0 +1,391 @@
+package com.example.edgeviewer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class StreamSchedulerTest {
+
+    private static final int WIDTH = 16;
+    private static final int HEIGHT = 8;
+
+    /**
+     * Copies the frame number from the first four input bytes to the output
+     * after costNs, and notes any call made while another is still running.
+     * With hold set, the next frame waits on the worker for gate to open.
+     */
+    private static final class FakeDetector implements EdgeDetector {
+        final int id;
+        final long costNs;
+        // Detector id of every process call, in order, shared by all detectors
+        final List<Integer> calls;
+        final AtomicInteger busy = new AtomicInteger();
+        final AtomicInteger released = new AtomicInteger();
+        final CountDownLatch holding = new CountDownLatch(1);
+        final CountDownLatch gate = new CountDownLatch(1);
+        volatile boolean hold;
+        volatile boolean overlapped;
+
+        FakeDetector(int id, long costNs, List<Integer> calls) {
+            this.id = id;
+            this.costNs = costNs;
+            this.calls = calls;
+        }
+
+        @Override
+        public void init(int width, int height, int outputChannels) {
+        }
+
+        @Override
+        public float process(ByteBuffer gray, int rowStride, ByteBuffer out) {
+            if (busy.incrementAndGet() != 1) {
+                overlapped = true;
+            }
+            try {
+                synchronized (calls) {
+                    calls.add(id);
+                }
+                if (hold) {
+                    hold = false;
+                    holding.countDown();
+                    try {
+                        gate.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                if (costNs > 0) {
+                    LockSupport.parkNanos(costNs);
+                }
+                out.putInt(0, gray.getInt(0));
+                return costNs / 1e6f;
+            } finally {
+                busy.decrementAndGet();
+            }
+        }
+
+        @Override
+        public int getBorder() {
+            return 0;
+        }
+
+        @Override
+        public void release() {
+            released.incrementAndGet();
+        }
+    }
+
+    /** Frame numbers that reached the sink, per stream, in order. */
+    private static final class Sink implements StreamScheduler.FrameSink {
+        final List<List<Integer>> frames = new ArrayList<>();
+
+        Sink(int streams) {
+            for (int i = 0; i < streams; i++) {
+                frames.add(new ArrayList<Integer>());
+            }
+        }
+
+        @Override
+        public void onFrame(StreamScheduler.Stream stream, FramePool.Frame frame, float processingMs) {
+            List<Integer> list = frames.get(stream.getIndex());
+            synchronized (list) {
+                list.add(frame.buffer.getInt(0));
+            }
+            frame.release();
+        }
+
+        List<Integer> of(int stream) {
+            List<Integer> list = frames.get(stream);
+            synchronized (list) {
+                return new ArrayList<>(list);
+            }
+        }
+    }
+
+    private final List<Integer> calls = new ArrayList<>();
+    // Every release handed to a stream, each to be closed exactly once
+    private final List<AtomicInteger> closes = new ArrayList<>();
+    private StreamScheduler scheduler;
+
+    @After
+    public void stopScheduler() {
+        if (scheduler != null) {
+            scheduler.stop();
+        }
+    }
+
+    /**
+     * Two slow and two fast streams, each fed by its own thread, on three
+     * workers: every frame reaches the sink once and in order, and no
+     * detector is ever entered twice at once.
+     */
+    @Test(timeout = 30_000)
+    public void mixedStreamsKeepOrderAndNeverOverlap() throws Exception {
+        final int frames = 200;
+        long[] costs = {1_000_000, 20_000, 1_000_000, 20_000};
+        Sink sink = new Sink(costs.length);
+        scheduler = new StreamScheduler(3, 2, FramePipeline.Backpressure.BLOCK, sink);
+        List<FakeDetector> detectors = new ArrayList<>();
+        for (int i = 0; i < costs.length; i++) {
+            FakeDetector detector = new FakeDetector(i, costs[i], calls);
+            detectors.add(detector);
+            scheduler.addStream("stream" + i, WIDTH, HEIGHT, 1, detector, 4, 2);
+        }
+        scheduler.start();
+
+        Thread[] sources = new Thread[costs.length];
+        for (StreamScheduler.Stream stream : scheduler.getStreams()) {
+            sources[stream.getIndex()] = new Thread(() -> {
+                for (int n = 1; n <= frames; n++) {
+                    submit(stream, n);
+                }
+            }, "source-" + stream.getIndex());
+            sources[stream.getIndex()].start();
+        }
+        for (Thread source : sources) {
+            source.join();
+        }
+        awaitTrue(() -> {
+            for (StreamScheduler.Stream stream : scheduler.getStreams()) {
+                if (stream.getProcessedCount() < frames) {
+                    return false;
+                }
+            }
+            return true;
+        });
+        scheduler.stop();
+
+        for (StreamScheduler.Stream stream : scheduler.getStreams()) {
+            List<Integer> expected = new ArrayList<>();
+            for (int n = 1; n <= frames; n++) {
+                expected.add(n);
+            }
+            assertEquals(stream.getName(), expected, sink.of(stream.getIndex()));
+            assertEquals(frames, stream.getSubmittedCount());
+            assertEquals(0, stream.getDroppedCount());
+            assertEquals(frames, stream.getProcessingHistogram().snapshot(new LatencyHistogram.Snapshot(), false)
+                    .getCount());
+        }
+        for (FakeDetector detector : detectors) {
+            assertFalse("detector " + detector.id + " ran on two workers", detector.overlapped);
+            assertEquals(1, detector.released.get());
+        }
+        assertAllClosedOnce();
+    }
+
+    /**
+     * One worker, quantum 2, and a hog stream with far more queued than two
+     * others: while they have frames, the hog runs at most two in a row and
+     * no stream waits for more than a quantum from each of the others.
+     */
+    @Test(timeout = 10_000)
+    public void quantumBoundsStarvation() throws Exception {
+        final int quantum = 2;
+        Sink sink = new Sink(3);
+        scheduler = new StreamScheduler(1, quantum, FramePipeline.Backpressure.DROP_NEWEST, sink);
+        FakeDetector hog = new FakeDetector(0, 0, calls);
+        StreamScheduler.Stream hogStream = scheduler.addStream("hog", WIDTH, HEIGHT, 1, hog, 64, 2);
+        StreamScheduler.Stream b = scheduler.addStream("b", WIDTH, HEIGHT, 1, new FakeDetector(1, 0, calls), 64, 2);
+        StreamScheduler.Stream c = scheduler.addStream("c", WIDTH, HEIGHT, 1, new FakeDetector(2, 0, calls), 64, 2);
+        hog.hold = true;
+        scheduler.start();
+
+        // Hold the worker on the hog's first frame while every queue fills
+        submit(hogStream, 1);
+        assertTrue(hog.holding.await(5, TimeUnit.SECONDS));
+        for (int n = 2; n <= 50; n++) {
+            submit(hogStream, n);
+        }
+        for (int n = 1; n <= 10; n++) {
+            submit(b, n);
+            submit(c, n);
+        }
+        hog.gate.countDown();
+        awaitTrue(() -> hogStream.getProcessedCount() == 50 && b.getProcessedCount() == 10
+                && c.getProcessedCount() == 10);
+
+        List<Integer> order;
+        synchronized (calls) {
+            order = new ArrayList<>(calls);
+        }
+        assertEquals(70, order.size());
+        int othersDone = Math.max(order.lastIndexOf(1), order.lastIndexOf(2));
+        int run = 0;
+        for (int i = 0; i <= othersDone; i++) {
+            run = i > 0 && order.get(i).equals(order.get(i - 1)) ? run + 1 : 1;
+            assertTrue("run of " + run + " at " + i + " in " + order, run <= quantum);
+        }
+        for (int stream = 0; stream < 3; stream++) {
+            int last = -1;
+            for (int i = 0; i <= othersDone; i++) {
+                if (order.get(i) == stream) {
+                    assertTrue("stream " + stream + " waited " + (i - last - 1) + " frames in " + order,
+                            i - last - 1 <= 2 * quantum);
+                    last = i;
+                }
+            }
+        }
+        for (int stream = 0; stream < 3; stream++) {
+            List<Integer> frames = sink.of(stream);
+            for (int i = 0; i < frames.size(); i++) {
+                assertEquals(i + 1, (int) frames.get(i));
+            }
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void dropOldestEvictsAndCountsQueuedFrames() throws Exception {
+        Sink sink = new Sink(1);
+        scheduler = new StreamScheduler(1, 1, FramePipeline.Backpressure.DROP_OLDEST, sink);
+        FakeDetector detector = new FakeDetector(0, 0, calls);
+        detector.hold = true;
+        StreamScheduler.Stream stream = scheduler.addStream("s", WIDTH, HEIGHT, 1, detector, 2, 2);
+        scheduler.start();
+
+        assertTrue(submit(stream, 1));
+        assertTrue(detector.holding.await(5, TimeUnit.SECONDS));
+        for (int n = 2; n <= 10; n++) {
+            assertTrue(submit(stream, n));
+        }
+        // 2..8 were evicted and given back at once; the queue keeps 9 and 10
+        assertEquals(7, stream.getDroppedCount());
+        assertEquals(7, closedCount());
+
+        detector.gate.countDown();
+        awaitTrue(() -> stream.getProcessedCount() == 3);
+        assertEquals(Arrays.asList(1, 9, 10), sink.of(0));
+        assertEquals(10, stream.getSubmittedCount());
+        assertEquals(stream.getSubmittedCount(), stream.getProcessedCount() + stream.getDroppedCount());
+        assertAllClosedOnce();
+    }
+
+    @Test(timeout = 10_000)
+    public void blockHoldsTheSourceUntilThereIsRoom() throws Exception {
+        Sink sink = new Sink(1);
+        scheduler = new StreamScheduler(1, 1, FramePipeline.Backpressure.BLOCK, sink);
+        FakeDetector detector = new FakeDetector(0, 0, calls);
+        detector.hold = true;
+        final StreamScheduler.Stream stream = scheduler.addStream("s", WIDTH, HEIGHT, 1, detector, 2, 2);
+        scheduler.start();
+
+        assertTrue(submit(stream, 1));
+        assertTrue(detector.holding.await(5, TimeUnit.SECONDS));
+        assertTrue(submit(stream, 2));
+        assertTrue(submit(stream, 3));
+        final AtomicBoolean accepted = new AtomicBoolean();
+        Thread source = new Thread(() -> accepted.set(submit(stream, 4)), "source");
+        source.start();
+        // Still waiting for room
+        source.join(200);
+        assertTrue(source.isAlive());
+
+        detector.gate.countDown();
+        source.join(5000);
+        assertFalse(source.isAlive());
+        assertTrue(accepted.get());
+        awaitTrue(() -> stream.getProcessedCount() == 4);
+        assertEquals(Arrays.asList(1, 2, 3, 4), sink.of(0));
+        assertEquals(0, stream.getDroppedCount());
+        assertAllClosedOnce();
+    }
+
+    /**
+     * stop() with a worker busy, frames queued on two streams and a source
+     * blocked on a full queue: every frame is given back exactly once and
+     * counted as processed or dropped.
+     */
+    @Test(timeout = 10_000)
+    public void stopReleasesEveryQueuedFrame() throws Exception {
+        Sink sink = new Sink(2);
+        scheduler = new StreamScheduler(1, 4, FramePipeline.Backpressure.BLOCK, sink);
+        FakeDetector first = new FakeDetector(0, 0, calls);
+        FakeDetector second = new FakeDetector(1, 0, calls);
+        // Never opened: stop() interrupts the worker out of it
+        first.hold = true;
+        final StreamScheduler.Stream a = scheduler.addStream("a", WIDTH, HEIGHT, 1, first, 3, 2);
+        StreamScheduler.Stream b = scheduler.addStream("b", WIDTH, HEIGHT, 1, second, 3, 2);
+        scheduler.start();
+
+        submit(a, 1);
+        assertTrue(first.holding.await(5, TimeUnit.SECONDS));
+        for (int n = 2; n <= 4; n++) {
+            submit(a, n);
+        }
+        for (int n = 1; n <= 3; n++) {
+            submit(b, n);
+        }
+        final AtomicBoolean accepted = new AtomicBoolean(true);
+        Thread source = new Thread(() -> accepted.set(submit(a, 5)), "source");
+        source.start();
+        source.join(200);
+        assertTrue(source.isAlive());
+
+        scheduler.stop();
+        source.join(5000);
+        assertFalse(source.isAlive());
+        assertFalse(accepted.get());
+        // Too late for a stopped scheduler
+        assertFalse(submit(b, 4));
+
+        assertAllClosedOnce();
+        assertEquals(9, closes.size());
+        for (StreamScheduler.Stream stream : Arrays.asList(a, b)) {
+            assertEquals(stream.getName(), stream.getSubmittedCount(),
+                    stream.getProcessedCount() + stream.getDroppedCount());
+        }
+        assertEquals(Arrays.asList(1), sink.of(0));
+        assertEquals(0, sink.of(1).size());
+        assertEquals(1, first.released.get());
+        assertEquals(1, second.released.get());
+    }
+
+    private boolean submit(StreamScheduler.Stream stream, int frame) {
+        final AtomicInteger closed = new AtomicInteger();
+        synchronized (closes) {
+            closes.add(closed);
+        }
+        ByteBuffer plane = ByteBuffer.allocate(WIDTH * HEIGHT);
+        plane.putInt(0, frame);
+        return stream.onFrame(plane, WIDTH, frame, closed::incrementAndGet);
+    }
+
+    private int closedCount() {
+        int count = 0;
+        synchronized (closes) {
+            for (AtomicInteger closed : closes) {
+                count += closed.get() > 0 ? 1 : 0;
+            }
+        }
+        return count;
+    }
+
+    private void assertAllClosedOnce() {
+        synchronized (closes) {
+            for (int i = 0; i < closes.size(); i++) {
+                assertEquals("release " + i, 1, closes.get(i).get());
+            }
+        }
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline);
+            Thread.sleep(1);
+        }
+    }
+}
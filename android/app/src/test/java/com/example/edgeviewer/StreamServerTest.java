@@ -0,0 +1,224 @@
+package com.example.edgeviewer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.Charset;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StreamServerTest {
+
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+    private static final int MAX_CLIENTS = 2;
+
+    private StreamServer server;
+
+    @Before
+    public void startServer() throws IOException {
+        server = new StreamServer(0, MAX_CLIENTS);
+        server.start();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop();
+    }
+
+    @Test
+    public void acceptKeyMatchesRfcExample() {
+        assertEquals("s3pPLMBiTxaQ9kYGzzhZRbK+xOo=", StreamServer.acceptKey("dGhlIHNhbXBsZSBub25jZQ=="));
+    }
+
+    @Test(timeout = 10_000)
+    public void clientReceivesBroadcastsAndPongs() throws Exception {
+        try (Socket socket = connect()) {
+            assertEquals("HTTP/1.1 101 Switching Protocols", handshake(socket, StreamServer.PATH));
+            awaitClients(1);
+
+            byte[] packet = new byte[300];
+            for (int i = 0; i < packet.length; i++) {
+                packet[i] = (byte) i;
+            }
+            server.broadcast(packet);
+            Frame frame = readFrame(socket.getInputStream());
+            assertEquals(0x2, frame.opcode);
+            assertArrayEquals(packet, frame.payload);
+
+            server.broadcastText("{\"fps\":30}");
+            frame = readFrame(socket.getInputStream());
+            assertEquals(0x1, frame.opcode);
+            assertEquals("{\"fps\":30}", new String(frame.payload, "UTF-8"));
+
+            writeMaskedFrame(socket.getOutputStream(), 0x9, "hi".getBytes(ASCII));
+            frame = readFrame(socket.getInputStream());
+            assertEquals(0xA, frame.opcode);
+            assertEquals("hi", new String(frame.payload, ASCII));
+            assertEquals(1, server.getConnectionCount());
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void queryStringIsIgnored() throws Exception {
+        try (Socket socket = connect()) {
+            assertEquals("HTTP/1.1 101 Switching Protocols", handshake(socket, StreamServer.PATH + "?v=2"));
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void otherPathsAreNotFound() throws Exception {
+        for (String path : new String[]{StreamServer.PATH + "X", "/", "/stream/more"}) {
+            try (Socket socket = connect()) {
+                assertEquals(path, "HTTP/1.1 404 Not Found", handshake(socket, path));
+            }
+        }
+        assertEquals(0, server.getConnectionCount());
+    }
+
+    @Test(timeout = 10_000)
+    public void connectionsAreCappedBeforeTheHandshake() throws Exception {
+        // Sockets that never send a request still hold a slot each
+        try (Socket idle1 = connect(); Socket idle2 = connect()) {
+            awaitRejected(0);
+            try (Socket extra = connect()) {
+                extra.setSoTimeout(5000);
+                assertEquals(-1, extra.getInputStream().read());
+            }
+            awaitRejected(1);
+        }
+        // Slots come back when those sockets go away
+        long deadline = System.currentTimeMillis() + 5000;
+        while (true) {
+            try (Socket socket = connect()) {
+                socket.setSoTimeout(2000);
+                try {
+                    if ("HTTP/1.1 101 Switching Protocols".equals(handshake(socket, StreamServer.PATH))) {
+                        break;
+                    }
+                } catch (IOException e) {
+                    // Still rejected
+                }
+            }
+            assertTrue("slot never freed", System.currentTimeMillis() < deadline);
+            Thread.sleep(20);
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void listensOnLoopbackByDefault() throws Exception {
+        try (Socket socket = connect()) {
+            assertTrue(socket.getInetAddress().isLoopbackAddress());
+            assertEquals("HTTP/1.1 101 Switching Protocols", handshake(socket, StreamServer.PATH));
+        }
+    }
+
+    private Socket connect() throws IOException {
+        return new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+    }
+
+    private void awaitClients(int count) throws InterruptedException {
+        while (server.getClientCount() != count) {
+            Thread.sleep(5);
+        }
+    }
+
+    private void awaitRejected(long count) throws InterruptedException {
+        // Give the accept thread a moment; the counter only grows
+        Thread.sleep(50);
+        while (server.getRejectedCount() < count) {
+            Thread.sleep(5);
+        }
+        assertEquals(count, server.getRejectedCount());
+    }
+
+    /** Sends an upgrade request and returns the status line. */
+    private static String handshake(Socket socket, String path) throws IOException {
+        String request = "GET " + path + " HTTP/1.1\r\n"
+                + "Host: 127.0.0.1\r\n"
+                + "Upgrade: websocket\r\n"
+                + "Connection: Upgrade\r\n"
+                + "Sec-WebSocket-Key: dGhlIHNhbXBsZSBub25jZQ==\r\n"
+                + "Sec-WebSocket-Version: 13\r\n\r\n";
+        socket.getOutputStream().write(request.getBytes(ASCII));
+        socket.getOutputStream().flush();
+        String header = readHeader(socket.getInputStream());
+        if (header.startsWith("HTTP/1.1 101")) {
+            assertTrue(header, header.contains("Sec-WebSocket-Accept: s3pPLMBiTxaQ9kYGzzhZRbK+xOo="));
+        }
+        return header.substring(0, header.indexOf("\r\n"));
+    }
+
+    private static String readHeader(InputStream in) throws IOException {
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        int matched = 0;
+        while (matched < 4) {
+            int b = in.read();
+            if (b < 0) {
+                throw new IOException("closed during handshake");
+            }
+            header.write(b);
+            matched = (b == (matched % 2 == 0 ? '\r' : '\n')) ? matched + 1 : (b == '\r' ? 1 : 0);
+        }
+        return new String(header.toByteArray(), ASCII);
+    }
+
+    private static final class Frame {
+        int opcode;
+        byte[] payload;
+    }
+
+    private static Frame readFrame(InputStream in) throws IOException {
+        Frame frame = new Frame();
+        int b0 = readByte(in);
+        int b1 = readByte(in);
+        assertTrue("server frames are final", (b0 & 0x80) != 0);
+        assertEquals("server frames are not masked", 0, b1 & 0x80);
+        frame.opcode = b0 & 0x0F;
+        int length = b1 & 0x7F;
+        if (length == 126) {
+            length = (readByte(in) << 8) | readByte(in);
+        } else if (length == 127) {
+            throw new IOException("unexpected 64-bit length");
+        }
+        frame.payload = new byte[length];
+        for (int i = 0; i < length; i++) {
+            frame.payload[i] = (byte) readByte(in);
+        }
+        return frame;
+    }
+
+    private static int readByte(InputStream in) throws IOException {
+        int b;
+        try {
+            b = in.read();
+        } catch (SocketTimeoutException e) {
+            throw new IOException("no frame", e);
+        }
+        if (b < 0) {
+            throw new IOException("closed");
+        }
+        return b;
+    }
+
+    // Clients must mask what they send
+    private static void writeMaskedFrame(OutputStream out, int opcode, byte[] payload) throws IOException {
+        byte[] mask = {0x12, 0x34, 0x56, 0x78};
+        out.write(0x80 | opcode);
+        out.write(0x80 | payload.length);
+        out.write(mask);
+        for (int i = 0; i < payload.length; i++) {
+            out.write(payload[i] ^ mask[i & 3]);
+        }
+        out.flush();
+    }
+}
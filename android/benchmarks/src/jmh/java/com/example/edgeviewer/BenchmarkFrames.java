@@ -0,0 +1,41 @@
+package com.example.edgeviewer;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+/** Synthetic camera-like frames shared by the benchmarks. */
+final class BenchmarkFrames {
+
+    private BenchmarkFrames() {
+    }
+
+    static int width(String resolution) {
+        return Integer.parseInt(resolution.substring(0, resolution.indexOf('x')));
+    }
+
+    static int height(String resolution) {
+        return Integer.parseInt(resolution.substring(resolution.indexOf('x') + 1));
+    }
+
+    /**
+     * Direct Y plane with rowStride bytes per row: blocky shapes plus sensor-like
+     * noise, so edge detectors see a realistic mix of edges and flat areas.
+     */
+    static ByteBuffer yPlane(int width, int height, int rowStride) {
+        ByteBuffer plane = ByteBuffer.allocateDirect(rowStride * (height - 1) + width)
+                .order(ByteOrder.nativeOrder());
+        Random random = new Random(42);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int shape = ((x / 53 + y / 41) % 3) * 70;
+                plane.put(y * rowStride + x, (byte) (20 + shape + random.nextInt(24)));
+            }
+        }
+        return plane;
+    }
+
+    static ByteBuffer direct(int bytes) {
+        return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+    }
+}
@@ -0,0 +1,198 @@
+package com.example.edgeviewer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Edge mask codec throughput and size. "capture" crops the camera area of the
+ * two on-device captures in web-viewer/dist (consecutive frames of a handheld,
+ * mostly still scene); "synthetic" runs the Java Canny over the moving-square
+ * sequence. Bytes per frame and the ratio against RGBA are printed at the end
+ * of each trial.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EdgeCodecBenchmark {
+
+    private static final int KEYFRAME_INTERVAL = 30;
+    private static final String[] CAPTURES = {"sample-frame1.png", "sample-frame2.png"};
+    // Inside the camera preview of the 1080x2340 captures
+    private static final int CAPTURE_X = 220;
+    private static final int CAPTURE_Y = 870;
+    private static final int SYNTHETIC_FRAMES = 16;
+
+    @Param({"capture", "synthetic"})
+    public String source;
+
+    @Param({"rle", "bitpack", "delta", "auto"})
+    public String encoding;
+
+    private int width;
+    private int height;
+    private int mode;
+    private ByteBuffer[] masks;
+    private EdgeCodec.Encoder encoder;
+    private EdgeCodec.Decoder decoder;
+    private byte[] encoded;
+    private byte[][] packets;
+    private int[] packetEncodings;
+    private ByteBuffer decoded;
+    private int next;
+    private int nextPacket;
+    private long totalBytes;
+    private long frames;
+
+    @Setup
+    public void setup() throws IOException {
+        switch (encoding) {
+            case "rle":
+                mode = EdgeCodec.ENCODING_RLE;
+                break;
+            case "bitpack":
+                mode = EdgeCodec.ENCODING_BITPACK;
+                break;
+            case "delta":
+                mode = EdgeCodec.ENCODING_DELTA;
+                break;
+            case "auto":
+                mode = EdgeCodec.AUTO;
+                break;
+            default:
+                throw new IllegalArgumentException("unknown encoding " + encoding);
+        }
+        if ("capture".equals(source)) {
+            width = 640;
+            height = 480;
+            masks = loadCaptures();
+        } else {
+            width = 1280;
+            height = 720;
+            masks = syntheticMasks();
+        }
+
+        encoder = new EdgeCodec.Encoder(width, height, KEYFRAME_INTERVAL);
+        encoded = new byte[encoder.maxEncodedBytes(mode)];
+
+        // Whole keyframe cycles, so decoding can loop over the packets
+        int count = masks.length;
+        while (count % (KEYFRAME_INTERVAL + 1) != 0) {
+            count += masks.length;
+        }
+        EdgeCodec.Encoder sequence = new EdgeCodec.Encoder(width, height, KEYFRAME_INTERVAL);
+        packets = new byte[count][];
+        packetEncodings = new int[count];
+        for (int f = 0; f < count; f++) {
+            int size = sequence.encode(masks[f % masks.length], 1, mode, encoded, 0);
+            packets[f] = Arrays.copyOf(encoded, size);
+            packetEncodings[f] = sequence.getEncoding();
+        }
+        decoder = new EdgeCodec.Decoder(width, height);
+        decoded = BenchmarkFrames.direct(width * height);
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (frames > 0) {
+            double perFrame = (double) totalBytes / frames;
+            System.out.println(String.format(Locale.US,
+                    "%n%s/%s %dx%d: %.0f bytes per frame, %.1fx smaller than the mask, %.1fx than RGBA",
+                    source, encoding, width, height, perFrame,
+                    width * height / perFrame, width * height * 4 / perFrame));
+        }
+    }
+
+    @Benchmark
+    public int encode() {
+        ByteBuffer mask = masks[next];
+        next = (next + 1) % masks.length;
+        int size = encoder.encode(mask, 1, mode, encoded, 0);
+        totalBytes += size;
+        frames++;
+        return size;
+    }
+
+    @Benchmark
+    public ByteBuffer decode() {
+        int f = nextPacket;
+        nextPacket = (nextPacket + 1) % packets.length;
+        if (!decoder.decode(packetEncodings[f], packets[f], 0, packets[f].length, decoded)) {
+            throw new IllegalStateException("packet " + f + " did not decode");
+        }
+        return decoded;
+    }
+
+    private ByteBuffer[] loadCaptures() throws IOException {
+        File dir = findCaptureDir();
+        ByteBuffer[] result = new ByteBuffer[CAPTURES.length];
+        for (int i = 0; i < CAPTURES.length; i++) {
+            BufferedImage image = ImageIO.read(new File(dir, CAPTURES[i]));
+            ByteBuffer mask = BenchmarkFrames.direct(width * height);
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    int green = (image.getRGB(CAPTURE_X + x, CAPTURE_Y + y) >> 8) & 0xFF;
+                    mask.put(y * width + x, green > 128 ? (byte) 255 : 0);
+                }
+            }
+            result[i] = mask;
+        }
+        return result;
+    }
+
+    // The fork may run from android/ or android/benchmarks/
+    private static File findCaptureDir() {
+        String configured = System.getProperty("edgeviewer.captures");
+        if (configured != null) {
+            return new File(configured);
+        }
+        for (File dir = new File("").getAbsoluteFile(); dir != null; dir = dir.getParentFile()) {
+            File candidate = new File(dir, "web-viewer/dist");
+            if (new File(candidate, CAPTURES[0]).isFile()) {
+                return candidate;
+            }
+        }
+        throw new IllegalStateException("captures not found; pass -Dedgeviewer.captures=<web-viewer/dist>");
+    }
+
+    private ByteBuffer[] syntheticMasks() {
+        EdgeDetector detector = new JavaEdgeDetector(JavaEdgeDetector.Mode.CANNY, 50, 150, false, 1);
+        detector.init(width, height, 1);
+        ByteBuffer background = BenchmarkFrames.yPlane(width, height, width);
+        ByteBuffer frame = BenchmarkFrames.direct(width * height);
+        ByteBuffer[] result = new ByteBuffer[SYNTHETIC_FRAMES];
+        for (int f = 0; f < SYNTHETIC_FRAMES; f++) {
+            frame.clear();
+            frame.put(background);
+            background.position(0);
+            frame.position(0);
+            int x0 = width / 4 + f * 4;
+            int y0 = height / 2;
+            for (int y = y0; y < y0 + 48; y++) {
+                for (int x = x0; x < x0 + 48; x++) {
+                    frame.put(y * width + x, (byte) 230);
+                }
+            }
+            result[f] = BenchmarkFrames.direct(width * height);
+            detector.process(frame, width, result[f]);
+        }
+        detector.release();
+        return result;
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.edgeviewer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full frame through each edge engine. Compare parallelism values at the same
+ * resolution for the band-parallel speedup.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class EdgeDetectorBenchmark {
+
+    @Param({"640x480", "1280x720", "1920x1080"})
+    public String resolution;
+
+    @Param({"canny", "canny-blur", "sobel"})
+    public String engine;
+
+    @Param({"1", "4"})
+    public int parallelism;
+
+    // 1 = edge mask for luminance upload, 4 = RGBA
+    @Param({"1", "4"})
+    public int channels;
+
+    private int width;
+    private EdgeDetector detector;
+    private ByteBuffer gray;
+    private ByteBuffer output;
+
+    @Setup
+    public void setup() {
+        width = BenchmarkFrames.width(resolution);
+        int height = BenchmarkFrames.height(resolution);
+        detector = createDetector(engine, parallelism);
+        detector.init(width, height, channels);
+        gray = BenchmarkFrames.yPlane(width, height, width);
+        output = BenchmarkFrames.direct(width * height * channels);
+    }
+
+    @TearDown
+    public void tearDown() {
+        detector.release();
+    }
+
+    @Benchmark
+    public ByteBuffer process() {
+        detector.process(gray, width, output);
+        return output;
+    }
+
+    static EdgeDetector createDetector(String engine, int parallelism) {
+        switch (engine) {
+            case "canny":
+                return new JavaEdgeDetector(JavaEdgeDetector.Mode.CANNY, 50, 150, false, parallelism);
+            case "canny-blur":
+                return new JavaEdgeDetector(JavaEdgeDetector.Mode.CANNY, 50, 150, true, parallelism);
+            case "sobel":
+                return new JavaEdgeDetector(JavaEdgeDetector.Mode.SOBEL, 0, 0, false, parallelism);
+            case "native":
+                // Needs a host libnative-lib.so; run with -PnativeLibDir (see README)
+                return new NativeEdgeDetector(parallelism);
+            case "native-graph": {
+                NativeEdgeDetector detector = new NativeEdgeDetector(parallelism);
+                detector.setFilterGraph(new FilterGraph().blur(5).canny(40, 120).dilate(1).overlay());
+                return detector;
+            }
+            default:
+                throw new IllegalArgumentException("unknown engine " + engine);
+        }
+    }
+}
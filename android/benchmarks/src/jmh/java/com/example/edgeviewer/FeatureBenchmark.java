@@ -0,0 +1,118 @@
+package com.example.edgeviewer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Native Canny with an image out against the same frame reduced to edge
+ * features. rgba is the display path; rgba-copy adds what a consumer of the
+ * image does before it can use it (copy out of the direct buffer, as into a
+ * Bitmap, and scan for edge pixels). The feature modes read every value they
+ * return. Needs a host libnative-lib.so, so only runs with -PnativeLibDir.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class FeatureBenchmark {
+
+    @Param({"640x480", "1280x720"})
+    public String resolution;
+
+    @Param({"rgba", "rgba-copy", "pixels", "contours", "segments", "all"})
+    public String output;
+
+    private int width;
+    private NativeEdgeDetector detector;
+    private ByteBuffer gray;
+    private ByteBuffer rgba;
+    private IntBuffer rgbaInts;
+    private int[] image;
+    private EdgeFeatures features;
+
+    @Setup
+    public void setup() {
+        width = BenchmarkFrames.width(resolution);
+        int height = BenchmarkFrames.height(resolution);
+        detector = new NativeEdgeDetector(1);
+        detector.init(width, height, 4);
+        gray = BenchmarkFrames.yPlane(width, height, width);
+        rgba = BenchmarkFrames.direct(width * height * 4);
+        rgbaInts = rgba.order(ByteOrder.nativeOrder()).asIntBuffer();
+        image = new int[width * height];
+        features = EdgeFeatures.forFrame(width, height);
+        switch (output) {
+            case "pixels":
+                features.setFlags(EdgeFeatures.PIXELS);
+                break;
+            case "contours":
+                features.setFlags(EdgeFeatures.CONTOURS);
+                break;
+            case "segments":
+                features.setFlags(EdgeFeatures.SEGMENTS);
+                break;
+            default:
+                features.setFlags(EdgeFeatures.ALL);
+                break;
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        detector.release();
+        if (output.startsWith("rgba")) {
+            return;
+        }
+        System.out.printf("%n%s: %d pixels, %d contours, %d segments, %d of %d ints%s%n", resolution,
+                features.getPixelCount(), features.getContourCount(), features.getSegmentCount(),
+                features.getUsed(), features.getCapacity(), features.isTruncated() ? ", truncated" : "");
+    }
+
+    @Benchmark
+    public long process() {
+        switch (output) {
+            case "rgba":
+                detector.process(gray, width, rgba);
+                return rgba.get(0);
+            case "rgba-copy": {
+                detector.process(gray, width, rgba);
+                rgbaInts.position(0);
+                rgbaInts.get(image);
+                long edges = 0;
+                for (int pixel : image) {
+                    if ((pixel & 0xff) != 0) {
+                        edges++;
+                    }
+                }
+                return edges;
+            }
+            default: {
+                detector.extractFeatures(gray, width, features);
+                long sum = 0;
+                for (int i = 0, n = features.getPixelCount(); i < n; i++) {
+                    sum += features.getPixelX(i) + features.getPixelY(i);
+                }
+                for (int c = 0, n = features.getContourCount(); c < n; c++) {
+                    for (int i = 0, length = features.getContourLength(c); i < length; i++) {
+                        sum += features.getContourX(c, i) + features.getContourY(c, i);
+                    }
+                }
+                for (int s = 0, n = features.getSegmentCount(); s < n; s++) {
+                    sum += features.getSegmentX0(s) + features.getSegmentY1(s) + features.getSegmentVotes(s);
+                }
+                return sum;
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.edgeviewer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The producer -> renderer handoff behind GLRenderer.updateFrame: acquire a
+ * pooled frame, publish it, and take/release it on the render side.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FrameHandoffBenchmark {
+
+    private FramePool pool;
+
+    @Setup
+    public void setup() {
+        pool = new FramePool(3, 640 * 480 * 4);
+    }
+
+    @Benchmark
+    @Group("roundTrip")
+    public FramePool.Frame roundTrip() {
+        FramePool.Frame frame = pool.acquire();
+        pool.publish(frame);
+        FramePool.Frame taken = pool.takeLatest();
+        taken.release();
+        return taken;
+    }
+
+    @Benchmark
+    @Group("contended")
+    public FramePool.Frame producer() {
+        FramePool.Frame frame = pool.acquire();
+        if (frame != null) {
+            frame.processingMs = 1f;
+            pool.publish(frame);
+        }
+        return frame;
+    }
+
+    @Benchmark
+    @Group("contended")
+    public FramePool.Frame renderer() {
+        FramePool.Frame frame = pool.takeLatest();
+        if (frame != null) {
+            frame.release();
+        }
+        return frame;
+    }
+}
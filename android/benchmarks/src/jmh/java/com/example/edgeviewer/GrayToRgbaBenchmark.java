@@ -0,0 +1,61 @@
+package com.example.edgeviewer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/** Expanding an 8-bit gray/edge plane to RGBA for texture upload. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class GrayToRgbaBenchmark {
+
+    @Param({"640x480", "1280x720", "1920x1080"})
+    public String resolution;
+
+    private int pixels;
+    private ByteBuffer gray;
+    private ByteBuffer rgba;
+    private byte[] grayHeap;
+    private byte[] rgbaHeap;
+
+    @Setup
+    public void setup() {
+        int width = BenchmarkFrames.width(resolution);
+        int height = BenchmarkFrames.height(resolution);
+        pixels = width * height;
+        gray = BenchmarkFrames.yPlane(width, height, width);
+        rgba = BenchmarkFrames.direct(pixels * 4);
+        grayHeap = new byte[pixels];
+        gray.get(grayHeap);
+        gray.position(0);
+        rgbaHeap = new byte[pixels * 4];
+    }
+
+    @Benchmark
+    public byte[] heapBytewise() {
+        for (int i = 0; i < pixels; i++) {
+            byte v = grayHeap[i];
+            int o = i * 4;
+            rgbaHeap[o] = v;
+            rgbaHeap[o + 1] = v;
+            rgbaHeap[o + 2] = v;
+            rgbaHeap[o + 3] = (byte) 255;
+        }
+        return rgbaHeap;
+    }
+
+    @Benchmark
+    public ByteBuffer directPacked() {
+        FrameUtils.grayToRgba(gray, rgba, pixels);
+        return rgba;
+    }
+}
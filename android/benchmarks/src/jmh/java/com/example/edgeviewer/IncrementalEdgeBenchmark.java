@@ -0,0 +1,93 @@
+package com.example.edgeviewer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tile-incremental Canny against the plain Java engine on a static scene with
+ * a small moving object. "full" forces every tile dirty each frame, i.e. the
+ * worst case including the halo overhead.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class IncrementalEdgeBenchmark {
+
+    // Frames per cycle of the moving square
+    private static final int FRAMES = 32;
+
+    @Param({"640x480", "1280x720"})
+    public String resolution;
+
+    @Param({"baseline", "incremental", "full"})
+    public String mode;
+
+    private int width;
+    private EdgeDetector detector;
+    private ByteBuffer[] frames;
+    private ByteBuffer output;
+    private int next;
+
+    @Setup
+    public void setup() {
+        width = BenchmarkFrames.width(resolution);
+        int height = BenchmarkFrames.height(resolution);
+        EdgeDetector inner = new JavaEdgeDetector(JavaEdgeDetector.Mode.CANNY, 50, 150, false, 1);
+        switch (mode) {
+            case "baseline":
+                detector = inner;
+                break;
+            case "incremental":
+                detector = new IncrementalEdgeDetector(inner);
+                break;
+            case "full":
+                // Threshold below zero marks every tile changed
+                detector = new IncrementalEdgeDetector(inner, IncrementalEdgeDetector.DEFAULT_TILE_SIZE,
+                        IncrementalEdgeDetector.DEFAULT_HALO, 0, -1);
+                break;
+            default:
+                throw new IllegalArgumentException("unknown mode " + mode);
+        }
+        detector.init(width, height, 1);
+
+        ByteBuffer background = BenchmarkFrames.yPlane(width, height, width);
+        frames = new ByteBuffer[FRAMES];
+        for (int f = 0; f < FRAMES; f++) {
+            ByteBuffer frame = BenchmarkFrames.direct(width * height);
+            frame.put(background);
+            background.position(0);
+            int x0 = width / 4 + f * 4;
+            int y0 = height / 2;
+            for (int y = y0; y < y0 + 48; y++) {
+                for (int x = x0; x < x0 + 48; x++) {
+                    frame.put(y * width + x, (byte) 230);
+                }
+            }
+            frames[f] = frame;
+        }
+        output = BenchmarkFrames.direct(width * height);
+    }
+
+    @TearDown
+    public void tearDown() {
+        detector.release();
+    }
+
+    @Benchmark
+    public ByteBuffer process() {
+        ByteBuffer frame = frames[next];
+        next = (next + 1) % FRAMES;
+        detector.process(frame, width, output);
+        return output;
+    }
+}
@@ -0,0 +1,182 @@
+package com.example.edgeviewer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The full FrameProcessor pipeline (Java Canny, blocking backpressure so no
+ * frame is dropped) fed by a {@link FrameSource} at maximum speed, one pass of
+ * the source per op. Teardown prints sustained FPS and the per-stage
+ * {@link LatencyStats}. For replay, point -Dedgeviewer.recording at a
+ * directory pulled from a device (recording name "capture", or
+ * -Dedgeviewer.recordingName); without it a synthetic recording is written
+ * first.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PipelineBenchmark {
+
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 480;
+    private static final int SYNTHETIC_FRAMES = 60;
+
+    @Param({"synthetic", "replay", "images"})
+    public String source;
+
+    private FrameSource frameSource;
+    private int framesPerPass;
+    private FrameProcessor processor;
+    private final AtomicLong published = new AtomicLong();
+    private final LatencyStats stats = new LatencyStats();
+    private File tempDir;
+    private long passes;
+    private long passNanos;
+
+    @Setup
+    public void setup() throws IOException, InterruptedException {
+        switch (source) {
+            case "synthetic":
+                frameSource = new SyntheticFrameSource(WIDTH, HEIGHT, 0f, SYNTHETIC_FRAMES);
+                framesPerPass = SYNTHETIC_FRAMES;
+                break;
+            case "replay": {
+                FrameRecording recording;
+                String dir = System.getProperty("edgeviewer.recording");
+                if (dir != null) {
+                    recording = FrameRecording.open(new File(dir), System.getProperty("edgeviewer.recordingName", "capture"));
+                } else {
+                    tempDir = Files.createTempDirectory("pipeline-bench").toFile();
+                    FrameRecorder recorder = new FrameRecorder(tempDir, "synthetic", WIDTH, HEIGHT,
+                            FrameRecorder.DEFAULT_FRAMES_PER_SEGMENT, 0);
+                    generate((plane, n) -> recorder.append(plane, WIDTH, n * 33_333_333L));
+                    recorder.close();
+                    recording = FrameRecording.open(tempDir, "synthetic");
+                }
+                frameSource = new ReplayFrameSource(recording, false, 1);
+                framesPerPass = recording.getFrameCount();
+                break;
+            }
+            case "images":
+                tempDir = Files.createTempDirectory("pipeline-bench").toFile();
+                generate((plane, n) -> writePgm(new File(tempDir,
+                        String.format(Locale.US, "frame-%03d%s", n, ImageDirectoryFrameSource.EXTENSION)), plane));
+                frameSource = ImageDirectoryFrameSource.open(tempDir, 0f, 1);
+                framesPerPass = SYNTHETIC_FRAMES;
+                break;
+            default:
+                throw new IllegalArgumentException(source);
+        }
+
+        int width = frameSource.getWidth();
+        int height = frameSource.getHeight();
+        FramePool output = new FramePool(4, width * height);
+        processor = new FrameProcessor(width, height, 1, output,
+                new JavaEdgeDetector(JavaEdgeDetector.Mode.CANNY, 50, 150, false, 1),
+                (frame, ms) -> {
+                    frame.release();
+                    published.incrementAndGet();
+                },
+                FramePipeline.Backpressure.BLOCK);
+        processor.setStats(stats);
+        processor.start();
+    }
+
+    @TearDown
+    public void tearDown() {
+        processor.stop();
+        if (passes > 0) {
+            double fps = framesPerPass * passes / (passNanos / 1e9);
+            StringBuilder out = new StringBuilder(String.format(Locale.US, "%n%s %dx%d: %.1f fps sustained%n",
+                    source, frameSource.getWidth(), frameSource.getHeight(), fps));
+            out.append(LatencyStats.CSV_HEADER).append('\n');
+            try {
+                LatencyStats.appendCsv(out, System.currentTimeMillis(),
+                        stats.snapshot(LatencyStats.newSnapshots(), false), stats.getDroppedCount());
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+            System.out.print(out);
+        }
+        if (tempDir != null) {
+            for (File f : tempDir.listFiles()) {
+                f.delete();
+            }
+            tempDir.delete();
+        }
+    }
+
+    @Benchmark
+    public long pass() throws InterruptedException {
+        long start = System.nanoTime();
+        long target = published.get() + framesPerPass;
+        frameSource.start(processor::submit);
+        // The last frames are still in the pipeline when the source runs dry
+        while (published.get() < target) {
+            Thread.yield();
+        }
+        frameSource.stop();
+        passNanos += System.nanoTime() - start;
+        passes++;
+        return published.get();
+    }
+
+    private interface FrameWriter {
+        void write(ByteBuffer plane, int index) throws IOException;
+    }
+
+    // Captures SYNTHETIC_FRAMES frames of a SyntheticFrameSource
+    private static void generate(FrameWriter writer) throws IOException, InterruptedException {
+        SyntheticFrameSource synthetic = new SyntheticFrameSource(WIDTH, HEIGHT, 0f, SYNTHETIC_FRAMES);
+        IOException[] error = new IOException[1];
+        int[] index = new int[1];
+        synthetic.start((plane, rowStride, timestampNs, release) -> {
+            try {
+                if (error[0] == null) {
+                    writer.write(plane, index[0]++);
+                }
+            } catch (IOException e) {
+                error[0] = e;
+            } finally {
+                try {
+                    release.close();
+                } catch (Exception ignored) {
+                    // Synthetic buffers never fail to close
+                }
+            }
+            return true;
+        });
+        synthetic.awaitFinished(Long.MAX_VALUE);
+        synthetic.stop();
+        if (error[0] != null) {
+            throw error[0];
+        }
+    }
+
+    private static void writePgm(File file, ByteBuffer plane) throws IOException {
+        byte[] pixels = new byte[WIDTH * HEIGHT];
+        plane.duplicate().get(pixels);
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(("P5\n" + WIDTH + " " + HEIGHT + "\n255\n").getBytes(StandardCharsets.US_ASCII));
+            out.write(pixels);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.edgeviewer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/** Copying the strided camera Y plane into a tightly packed gray frame. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PlaneCopyBenchmark {
+
+    @Param({"640x480", "1280x720", "1920x1080"})
+    public String resolution;
+
+    // Extra bytes per row, as camera HALs pad rows to alignment boundaries
+    @Param({"0", "64"})
+    public int rowPadding;
+
+    private int width;
+    private int height;
+    private int rowStride;
+    private ByteBuffer plane;
+    private ByteBuffer grayDirect;
+    private byte[] grayHeap;
+
+    @Setup
+    public void setup() {
+        width = BenchmarkFrames.width(resolution);
+        height = BenchmarkFrames.height(resolution);
+        rowStride = width + rowPadding;
+        plane = BenchmarkFrames.yPlane(width, height, rowStride);
+        grayDirect = BenchmarkFrames.direct(width * height);
+        grayHeap = new byte[width * height];
+    }
+
+    /** The original processImage loop: per-frame row array, copy into a heap array. */
+    @Benchmark
+    public byte[] heapRowCopy() {
+        plane.position(0);
+        int pos = 0;
+        byte[] rowData = new byte[rowStride];
+        for (int row = 0; row < height; row++) {
+            int bytesToRead = Math.min(rowStride, plane.remaining());
+            plane.get(rowData, 0, bytesToRead);
+            System.arraycopy(rowData, 0, grayHeap, pos, width);
+            pos += width;
+        }
+        return grayHeap;
+    }
+
+    @Benchmark
+    public ByteBuffer directCopyPlane() {
+        FrameUtils.copyPlane(plane, rowStride, grayDirect, width, height);
+        return grayDirect;
+    }
+}
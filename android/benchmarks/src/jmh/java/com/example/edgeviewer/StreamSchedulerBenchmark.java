@@ -0,0 +1,103 @@
+package com.example.edgeviewer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Several synthetic 640x480 streams through one {@link StreamScheduler}, one
+ * single-threaded detector per stream, blocking backpressure so every frame
+ * is processed. One op is a pass of FRAMES frames per stream. Teardown prints
+ * the aggregate FPS and each stream's share, drops and p99 latency; compare
+ * workers at the same stream count for the scaling across cores.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class StreamSchedulerBenchmark {
+
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 480;
+    private static final int FRAMES = 30;
+
+    @Param({"1", "4"})
+    public int streams;
+
+    @Param({"1", "2", "4"})
+    public int workers;
+
+    @Param({"canny"})
+    public String engine;
+
+    private StreamScheduler scheduler;
+    private SyntheticFrameSource[] sources;
+    private final AtomicLong published = new AtomicLong();
+    private long passes;
+    private long passNanos;
+
+    @Setup
+    public void setup() {
+        scheduler = new StreamScheduler(workers, 2, FramePipeline.Backpressure.BLOCK,
+                (stream, frame, ms) -> {
+                    frame.release();
+                    published.incrementAndGet();
+                });
+        sources = new SyntheticFrameSource[streams];
+        for (int i = 0; i < streams; i++) {
+            scheduler.addStream("synthetic-" + i, WIDTH, HEIGHT, 1,
+                    EdgeDetectorBenchmark.createDetector(engine, 1), 2, 2);
+            sources[i] = new SyntheticFrameSource(WIDTH, HEIGHT, 0f, FRAMES);
+        }
+        scheduler.start();
+    }
+
+    @TearDown
+    public void tearDown() {
+        scheduler.stop();
+        if (passes == 0) {
+            return;
+        }
+        double fps = (double) FRAMES * streams * passes / (passNanos / 1e9);
+        StringBuilder out = new StringBuilder(String.format(Locale.US,
+                "%n%d streams, %d workers: %.1f fps total%n", streams, workers, fps));
+        LatencyHistogram.Snapshot latency = new LatencyHistogram.Snapshot();
+        List<StreamScheduler.Stream> all = scheduler.getStreams();
+        for (StreamScheduler.Stream stream : all) {
+            stream.getLatencyHistogram().snapshot(latency, false);
+            out.append(String.format(Locale.US, "  %-12s processed %d, dropped %d, p99 latency %.2f ms%n",
+                    stream.getName(), stream.getProcessedCount(), stream.getDroppedCount(),
+                    latency.getPercentileNs(99) / 1e6));
+        }
+        System.out.print(out);
+    }
+
+    @Benchmark
+    public long pass() {
+        long start = System.nanoTime();
+        long target = published.get() + (long) FRAMES * streams;
+        List<StreamScheduler.Stream> all = scheduler.getStreams();
+        for (int i = 0; i < streams; i++) {
+            sources[i].start(all.get(i));
+        }
+        while (published.get() < target) {
+            Thread.yield();
+        }
+        for (SyntheticFrameSource source : sources) {
+            source.stop();
+        }
+        passNanos += System.nanoTime() - start;
+        passes++;
+        return published.get();
+    }
+}
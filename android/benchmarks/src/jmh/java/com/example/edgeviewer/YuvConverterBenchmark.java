@@ -0,0 +1,123 @@
+package com.example.edgeviewer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * YUV_420_888 to RGBA in the layouts cameras deliver: planar (I420, pixel
+ * stride 1) and semi-planar with u first (NV12) or v first (NV21), all with
+ * padded rows. Setup converts every layout with JavaYuvConverter and fails if
+ * any differs from the planar result or from the converter being timed.
+ * -PnativeLibDir adds the native converter.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class YuvConverterBenchmark {
+
+    private static final String[] LAYOUTS = {"planar", "nv12", "nv21"};
+
+    @Param({"640x480", "1280x720", "1920x1080"})
+    public String resolution;
+
+    @Param({"planar", "nv12", "nv21"})
+    public String layout;
+
+    @Param({"java"})
+    public String converter;
+
+    private int width;
+    private int height;
+    private int rowStride;
+    private YuvConverter yuv;
+    private ByteBuffer y;
+    private Planes planes;
+    private ByteBuffer rgba;
+
+    // Chroma planes of one layout over the same samples
+    private static final class Planes {
+        ByteBuffer u;
+        ByteBuffer v;
+        int rowStride;
+        int pixelStride;
+    }
+
+    @Setup
+    public void setup() {
+        width = BenchmarkFrames.width(resolution);
+        height = BenchmarkFrames.height(resolution);
+        rowStride = (width + 63) & ~63;
+        yuv = "native".equals(converter) ? new NativeYuvConverter() : new JavaYuvConverter();
+        y = BenchmarkFrames.yPlane(width, height, rowStride);
+        planes = layout(layout);
+        rgba = BenchmarkFrames.direct(width * height * 4);
+
+        ByteBuffer reference = convert(new JavaYuvConverter(), layout("planar"));
+        for (String other : LAYOUTS) {
+            if (!convert(new JavaYuvConverter(), layout(other)).equals(reference)) {
+                throw new IllegalStateException("java " + other + " differs from planar");
+            }
+        }
+        if (!convert(yuv, planes).equals(reference)) {
+            throw new IllegalStateException(converter + " " + layout + " differs from java");
+        }
+    }
+
+    private ByteBuffer convert(YuvConverter c, Planes p) {
+        ByteBuffer out = BenchmarkFrames.direct(width * height * 4);
+        c.toRgba(y, rowStride, p.u, p.v, 0, p.rowStride, p.pixelStride, true, width, height, out);
+        return out;
+    }
+
+    // Random chroma with every layout holding the same samples; like camera
+    // planes, each buffer ends at its last sample
+    private Planes layout(String name) {
+        int uvWidth = (width + 1) / 2;
+        int uvHeight = (height + 1) / 2;
+        Planes p = new Planes();
+        p.pixelStride = "planar".equals(name) ? 1 : 2;
+        p.rowStride = "planar".equals(name) ? rowStride / 2 : rowStride;
+        int planeBytes = (uvHeight - 1) * p.rowStride + (uvWidth - 1) * p.pixelStride + 1;
+        ByteBuffer first;
+        ByteBuffer second;
+        if (p.pixelStride == 1) {
+            first = BenchmarkFrames.direct(planeBytes);
+            second = BenchmarkFrames.direct(planeBytes);
+        } else {
+            ByteBuffer interleaved = BenchmarkFrames.direct(planeBytes + 1);
+            interleaved.position(1);
+            second = interleaved.slice();
+            interleaved.position(0);
+            interleaved.limit(planeBytes);
+            first = interleaved.slice();
+        }
+        p.u = "nv21".equals(name) ? second : first;
+        p.v = "nv21".equals(name) ? first : second;
+        Random random = new Random(7);
+        for (int row = 0; row < uvHeight; row++) {
+            for (int x = 0; x < uvWidth; x++) {
+                int i = row * p.rowStride + x * p.pixelStride;
+                p.u.put(i, (byte) random.nextInt(256));
+                p.v.put(i, (byte) random.nextInt(256));
+            }
+        }
+        return p;
+    }
+
+    @Benchmark
+    public ByteBuffer toRgba() {
+        yuv.toRgba(y, rowStride, planes.u, planes.v, 0, planes.rowStride, planes.pixelStride, true,
+                width, height, rgba);
+        return rgba;
+    }
+}
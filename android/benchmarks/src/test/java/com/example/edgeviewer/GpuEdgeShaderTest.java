@@ -0,0 +1,160 @@
+package com.example.edgeviewer;
+
+import static org.junit.Assert.assertTrue;
+import static org.lwjgl.opengles.GLES20.*;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Random;
+
+import org.junit.AfterClass;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Runs {@link EdgeShaders} on a real GLES 2 implementation (Mesa llvmpipe on
+ * CI) the way GpuEdgePass does, and compares the mask with
+ * {@link GpuEdgeReference}. Skipped where there is no EGL.
+ */
+public class GpuEdgeShaderTest {
+
+    private static final float[] FULL_QUAD = {-1f, -1f, 1f, -1f, -1f, 1f, 1f, 1f};
+    private static final float[] IDENTITY_TEX_COORDS = {0f, 0f, 1f, 0f, 0f, 1f, 1f, 1f};
+    private static final int THRESHOLD = 100;
+
+    private static HeadlessGl gl;
+
+    @BeforeClass
+    public static void openGl() {
+        try {
+            gl = HeadlessGl.open();
+        } catch (Throwable t) {
+            Assume.assumeNoException("No headless EGL / GLES 2 on this host", t);
+        }
+    }
+
+    @AfterClass
+    public static void closeGl() {
+        if (gl != null) {
+            gl.close();
+        }
+    }
+
+    @Test
+    public void matchesReferenceAtVga() {
+        checkAgainstReference(640, 480);
+    }
+
+    // Wide enough that mediump texel offsets or linear taps would go wrong
+    @Test
+    public void matchesReferenceAtFullHd() {
+        checkAgainstReference(1920, 1080);
+    }
+
+    private static void checkAgainstReference(int width, int height) {
+        byte[] gray = scene(width, height);
+        byte[] expected = new byte[width * height];
+        new GpuEdgeReference(width, height).process(gray, EdgeShaders.threshold(THRESHOLD), expected);
+
+        byte[] actual = render(gray, width, height);
+
+        int edges = 0;
+        int mismatches = 0;
+        for (int i = 0; i < expected.length; i++) {
+            if (expected[i] != 0) {
+                edges++;
+            }
+            if (expected[i] != actual[i]) {
+                mismatches++;
+            }
+        }
+        assertTrue("scene has too few edges: " + edges, edges > width);
+        // Ties at a neighbour's magnitude or the threshold may round either way
+        assertTrue(mismatches + " of " + edges + " edge pixels differ at " + width + "x" + height,
+                mismatches <= edges / 500 + 4);
+    }
+
+    private static byte[] render(byte[] gray, int width, int height) {
+        FramePool pool = new FramePool(2, width * height);
+        FramePool.Frame frame = pool.acquire();
+        frame.buffer.put(gray).position(0);
+        frame.width = width;
+        frame.height = height;
+        frame.channels = 1;
+        frame.raw = true;
+        FrameTexture source = new FrameTexture(new LwjglTextureApi());
+        source.create();
+        source.upload(frame);
+        frame.release();
+
+        int sobel = HeadlessGl.createProgram(EdgeShaders.VERTEX, EdgeShaders.SOBEL_FRAGMENT);
+        int suppress = HeadlessGl.createProgram(EdgeShaders.VERTEX, EdgeShaders.SUPPRESS_FRAGMENT);
+        FloatBuffer quad = HeadlessGl.floatBuffer(FULL_QUAD);
+        FloatBuffer texCoords = HeadlessGl.floatBuffer(IDENTITY_TEX_COORDS);
+        int[] gradient = HeadlessGl.createTarget(width, height);
+        int[] mask = HeadlessGl.createTarget(width, height);
+
+        glBindFramebuffer(GL_FRAMEBUFFER, gradient[0]);
+        glViewport(0, 0, width, height);
+        glUseProgram(sobel);
+        glUniform1i(glGetUniformLocation(sobel, "uTexture"), 0);
+        glUniform2f(glGetUniformLocation(sobel, "uTexelSize"), 1f / width, 1f / height);
+        source.bind(GlTextureApi.FILTER_NEAREST);
+        HeadlessGl.drawQuad(quad, texCoords);
+
+        glBindFramebuffer(GL_FRAMEBUFFER, mask[0]);
+        glUseProgram(suppress);
+        glUniform1i(glGetUniformLocation(suppress, "uGradient"), 0);
+        glUniform2f(glGetUniformLocation(suppress, "uTexelSize"), 1f / width, 1f / height);
+        glUniform1f(glGetUniformLocation(suppress, "uThreshold"), EdgeShaders.threshold(THRESHOLD));
+        glBindTexture(GL_TEXTURE_2D, gradient[1]);
+        HeadlessGl.drawQuad(quad, texCoords);
+
+        // Texture row 0 went to window row 0, which glReadPixels returns first
+        ByteBuffer rgba = ByteBuffer.allocateDirect(width * height * 4).order(ByteOrder.nativeOrder());
+        glReadPixels(0, 0, width, height, GL_RGBA, GL_UNSIGNED_BYTE, rgba);
+        assertTrue("GL error 0x" + Integer.toHexString(glGetError()), glGetError() == GL_NO_ERROR);
+
+        glBindFramebuffer(GL_FRAMEBUFFER, 0);
+        glDeleteFramebuffers(gradient[0]);
+        glDeleteFramebuffers(mask[0]);
+        glDeleteTextures(gradient[1]);
+        glDeleteTextures(mask[1]);
+        glDeleteProgram(sobel);
+        glDeleteProgram(suppress);
+        source.destroy();
+
+        byte[] out = new byte[width * height];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = rgba.get(i * 4);
+        }
+        return out;
+    }
+
+    // Discs, bars and a ramp under light noise: edges in every direction
+    private static byte[] scene(int width, int height) {
+        Random random = new Random(9);
+        byte[] gray = new byte[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int v = 40 + 60 * x / width;
+                int dx = x - width / 3;
+                int dy = y - height / 2;
+                if (dx * dx + dy * dy < (height / 4) * (height / 4)) {
+                    v = 200;
+                }
+                if (x > width * 2 / 3 && (y / (height / 12)) % 2 == 0) {
+                    v = 170;
+                }
+                if (Math.abs((x - width / 2) - (y - height / 4)) < 3) {
+                    v = 15;
+                }
+                v += random.nextInt(7) - 3;
+                gray[y * width + x] = (byte) Math.max(0, Math.min(255, v));
+            }
+        }
+        return gray;
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.edgeviewer;
+
+import static org.lwjgl.opengles.GLES20.*;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+import org.lwjgl.PointerBuffer;
+import org.lwjgl.egl.EGL;
+import org.lwjgl.egl.EGL10;
+import org.lwjgl.egl.EGL12;
+import org.lwjgl.egl.EGL14;
+import org.lwjgl.egl.EGL15;
+import org.lwjgl.opengles.GLES;
+import org.lwjgl.system.MemoryStack;
+
+/**
+ * An OpenGL ES 2 context on an EGL pbuffer, for running the app's shaders on
+ * a desktop GL such as Mesa's llvmpipe without a window. {@link #open} throws
+ * if the host has no usable libEGL / libGLESv2; tests skip themselves then.
+ */
+final class HeadlessGl implements AutoCloseable {
+
+    private static final long EGL_DEFAULT_DISPLAY = 0L;
+    private static final int EGL_PLATFORM_SURFACELESS_MESA = 0x31DD;
+
+    static final int ATTRIB_POSITION = 0;
+    static final int ATTRIB_TEX_COORD = 1;
+
+    final long display;
+    final long config;
+    final long context;
+    private final long pbuffer;
+
+    private static boolean eglLoaded;
+
+    private HeadlessGl(long display, long config, long context, long pbuffer) {
+        this.display = display;
+        this.config = config;
+        this.context = context;
+        this.pbuffer = pbuffer;
+    }
+
+    /** Creates the context and makes it current on the calling thread. */
+    static HeadlessGl open() {
+        loadEgl();
+        long display = openDisplay();
+        if (display == EGL10.EGL_NO_DISPLAY || !EGL10.eglInitialize(display, (int[]) null, null)) {
+            throw new IllegalStateException("No EGL display: 0x" + Integer.toHexString(EGL10.eglGetError()));
+        }
+        EGL12.eglBindAPI(EGL14.EGL_OPENGL_ES_API);
+        long config = chooseConfig(display);
+        long context = EGL10.eglCreateContext(display, config, EGL10.EGL_NO_CONTEXT,
+                new int[]{EGL14.EGL_CONTEXT_CLIENT_VERSION, 2, EGL10.EGL_NONE});
+        if (context == EGL10.EGL_NO_CONTEXT) {
+            EGL10.eglTerminate(display);
+            throw new IllegalStateException("No ES2 context: 0x" + Integer.toHexString(EGL10.eglGetError()));
+        }
+        long pbuffer = createPbuffer(display, config, 1, 1);
+        if (!EGL10.eglMakeCurrent(display, pbuffer, pbuffer, context)) {
+            EGL10.eglTerminate(display);
+            throw new IllegalStateException("eglMakeCurrent: 0x" + Integer.toHexString(EGL10.eglGetError()));
+        }
+        GLES.createCapabilities();
+        return new HeadlessGl(display, config, context, pbuffer);
+    }
+
+    // Once per JVM: a second EGL.create() throws, which would skip every later test class
+    static synchronized void loadEgl() {
+        if (!eglLoaded) {
+            EGL.create();
+            eglLoaded = true;
+        }
+    }
+
+    // Surfaceless needs no X or Wayland server; other drivers take the default display
+    static long openDisplay() {
+        long display = EGL10.EGL_NO_DISPLAY;
+        try {
+            display = EGL15.eglGetPlatformDisplay(EGL_PLATFORM_SURFACELESS_MESA, EGL_DEFAULT_DISPLAY,
+                    (PointerBuffer) null);
+        } catch (RuntimeException e) {
+            // EGL below 1.5
+        }
+        if (display == EGL10.EGL_NO_DISPLAY) {
+            display = EGL10.eglGetDisplay(EGL_DEFAULT_DISPLAY);
+        }
+        return display;
+    }
+
+    static long chooseConfig(long display) {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            PointerBuffer configs = stack.mallocPointer(1);
+            int[] count = new int[1];
+            int[] attribs = {
+                    EGL10.EGL_RED_SIZE, 8,
+                    EGL10.EGL_GREEN_SIZE, 8,
+                    EGL10.EGL_BLUE_SIZE, 8,
+                    EGL10.EGL_ALPHA_SIZE, 8,
+                    EGL12.EGL_RENDERABLE_TYPE, EGL14.EGL_OPENGL_ES2_BIT,
+                    EGL10.EGL_SURFACE_TYPE, EGL10.EGL_PBUFFER_BIT,
+                    EGL10.EGL_NONE
+            };
+            if (!EGL10.eglChooseConfig(display, attribs, configs, count) || count[0] == 0) {
+                EGL10.eglTerminate(display);
+                throw new IllegalStateException("No RGBA8 ES2 pbuffer config");
+            }
+            return configs.get(0);
+        }
+    }
+
+    static long createPbuffer(long display, long config, int width, int height) {
+        return EGL10.eglCreatePbufferSurface(display, config,
+                new int[]{EGL10.EGL_WIDTH, width, EGL10.EGL_HEIGHT, height, EGL10.EGL_NONE});
+    }
+
+    @Override
+    public void close() {
+        EGL10.eglMakeCurrent(display, EGL10.EGL_NO_SURFACE, EGL10.EGL_NO_SURFACE, EGL10.EGL_NO_CONTEXT);
+        EGL10.eglDestroySurface(display, pbuffer);
+        EGL10.eglDestroyContext(display, context);
+        EGL10.eglTerminate(display);
+    }
+
+    // Same attribute slots as GlUtil
+    static int createProgram(String vertexCode, String fragmentCode) {
+        int program = glCreateProgram();
+        int vertexShader = compile(GL_VERTEX_SHADER, vertexCode);
+        int fragmentShader = compile(GL_FRAGMENT_SHADER, fragmentCode);
+        glAttachShader(program, vertexShader);
+        glAttachShader(program, fragmentShader);
+        glBindAttribLocation(program, ATTRIB_POSITION, "aPosition");
+        glBindAttribLocation(program, ATTRIB_TEX_COORD, "aTexCoord");
+        glLinkProgram(program);
+        glDeleteShader(vertexShader);
+        glDeleteShader(fragmentShader);
+        if (glGetProgrami(program, GL_LINK_STATUS) == 0) {
+            throw new IllegalStateException("Program link failed: " + glGetProgramInfoLog(program));
+        }
+        return program;
+    }
+
+    private static int compile(int type, String code) {
+        int shader = glCreateShader(type);
+        glShaderSource(shader, code);
+        glCompileShader(shader);
+        if (glGetShaderi(shader, GL_COMPILE_STATUS) == 0) {
+            throw new IllegalStateException("Shader compile failed: " + glGetShaderInfoLog(shader));
+        }
+        return shader;
+    }
+
+    static FloatBuffer floatBuffer(float[] values) {
+        FloatBuffer buffer = ByteBuffer.allocateDirect(values.length * 4)
+                .order(ByteOrder.nativeOrder())
+                .asFloatBuffer();
+        buffer.put(values).position(0);
+        return buffer;
+    }
+
+    static void drawQuad(FloatBuffer vertices, FloatBuffer texCoords) {
+        glEnableVertexAttribArray(ATTRIB_POSITION);
+        glVertexAttribPointer(ATTRIB_POSITION, 2, GL_FLOAT, false, 0, vertices);
+        glEnableVertexAttribArray(ATTRIB_TEX_COORD);
+        glVertexAttribPointer(ATTRIB_TEX_COORD, 2, GL_FLOAT, false, 0, texCoords);
+        glDrawArrays(GL_TRIANGLE_STRIP, 0, 4);
+        glDisableVertexAttribArray(ATTRIB_POSITION);
+        glDisableVertexAttribArray(ATTRIB_TEX_COORD);
+    }
+
+    /** An RGBA8 texture with nearest filtering attached to a new framebuffer, left bound. */
+    static int[] createTarget(int width, int height) {
+        int texture = glGenTextures();
+        glBindTexture(GL_TEXTURE_2D, texture);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_NEAREST);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_NEAREST);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_S, GL_CLAMP_TO_EDGE);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_T, GL_CLAMP_TO_EDGE);
+        glTexImage2D(GL_TEXTURE_2D, 0, GL_RGBA, width, height, 0, GL_RGBA, GL_UNSIGNED_BYTE, (ByteBuffer) null);
+        int framebuffer = glGenFramebuffers();
+        glBindFramebuffer(GL_FRAMEBUFFER, framebuffer);
+        glFramebufferTexture2D(GL_FRAMEBUFFER, GL_COLOR_ATTACHMENT0, GL_TEXTURE_2D, texture, 0);
+        int status = glCheckFramebufferStatus(GL_FRAMEBUFFER);
+        if (status != GL_FRAMEBUFFER_COMPLETE) {
+            throw new IllegalStateException("Framebuffer incomplete: 0x" + Integer.toHexString(status));
+        }
+        return new int[]{framebuffer, texture};
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.edgeviewer;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.lwjgl.egl.EGL10;
+import org.lwjgl.egl.EGL12;
+import org.lwjgl.egl.EGL14;
+import org.lwjgl.opengles.GLES;
+
+/**
+ * {@link EglApi} on a desktop EGL through LWJGL, as {@link HeadlessGl} sets it
+ * up. There are no windows, so a window surface is a pbuffer of the size the
+ * window object gives. Swaps are real; lost surfaces and contexts are injected
+ * with {@link #loseOnNextSwap}, since a pbuffer cannot go away by itself.
+ * Failed EGL calls are collected in {@link #errors}.
+ */
+final class LwjglEglApi implements EglApi {
+
+    /** What {@link #createWindowSurface} takes: the size of the pbuffer standing in for it. */
+    static final class Window {
+        final int width;
+        final int height;
+
+        Window(int width, int height) {
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    final List<String> errors = new ArrayList<>();
+    private final AtomicInteger nextSwap = new AtomicInteger(SWAP_OK);
+    private final Set<Long> surfaces = new HashSet<>();
+    private final Set<Long> windowSurfaces = new HashSet<>();
+
+    private long display = EGL10.EGL_NO_DISPLAY;
+    private long config;
+    private long context = EGL10.EGL_NO_CONTEXT;
+    private boolean capabilities;
+
+    @Override
+    public synchronized boolean createContext() {
+        HeadlessGl.loadEgl();
+        display = HeadlessGl.openDisplay();
+        if (display == EGL10.EGL_NO_DISPLAY || !EGL10.eglInitialize(display, (int[]) null, null)) {
+            error("eglInitialize");
+            return false;
+        }
+        EGL12.eglBindAPI(EGL14.EGL_OPENGL_ES_API);
+        config = HeadlessGl.chooseConfig(display);
+        context = EGL10.eglCreateContext(display, config, EGL10.EGL_NO_CONTEXT,
+                new int[]{EGL14.EGL_CONTEXT_CLIENT_VERSION, 2, EGL10.EGL_NONE});
+        if (context == EGL10.EGL_NO_CONTEXT) {
+            error("eglCreateContext");
+            EGL10.eglTerminate(display);
+            return false;
+        }
+        capabilities = false;
+        return true;
+    }
+
+    @Override
+    public synchronized Object createWindowSurface(Object window) {
+        Window w = (Window) window;
+        Long surface = pbuffer(w.width, w.height);
+        if (surface != null) {
+            windowSurfaces.add(surface);
+        }
+        return surface;
+    }
+
+    @Override
+    public synchronized Object createPbufferSurface(int width, int height) {
+        return pbuffer(width, height);
+    }
+
+    private Long pbuffer(int width, int height) {
+        long surface = HeadlessGl.createPbuffer(display, config, width, height);
+        if (surface == EGL10.EGL_NO_SURFACE) {
+            error("eglCreatePbufferSurface");
+            return null;
+        }
+        surfaces.add(surface);
+        return surface;
+    }
+
+    @Override
+    public synchronized boolean makeCurrent(Object surface) {
+        long s = (Long) surface;
+        if (!EGL10.eglMakeCurrent(display, s, s, context)) {
+            error("eglMakeCurrent");
+            return false;
+        }
+        // GL entry points are per thread and per context
+        if (!capabilities) {
+            GLES.createCapabilities();
+            capabilities = true;
+        }
+        return true;
+    }
+
+    @Override
+    public int swapBuffers(Object surface) {
+        int injected = nextSwap.getAndSet(SWAP_OK);
+        synchronized (this) {
+            if (!EGL10.eglSwapBuffers(display, (Long) surface)) {
+                error("eglSwapBuffers");
+                return SWAP_SURFACE_LOST;
+            }
+        }
+        return injected;
+    }
+
+    @Override
+    public synchronized void destroySurface(Object surface) {
+        long s = (Long) surface;
+        if (!surfaces.remove(s)) {
+            errors.add("destroySurface on an unknown surface");
+        }
+        windowSurfaces.remove(s);
+        if (!EGL10.eglDestroySurface(display, s)) {
+            error("eglDestroySurface");
+        }
+    }
+
+    @Override
+    public synchronized void destroyContext() {
+        if (!surfaces.isEmpty()) {
+            errors.add("context destroyed with " + surfaces.size() + " surfaces alive");
+        }
+        EGL10.eglMakeCurrent(display, EGL10.EGL_NO_SURFACE, EGL10.EGL_NO_SURFACE, EGL10.EGL_NO_CONTEXT);
+        if (!EGL10.eglDestroyContext(display, context)) {
+            error("eglDestroyContext");
+        }
+        context = EGL10.EGL_NO_CONTEXT;
+        EGL10.eglTerminate(display);
+        display = EGL10.EGL_NO_DISPLAY;
+    }
+
+    /** Makes the next swap report result (one of the SWAP_* values) after swapping. */
+    void loseOnNextSwap(int result) {
+        nextSwap.set(result);
+    }
+
+    synchronized int surfaceCount() {
+        return surfaces.size();
+    }
+
+    synchronized int windowSurfaceCount() {
+        return windowSurfaces.size();
+    }
+
+    synchronized boolean hasContext() {
+        return context != EGL10.EGL_NO_CONTEXT;
+    }
+
+    private void error(String call) {
+        errors.add(call + ": 0x" + Integer.toHexString(EGL10.eglGetError()));
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.edgeviewer;
+
+import static org.lwjgl.opengles.GLES20.*;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
+/** {@link GlTextureApi} on LWJGL's GLES bindings, the desktop twin of Gles20TextureApi. */
+class LwjglTextureApi implements GlTextureApi {
+
+    @Override
+    public int createTexture() {
+        int texture = glGenTextures();
+        glBindTexture(GL_TEXTURE_2D, texture);
+        setFilter(FILTER_LINEAR);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_S, GL_CLAMP_TO_EDGE);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_T, GL_CLAMP_TO_EDGE);
+        return texture;
+    }
+
+    @Override
+    public void deleteTexture(int textureId) {
+        glDeleteTextures(textureId);
+    }
+
+    @Override
+    public void bindTexture(int textureId) {
+        glBindTexture(GL_TEXTURE_2D, textureId);
+    }
+
+    @Override
+    public void setFilter(int filter) {
+        int glFilter = filter == FILTER_NEAREST ? GL_NEAREST : GL_LINEAR;
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, glFilter);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, glFilter);
+    }
+
+    @Override
+    public void allocate(int format, int width, int height) {
+        int glFormat = glFormat(format);
+        glTexImage2D(GL_TEXTURE_2D, 0, glFormat, width, height, 0, glFormat, GL_UNSIGNED_BYTE, (ByteBuffer) null);
+    }
+
+    @Override
+    public void upload(int format, int width, int height, Buffer pixels) {
+        glPixelStorei(GL_UNPACK_ALIGNMENT, format == FORMAT_RGBA ? 4 : 1);
+        glTexSubImage2D(GL_TEXTURE_2D, 0, 0, 0, width, height, glFormat(format), GL_UNSIGNED_BYTE,
+                (ByteBuffer) pixels);
+    }
+
+    private static int glFormat(int format) {
+        return format == FORMAT_RGBA ? GL_RGBA : GL_LUMINANCE;
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.edgeviewer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.lwjgl.opengles.GLES20.*;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.lwjgl.BufferUtils;
+
+/**
+ * {@link RenderThread}'s context and surface lifecycle on a real EGL (Mesa on
+ * CI) through {@link LwjglEglApi}: the renderer's texture must outlive a lost
+ * surface and be rebuilt after a lost context, with every frame drawn and
+ * read back from the current surface. Skipped where there is no EGL.
+ */
+public class RenderThreadEglTest {
+
+    /** Clears each frame to green and reads it back; anything unexpected goes to problems. */
+    private static final class ClearRenderer implements RenderThread.Renderer {
+        final List<String> problems = new ArrayList<>();
+        final AtomicInteger created = new AtomicInteger();
+        final AtomicInteger destroyed = new AtomicInteger();
+        final AtomicInteger shown = new AtomicInteger();
+        private final ByteBuffer pixel = BufferUtils.createByteBuffer(4);
+        private int texture;
+
+        @Override
+        public void onContextCreated() {
+            texture = glGenTextures();
+            glBindTexture(GL_TEXTURE_2D, texture);
+            glTexImage2D(GL_TEXTURE_2D, 0, GL_RGBA, 1, 1, 0, GL_RGBA, GL_UNSIGNED_BYTE, (ByteBuffer) null);
+            check("onContextCreated");
+            created.incrementAndGet();
+        }
+
+        @Override
+        public boolean onDraw(int work) {
+            if (!glIsTexture(texture)) {
+                problem("texture " + texture + " gone while drawing");
+            }
+            glClearColor(0f, 1f, 0f, 1f);
+            glClear(GL_COLOR_BUFFER_BIT);
+            glReadPixels(0, 0, 1, 1, GL_RGBA, GL_UNSIGNED_BYTE, pixel);
+            if ((pixel.get(1) & 0xFF) != 255 || pixel.get(0) != 0) {
+                problem("read back " + (pixel.get(0) & 0xFF) + "," + (pixel.get(1) & 0xFF));
+            }
+            check("onDraw");
+            return true;
+        }
+
+        @Override
+        public void onFrameShown(long nowNs, long resumeNs) {
+            shown.incrementAndGet();
+        }
+
+        @Override
+        public void onContextDestroyed() {
+            glDeleteTextures(texture);
+            check("onContextDestroyed");
+            destroyed.incrementAndGet();
+        }
+
+        private void check(String where) {
+            int error = glGetError();
+            if (error != GL_NO_ERROR) {
+                problem(where + ": GL error 0x" + Integer.toHexString(error));
+            }
+        }
+
+        private synchronized void problem(String message) {
+            problems.add(message);
+        }
+    }
+
+    @BeforeClass
+    public static void checkEgl() {
+        try {
+            HeadlessGl.open().close();
+        } catch (Throwable t) {
+            Assume.assumeNoException("No headless EGL / GLES 2 on this host", t);
+        }
+    }
+
+    @Test(timeout = 20_000)
+    public void survivesLostSurfaceAndLostContext() throws Exception {
+        LwjglEglApi egl = new LwjglEglApi();
+        RenderScheduler scheduler = new RenderScheduler();
+        ClearRenderer renderer = new ClearRenderer();
+        RenderThread thread = new RenderThread(egl, scheduler, renderer);
+        try {
+            thread.start();
+            awaitTrue(() -> thread.getContextsCreated() == 1);
+            thread.attachWindow(new LwjglEglApi.Window(64, 48));
+            awaitTrue(() -> renderer.shown.get() > 0);
+            awaitIdle(renderer);
+
+            // The window goes away under the thread: back on the pbuffer, same context
+            egl.loseOnNextSwap(EglApi.SWAP_SURFACE_LOST);
+            scheduler.signalFrame();
+            awaitTrue(() -> egl.windowSurfaceCount() == 0);
+            thread.detachWindow();
+            int beforeAttach = renderer.shown.get();
+            thread.attachWindow(new LwjglEglApi.Window(32, 32));
+            awaitTrue(() -> renderer.shown.get() > beforeAttach);
+            assertEquals(1, thread.getContextsCreated());
+            assertEquals(1, renderer.created.get());
+            awaitIdle(renderer);
+
+            // The context goes: new context and texture, back on the same window
+            int beforeLoss = renderer.shown.get();
+            egl.loseOnNextSwap(EglApi.SWAP_CONTEXT_LOST);
+            scheduler.signalFrame();
+            awaitTrue(() -> thread.getContextsCreated() == 2 && renderer.shown.get() > beforeLoss);
+            assertEquals(2, renderer.created.get());
+            assertEquals(1, egl.windowSurfaceCount());
+            int beforeSwap = renderer.shown.get();
+            scheduler.signalFrame();
+            awaitTrue(() -> renderer.shown.get() > beforeSwap);
+            assertFalse(thread.hasFailed());
+        } finally {
+            thread.release();
+        }
+        assertEquals(1, renderer.destroyed.get());
+        assertEquals(0, egl.surfaceCount());
+        assertFalse(egl.hasContext());
+        synchronized (egl) {
+            assertEquals(egl.errors.toString(), 0, egl.errors.size());
+        }
+        synchronized (renderer) {
+            assertEquals(renderer.problems.toString(), 0, renderer.problems.size());
+        }
+    }
+
+    // An attach may be followed by one redraw for the surface change; let it pass
+    private static void awaitIdle(ClearRenderer renderer) throws InterruptedException {
+        int shown;
+        do {
+            shown = renderer.shown.get();
+            Thread.sleep(50);
+        } while (renderer.shown.get() != shown);
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline);
+            Thread.sleep(1);
+        }
+    }
+}
@@ -1,12 +1,243 @@
 "use strict";
 var img = document.getElementById("frame");
+var canvas = document.getElementById("live");
 var stats = document.getElementById("stats");
-// Placeholder: you will save a processed frame screenshot as sample-frame.png
-// and put it next to index.js in the dist folder.
+var deviceInput = document.getElementById("device");
+var connectButton = document.getElementById("connect");
+// Shown until a device stream delivers its first frame
 img.src = "./sample-frame1.png";
-var fps = 15;
-var resolution = "640x480";
+// Must match FrameStreamer and EdgeCodec on the device
+var MAGIC = 0x45; // 'E'
+var HEADER_BYTES = 24;
+var ENCODING_GRAY = 0;
+var ENCODING_RLE = 1;
+var ENCODING_BITPACK = 2;
+var ENCODING_DELTA = 3;
+var DEFAULT_PORT = 8765;
+var MAX_BACKOFF_MS = 8000;
+var ctx = canvas.getContext("2d");
+var image = null;
+// Last decoded edge mask, one 0/1 byte per pixel; delta packets apply to it
+var mask = new Uint8Array(0);
+var haveMask = false;
+var socket = null;
+var backoffMs = 500;
+var reconnectTimer = 0;
+var header = null;
+var serverStats = null;
+var lastSequence = -1;
+var gaps = 0;
+var framesThisSecond = 0;
+var bytesThisSecond = 0;
+var receivedFps = 0;
+var kbps = 0;
+var status = "not connected";
+function deviceAddress() {
+    var fromQuery = new URLSearchParams(window.location.search).get("device");
+    var saved = window.localStorage.getItem("edgeviewer.device");
+    return fromQuery || saved || "".concat(window.location.hostname || "127.0.0.1", ":").concat(DEFAULT_PORT);
+}
+function connect(address) {
+    window.clearTimeout(reconnectTimer);
+    if (socket) {
+        socket.onclose = null;
+        socket.close();
+    }
+    var host = address.indexOf(":") >= 0 ? address : "".concat(address, ":").concat(DEFAULT_PORT);
+    status = "connecting to ".concat(host);
+    updateStats();
+    var ws = new WebSocket("ws://".concat(host, "/stream"));
+    ws.binaryType = "arraybuffer";
+    ws.onopen = function () {
+        backoffMs = 500;
+        lastSequence = -1;
+        status = "live from ".concat(host);
+        updateStats();
+    };
+    ws.onmessage = function (event) {
+        if (typeof event.data === "string") {
+            onText(event.data);
+        }
+        else {
+            onPacket(event.data);
+        }
+    };
+    ws.onclose = function () {
+        socket = null;
+        status = "disconnected, retrying in ".concat(backoffMs / 1000, "s");
+        updateStats();
+        reconnectTimer = window.setTimeout(function () { return connect(address); }, backoffMs);
+        backoffMs = Math.min(backoffMs * 2, MAX_BACKOFF_MS);
+    };
+    socket = ws;
+}
+function onText(text) {
+    try {
+        var message = JSON.parse(text);
+        if (message.type === "stats") {
+            serverStats = message;
+        }
+    }
+    catch (e) {
+        // Not ours
+    }
+}
+function onPacket(buffer) {
+    var parsed = parseHeader(new DataView(buffer));
+    if (!parsed || buffer.byteLength < HEADER_BYTES + parsed.payloadBytes) {
+        return;
+    }
+    var payload = new Uint8Array(buffer, HEADER_BYTES, parsed.payloadBytes);
+    if (!image || image.width !== parsed.width || image.height !== parsed.height) {
+        canvas.width = parsed.width;
+        canvas.height = parsed.height;
+        image = ctx.createImageData(parsed.width, parsed.height);
+    }
+    var ok;
+    if (parsed.encoding === ENCODING_GRAY) {
+        ok = decodeGray(payload, image.data);
+    }
+    else {
+        ok = decodeMask(parsed.encoding, payload, parsed.width * parsed.height);
+        if (ok) {
+            paintMask(image.data);
+        }
+    }
+    if (!ok) {
+        return;
+    }
+    ctx.putImageData(image, 0, 0);
+    img.style.display = "none";
+    canvas.style.display = "block";
+    if (lastSequence >= 0 && parsed.sequence > lastSequence + 1) {
+        gaps += parsed.sequence - lastSequence - 1;
+    }
+    lastSequence = parsed.sequence;
+    header = parsed;
+    framesThisSecond++;
+    bytesThisSecond += buffer.byteLength;
+}
+function parseHeader(view) {
+    if (view.byteLength < HEADER_BYTES || view.getUint8(0) !== MAGIC) {
+        return null;
+    }
+    var flags = view.getUint8(3);
+    return {
+        version: view.getUint8(1),
+        encoding: view.getUint8(2),
+        raw: (flags & 1) !== 0,
+        width: view.getUint16(4, true),
+        height: view.getUint16(6, true),
+        sequence: view.getUint32(8, true),
+        processingMs: view.getFloat32(12, true),
+        fps: view.getFloat32(16, true),
+        payloadBytes: view.getUint32(20, true),
+    };
+}
+function decodeGray(payload, out) {
+    var pixels = out.length / 4;
+    if (payload.length < pixels) {
+        return false;
+    }
+    for (var i = 0, o = 0; i < pixels; i++, o += 4) {
+        var v = payload[i];
+        out[o] = v;
+        out[o + 1] = v;
+        out[o + 2] = v;
+        out[o + 3] = 255;
+    }
+    return true;
+}
+function decodeMask(encoding, payload, pixels) {
+    if (encoding === ENCODING_DELTA) {
+        if (!haveMask || mask.length !== pixels) {
+            return false;
+        }
+    }
+    else if (mask.length !== pixels) {
+        mask = new Uint8Array(pixels);
+    }
+    var ok = false;
+    if (encoding === ENCODING_RLE) {
+        for (var i = 0; i < pixels; i++) {
+            mask[i] = 0;
+        }
+        ok = toggleRuns(payload, pixels);
+    }
+    else if (encoding === ENCODING_DELTA) {
+        ok = toggleRuns(payload, pixels);
+    }
+    else if (encoding === ENCODING_BITPACK && payload.length === Math.ceil(pixels / 8)) {
+        for (var i = 0; i < pixels; i++) {
+            mask[i] = (payload[i >> 3] >> (i & 7)) & 1;
+        }
+        ok = true;
+    }
+    // A broken chain waits for the next keyframe
+    haveMask = ok;
+    return ok;
+}
+// Alternating runs as LEB128 varints; every second run is toggled, which
+// builds an RLE keyframe from zeros and applies a delta to the last mask
+function toggleRuns(payload, pixels) {
+    var p = 0;
+    var pixel = 0;
+    var odd = false;
+    while (p < payload.length) {
+        var run = 0;
+        var shift = 0;
+        var b = void 0;
+        do {
+            b = payload[p++];
+            run += (b & 0x7f) * Math.pow(2, shift);
+            shift += 7;
+        } while ((b & 0x80) !== 0 && p < payload.length);
+        if (pixel + run > pixels) {
+            return false;
+        }
+        var end = pixel + run;
+        if (odd) {
+            for (; pixel < end; pixel++) {
+                mask[pixel] ^= 1;
+            }
+        }
+        pixel = end;
+        odd = !odd;
+    }
+    return pixel === pixels;
+}
+function paintMask(out) {
+    for (var i = 0, o = 0; i < mask.length; i++, o += 4) {
+        var v = mask[i] ? 255 : 0;
+        out[o] = v;
+        out[o + 1] = v;
+        out[o + 2] = v;
+        out[o + 3] = 255;
+    }
+}
 function updateStats() {
-    stats.textContent = "FPS: ".concat(fps, " | Resolution: ").concat(resolution);
+    var parts = [status];
+    if (header) {
+        parts.push("Device FPS: ".concat(header.fps.toFixed(1)), "Processing: ".concat(header.processingMs.toFixed(1), " ms"), "Resolution: ".concat(header.width, "x").concat(header.height).concat(header.raw ? " (raw)" : ""), "Received: ".concat(receivedFps, " fps, ").concat(kbps, " kbps"), "Gaps: ".concat(gaps));
+    }
+    if (serverStats) {
+        parts.push("Encode: ".concat(serverStats.encodeMs.toFixed(2), " ms"), "Dropped: ".concat(serverStats.dropped), "Clients: ".concat(serverStats.clients));
+    }
+    stats.textContent = parts.join(" | ");
 }
-updateStats();
+window.setInterval(function () {
+    receivedFps = framesThisSecond;
+    kbps = Math.round((bytesThisSecond * 8) / 1000);
+    framesThisSecond = 0;
+    bytesThisSecond = 0;
+    updateStats();
+}, 1000);
+connectButton.onclick = function () {
+    var address = deviceInput.value.trim();
+    if (address) {
+        window.localStorage.setItem("edgeviewer.device", address);
+        connect(address);
+    }
+};
+deviceInput.value = deviceAddress();
+connect(deviceInput.value);
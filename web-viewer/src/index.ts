@@ -1,15 +1,289 @@
 const img = document.getElementById("frame") as HTMLImageElement;
+const canvas = document.getElementById("live") as HTMLCanvasElement;
 const stats = document.getElementById("stats") as HTMLDivElement;
+const deviceInput = document.getElementById("device") as HTMLInputElement;
+const connectButton = document.getElementById("connect") as HTMLButtonElement;
 
-// Placeholder: you will save a processed frame screenshot as sample-frame.png
-// and put it next to index.js in the dist folder.
-img.src = "./sample-frame.png";
+// Shown until a device stream delivers its first frame
+img.src = "./sample-frame1.png";
 
-let fps = 15;
-let resolution = "640x480";
+// Must match FrameStreamer and EdgeCodec on the device
+const MAGIC = 0x45; // 'E'
+const HEADER_BYTES = 24;
+const ENCODING_GRAY = 0;
+const ENCODING_RLE = 1;
+const ENCODING_BITPACK = 2;
+const ENCODING_DELTA = 3;
+const DEFAULT_PORT = 8765;
+const MAX_BACKOFF_MS = 8000;
+
+interface FrameHeader {
+  version: number;
+  encoding: number;
+  raw: boolean;
+  width: number;
+  height: number;
+  sequence: number;
+  processingMs: number;
+  fps: number;
+  payloadBytes: number;
+}
+
+interface ServerStats {
+  clients: number;
+  encoded: number;
+  skipped: number;
+  sent: number;
+  dropped: number;
+  encodeMs: number;
+}
+
+const ctx = canvas.getContext("2d") as CanvasRenderingContext2D;
+let image: ImageData | null = null;
+
+// Last decoded edge mask, one 0/1 byte per pixel; delta packets apply to it
+let mask = new Uint8Array(0);
+let haveMask = false;
+
+let socket: WebSocket | null = null;
+let backoffMs = 500;
+let reconnectTimer = 0;
+
+let header: FrameHeader | null = null;
+let serverStats: ServerStats | null = null;
+let lastSequence = -1;
+let gaps = 0;
+let framesThisSecond = 0;
+let bytesThisSecond = 0;
+let receivedFps = 0;
+let kbps = 0;
+let status = "not connected";
+
+function deviceAddress(): string {
+  const fromQuery = new URLSearchParams(window.location.search).get("device");
+  const saved = window.localStorage.getItem("edgeviewer.device");
+  return fromQuery || saved || `${window.location.hostname || "127.0.0.1"}:${DEFAULT_PORT}`;
+}
+
+function connect(address: string) {
+  window.clearTimeout(reconnectTimer);
+  if (socket) {
+    socket.onclose = null;
+    socket.close();
+  }
+  const host = address.indexOf(":") >= 0 ? address : `${address}:${DEFAULT_PORT}`;
+  status = `connecting to ${host}`;
+  updateStats();
+
+  const ws = new WebSocket(`ws://${host}/stream`);
+  ws.binaryType = "arraybuffer";
+  ws.onopen = () => {
+    backoffMs = 500;
+    lastSequence = -1;
+    status = `live from ${host}`;
+    updateStats();
+  };
+  ws.onmessage = (event: MessageEvent) => {
+    if (typeof event.data === "string") {
+      onText(event.data);
+    } else {
+      onPacket(event.data as ArrayBuffer);
+    }
+  };
+  ws.onclose = () => {
+    socket = null;
+    status = `disconnected, retrying in ${backoffMs / 1000}s`;
+    updateStats();
+    reconnectTimer = window.setTimeout(() => connect(address), backoffMs);
+    backoffMs = Math.min(backoffMs * 2, MAX_BACKOFF_MS);
+  };
+  socket = ws;
+}
+
+function onText(text: string) {
+  try {
+    const message = JSON.parse(text);
+    if (message.type === "stats") {
+      serverStats = message as ServerStats;
+    }
+  } catch (e) {
+    // Not ours
+  }
+}
+
+function onPacket(buffer: ArrayBuffer) {
+  const parsed = parseHeader(new DataView(buffer));
+  if (!parsed || buffer.byteLength < HEADER_BYTES + parsed.payloadBytes) {
+    return;
+  }
+  const payload = new Uint8Array(buffer, HEADER_BYTES, parsed.payloadBytes);
+
+  if (!image || image.width !== parsed.width || image.height !== parsed.height) {
+    canvas.width = parsed.width;
+    canvas.height = parsed.height;
+    image = ctx.createImageData(parsed.width, parsed.height);
+  }
+  let ok: boolean;
+  if (parsed.encoding === ENCODING_GRAY) {
+    ok = decodeGray(payload, image.data);
+  } else {
+    ok = decodeMask(parsed.encoding, payload, parsed.width * parsed.height);
+    if (ok) {
+      paintMask(image.data);
+    }
+  }
+  if (!ok) {
+    return;
+  }
+  ctx.putImageData(image, 0, 0);
+  img.style.display = "none";
+  canvas.style.display = "block";
+
+  if (lastSequence >= 0 && parsed.sequence > lastSequence + 1) {
+    gaps += parsed.sequence - lastSequence - 1;
+  }
+  lastSequence = parsed.sequence;
+  header = parsed;
+  framesThisSecond++;
+  bytesThisSecond += buffer.byteLength;
+}
+
+function parseHeader(view: DataView): FrameHeader | null {
+  if (view.byteLength < HEADER_BYTES || view.getUint8(0) !== MAGIC) {
+    return null;
+  }
+  const flags = view.getUint8(3);
+  return {
+    version: view.getUint8(1),
+    encoding: view.getUint8(2),
+    raw: (flags & 1) !== 0,
+    width: view.getUint16(4, true),
+    height: view.getUint16(6, true),
+    sequence: view.getUint32(8, true),
+    processingMs: view.getFloat32(12, true),
+    fps: view.getFloat32(16, true),
+    payloadBytes: view.getUint32(20, true),
+  };
+}
+
+function decodeGray(payload: Uint8Array, out: Uint8ClampedArray): boolean {
+  const pixels = out.length / 4;
+  if (payload.length < pixels) {
+    return false;
+  }
+  for (let i = 0, o = 0; i < pixels; i++, o += 4) {
+    const v = payload[i];
+    out[o] = v;
+    out[o + 1] = v;
+    out[o + 2] = v;
+    out[o + 3] = 255;
+  }
+  return true;
+}
+
+function decodeMask(encoding: number, payload: Uint8Array, pixels: number): boolean {
+  if (encoding === ENCODING_DELTA) {
+    if (!haveMask || mask.length !== pixels) {
+      return false;
+    }
+  } else if (mask.length !== pixels) {
+    mask = new Uint8Array(pixels);
+  }
+  let ok = false;
+  if (encoding === ENCODING_RLE) {
+    for (let i = 0; i < pixels; i++) {
+      mask[i] = 0;
+    }
+    ok = toggleRuns(payload, pixels);
+  } else if (encoding === ENCODING_DELTA) {
+    ok = toggleRuns(payload, pixels);
+  } else if (encoding === ENCODING_BITPACK && payload.length === Math.ceil(pixels / 8)) {
+    for (let i = 0; i < pixels; i++) {
+      mask[i] = (payload[i >> 3] >> (i & 7)) & 1;
+    }
+    ok = true;
+  }
+  // A broken chain waits for the next keyframe
+  haveMask = ok;
+  return ok;
+}
+
+// Alternating runs as LEB128 varints; every second run is toggled, which
+// builds an RLE keyframe from zeros and applies a delta to the last mask
+function toggleRuns(payload: Uint8Array, pixels: number): boolean {
+  let p = 0;
+  let pixel = 0;
+  let odd = false;
+  while (p < payload.length) {
+    let run = 0;
+    let shift = 0;
+    let b: number;
+    do {
+      b = payload[p++];
+      run += (b & 0x7f) * Math.pow(2, shift);
+      shift += 7;
+    } while ((b & 0x80) !== 0 && p < payload.length);
+    if (pixel + run > pixels) {
+      return false;
+    }
+    const end = pixel + run;
+    if (odd) {
+      for (; pixel < end; pixel++) {
+        mask[pixel] ^= 1;
+      }
+    }
+    pixel = end;
+    odd = !odd;
+  }
+  return pixel === pixels;
+}
+
+function paintMask(out: Uint8ClampedArray) {
+  for (let i = 0, o = 0; i < mask.length; i++, o += 4) {
+    const v = mask[i] ? 255 : 0;
+    out[o] = v;
+    out[o + 1] = v;
+    out[o + 2] = v;
+    out[o + 3] = 255;
+  }
+}
 
 function updateStats() {
-  stats.textContent = `FPS: ${fps} | Resolution: ${resolution}`;
+  const parts = [status];
+  if (header) {
+    parts.push(
+      `Device FPS: ${header.fps.toFixed(1)}`,
+      `Processing: ${header.processingMs.toFixed(1)} ms`,
+      `Resolution: ${header.width}x${header.height}${header.raw ? " (raw)" : ""}`,
+      `Received: ${receivedFps} fps, ${kbps} kbps`,
+      `Gaps: ${gaps}`
+    );
+  }
+  if (serverStats) {
+    parts.push(
+      `Encode: ${serverStats.encodeMs.toFixed(2)} ms`,
+      `Dropped: ${serverStats.dropped}`,
+      `Clients: ${serverStats.clients}`
+    );
+  }
+  stats.textContent = parts.join(" | ");
 }
 
-updateStats();
+window.setInterval(() => {
+  receivedFps = framesThisSecond;
+  kbps = Math.round((bytesThisSecond * 8) / 1000);
+  framesThisSecond = 0;
+  bytesThisSecond = 0;
+  updateStats();
+}, 1000);
+
+connectButton.onclick = () => {
+  const address = deviceInput.value.trim();
+  if (address) {
+    window.localStorage.setItem("edgeviewer.device", address);
+    connect(address);
+  }
+};
+
+deviceInput.value = deviceAddress();
+connect(deviceInput.value);